@@ -0,0 +1,118 @@
+package com.lazynoon.commons.safesave;
+
+/**
+ * 批量加解密结果（与输入数据按下标一一对应，每条数据单独记录错误码）
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeBatchResult {
+	/** 加密结果为密文，解密结果为明文（失败的数据为 null） **/
+	private final byte[][] data;
+	/** 解密的明文数据对象（加密结果为 null） **/
+	private final SafeData[] safeData;
+	/** 错误码（0表示无异常） **/
+	private final int[] errorCodes;
+	/** 错误消息 **/
+	private final String[] errorMessages;
+
+	SafeBatchResult(int size, boolean decrypt) {
+		this.data = new byte[size][];
+		this.safeData = decrypt ? new SafeData[size] : null;
+		this.errorCodes = new int[size];
+		this.errorMessages = new String[size];
+	}
+
+	void setData(int index, byte[] bts) {
+		data[index] = bts;
+	}
+
+	void setSafeData(int index, SafeData result) {
+		safeData[index] = result;
+		if(result.isDecryptSuccess()) {
+			data[index] = result.getPlaintextData();
+		} else {
+			setError(index, result.getErrorCode(), result.getErrorMessage());
+		}
+	}
+
+	void setError(int index, int code, String message) {
+		errorCodes[index] = code;
+		errorMessages[index] = message;
+	}
+
+	/**
+	 * 获取数据条数
+	 * @return 与输入数据的条数相同
+	 */
+	public int size() {
+		return data.length;
+	}
+
+	/**
+	 * 获取加解密结果
+	 * @param index 数据下标
+	 * @return 加密为密文，解密为明文，失败返回 null
+	 */
+	public byte[] getData(int index) {
+		return data[index];
+	}
+
+	/**
+	 * 获取全部加解密结果
+	 * @return 结果数组（失败的数据为 null）
+	 */
+	public byte[][] getData() {
+		return data;
+	}
+
+	/**
+	 * 获取解密的明文数据对象
+	 * @param index 数据下标
+	 * @return 明文数据对象，加密结果或密文版本无法识别时返回 null
+	 */
+	public SafeData getSafeData(int index) {
+		return safeData == null ? null : safeData[index];
+	}
+
+	/**
+	 * 是否处理成功
+	 * @param index 数据下标
+	 * @return 错误码为0返回 true
+	 */
+	public boolean isSuccess(int index) {
+		return errorCodes[index] == 0;
+	}
+
+	/**
+	 * 获取错误码
+	 * @param index 数据下标
+	 * @return 错误码（0表示无异常）
+	 */
+	public int getErrorCode(int index) {
+		return errorCodes[index];
+	}
+
+	/**
+	 * 获取错误消息
+	 * @param index 数据下标
+	 * @return 错误消息（错误码非0时有意义）
+	 */
+	public String getErrorMessage(int index) {
+		return errorMessages[index];
+	}
+
+	/**
+	 * 获取失败的数据条数
+	 * @return 错误码非0的数据条数
+	 */
+	public int getErrorCount() {
+		int count = 0;
+		for(int code : errorCodes) {
+			if(code != 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
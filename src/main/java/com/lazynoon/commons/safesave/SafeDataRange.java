@@ -0,0 +1,81 @@
+package com.lazynoon.commons.safesave;
+
+/**
+ * 按范围解密的结果（明文数据的一段）
+ *   只解密覆盖范围的密文分组时，无法校验整条数据的签名，isHashVerified() 返回 false，调用方须自行决定是否信任
+ *   范围覆盖全部明文时，按完整解密处理并校验签名
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeDataRange {
+	/** 明文数据以外的字段（头部字段、加密时间、随机数、完整的明文长度） **/
+	private final SafeData safeData;
+	/** 范围在完整明文数据中的起始位置 **/
+	private final long from;
+	/** 范围内的明文数据 **/
+	private final byte[] data;
+	/** 是否已校验整条数据的签名 **/
+	private final boolean hashVerified;
+
+	/**
+	 * @param safeData 已解密固定字段的数据对象（完整解密时包含明文数据）
+	 * @param from 范围在完整明文数据中的起始位置
+	 * @param data 范围内的明文数据
+	 * @param hashVerified 是否已校验整条数据的签名
+	 */
+	public SafeDataRange(SafeData safeData, long from, byte[] data, boolean hashVerified) {
+		this.safeData = safeData;
+		this.from = from;
+		this.data = data;
+		this.hashVerified = hashVerified;
+	}
+
+	/**
+	 * 是否已校验整条数据的签名
+	 * @return 只解密了部分分组时返回 false
+	 */
+	public boolean isHashVerified() {
+		return hashVerified;
+	}
+
+	/**
+	 * 获取范围的起始位置
+	 * @return 在完整明文数据中的位置
+	 */
+	public long getFrom() {
+		return from;
+	}
+
+	/**
+	 * 获取范围的长度（超出明文末尾的部分不计入）
+	 * @return 字节数
+	 */
+	public int getLength() {
+		return data.length;
+	}
+
+	/**
+	 * 获取范围内的明文数据
+	 * @return 明文数据
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * 获取完整的明文长度
+	 * @return 字节数
+	 */
+	public int getPlaintextLength() {
+		return safeData.getPlaintextLength();
+	}
+
+	/**
+	 * 获取明文数据以外的字段（只解密部分分组时，明文数据与数据签名为空）
+	 * @return 数据对象
+	 */
+	public SafeData getSafeData() {
+		return safeData;
+	}
+}
@@ -0,0 +1,297 @@
+package com.lazynoon.commons.safesave;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 密文数据视图（可重复使用，非线程安全）
+ *   明文存储的头部字段（版本号、字节映射表ID、秘钥ID）直接从密文读取，不创建对象，不解密
+ *   首次访问密文存储的字段（加密时间、随机数、明文数据等）时，才按版本号获取已缓存的加密机解密，结果保留到下次 wrap
+ *   适用于按秘钥ID路由、审计、秘钥使用情况统计等只需要头部字段的场景
+ *
+ *   视图引用调用方的数组或缓冲区，不复制密文。解密前修改密文，解密结果以修改后的内容为准
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeDataView {
+	/** 明文存储的头部字段长度（各版本相同） **/
+	public static final int PLAINTEXT_HEAD_LENGTH = 6;
+
+	private final SafeKeyStore keyStore;
+
+	/** 密文数组（缓冲区有底层数组时，直接使用底层数组） **/
+	private byte[] array = null;
+	/** 密文缓冲区（无底层数组的缓冲区，如直接内存） **/
+	private ByteBuffer buffer = null;
+	private int offset = 0;
+	private int length = 0;
+
+	/** 解密结果（首次访问密文字段时创建） **/
+	private SafeData body = null;
+	private boolean bodyLoaded = false;
+	private int errorCode = 0;
+	private String errorMessage = null;
+
+	/**
+	 * @param keyStore 解密密文字段使用的秘钥库（只读取头部字段时可以为 null）
+	 */
+	public SafeDataView(SafeKeyStore keyStore) {
+		this.keyStore = keyStore;
+	}
+
+	/**
+	 * 关联密文数组
+	 * @param data 密文数据
+	 * @return 当前视图
+	 */
+	public SafeDataView wrap(byte[] data) {
+		return wrap(data, 0, data == null ? 0 : data.length);
+	}
+
+	/**
+	 * 关联密文数组的指定范围
+	 * @param data 密文数据
+	 * @param offset 密文数据的偏移量
+	 * @param length 密文数据的长度
+	 * @return 当前视图
+	 */
+	public SafeDataView wrap(byte[] data, int offset, int length) {
+		if(data != null && (offset < 0 || length < 0 || offset + length > data.length)) {
+			throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length);
+		}
+		reset();
+		this.array = data;
+		this.offset = offset;
+		this.length = data == null ? 0 : length;
+		return this;
+	}
+
+	/**
+	 * 关联密文缓冲区（position 至 limit 之间的数据，不改变缓冲区的 position）
+	 * @param data 密文缓冲区
+	 * @return 当前视图
+	 */
+	public SafeDataView wrap(ByteBuffer data) {
+		if(data == null) {
+			return wrap(null, 0, 0);
+		}
+		if(data.hasArray()) {
+			return wrap(data.array(), data.arrayOffset() + data.position(), data.remaining());
+		}
+		reset();
+		this.buffer = data;
+		this.offset = data.position();
+		this.length = data.remaining();
+		return this;
+	}
+
+	/**
+	 * 解除与密文的关联，清除解密结果
+	 */
+	public void reset() {
+		array = null;
+		buffer = null;
+		offset = 0;
+		length = 0;
+		body = null;
+		bodyLoaded = false;
+		errorCode = 0;
+		errorMessage = null;
+	}
+
+	/**
+	 * 密文长度是否包含完整的头部字段
+	 * @return 头部字段完整返回 true
+	 */
+	public boolean hasHead() {
+		return length >= PLAINTEXT_HEAD_LENGTH;
+	}
+
+	/**
+	 * 获取关联的密文长度
+	 * @return 字节数
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * 获取加密算法主要版本号（不解密）
+	 * @return 头部字段不完整返回 0
+	 */
+	public int getMajorVersion() {
+		return hasHead() ? byteAt(0) : 0;
+	}
+
+	/**
+	 * 获取加密算法次要版本号（不解密）
+	 * @return 头部字段不完整返回 0
+	 */
+	public int getMinorVersion() {
+		return hasHead() ? byteAt(1) : 0;
+	}
+
+	/**
+	 * 获取字节映射表ID（不解密）
+	 * @return 头部字段不完整返回 0
+	 */
+	public int getByteMappingId() {
+		return hasHead() ? byteAt(2) : 0;
+	}
+
+	/**
+	 * 获取秘钥ID（不解密）
+	 * @return 头部字段不完整返回 0
+	 */
+	public int getSecretKeyId() {
+		if(hasHead() == false) {
+			return 0;
+		}
+		return (byteAt(3) << 16) | (byteAt(4) << 8) | byteAt(5);
+	}
+
+	/**
+	 * 是否已解密密文存储的字段（无论成功与否）
+	 * @return 已解密返回 true
+	 */
+	public boolean isBodyLoaded() {
+		return bodyLoaded;
+	}
+
+	/**
+	 * 是否解密成功（未解密时先解密）
+	 * @return 解密成功返回 true
+	 */
+	public boolean isDecryptSuccess() {
+		loadBody();
+		return errorCode == 0;
+	}
+
+	/**
+	 * 获取解密错误码（未解密时先解密）
+	 * @return 0表示无异常
+	 */
+	public int getErrorCode() {
+		loadBody();
+		return errorCode;
+	}
+
+	/**
+	 * 获取解密错误消息（未解密时先解密）
+	 * @return 无异常返回 null
+	 */
+	public String getErrorMessage() {
+		loadBody();
+		return errorMessage;
+	}
+
+	/**
+	 * 获取保留字段（未解密时先解密）
+	 * @return 解密失败返回 0
+	 */
+	public long getReserved() {
+		return loadBody() ? body.getReserved() : 0;
+	}
+
+	/**
+	 * 获取加密时间（未解密时先解密）
+	 * @return 毫秒时间戳，解密失败返回 0
+	 */
+	public long getEncryptTime() {
+		return loadBody() ? body.getEncryptTime() : 0;
+	}
+
+	/**
+	 * 获取随机数（未解密时先解密）
+	 * @return 解密失败返回 0
+	 */
+	public long getRandomCode() {
+		return loadBody() ? body.getRandomCode() : 0;
+	}
+
+	/**
+	 * 获取明文数据长度（未解密时先解密）
+	 * @return 解密失败返回 0
+	 */
+	public int getPlaintextLength() {
+		return loadBody() ? body.getPlaintextLength() : 0;
+	}
+
+	/**
+	 * 获取明文数据（未解密时先解密）
+	 * @return 解密失败返回 null
+	 */
+	public byte[] getPlaintextData() {
+		return loadBody() ? body.getPlaintextData() : null;
+	}
+
+	/**
+	 * 获取数据签名（未解密时先解密）
+	 * @return 解密失败返回 0
+	 */
+	public long getHashCode() {
+		return loadBody() ? body.getHashCode() : 0;
+	}
+
+	/**
+	 * 获取解密后的数据对象（未解密时先解密）
+	 * @return 版本号识别不了或头部字段不完整返回 null，非空值须先检查解密是否成功
+	 */
+	public SafeData getSafeData() {
+		loadBody();
+		return body;
+	}
+
+	/**
+	 * 读取头部字段的1个字节（绝对位置，不改变缓冲区的 position）
+	 */
+	private int byteAt(int index) {
+		if(array != null) {
+			return array[offset + index] & 0xFF;
+		}
+		return buffer.get(offset + index) & 0xFF;
+	}
+
+	/**
+	 * 解密密文存储的字段（只解密一次）
+	 * @return 解密成功返回 true
+	 */
+	private boolean loadBody() {
+		if(bodyLoaded) {
+			return errorCode == 0;
+		}
+		bodyLoaded = true;
+		if(hasHead() == false) {
+			return setError(20100401, "Encrypted Data length is less than " + PLAINTEXT_HEAD_LENGTH);
+		}
+		if(keyStore == null) {
+			return setError(20100404, "keyStore is null");
+		}
+		int majorVersion = getMajorVersion();
+		int minorVersion = getMinorVersion();
+		SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(majorVersion, minorVersion, keyStore);
+		if(encryptor == null) {
+			return setError(20100402, "Encryptor not found. version: " + majorVersion + "." + minorVersion);
+		}
+		if(array != null) {
+			body = encryptor.silentDecrypt(array, offset, length);
+		} else {
+			byte[] bts = new byte[length];
+			buffer.duplicate().get(bts);
+			body = encryptor.silentDecrypt(bts);
+		}
+		if(body == null) {
+			return setError(20100403, "decrypt result is null");
+		}
+		if(body.isDecryptSuccess() == false) {
+			return setError(body.getErrorCode(), body.getErrorMessage());
+		}
+		return true;
+	}
+
+	private boolean setError(int code, String message) {
+		errorCode = code;
+		errorMessage = message;
+		return false;
+	}
+}
@@ -0,0 +1,152 @@
+package com.lazynoon.commons.safesave;
+
+import com.lazynoon.commons.safesave.utils.SafeEncodeUtils;
+
+/**
+ * 解密机（按密文头部的版本号，自动选择已缓存的加密机解密，可多线程共用）
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeDecryptor {
+	private final SafeKeyStore keyStore;
+
+	/**
+	 * @param keyStore 秘钥存储器
+	 */
+	public SafeDecryptor(SafeKeyStore keyStore) {
+		if(keyStore == null) {
+			throw new IllegalArgumentException("keyStore is null");
+		}
+		this.keyStore = keyStore;
+	}
+
+	/**
+	 * 获取密文版本号对应的加密机
+	 * @param data 密文数据
+	 * @return 版本号识别不了返回 null
+	 */
+	public SafeEncryptor getEncryptor(byte[] data) {
+		if(data == null || data.length < 2) {
+			return null;
+		}
+		return SafeEncryptorFactory.getInstance(data[0] & 0xFF, data[1] & 0xFF, keyStore);
+	}
+
+	/**
+	 * 密文数据解密
+	 * @param data 密文数据
+	 * @return 明文数据对象
+	 * @throws SafeCryptoException 版本号识别不了，或解密异常
+	 */
+	public SafeData decrypt(byte[] data) throws SafeCryptoException {
+		SafeEncryptor encryptor = getEncryptor(data);
+		if(encryptor == null) {
+			throw new SafeCryptoException(20100501, "not support encrypt version: "
+					+ SafeEncryptorFactory.getMajorVersion(data) + "." + SafeEncryptorFactory.getMinorVersion(data));
+		}
+		return encryptor.decrypt(data);
+	}
+
+	/**
+	 * 以安静模式解密（不抛出解密异常。是否解密成功，通过检查返回值实现）
+	 * @param data 密文数据
+	 * @return 加密版本号识别不了，返回 null。非空值，须先检查解密是否成功
+	 */
+	public SafeData silentDecrypt(byte[] data) {
+		SafeEncryptor encryptor = getEncryptor(data);
+		if(encryptor == null) {
+			return null;
+		}
+		return encryptor.silentDecrypt(data);
+	}
+
+	/**
+	 * 以安静模式解密字节数组的指定范围
+	 * @param data 密文数据
+	 * @param offset 密文数据的偏移量
+	 * @param length 密文数据的长度
+	 * @return 加密版本号识别不了，返回 null。非空值，须先检查解密是否成功
+	 */
+	public SafeData silentDecrypt(byte[] data, int offset, int length) {
+		if(data == null || length < 2) {
+			return null;
+		}
+		SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(data[offset] & 0xFF, data[offset + 1] & 0xFF, keyStore);
+		if(encryptor == null) {
+			return null;
+		}
+		return encryptor.silentDecrypt(data, offset, length);
+	}
+
+	/**
+	 * 解密标准base64编码的密文字符串
+	 * @param text 编码后的密文
+	 * @return 明文字符串（按UTF-8解码）
+	 * @throws SafeCryptoException 版本号识别不了，或解密异常
+	 */
+	public String decryptToString(CharSequence text) throws SafeCryptoException {
+		return decryptToString(text, SafeEncodeUtils.Base64Alphabet.STANDARD);
+	}
+
+	/**
+	 * 解密按指定字符表编码的密文字符串（按前4个字符解码出的版本号，选择对应的加密机）
+	 * @param text 编码后的密文
+	 * @param alphabet 密文编码的字符表
+	 * @return 明文字符串（按UTF-8解码）
+	 * @throws SafeCryptoException 版本号识别不了，或解密异常
+	 */
+	public String decryptToString(CharSequence text, SafeEncodeUtils.Base64Alphabet alphabet) throws SafeCryptoException {
+		if(text == null) {
+			throw new SafeCryptoException(20100214, "text is null");
+		}
+		SafeEncryptor encryptor = null;
+		if(text.length() >= 4) {
+			char[] head = new char[] {text.charAt(0), text.charAt(1), text.charAt(2), text.charAt(3)};
+			byte[] version = new byte[3];
+			SafeEncodeUtils.decodeBase64(alphabet, head, 0, head.length, version, 0);
+			encryptor = SafeEncryptorFactory.getInstance(version[0] & 0xFF, version[1] & 0xFF, keyStore);
+		}
+		if(encryptor == null) {
+			throw new SafeCryptoException(20100501, "not support encrypt version of text");
+		}
+		return encryptor.decryptToString(text, alphabet);
+	}
+
+	/**
+	 * 预检密文（只解密少量数据，快速拒绝秘钥错误或已损坏的密文，适用于扫描或试解密）
+	 * @param data 密文数据
+	 * @return 预检通过返回 0，否则返回错误码
+	 */
+	public int precheck(byte[] data) {
+		SafeEncryptor encryptor = getEncryptor(data);
+		if(encryptor == null) {
+			return 20100501;
+		}
+		return encryptor.precheck(data);
+	}
+
+	/**
+	 * 校验密文（解密并校验数据签名，不保存明文）
+	 * @param data 密文数据
+	 * @return 校验结果（只有1条数据，版本号识别不了时错误码为 20100501）
+	 */
+	public SafeVerifyResult verify(byte[] data) {
+		SafeEncryptor encryptor = getEncryptor(data);
+		if(encryptor == null) {
+			SafeVerifyResult result = new SafeVerifyResult(1);
+			result.set(0, 20100501, "not support encrypt version: "
+					+ SafeEncryptorFactory.getMajorVersion(data) + "." + SafeEncryptorFactory.getMinorVersion(data), 0, 0L);
+			return result;
+		}
+		return encryptor.verify(data);
+	}
+
+	/**
+	 * 获取秘钥存储器
+	 * @return 构建时传入的秘钥存储器
+	 */
+	public SafeKeyStore getKeyStore() {
+		return keyStore;
+	}
+}
@@ -1,5 +1,18 @@
 package com.lazynoon.commons.safesave;
 
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.utils.SafeByteUtils;
+import com.lazynoon.commons.safesave.utils.SafeEncodeUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 /**
  * 加密器
  *
@@ -37,6 +50,9 @@ abstract public class SafeEncryptor {
 		if(minorVersion > MAX_VERSION) {
 			throw new IllegalArgumentException("Encryptor minor version is greater than " + MAX_VERSION);
 		}
+		if(isMinorVersionSupported(minorVersion) == false) {
+			throw new IllegalArgumentException("Encryptor minor version is not supported: " + majorVersion + "." + minorVersion);
+		}
 		if(keyStore == null) {
 			throw new IllegalArgumentException("keyStore is null");
 		}
@@ -51,6 +67,16 @@ abstract public class SafeEncryptor {
 	 */
 	abstract public int getClassMajorVersion();
 
+	/**
+	 * 加密器是否支持指定的次要版本号（有效范围 0 ~ MAX_VERSION 由 init 检查，默认全部支持）
+	 *   子类按已定义的数据格式覆盖此方法，不支持的次要版本号，工厂不创建加密器
+	 * @param minorVersion 次要版本号
+	 * @return 支持返回 true
+	 */
+	public boolean isMinorVersionSupported(int minorVersion) {
+		return true;
+	}
+
 	/**
 	 * 安静模式检查加解密对象是否存在错误（不抛出检查异常）
 	 * @param safeData 明文数据对象
@@ -90,6 +116,55 @@ abstract public class SafeEncryptor {
 	 */
 	abstract public byte[] encrypt(SafeData data) throws SafeCryptoException;
 
+	/**
+	 * 计算明文加密后的密文长度
+	 *   默认实现返回 -20100215（无法预先计算）。子类按数据格式覆盖此方法
+	 * @param plaintextLength 明文数据长度
+	 * @return 密文数据的字节数；不支持时返回错误码的相反数（小于0）
+	 */
+	public int encryptedLength(int plaintextLength) {
+		return -20100215;
+	}
+
+	/**
+	 * 加密字节数组的指定范围，密文写入调用方提供的缓冲区
+	 *   子类可覆盖此方法，减少中间数组的创建
+	 * @param src 明文数据
+	 * @param offset 明文数据的偏移量
+	 * @param length 明文数据的长度
+	 * @param keyId 秘钥ID
+	 * @param mappingId 字节映射表ID
+	 * @param dst 密文写入的缓冲区（从当前位置写入，剩余空间不少于 encryptedLength(length)）
+	 * @return 写入的密文字节数
+	 * @throws SafeCryptoException 加密异常
+	 */
+	public int encrypt(byte[] src, int offset, int length, int keyId, int mappingId, ByteBuffer dst) throws SafeCryptoException {
+		byte[] data = new byte[length];
+		System.arraycopy(src, offset, data, 0, length);
+		byte[] result = encrypt(data, keyId, mappingId);
+		if(dst.remaining() < result.length) {
+			throw new SafeCryptoException(20100203, "buffer remaining is less than " + result.length);
+		}
+		dst.put(result);
+		return result.length;
+	}
+
+	/**
+	 * 加密字节数组的指定范围，密文写入调用方提供的字节数组
+	 * @param src 明文数据
+	 * @param offset 明文数据的偏移量
+	 * @param length 明文数据的长度
+	 * @param keyId 秘钥ID
+	 * @param mappingId 字节映射表ID
+	 * @param dst 密文写入的字节数组（剩余空间不少于 encryptedLength(length)）
+	 * @param dstOffset 密文写入的位置
+	 * @return 写入的密文字节数
+	 * @throws SafeCryptoException 加密异常
+	 */
+	public int encrypt(byte[] src, int offset, int length, int keyId, int mappingId, byte[] dst, int dstOffset) throws SafeCryptoException {
+		return encrypt(src, offset, length, keyId, mappingId, ByteBuffer.wrap(dst, dstOffset, dst.length - dstOffset));
+	}
+
 	/**
 	 * 密文数据解密
 	 * @param data 密文数据
@@ -114,6 +189,562 @@ abstract public class SafeEncryptor {
 	 */
 	abstract public SafeData silentDecrypt(byte[] data);
 
+	/**
+	 * 以安静模式解密字节数组的指定范围
+	 *   默认实现复制出密文后解密。子类可覆盖此方法，直接解密原数组
+	 * @param data 密文数据
+	 * @param offset 密文数据的偏移量
+	 * @param length 密文数据的长度
+	 * @return 加密版本号识别不了，返回 null。非空值，须先检查解密是否成功
+	 */
+	public SafeData silentDecrypt(byte[] data, int offset, int length) {
+		if(data != null && offset == 0 && length == data.length) {
+			return silentDecrypt(data);
+		}
+		byte[] bts = new byte[length];
+		System.arraycopy(data, offset, bts, 0, length);
+		return silentDecrypt(bts);
+	}
+
+	/**
+	 * 以安静模式解密字节数组的指定范围，明文写入调用方提供的缓冲区
+	 *   只返回明文长度或错误码，不创建明文数据对象。子类可覆盖此方法，减少中间数组的创建
+	 *   解密失败时，缓冲区的 position 不变，但 position 之后的内容可能已被改写
+	 *   压缩数据（v1.1）解压后写入，缓冲区的剩余长度须不少于 decryptedLength 的返回值，而不是密文长度
+	 * @param src 密文数据
+	 * @param offset 密文数据的偏移量
+	 * @param length 密文数据的长度
+	 * @param dst 明文写入的缓冲区（从当前位置写入，剩余长度不少于 decryptedLength 的返回值）
+	 * @return 解密成功返回明文长度（大于等于0），失败返回错误码的相反数（小于0）
+	 */
+	public int decryptInto(byte[] src, int offset, int length, ByteBuffer dst) {
+		byte[] data = new byte[length];
+		System.arraycopy(src, offset, data, 0, length);
+		SafeData safeData = silentDecrypt(data);
+		if(safeData == null) {
+			return -20100201;
+		}
+		if(safeData.isDecryptSuccess() == false) {
+			return -safeData.getErrorCode();
+		}
+		if(dst.remaining() < safeData.getPlaintextLength()) {
+			return -20100204;
+		}
+		dst.put(safeData.getPlaintextData(), 0, safeData.getPlaintextLength());
+		return safeData.getPlaintextLength();
+	}
+
+	/**
+	 * 以安静模式解密字节数组的指定范围，明文写入调用方提供的字节数组
+	 * @param src 密文数据
+	 * @param offset 密文数据的偏移量
+	 * @param length 密文数据的长度
+	 * @param dst 明文写入的字节数组
+	 * @param dstOffset 明文写入的位置（之后的长度不少于 decryptedLength 的返回值）
+	 * @return 解密成功返回明文长度（大于等于0），失败返回错误码的相反数（小于0）
+	 */
+	public int decryptInto(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		return decryptInto(src, offset, length, ByteBuffer.wrap(dst, dstOffset, dst.length - dstOffset));
+	}
+
+	/**
+	 * 查询 decryptInto 所需的缓冲区长度（只解析头部字段，不校验签名，结果只用于分配缓冲区）
+	 *   默认实现返回密文长度（不压缩的数据，明文长度不超过密文长度）。子类按数据格式返回准确的明文长度
+	 * @param src 密文数据
+	 * @param offset 密文数据的偏移量
+	 * @param length 密文数据的长度
+	 * @return 明文长度或其上限（大于等于0），失败返回错误码的相反数（小于0）
+	 */
+	public int decryptedLength(byte[] src, int offset, int length) {
+		if(src == null || offset < 0 || length < 0 || offset + length > src.length) {
+			return -20100208;
+		}
+		return length;
+	}
+
+	/**
+	 * 加密字符串，密文按标准base64编码（适用于以字符串类型存储密文）
+	 * @param text 明文字符串（按UTF-8编码）
+	 * @param keyId 秘钥ID
+	 * @param mappingId 字节映射表ID
+	 * @return 编码后的密文
+	 * @throws SafeCryptoException 加密异常
+	 */
+	public String encryptToString(CharSequence text, int keyId, int mappingId) throws SafeCryptoException {
+		return encryptToString(text, keyId, mappingId, SafeEncodeUtils.Base64Alphabet.STANDARD);
+	}
+
+	/**
+	 * 加密字符串，密文按指定字符表编码
+	 *   UTF-8编码、加密与密文编码使用池化的临时缓冲区，除返回的字符串外不创建与数据长度相关的数组
+	 * @param text 明文字符串（按UTF-8编码）
+	 * @param keyId 秘钥ID
+	 * @param mappingId 字节映射表ID
+	 * @param alphabet 密文编码的字符表
+	 * @return 编码后的密文
+	 * @throws SafeCryptoException 加密异常
+	 */
+	public String encryptToString(CharSequence text, int keyId, int mappingId,
+								  SafeEncodeUtils.Base64Alphabet alphabet) throws SafeCryptoException {
+		if(text == null) {
+			throw new SafeCryptoException(20100214, "text is null");
+		}
+		SafeTextBuffer buffer = SafeTextBuffer.borrow();
+		try {
+			byte[] plain = buffer.plain(SafeEncodeUtils.maxUTF8Length(text.length()));
+			int length = SafeEncodeUtils.encodeUTF8(text, plain, 0);
+			int maxLength = encryptedLength(length);
+			byte[] cipher;
+			int cipherLength;
+			if(maxLength >= 0) {
+				cipher = buffer.cipher(maxLength);
+				cipherLength = encrypt(plain, 0, length, keyId, mappingId, cipher, 0);
+			} else { //密文长度无法预先计算，按数组加密
+				byte[] data = new byte[length];
+				System.arraycopy(plain, 0, data, 0, length);
+				cipher = encrypt(data, keyId, mappingId);
+				cipherLength = cipher.length;
+			}
+			byte[] encoded = buffer.text(alphabet.encodedLength(cipherLength));
+			int size = SafeEncodeUtils.encodeBase64(alphabet, cipher, 0, cipherLength, encoded, 0);
+			return new String(encoded, 0, size, SafeEncodeUtils.Charsets.ISO_8859_1);
+		} finally {
+			SafeTextBuffer.release(buffer);
+		}
+	}
+
+	/**
+	 * 解密标准base64编码的密文字符串
+	 * @param text 编码后的密文
+	 * @return 明文字符串（按UTF-8解码）
+	 * @throws SafeCryptoException 解密异常
+	 */
+	public String decryptToString(CharSequence text) throws SafeCryptoException {
+		return decryptToString(text, SafeEncodeUtils.Base64Alphabet.STANDARD);
+	}
+
+	/**
+	 * 解密按指定字符表编码的密文字符串
+	 *   密文解码、解密使用池化的临时缓冲区，除返回的字符串外不创建与数据长度相关的数组
+	 * @param text 编码后的密文
+	 * @param alphabet 密文编码的字符表
+	 * @return 明文字符串（按UTF-8解码）
+	 * @throws SafeCryptoException 解密异常（错误码与 silentDecrypt 一致）
+	 */
+	public String decryptToString(CharSequence text, SafeEncodeUtils.Base64Alphabet alphabet) throws SafeCryptoException {
+		if(text == null) {
+			throw new SafeCryptoException(20100214, "text is null");
+		}
+		SafeTextBuffer buffer = SafeTextBuffer.borrow();
+		try {
+			int textLength = text.length();
+			byte[] encoded = buffer.text(textLength);
+			for(int i=0; i<textLength; i++) {
+				char ch = text.charAt(i);
+				encoded[i] = ch < 0x100 ? (byte) ch : (byte) '?';
+			}
+			byte[] cipher = buffer.cipher(alphabet.decodedLength(encoded, 0, textLength));
+			int cipherLength = SafeEncodeUtils.decodeBase64(alphabet, encoded, 0, textLength, cipher, 0);
+			int plainLength = decryptedLength(cipher, 0, cipherLength);
+			if(plainLength < 0) {
+				throw new SafeCryptoException(-plainLength, "decrypt error - code: " + (-plainLength));
+			}
+			//压缩数据先按解压前的长度写入缓冲区，再原位置解压
+			byte[] plain = buffer.plain(Math.max(plainLength, cipherLength));
+			int length = decryptInto(cipher, 0, cipherLength, plain, 0);
+			if(length < 0) {
+				throw new SafeCryptoException(-length, "decrypt error - code: " + (-length));
+			}
+			return new String(plain, 0, length, SafeEncodeUtils.Charsets.UTF_8);
+		} finally {
+			SafeTextBuffer.release(buffer);
+		}
+	}
+
+	/**
+	 * 批量加密（使用同一密钥与字节映射表）
+	 *   子类可覆盖此方法，合并多条数据的加密调用
+	 * @param data 明文数据数组
+	 * @param keyId 秘钥ID
+	 * @param mappingId 字节映射表ID
+	 * @return 密文数据数组（与明文数据按下标一一对应）
+	 * @throws SafeCryptoException 加密异常（任意一条数据加密失败）
+	 */
+	public byte[][] encryptBatch(byte[][] data, int keyId, int mappingId) throws SafeCryptoException {
+		byte[][] result = new byte[data.length][];
+		for(int i=0; i<data.length; i++) {
+			result[i] = encrypt(data[i], keyId, mappingId);
+		}
+		return result;
+	}
+
+	/**
+	 * 以安静模式批量解密
+	 *   子类可覆盖此方法，合并多条数据的解密调用
+	 * @param data 密文数据数组
+	 * @return 明文数据对象数组（与密文数据按下标一一对应，须逐条检查解密是否成功）
+	 */
+	public SafeData[] decryptBatch(byte[][] data) {
+		SafeData[] result = new SafeData[data.length];
+		for(int i=0; i<data.length; i++) {
+			result[i] = silentDecrypt(data[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * 校验密文（解密并校验数据签名，不保存明文，适用于定期校验存量数据）
+	 * @param data 密文数据
+	 * @return 校验结果（只有1条数据）
+	 */
+	public SafeVerifyResult verify(byte[] data) {
+		SafeVerifyResult result = new SafeVerifyResult(1);
+		verifyRecord(data, result, 0);
+		return result;
+	}
+
+	/**
+	 * 批量校验密文（在当前线程逐条校验，多线程校验见 SafeParallelEncryptor.verifyBatch）
+	 * @param data 密文数据数组
+	 * @return 校验结果（与密文数据按下标一一对应）
+	 */
+	public SafeVerifyResult verifyBatch(byte[][] data) {
+		SafeVerifyResult result = new SafeVerifyResult(data.length);
+		for(int i=0; i<data.length; i++) {
+			verifyRecord(data[i], result, i);
+		}
+		return result;
+	}
+
+	/**
+	 * 校验一条密文，结果写入指定下标
+	 *   默认实现以安静模式完整解密。子类可覆盖此方法，解密数据流经固定长度的缓冲区，只计算签名不保存明文
+	 * @param data 密文数据
+	 * @param result 校验结果
+	 * @param index 数据下标
+	 */
+	protected void verifyRecord(byte[] data, SafeVerifyResult result, int index) {
+		if(data == null) {
+			result.set(index, 20100208, "Encrypted Data is null", 0, 0L);
+			return;
+		}
+		SafeData safeData = silentDecrypt(data);
+		result.set(index, safeData.getErrorCode(), safeData.getErrorMessage(),
+				safeData.getSecretKeyId(), safeData.getEncryptTime());
+	}
+
+	/**
+	 * 写入一条校验结果（供子类的 verifyRecord 使用）
+	 * @param result 校验结果
+	 * @param index 数据下标
+	 * @param code 错误码（0表示校验通过）
+	 * @param message 错误消息
+	 * @param keyId 秘钥ID
+	 * @param encryptTime 加密时间（校验不通过时不保存）
+	 */
+	protected static void setVerifyResult(SafeVerifyResult result, int index, int code, String message,
+										  int keyId, long encryptTime) {
+		result.set(index, code, message, keyId, encryptTime);
+	}
+
+	/**
+	 * 打开加密输出流，写入的明文加密后输出到下层输出流
+	 *   默认实现缓存全部明文，关闭时一次加密输出（内存占用与数据总长度相关）。分块加密的版本覆盖此方法
+	 * @param out 密文写入的输出流（加密流关闭时一并关闭）
+	 * @param keyId 秘钥ID
+	 * @param mappingId 字节映射表ID
+	 * @return 明文写入的输出流（须关闭，关闭时完成加密；加密异常以 IOException 抛出，getCause() 为 SafeCryptoException）
+	 * @throws SafeCryptoException 打开异常
+	 */
+	public OutputStream openEncryptStream(final OutputStream out, final int keyId, final int mappingId) throws SafeCryptoException {
+		if(out == null) {
+			throw new SafeCryptoException(20100206, "output stream is null");
+		}
+		return new ByteArrayOutputStream() {
+			private boolean closed = false;
+
+			@Override
+			public void close() throws IOException {
+				if(closed) {
+					return;
+				}
+				closed = true;
+				try {
+					out.write(encrypt(toByteArray(), keyId, mappingId));
+				} catch (SafeCryptoException e) {
+					throw new IOException(e.getMessage(), e);
+				} finally {
+					out.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * 打开解密输入流，从下层输入流读取密文，解密后返回明文
+	 *   默认实现在打开时读取并解密全部密文（内存占用与数据总长度相关）。分块加密的版本覆盖此方法
+	 * @param in 密文读取的输入流（解密流关闭时一并关闭）
+	 * @return 明文读取的输入流（解密异常以 IOException 抛出，getCause() 为 SafeCryptoException）
+	 * @throws SafeCryptoException 读取或解密异常
+	 */
+	public InputStream openDecryptStream(InputStream in) throws SafeCryptoException {
+		if(in == null) {
+			throw new SafeCryptoException(20100207, "input stream is null");
+		}
+		ByteArrayOutputStream buff = new ByteArrayOutputStream();
+		try {
+			byte[] bts = new byte[8192];
+			int size;
+			while((size = in.read(bts)) >= 0) {
+				buff.write(bts, 0, size);
+			}
+			in.close();
+		} catch (IOException e) {
+			throw new SafeCryptoException(20100205, e.toString());
+		}
+		SafeData safeData = decrypt(buff.toByteArray());
+		return new ByteArrayInputStream(safeData.getPlaintextData(), 0, safeData.getPlaintextLength());
+	}
+
+	/**
+	 * 加密文件
+	 *   默认实现读取全部明文后加密写入。子类可覆盖此方法，按窗口映射文件，避免整体读入Java堆
+	 * @param src 明文文件
+	 * @param dst 密文文件（已存在则覆盖，不能与明文文件相同）
+	 * @param keyId 秘钥ID
+	 * @param mappingId 字节映射表ID
+	 * @return 密文文件的长度
+	 * @throws SafeCryptoException 加密异常
+	 * @throws IOException 文件读写异常
+	 */
+	public long encryptFile(Path src, Path dst, int keyId, int mappingId) throws SafeCryptoException, IOException {
+		byte[] result = encrypt(Files.readAllBytes(src), keyId, mappingId);
+		Files.write(dst, result);
+		return result.length;
+	}
+
+	/**
+	 * 解密文件
+	 *   默认实现读取全部密文后解密写入。子类可覆盖此方法，按窗口映射文件，避免整体读入Java堆
+	 * @param src 密文文件
+	 * @param dst 明文文件（已存在则覆盖，不能与密文文件相同）
+	 * @return 明文长度
+	 * @throws SafeCryptoException 解密异常，或数据校验不通过
+	 * @throws IOException 文件读写异常
+	 */
+	public long decryptFile(Path src, Path dst) throws SafeCryptoException, IOException {
+		SafeData safeData = decrypt(Files.readAllBytes(src));
+		Files.write(dst, safeData.getPlaintextData());
+		return safeData.getPlaintextLength();
+	}
+
+	/**
+	 * 预检密文（只解密少量数据，快速拒绝秘钥错误或已损坏的密文）
+	 *   预检通过不代表解密一定成功。默认实现不预检，子类按数据格式覆盖
+	 * @param data 密文数据
+	 * @return 预检通过返回 0，否则返回错误码
+	 */
+	public int precheck(byte[] data) {
+		return precheck(data, 0, data == null ? 0 : data.length);
+	}
+
+	/**
+	 * 预检字节数组指定范围的密文
+	 * @param data 密文数据
+	 * @param offset 密文数据的偏移量
+	 * @param length 密文数据的长度
+	 * @return 预检通过返回 0，否则返回错误码
+	 */
+	public int precheck(byte[] data, int offset, int length) {
+		return 0;
+	}
+
+	/**
+	 * 按范围解密明文数据（适用于只读取大数据开头部分的预览等场景）
+	 *   默认实现完整解密后截取，并校验签名。子类可覆盖此方法，只解密覆盖范围的密文（不校验签名）
+	 * @param data 密文数据
+	 * @param from 范围在明文数据中的起始位置（不超过明文长度）
+	 * @param length 范围的长度（超出明文末尾的部分不返回）
+	 * @return 范围解密结果（须检查是否已校验签名）
+	 * @throws SafeCryptoException 解密异常，或范围不正确
+	 */
+	public SafeDataRange decryptRange(byte[] data, long from, int length) throws SafeCryptoException {
+		checkRange(from, length);
+		return sliceRange(decrypt(data), from, length);
+	}
+
+	/**
+	 * 检查解密范围的参数
+	 * @param from 范围的起始位置
+	 * @param length 范围的长度
+	 * @throws SafeCryptoException 起始位置或长度小于0
+	 */
+	protected static void checkRange(long from, int length) throws SafeCryptoException {
+		if(from < 0 || length < 0) {
+			throw new SafeCryptoException(20100213, "range not valid. from: " + from + ", length: " + length);
+		}
+	}
+
+	/**
+	 * 计算范围内实际的明文长度
+	 * @param from 范围的起始位置
+	 * @param length 范围的长度
+	 * @param plaintextLength 完整的明文长度
+	 * @return 不超出明文末尾的长度
+	 * @throws SafeCryptoException 起始位置超过明文长度
+	 */
+	protected static int rangeLength(long from, int length, int plaintextLength) throws SafeCryptoException {
+		if(from > plaintextLength) {
+			throw new SafeCryptoException(20100213, "range from " + from + " is greater than plaintextLength " + plaintextLength);
+		}
+		return (int) Math.min(length, plaintextLength - from);
+	}
+
+	/**
+	 * 从完整解密（已校验签名）的数据对象截取范围
+	 * @param safeData 解密成功的数据对象
+	 * @param from 范围的起始位置
+	 * @param length 范围的长度
+	 * @return 范围解密结果（已校验签名）
+	 * @throws SafeCryptoException 起始位置超过明文长度
+	 */
+	protected static SafeDataRange sliceRange(SafeData safeData, long from, int length) throws SafeCryptoException {
+		int size = rangeLength(from, length, safeData.getPlaintextLength());
+		byte[] bts = new byte[size];
+		System.arraycopy(safeData.getPlaintextData(), (int) from, bts, 0, size);
+		return new SafeDataRange(safeData, from, bts, true);
+	}
+
+	/**
+	 * 更换密文的字节映射表（返回新数组，原密文不变）
+	 *   字节映射在AES加密之后：密文按合并后的映射表单次转换，并修改头部的映射表ID
+	 *   数据签名包含映射表ID，只需重新加解密签名所在的末尾分组，与数据长度无关
+	 * @param data 密文数据
+	 * @param newMappingId 新的字节映射表ID（0表示不转换）
+	 * @return 新密文
+	 * @throws SafeCryptoException 密文版本不匹配、密文格式不正确，或秘钥、字节映射表不存在
+	 */
+	public byte[] remapCiphertext(byte[] data, int newMappingId) throws SafeCryptoException {
+		if(data == null) {
+			throw new SafeCryptoException(20100208, "Encrypted Data is null");
+		}
+		byte[] result = data.clone();
+		remapCiphertext(result, 0, result.length, newMappingId);
+		return result;
+	}
+
+	/**
+	 * 原地更换密文的字节映射表（失败时密文不变）
+	 * @param data 密文数据
+	 * @param offset 密文数据的偏移量
+	 * @param length 密文数据的长度
+	 * @param newMappingId 新的字节映射表ID（0表示不转换）
+	 * @throws SafeCryptoException 密文版本不匹配、密文格式不正确，或秘钥、字节映射表不存在
+	 */
+	public void remapCiphertext(byte[] data, int offset, int length, int newMappingId) throws SafeCryptoException {
+		remapCiphertext(data, offset, length, newMappingId, new RemapTables[SafeKeySnapshot.MAX_MAPPING_ID + 1]);
+	}
+
+	/**
+	 * 批量原地更换密文的字节映射表（按原映射表ID缓存合并后的映射表）
+	 * @param data 密文数据数组（转换结果写回原数组）
+	 * @param newMappingId 新的字节映射表ID（0表示不转换）
+	 * @return 处理结果（与密文数据按下标一一对应，每条数据单独记录错误码）
+	 */
+	public SafeBatchResult remapBatch(byte[][] data, int newMappingId) {
+		SafeBatchResult result = new SafeBatchResult(data.length, false);
+		RemapTables[] tablesCache = new RemapTables[SafeKeySnapshot.MAX_MAPPING_ID + 1];
+		for(int i=0; i<data.length; i++) {
+			try {
+				if(data[i] == null) {
+					throw new SafeCryptoException(20100208, "Encrypted Data is null");
+				}
+				remapCiphertext(data[i], 0, data[i].length, newMappingId, tablesCache);
+				result.setData(i, data[i]);
+			} catch (SafeCryptoException e) {
+				result.setError(i, e.getCode(), e.getMessage());
+			}
+		}
+		return result;
+	}
+
+	private void remapCiphertext(byte[] data, int offset, int length, int newMappingId, RemapTables[] tablesCache) throws SafeCryptoException {
+		if(newMappingId < 0 || newMappingId > SafeKeySnapshot.MAX_MAPPING_ID) {
+			throw new SafeCryptoException(20100212, "mappingId not in valid scope: " + newMappingId);
+		}
+		if(data == null || length < 6) {
+			throw new SafeCryptoException(20100208, "Encrypted Data length is less than " + 6);
+		}
+		if(offset < 0 || offset + length > data.length) {
+			throw new SafeCryptoException(20100208, "offset or length is out of bounds");
+		}
+		if((data[offset] & 0xFF) != majorVersion || (data[offset + 1] & 0xFF) != minorVersion) {
+			throw new SafeCryptoException(20100209, "Encryptor version and data version is not equal");
+		}
+		int oldMappingId = data[offset + 2] & 0xFF;
+		if(oldMappingId == newMappingId) {
+			return;
+		}
+		RemapTables tables = tablesCache[oldMappingId];
+		if(tables == null) {
+			byte[] decryptMapping = null;
+			if(oldMappingId != 0) {
+				decryptMapping = getDecryptByteMapping(oldMappingId);
+				if(decryptMapping == null) {
+					throw new SafeCryptoException(20100210, "Byte Mapping not found. mappingId is " + oldMappingId);
+				}
+			}
+			byte[] encryptMapping = null;
+			if(newMappingId != 0) {
+				encryptMapping = getEncryptByteMapping(newMappingId);
+				if(encryptMapping == null) {
+					throw new SafeCryptoException(20100210, "Byte Mapping not found. mappingId is " + newMappingId);
+				}
+			}
+			tables = new RemapTables(oldMappingId, newMappingId, decryptMapping, encryptMapping);
+			tablesCache[oldMappingId] = tables;
+		}
+		remapBody(data, offset, length, tables);
+		data[offset + 2] = (byte) newMappingId;
+	}
+
+	/**
+	 * 更换头部之后的密文的字节映射表（子类按数据格式实现）
+	 *   须先检查密文格式，检查不通过时不修改密文
+	 * @param data 密文数据（头部版本号已检查）
+	 * @param offset 密文数据的偏移量
+	 * @param length 密文数据的长度
+	 * @param tables 原映射表与新映射表
+	 * @throws SafeCryptoException 密文格式不正确、秘钥不存在，或当前版本不支持
+	 */
+	protected void remapBody(byte[] data, int offset, int length, RemapTables tables) throws SafeCryptoException {
+		throw new SafeCryptoException(20100211, "remap ciphertext not support version: " + majorVersion + "." + minorVersion);
+	}
+
+	/**
+	 * 更换字节映射表使用的映射表
+	 */
+	protected static final class RemapTables {
+		/** 原字节映射表ID **/
+		public final int oldMappingId;
+		/** 新字节映射表ID **/
+		public final int newMappingId;
+		/** 原映射表的反向映射（为 null 表示原密文未转换） **/
+		public final byte[] decryptMapping;
+		/** 新映射表（为 null 表示新密文不转换） **/
+		public final byte[] encryptMapping;
+		/** 合并后的映射表（原映射反向转换后再按新映射转换） **/
+		public final byte[] composedMapping;
+
+		RemapTables(int oldMappingId, int newMappingId, byte[] decryptMapping, byte[] encryptMapping) {
+			this.oldMappingId = oldMappingId;
+			this.newMappingId = newMappingId;
+			this.decryptMapping = decryptMapping;
+			this.encryptMapping = encryptMapping;
+			this.composedMapping = SafeByteUtils.composeMapping(decryptMapping, encryptMapping);
+		}
+	}
+
 	/**
 	 * 加密字节数组
 	 * @param data 明文数据
@@ -150,7 +781,19 @@ abstract public class SafeEncryptor {
 		if(keyStore == null) {
 			return null;
 		}
-		return keyStore.secretKeyIdMap.get(keyId);
+		return keyStore.getSnapshot().getSecretKey(keyId);
+	}
+
+	/**
+	 * 按秘钥ID，获取AES加密引擎（引擎内缓存已初始化的密码器，可多线程共用）
+	 * @param keyId 秘钥ID
+	 * @return AES加密引擎，秘钥不存在返回 null
+	 */
+	protected SafeAES getCipherEngine(int keyId) {
+		if(keyStore == null) {
+			return null;
+		}
+		return keyStore.getSnapshot().getCipherEngine(keyId);
 	}
 
 	/**
@@ -162,7 +805,7 @@ abstract public class SafeEncryptor {
 		if(keyStore == null) {
 			return null;
 		}
-		return keyStore.byteMappingIdForEncrypt.get(mappingId);
+		return keyStore.getSnapshot().getEncryptByteMapping(mappingId);
 	}
 
 	/**
@@ -174,7 +817,7 @@ abstract public class SafeEncryptor {
 		if(keyStore == null) {
 			return null;
 		}
-		return keyStore.byteMappingIdForDecrypt.get(mappingId);
+		return keyStore.getSnapshot().getDecryptByteMapping(mappingId);
 	}
 
 
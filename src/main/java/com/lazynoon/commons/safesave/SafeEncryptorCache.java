@@ -0,0 +1,50 @@
+package com.lazynoon.commons.safesave;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 加密机缓存（按主次版本号索引，每个秘钥库一份）
+ *   主要版本号一级数组，次要版本号二级数组（首次使用时创建），查找不加锁、不创建对象
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+class SafeEncryptorCache {
+	private static final int VERSION_COUNT = SafeEncryptor.MAX_VERSION + 1;
+
+	private final AtomicReferenceArray<AtomicReferenceArray<SafeEncryptor>> majorSlots =
+			new AtomicReferenceArray<AtomicReferenceArray<SafeEncryptor>>(VERSION_COUNT);
+
+	/**
+	 * 获取已缓存的加密机
+	 * @param majorVersion 主要版本号（0 ~ MAX_VERSION）
+	 * @param minorVersion 次要版本号（0 ~ MAX_VERSION）
+	 * @return 未缓存返回 null
+	 */
+	SafeEncryptor get(int majorVersion, int minorVersion) {
+		AtomicReferenceArray<SafeEncryptor> minorSlots = majorSlots.get(majorVersion);
+		if(minorSlots == null) {
+			return null;
+		}
+		return minorSlots.get(minorVersion);
+	}
+
+	/**
+	 * 缓存加密机（已有缓存时保留原对象）
+	 * @param majorVersion 主要版本号（0 ~ MAX_VERSION）
+	 * @param minorVersion 次要版本号（0 ~ MAX_VERSION）
+	 * @param encryptor 已初始化的加密机
+	 * @return 缓存中的加密机
+	 */
+	SafeEncryptor putIfAbsent(int majorVersion, int minorVersion, SafeEncryptor encryptor) {
+		AtomicReferenceArray<SafeEncryptor> minorSlots = majorSlots.get(majorVersion);
+		if(minorSlots == null) {
+			majorSlots.compareAndSet(majorVersion, null, new AtomicReferenceArray<SafeEncryptor>(VERSION_COUNT));
+			minorSlots = majorSlots.get(majorVersion);
+		}
+		if(minorSlots.compareAndSet(minorVersion, null, encryptor)) {
+			return encryptor;
+		}
+		return minorSlots.get(minorVersion);
+	}
+}
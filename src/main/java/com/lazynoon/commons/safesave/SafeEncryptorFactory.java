@@ -1,41 +1,112 @@
 package com.lazynoon.commons.safesave;
 
 import com.lazynoon.commons.safesave.impl.v01.v01SafeEncryptor;
+import com.lazynoon.commons.safesave.impl.v02.v02SafeEncryptor;
+import com.lazynoon.commons.safesave.impl.v03.v03SafeEncryptor;
+import com.lazynoon.commons.safesave.utils.SafeNetLog;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 
 /**
  * 加密机工厂
+ *   内置 v1 ~ v3 加密机，另可通过 ServiceLoader 注册（META-INF/services/com.lazynoon.commons.safesave.SafeEncryptor），按主要版本号索引
+ *   ServiceLoader 注册的实现类可新增版本，或覆盖同一主要版本号的内置实现；服务配置缺失或加载失败时，仍使用内置实现
+ *   每个秘钥库的同一主次版本号只创建一个加密机，之后的获取不使用反射、不创建对象（加密机无状态，可多线程共用）
 
  * @author Hansen
  * @date 2020-10-18
  */
 public class SafeEncryptorFactory {
 
-	private static Class<?>[] encryptorPool = new Class<?>[256];
+	private static final Class<?>[] encryptorPool = new Class<?>[SafeEncryptor.MAX_VERSION + 1];
 
 	static {
-		for(int i=0; i<encryptorPool.length; i++) {
-			encryptorPool[i] = null;
-		}
+		//内置实现
 		encryptorPool[v01SafeEncryptor.MAJOR_VERSION] = v01SafeEncryptor.class;
+		encryptorPool[v02SafeEncryptor.MAJOR_VERSION] = v02SafeEncryptor.class;
+		encryptorPool[v03SafeEncryptor.MAJOR_VERSION] = v03SafeEncryptor.class;
+		//ServiceLoader 注册的实现（新增或覆盖内置实现）
+		Iterator<SafeEncryptor> iterator = ServiceLoader.load(SafeEncryptor.class,
+				SafeEncryptorFactory.class.getClassLoader()).iterator();
+		while(true) {
+			try {
+				if(iterator.hasNext() == false) {
+					break;
+				}
+				SafeEncryptor encryptor = iterator.next();
+				registerEncryptor(encryptor.getClassMajorVersion(), encryptor.getClass());
+			} catch (ServiceConfigurationError e) {
+				SafeNetLog.logWarn("SafeEncryptor service load error", e);
+			}
+		}
+	}
+
+	/**
+	 * 注册加密机实现类（ServiceLoader 之外的手动注册，同一主要版本号后注册的覆盖先注册的）
+	 *   已缓存的加密机不受影响
+	 * @param majorVersion 主要版本号（1 ~ MAX_VERSION）
+	 * @param encryptorClass 加密机实现类（须有公开的无参构造方法）
+	 */
+	public static synchronized void registerEncryptor(int majorVersion, Class<? extends SafeEncryptor> encryptorClass) {
+		if(majorVersion < 1 || majorVersion > SafeEncryptor.MAX_VERSION) {
+			throw new IllegalArgumentException("Encryptor major version not in valid scope: " + majorVersion);
+		}
+		if(encryptorClass == null) {
+			throw new IllegalArgumentException("encryptorClass is null");
+		}
+		encryptorPool[majorVersion] = encryptorClass;
 	}
 
+	/**
+	 * 获取加密机（同一秘钥库、同一主次版本号，返回同一对象）
+	 * @param majorVersion 主要版本号
+	 * @param minorVersion 次要版本号
+	 * @param keyStore 秘钥存储器
+	 * @return 主要版本号未注册，或加密机不支持次要版本号返回 null
+	 */
 	public static SafeEncryptor getInstance(int majorVersion, int minorVersion, SafeKeyStore keyStore) {
-		if(majorVersion < 0 && majorVersion >= encryptorPool.length) {
+		if(majorVersion < 0 || majorVersion >= encryptorPool.length) {
 			return null;
 		}
-		Class<?> cls = encryptorPool[majorVersion];
+		boolean cacheable = keyStore != null && minorVersion >= 0 && minorVersion <= SafeEncryptor.MAX_VERSION;
+		if(cacheable) {
+			SafeEncryptor encryptor = keyStore.encryptorCache.get(majorVersion, minorVersion);
+			if(encryptor != null) {
+				return encryptor;
+			}
+		}
+		SafeEncryptor encryptor = newInstance(majorVersion, minorVersion, keyStore);
+		if(encryptor != null && cacheable) {
+			encryptor = keyStore.encryptorCache.putIfAbsent(majorVersion, minorVersion, encryptor);
+		}
+		return encryptor;
+	}
+
+	private static SafeEncryptor newInstance(int majorVersion, int minorVersion, SafeKeyStore keyStore) {
+		Class<?> cls;
+		synchronized (SafeEncryptorFactory.class) {
+			cls = encryptorPool[majorVersion];
+		}
 		if(cls == null) {
 			return null;
 		}
-		//SafeEncryptor的子类
-		Class<SafeEncryptor> encryptorClass =  (Class<SafeEncryptor>) cls;
+		//SafeEncryptor的子类（注册时已检查类型）
+		Class<? extends SafeEncryptor> encryptorClass = cls.asSubclass(SafeEncryptor.class);
 		SafeEncryptor encryptor;
 		try {
-			encryptor = encryptorClass.newInstance();
-		} catch (InstantiationException e) {
-			throw new RuntimeException("[InstantiationException] "+e.getMessage());
-		} catch (IllegalAccessException e) {
-			throw new RuntimeException("[IllegalAccessException] "+e.getMessage());
+			encryptor = encryptorClass.getDeclaredConstructor().newInstance();
+		} catch (InvocationTargetException e) {
+			throw new RuntimeException("[InvocationTargetException] " + encryptorClass.getName()
+					+ " constructor error: " + e.getCause(), e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new RuntimeException("[" + e.getClass().getSimpleName() + "] " + encryptorClass.getName()
+					+ " can not be instantiated: " + e.getMessage(), e);
+		}
+		if(encryptor.isMinorVersionSupported(minorVersion) == false) {
+			return null;
 		}
 		encryptor.init(majorVersion, minorVersion, keyStore);
 		return encryptor;
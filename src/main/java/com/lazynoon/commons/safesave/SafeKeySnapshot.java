@@ -0,0 +1,208 @@
+package com.lazynoon.commons.safesave;
+
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+
+/**
+ * 秘钥库快照（发布后不再修改，读取不加锁）
+ *   字节映射表按ID（1 ~ 255）直接用数组下标索引
+ *   秘钥按ID（1 ~ 16777215）存入开放寻址的整数哈希表（线性探测，装载率不超过1/2）
+ *   修改时复制出新快照，修改完成后整体替换，读取方只会看到替换前或替换后的完整快照
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+class SafeKeySnapshot {
+	/** 字节映射表ID的最大值 **/
+	static final int MAX_MAPPING_ID = 0xFF;
+	/** 秘钥ID的最大值 **/
+	static final int MAX_KEY_ID = 0xFFFFFF;
+
+	private static final int MIN_CAPACITY = 16;
+	/** 空快照 **/
+	static final SafeKeySnapshot EMPTY = new SafeKeySnapshot(new byte[MAX_MAPPING_ID + 1][],
+			new byte[MAX_MAPPING_ID + 1][], new int[MIN_CAPACITY], new byte[MIN_CAPACITY][], new SafeAES[MIN_CAPACITY], 0);
+
+	private final byte[][] encryptMappings;
+	private final byte[][] decryptMappings;
+	/** 秘钥ID（0表示空位） **/
+	private int[] keyIds;
+	private byte[][] secretKeys;
+	private SafeAES[] cipherEngines;
+	private int keyCount;
+
+	private SafeKeySnapshot(byte[][] encryptMappings, byte[][] decryptMappings,
+							int[] keyIds, byte[][] secretKeys, SafeAES[] cipherEngines, int keyCount) {
+		this.encryptMappings = encryptMappings;
+		this.decryptMappings = decryptMappings;
+		this.keyIds = keyIds;
+		this.secretKeys = secretKeys;
+		this.cipherEngines = cipherEngines;
+		this.keyCount = keyCount;
+	}
+
+	/**
+	 * 复制出可修改的新快照（修改完成前不得发布）
+	 * @return 新快照
+	 */
+	SafeKeySnapshot copy() {
+		return new SafeKeySnapshot(encryptMappings.clone(), decryptMappings.clone(),
+				keyIds.clone(), secretKeys.clone(), cipherEngines.clone(), keyCount);
+	}
+
+	/**
+	 * 获取秘钥数量
+	 * @return 已注册的秘钥数量
+	 */
+	int getKeyCount() {
+		return keyCount;
+	}
+
+	byte[] getSecretKey(int keyId) {
+		int index = indexOf(keyId);
+		return index < 0 ? null : secretKeys[index];
+	}
+
+	SafeAES getCipherEngine(int keyId) {
+		int index = indexOf(keyId);
+		return index < 0 ? null : cipherEngines[index];
+	}
+
+	byte[] getEncryptByteMapping(int mappingId) {
+		if(mappingId <= 0 || mappingId > MAX_MAPPING_ID) {
+			return null;
+		}
+		return encryptMappings[mappingId];
+	}
+
+	byte[] getDecryptByteMapping(int mappingId) {
+		if(mappingId <= 0 || mappingId > MAX_MAPPING_ID) {
+			return null;
+		}
+		return decryptMappings[mappingId];
+	}
+
+	/**
+	 * 获取全部秘钥ID（顺序不固定）
+	 * @return 秘钥ID数组
+	 */
+	int[] getKeyIds() {
+		int[] result = new int[keyCount];
+		int count = 0;
+		for(int keyId : keyIds) {
+			if(keyId != 0) {
+				result[count++] = keyId;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 存入字节映射表（仅限未发布的快照）
+	 */
+	void putByteMapping(int mappingId, byte[] encryptMapping, byte[] decryptMapping) {
+		encryptMappings[mappingId] = encryptMapping;
+		decryptMappings[mappingId] = decryptMapping;
+	}
+
+	/**
+	 * 删除字节映射表（仅限未发布的快照）
+	 */
+	void removeByteMapping(int mappingId) {
+		putByteMapping(mappingId, null, null);
+	}
+
+	/**
+	 * 存入秘钥，已存在时替换（仅限未发布的快照）
+	 */
+	void putSecretKey(int keyId, byte[] secretKey, SafeAES cipherEngine) {
+		int index = indexOf(keyId);
+		if(index < 0) {
+			if((keyCount + 1) * 2 > keyIds.length) {
+				resize(keyIds.length * 2);
+			}
+			index = slotOf(keyIds, keyId);
+			keyIds[index] = keyId;
+			keyCount++;
+		}
+		secretKeys[index] = secretKey;
+		cipherEngines[index] = cipherEngine;
+	}
+
+	/**
+	 * 删除秘钥（仅限未发布的快照）
+	 * @return 秘钥存在返回 true
+	 */
+	boolean removeSecretKey(int keyId) {
+		int index = indexOf(keyId);
+		if(index < 0) {
+			return false;
+		}
+		//线性探测表：删除后重新放入同一探测链上的后续元素
+		keyIds[index] = 0;
+		secretKeys[index] = null;
+		cipherEngines[index] = null;
+		keyCount--;
+		int mask = keyIds.length - 1;
+		for(int i=(index+1)&mask; keyIds[i]!=0; i=(i+1)&mask) {
+			int movedId = keyIds[i];
+			byte[] movedKey = secretKeys[i];
+			SafeAES movedEngine = cipherEngines[i];
+			keyIds[i] = 0;
+			secretKeys[i] = null;
+			cipherEngines[i] = null;
+			int slot = slotOf(keyIds, movedId);
+			keyIds[slot] = movedId;
+			secretKeys[slot] = movedKey;
+			cipherEngines[slot] = movedEngine;
+		}
+		return true;
+	}
+
+	private int indexOf(int keyId) {
+		if(keyId <= 0) {
+			return -1;
+		}
+		int[] ids = keyIds;
+		int mask = ids.length - 1;
+		for(int i=hash(keyId)&mask; ; i=(i+1)&mask) {
+			int id = ids[i];
+			if(id == keyId) {
+				return i;
+			} else if(id == 0) {
+				return -1;
+			}
+		}
+	}
+
+	private void resize(int capacity) {
+		int[] oldIds = keyIds;
+		byte[][] oldKeys = secretKeys;
+		SafeAES[] oldEngines = cipherEngines;
+		keyIds = new int[capacity];
+		secretKeys = new byte[capacity][];
+		cipherEngines = new SafeAES[capacity];
+		for(int i=0; i<oldIds.length; i++) {
+			if(oldIds[i] != 0) {
+				int slot = slotOf(keyIds, oldIds[i]);
+				keyIds[slot] = oldIds[i];
+				secretKeys[slot] = oldKeys[i];
+				cipherEngines[slot] = oldEngines[i];
+			}
+		}
+	}
+
+	/** 查找秘钥ID的空位（调用方保证秘钥ID不存在，且有空位） **/
+	private static int slotOf(int[] ids, int keyId) {
+		int mask = ids.length - 1;
+		int i = hash(keyId) & mask;
+		while(ids[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private static int hash(int keyId) {
+		int h = keyId * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
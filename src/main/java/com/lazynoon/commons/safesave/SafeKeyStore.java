@@ -1,33 +1,131 @@
 package com.lazynoon.commons.safesave;
 
-import java.util.LinkedHashMap;
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.crypto.SafeDerivedKeyCache;
 
 /**
  * 密钥与字节映射表存储器
+ *   数据存于不可变的快照中，注册时复制出新快照并整体替换（volatile 发布）
+ *   加解密时的查找不加锁，不会读到注册了一半的数据，适合运行时轮换秘钥
  *
  * @author Hansen
  * @date 2020-10-31
  */
 public class SafeKeyStore {
-	protected LinkedHashMap<Integer, byte[]> secretKeyIdMap = new LinkedHashMap<Integer, byte[]>();
-	protected LinkedHashMap<Integer, byte[]> byteMappingIdForEncrypt = new LinkedHashMap<Integer, byte[]>();
-	protected LinkedHashMap<Integer, byte[]> byteMappingIdForDecrypt = new LinkedHashMap<Integer, byte[]>();
+	/** 当前快照（只整体替换，不修改已发布的快照） **/
+	private volatile SafeKeySnapshot snapshot = SafeKeySnapshot.EMPTY;
+	/** 转换密钥缓存（SHA1PRNG等转换算法，同一密钥只转换一次） **/
+	protected SafeDerivedKeyCache derivedKeyCache = new SafeDerivedKeyCache();
+	/** 按主次版本号缓存的加密机（由加密机工厂维护） **/
+	final SafeEncryptorCache encryptorCache = new SafeEncryptorCache();
 
 	public SafeKeyStore registerSecretKey(int keyId, byte[] secretKey) {
+		return registerSecretKey(keyId, secretKey, SafeAES.KeyAlgorithm.PLAIN);
+	}
+
+	/**
+	 * 注册密钥
+	 * @param keyId 密钥ID（从1开始）
+	 * @param secretKey 原始密钥
+	 * @param keyAlgorithm 密钥转换算法
+	 * @return 当前对象
+	 */
+	public SafeKeyStore registerSecretKey(int keyId, byte[] secretKey, SafeAES.KeyAlgorithm keyAlgorithm) {
 		if(keyId <= 0) {
 			throw new IllegalArgumentException("safe keyId must greater than 0");
 		}
+		if(keyId > SafeKeySnapshot.MAX_KEY_ID) {
+			throw new IllegalArgumentException("safe keyId must not greater than " + SafeKeySnapshot.MAX_KEY_ID);
+		}
 		if(secretKey == null || secretKey.length == 0) {
 			throw new IllegalArgumentException("safe secretKey is empty");
 		}
-		secretKeyIdMap.put(keyId, secretKey);
+		if(keyAlgorithm == null) {
+			throw new IllegalArgumentException("safe keyAlgorithm is null");
+		}
+		SafeAES engine = newCipherEngine(secretKey, keyAlgorithm);
+		synchronized (this) {
+			SafeKeySnapshot next = snapshot.copy();
+			next.putSecretKey(keyId, secretKey, engine);
+			snapshot = next;
+		}
 		return this;
 	}
 
+	/**
+	 * 创建AES加密引擎（共用当前对象的转换密钥缓存）
+	 * @param secretKey 原始密钥
+	 * @param keyAlgorithm 密钥转换算法
+	 * @return AES加密引擎
+	 */
+	SafeAES newCipherEngine(byte[] secretKey, SafeAES.KeyAlgorithm keyAlgorithm) {
+		SafeAES engine = new SafeAES(secretKey);
+		engine.setKeyAlgorithm(keyAlgorithm);
+		engine.setDerivedKeyCache(derivedKeyCache);
+		return engine;
+	}
+
+	/**
+	 * 删除密钥（已用此密钥加密的数据将无法解密）
+	 * @param keyId 密钥ID
+	 * @return 密钥存在返回 true
+	 */
+	public synchronized boolean removeSecretKey(int keyId) {
+		SafeKeySnapshot next = snapshot.copy();
+		if(next.removeSecretKey(keyId) == false) {
+			return false;
+		}
+		snapshot = next;
+		return true;
+	}
+
+	/**
+	 * 密钥是否存在
+	 * @param keyId 密钥ID
+	 * @return 已注册返回 true
+	 */
+	public boolean containsSecretKey(int keyId) {
+		return snapshot.getSecretKey(keyId) != null;
+	}
+
+	/**
+	 * 获取全部密钥ID（顺序不固定）
+	 * @return 密钥ID数组
+	 */
+	public int[] getSecretKeyIds() {
+		return snapshot.getKeyIds();
+	}
+
+	/**
+	 * 获取转换密钥缓存（可供自行创建的 SafeAES 对象共用）
+	 * @return 转换密钥缓存
+	 */
+	public SafeDerivedKeyCache getDerivedKeyCache() {
+		return derivedKeyCache;
+	}
+
 	public SafeKeyStore registerByteMapping(int mappingId, byte[] byteMapping) {
 		if (mappingId <= 0) {
 			throw new IllegalArgumentException("safe mappingId must greater than 0");
 		}
+		if (mappingId > SafeKeySnapshot.MAX_MAPPING_ID) {
+			throw new IllegalArgumentException("safe mappingId must not greater than " + SafeKeySnapshot.MAX_MAPPING_ID);
+		}
+		byte[] reverseByteMapping = reverseByteMapping(byteMapping);
+		synchronized (this) {
+			SafeKeySnapshot next = snapshot.copy();
+			next.putByteMapping(mappingId, byteMapping, reverseByteMapping);
+			snapshot = next;
+		}
+		return this;
+	}
+
+	/**
+	 * 检查字节映射表，并生成解密用的反向映射表
+	 * @param byteMapping 加密用的字节映射表
+	 * @return 解密用的字节映射表
+	 */
+	static byte[] reverseByteMapping(byte[] byteMapping) {
 		if (byteMapping == null || byteMapping.length == 0) {
 			throw new IllegalArgumentException("safe keyMapping is empty");
 		}
@@ -46,8 +144,28 @@ public class SafeKeyStore {
 			}
 			reverseByteMapping[reverseIndex] = (byte) i;
 		}
-		byteMappingIdForEncrypt.put(mappingId, byteMapping);
-		byteMappingIdForDecrypt.put(mappingId, reverseByteMapping);
-		return this;
+		return reverseByteMapping;
+	}
+
+	/**
+	 * 获取当前快照（读取期间不受并发注册影响）
+	 * @return 已发布的快照
+	 */
+	SafeKeySnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * 整体替换快照（供批量更新，新快照发布后不得再修改）
+	 * @param expect 复制新快照时使用的原快照
+	 * @param next 新快照
+	 * @return 原快照未被其他线程替换时返回 true
+	 */
+	synchronized boolean replaceSnapshot(SafeKeySnapshot expect, SafeKeySnapshot next) {
+		if(snapshot != expect) {
+			return false;
+		}
+		snapshot = next;
+		return true;
 	}
 }
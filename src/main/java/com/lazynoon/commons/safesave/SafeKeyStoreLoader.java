@@ -0,0 +1,322 @@
+package com.lazynoon.commons.safesave;
+
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.utils.SafeEncodeUtils;
+import com.lazynoon.commons.safesave.utils.SafeExecutors;
+import com.lazynoon.commons.safesave.utils.SafeNetLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 秘钥库文件加载器（监听文件变更，运行时热加载秘钥与字节映射表）
+ * ----- 文件格式（java.util.Properties，# 开头为注释） -----
+ *  key.{keyId}={keyAlgorithm}:{secretKey}  秘钥（keyAlgorithm 为 PLAIN 或 SHA1PRNG，省略时为 PLAIN；secretKey 为 Base64 编码）
+ *  mapping.{mappingId}={byteMapping}        字节映射表（256字节，Base64 编码）
+ *
+ *   每次加载与上次加载的内容比较，只处理新增、变更与删除的条目（其他方式注册的秘钥不受影响）
+ *   新秘钥先创建并预热密码器，再整体替换秘钥库快照
+ *   加解密在每次查找秘钥或字节映射表时读取当前快照：已查到的密码器与映射表不因替换失效（快照不修改已发布的对象），
+ *   但同一次加解密中的秘钥查找与映射表查找，可能分别读到替换前后的快照（只影响同时变更的条目）
+ *   文件内容有误时整体不生效，保留原快照
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeKeyStoreLoader implements Closeable {
+	/** 秘钥条目的前缀 **/
+	public static final String KEY_PREFIX = "key.";
+	/** 字节映射表条目的前缀 **/
+	public static final String MAPPING_PREFIX = "mapping.";
+	/** 监听到文件变更后，等待写入完成的时间（毫秒） **/
+	private static final long SETTLE_MILLIS = 100;
+
+	private final SafeKeyStore keyStore;
+	private final Path file;
+	/** 上次加载的条目（键为 key.{keyId} 或 mapping.{mappingId}） **/
+	private Map<String, String> loadedEntries = new HashMap<String, String>();
+	private int reloadCount = 0;
+	private volatile WatchService watchService = null;
+	private volatile Thread watchThread = null;
+
+	/**
+	 * @param keyStore 加载到的秘钥库
+	 * @param file 秘钥库文件
+	 */
+	public SafeKeyStoreLoader(SafeKeyStore keyStore, Path file) {
+		if(keyStore == null) {
+			throw new IllegalArgumentException("keyStore is null");
+		}
+		if(file == null) {
+			throw new IllegalArgumentException("keyStore file is null");
+		}
+		this.keyStore = keyStore;
+		this.file = file.toAbsolutePath();
+	}
+
+	/**
+	 * 加载秘钥库文件（与上次加载的内容比较，只处理有变化的条目）
+	 * @return 新增、变更与删除的条目数
+	 * @throws IOException 文件读取异常
+	 * @throws IllegalArgumentException 文件内容有误（秘钥库不变）
+	 */
+	public synchronized int reload() throws IOException {
+		Map<String, String> entries = readEntries();
+		//解析新增与变更的条目，并预热密码器（替换快照前完成，避免首个请求等待）
+		Map<Integer, byte[]> addedKeys = new LinkedHashMap<Integer, byte[]>();
+		Map<Integer, SafeAES> addedEngines = new HashMap<Integer, SafeAES>();
+		Map<Integer, byte[]> addedMappings = new LinkedHashMap<Integer, byte[]>();
+		for(Map.Entry<String, String> entry : entries.entrySet()) {
+			String name = entry.getKey();
+			String value = entry.getValue();
+			if(value.equals(loadedEntries.get(name))) {
+				continue;
+			}
+			if(name.startsWith(KEY_PREFIX)) {
+				int keyId = parseId(name, KEY_PREFIX, SafeKeySnapshot.MAX_KEY_ID);
+				int index = value.indexOf(':');
+				byte[] secretKey = parseBytes(name, value.substring(index + 1).trim());
+				addedKeys.put(keyId, secretKey);
+				addedEngines.put(keyId, newCipherEngine(name, index < 0 ? null : value.substring(0, index).trim(), secretKey));
+			} else {
+				int mappingId = parseId(name, MAPPING_PREFIX, SafeKeySnapshot.MAX_MAPPING_ID);
+				addedMappings.put(mappingId, parseBytes(name, value));
+			}
+		}
+		Map<Integer, byte[]> reverseMappings = new HashMap<Integer, byte[]>();
+		for(Map.Entry<Integer, byte[]> entry : addedMappings.entrySet()) {
+			try {
+				reverseMappings.put(entry.getKey(), SafeKeyStore.reverseByteMapping(entry.getValue()));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(MAPPING_PREFIX + entry.getKey() + ": " + e.getMessage());
+			}
+		}
+		int removedCount = 0;
+		for(String name : loadedEntries.keySet()) {
+			if(entries.containsKey(name) == false) {
+				removedCount++;
+			}
+		}
+		int changedCount = addedKeys.size() + addedMappings.size() + removedCount;
+		if(changedCount > 0) {
+			//复制快照期间有其他线程注册秘钥时，基于最新快照重做
+			while(true) {
+				SafeKeySnapshot current = keyStore.getSnapshot();
+				SafeKeySnapshot next = current.copy();
+				for(String name : loadedEntries.keySet()) {
+					if(entries.containsKey(name)) {
+						continue;
+					}
+					if(name.startsWith(KEY_PREFIX)) {
+						next.removeSecretKey(parseId(name, KEY_PREFIX, SafeKeySnapshot.MAX_KEY_ID));
+					} else {
+						next.removeByteMapping(parseId(name, MAPPING_PREFIX, SafeKeySnapshot.MAX_MAPPING_ID));
+					}
+				}
+				for(Map.Entry<Integer, byte[]> entry : addedKeys.entrySet()) {
+					next.putSecretKey(entry.getKey(), entry.getValue(), addedEngines.get(entry.getKey()));
+				}
+				for(Map.Entry<Integer, byte[]> entry : addedMappings.entrySet()) {
+					next.putByteMapping(entry.getKey(), entry.getValue(), reverseMappings.get(entry.getKey()));
+				}
+				if(keyStore.replaceSnapshot(current, next)) {
+					break;
+				}
+			}
+		}
+		loadedEntries = entries;
+		reloadCount++;
+		return changedCount;
+	}
+
+	/**
+	 * 开始监听文件变更（后台守护线程，变更后自动重新加载；加载失败时记录日志，保留原快照）
+	 *   通常先调用 reload() 完成首次加载，再开始监听
+	 * @throws IOException 监听服务创建异常
+	 */
+	public synchronized void watch() throws IOException {
+		if(watchThread != null) {
+			return;
+		}
+		final WatchService service = file.getFileSystem().newWatchService();
+		file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		watchService = service;
+		watchThread = new SafeExecutors.DaemonThreadFactory("safe-keystore-watch-").newThread(new Runnable() {
+			@Override
+			public void run() {
+				watchLoop(service);
+			}
+		});
+		watchThread.start();
+	}
+
+	/**
+	 * 停止监听文件变更
+	 * @throws IOException 监听服务关闭异常
+	 */
+	@Override
+	public void close() throws IOException {
+		WatchService service;
+		Thread thread;
+		synchronized (this) {
+			service = watchService;
+			thread = watchThread;
+			watchService = null;
+			watchThread = null;
+		}
+		if(service != null) {
+			service.close();
+		}
+		if(thread != null) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * 获取成功加载的次数
+	 * @return 加载次数
+	 */
+	public synchronized int getReloadCount() {
+		return reloadCount;
+	}
+
+	/**
+	 * 获取秘钥库文件
+	 * @return 绝对路径
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	private void watchLoop(WatchService service) {
+		Path fileName = file.getFileName();
+		while(true) {
+			WatchKey watchKey;
+			try {
+				watchKey = service.take();
+			} catch (ClosedWatchServiceException e) {
+				return;
+			} catch (InterruptedException e) {
+				return;
+			}
+			boolean changed = false;
+			for(WatchEvent<?> event : watchKey.pollEvents()) {
+				if(fileName.equals(event.context()) || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					changed = true;
+				}
+			}
+			if(watchKey.reset() == false) {
+				if(watchService != service) {
+					return; //已停止监听
+				}
+				SafeNetLog.logWarn("keystore directory is no longer watchable: " + file.getParent());
+				return;
+			}
+			if(changed == false) {
+				continue;
+			}
+			try {
+				//等待写入完成，合并短时间内的多次变更
+				Thread.sleep(SETTLE_MILLIS);
+				WatchKey pending;
+				while((pending = service.poll()) != null) {
+					pending.pollEvents();
+					pending.reset();
+				}
+			} catch (ClosedWatchServiceException e) {
+				return;
+			} catch (InterruptedException e) {
+				return;
+			}
+			try {
+				int changedCount = reload();
+				SafeNetLog.logInfo("keystore file reloaded: " + file + ", changed entries: " + changedCount);
+			} catch (IOException e) {
+				SafeNetLog.logWarn("keystore file reload error: " + file, e);
+			} catch (RuntimeException e) {
+				SafeNetLog.logWarn("keystore file reload error: " + file, e);
+			}
+		}
+	}
+
+	/**
+	 * 读取文件中的全部条目（只保留秘钥与字节映射表条目）
+	 */
+	private Map<String, String> readEntries() throws IOException {
+		Properties properties = new Properties();
+		InputStream in = Files.newInputStream(file);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+		Map<String, String> entries = new HashMap<String, String>();
+		for(String name : properties.stringPropertyNames()) {
+			if(name.startsWith(KEY_PREFIX) || name.startsWith(MAPPING_PREFIX)) {
+				entries.put(name, properties.getProperty(name).trim());
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * 创建并预热AES加密引擎
+	 * @param name 条目名称（用于错误消息）
+	 * @param algorithm 密钥转换算法名称（为null时使用 PLAIN）
+	 * @param secretKey 原始密钥
+	 */
+	private SafeAES newCipherEngine(String name, String algorithm, byte[] secretKey) {
+		SafeAES.KeyAlgorithm keyAlgorithm = SafeAES.KeyAlgorithm.PLAIN;
+		if(algorithm != null) {
+			try {
+				keyAlgorithm = SafeAES.KeyAlgorithm.valueOf(algorithm);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(name + ": keyAlgorithm not support: " + algorithm);
+			}
+		}
+		SafeAES engine = keyStore.newCipherEngine(secretKey, keyAlgorithm);
+		try {
+			engine.prewarm();
+		} catch (SafeCryptoException e) {
+			throw new IllegalArgumentException(name + ": " + e.getMessage());
+		}
+		return engine;
+	}
+
+	private static byte[] parseBytes(String name, String value) {
+		byte[] bts = SafeEncodeUtils.decodeBase64(value);
+		if(bts == null || bts.length == 0) {
+			throw new IllegalArgumentException(name + ": value is empty or not base64");
+		}
+		return bts;
+	}
+
+	private static int parseId(String name, String prefix, int maxId) {
+		int id;
+		try {
+			id = Integer.parseInt(name.substring(prefix.length()));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(name + ": id is not a number");
+		}
+		if(id <= 0 || id > maxId) {
+			throw new IllegalArgumentException(name + ": id not in valid scope");
+		}
+		return id;
+	}
+}
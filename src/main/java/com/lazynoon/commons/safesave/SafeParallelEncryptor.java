@@ -0,0 +1,289 @@
+package com.lazynoon.commons.safesave;
+
+import com.lazynoon.commons.safesave.utils.SafeExecutors;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 多线程批量加解密
+ *   将大批量数据按下标拆分为多段，提交到线程池并行处理，结果按输入顺序返回，每条数据单独记录错误码
+ *   各线程从加密引擎的缓存中取用各自的密码器，互不共享密码器状态
+ *   每段数据一次提交，不再递归拆分，使用普通的固定线程池即可，无需 ForkJoinPool 的任务窃取
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeParallelEncryptor {
+	/** 每个任务最少处理的数据条数 **/
+	public static final int MIN_TASK_SIZE = 64;
+	/** 每个线程平均分配的任务数（任务粒度小于线程数，用于平衡各线程的负载） **/
+	private static final int TASKS_PER_THREAD = 4;
+
+	private final SafeKeyStore keyStore;
+	private final ExecutorService executor;
+	private final int parallelism;
+
+	/**
+	 * 使用默认线程池（线程数等于CPU核数）
+	 * @param keyStore 秘钥存储器
+	 */
+	public SafeParallelEncryptor(SafeKeyStore keyStore) {
+		this(keyStore, SafeExecutors.getDefaultExecutor(), SafeExecutors.getDefaultParallelism());
+	}
+
+	/**
+	 * 使用指定的线程池
+	 * @param keyStore 秘钥存储器
+	 * @param executor 线程池（不要传入正在执行当前调用的线程池，否则可能死锁）
+	 * @param parallelism 线程池的并行度（线程数）
+	 */
+	public SafeParallelEncryptor(SafeKeyStore keyStore, ExecutorService executor, int parallelism) {
+		if(keyStore == null) {
+			throw new IllegalArgumentException("keyStore is null");
+		}
+		if(executor == null) {
+			throw new IllegalArgumentException("executor is null");
+		}
+		if(parallelism <= 0) {
+			throw new IllegalArgumentException("parallelism must greater than 0");
+		}
+		this.keyStore = keyStore;
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * 并行批量加密
+	 * @param majorVersion 加密算法主要版本号
+	 * @param minorVersion 加密算法次要版本号
+	 * @param data 明文数据数组
+	 * @param keyId 秘钥ID
+	 * @param mappingId 字节映射表ID
+	 * @return 加密结果（与明文数据按下标一一对应）
+	 * @throws SafeCryptoException 加密版本不支持，或线程池执行异常
+	 */
+	public SafeBatchResult encryptBatch(int majorVersion, int minorVersion, final byte[][] data,
+										final int keyId, final int mappingId) throws SafeCryptoException {
+		final SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(majorVersion, minorVersion, keyStore);
+		if(encryptor == null) {
+			throw new SafeCryptoException(20100301, "not support encrypt version: " + majorVersion + "." + minorVersion);
+		}
+		final SafeBatchResult result = new SafeBatchResult(data.length, false);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		int taskSize = getTaskSize(data.length);
+		for(int start=0; start<data.length; start+=taskSize) {
+			final int from = start;
+			final int to = Math.min(start + taskSize, data.length);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					encryptRange(encryptor, data, from, to, keyId, mappingId, result);
+					return null;
+				}
+			});
+		}
+		invokeAll(tasks);
+		return result;
+	}
+
+	/**
+	 * 并行批量加密
+	 * @param majorVersion 加密算法主要版本号
+	 * @param minorVersion 加密算法次要版本号
+	 * @param data 明文数据列表
+	 * @param keyId 秘钥ID
+	 * @param mappingId 字节映射表ID
+	 * @return 加密结果（与明文数据按下标一一对应）
+	 * @throws SafeCryptoException 加密版本不支持，或线程池执行异常
+	 */
+	public SafeBatchResult encryptBatch(int majorVersion, int minorVersion, List<byte[]> data,
+										int keyId, int mappingId) throws SafeCryptoException {
+		return encryptBatch(majorVersion, minorVersion, data.toArray(new byte[data.size()][]), keyId, mappingId);
+	}
+
+	/**
+	 * 并行批量解密（按密文头部的版本号，选择对应的加密器）
+	 * @param data 密文数据数组
+	 * @return 解密结果（与密文数据按下标一一对应，版本号识别不了时错误码为 20100501）
+	 * @throws SafeCryptoException 线程池执行异常
+	 */
+	public SafeBatchResult decryptBatch(final byte[][] data) throws SafeCryptoException {
+		final SafeBatchResult result = new SafeBatchResult(data.length, true);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		int taskSize = getTaskSize(data.length);
+		for(int start=0; start<data.length; start+=taskSize) {
+			final int from = start;
+			final int to = Math.min(start + taskSize, data.length);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					decryptRange(data, from, to, result);
+					return null;
+				}
+			});
+		}
+		invokeAll(tasks);
+		return result;
+	}
+
+	/**
+	 * 并行批量解密（按密文头部的版本号，选择对应的加密器）
+	 * @param data 密文数据列表
+	 * @return 解密结果（与密文数据按下标一一对应，版本号识别不了时错误码为 20100501）
+	 * @throws SafeCryptoException 线程池执行异常
+	 */
+	public SafeBatchResult decryptBatch(List<byte[]> data) throws SafeCryptoException {
+		return decryptBatch(data.toArray(new byte[data.size()][]));
+	}
+
+	/**
+	 * 并行批量校验密文（解密并校验数据签名，不保存明文；按密文头部的版本号，选择对应的加密器）
+	 * @param data 密文数据数组
+	 * @return 校验结果（与密文数据按下标一一对应，版本号识别不了时错误码为 20100501）
+	 * @throws SafeCryptoException 线程池执行异常
+	 */
+	public SafeVerifyResult verifyBatch(final byte[][] data) throws SafeCryptoException {
+		final SafeVerifyResult result = new SafeVerifyResult(data.length);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		int taskSize = getTaskSize(data.length);
+		for(int start=0; start<data.length; start+=taskSize) {
+			final int from = start;
+			final int to = Math.min(start + taskSize, data.length);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					verifyRange(data, from, to, result);
+					return null;
+				}
+			});
+		}
+		invokeAll(tasks);
+		return result;
+	}
+
+	/**
+	 * 并行批量校验密文
+	 * @param data 密文数据列表
+	 * @return 校验结果（与密文数据按下标一一对应，版本号识别不了时错误码为 20100501）
+	 * @throws SafeCryptoException 线程池执行异常
+	 */
+	public SafeVerifyResult verifyBatch(List<byte[]> data) throws SafeCryptoException {
+		return verifyBatch(data.toArray(new byte[data.size()][]));
+	}
+
+	/** 计算每个任务处理的数据条数 **/
+	private int getTaskSize(int total) {
+		int taskCount = parallelism * TASKS_PER_THREAD;
+		int taskSize = (total + taskCount - 1) / taskCount;
+		return Math.max(taskSize, MIN_TASK_SIZE);
+	}
+
+	/** 提交全部任务，并等待执行完成 **/
+	private void invokeAll(List<Callable<Void>> tasks) throws SafeCryptoException {
+		if(tasks.size() == 1) {
+			try {
+				tasks.get(0).call();
+			} catch (Exception e) {
+				throw new SafeCryptoException(e);
+			}
+			return;
+		}
+		try {
+			List<Future<Void>> futures = executor.invokeAll(tasks);
+			for(Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SafeCryptoException(e);
+		} catch (ExecutionException e) {
+			throw new SafeCryptoException(e);
+		}
+	}
+
+	/** 加密一段数据（整段批量加密失败时，逐条加密以定位错误数据） **/
+	private static void encryptRange(SafeEncryptor encryptor, byte[][] data, int from, int to,
+									 int keyId, int mappingId, SafeBatchResult result) {
+		byte[][] part = new byte[to - from][];
+		System.arraycopy(data, from, part, 0, part.length);
+		try {
+			byte[][] encrypted = encryptor.encryptBatch(part, keyId, mappingId);
+			for(int i=0; i<encrypted.length; i++) {
+				result.setData(from + i, encrypted[i]);
+			}
+			return;
+		} catch (SafeCryptoException e) {
+			//逐条处理
+		}
+		for(int i=from; i<to; i++) {
+			try {
+				result.setData(i, encryptor.encrypt(data[i], keyId, mappingId));
+			} catch (SafeCryptoException e) {
+				result.setError(i, e.getCode(), e.getMessage());
+			}
+		}
+	}
+
+	/** 解密一段数据（按版本号分组，每组批量解密） **/
+	private void decryptRange(byte[][] data, int from, int to, SafeBatchResult result) {
+		LinkedHashMap<Integer, List<Integer>> versionGroups = new LinkedHashMap<Integer, List<Integer>>();
+		for(int i=from; i<to; i++) {
+			int version = SafeEncryptorFactory.getMajorVersion(data[i]) << 8 | SafeEncryptorFactory.getMinorVersion(data[i]);
+			List<Integer> group = versionGroups.get(version);
+			if(group == null) {
+				group = new ArrayList<Integer>();
+				versionGroups.put(version, group);
+			}
+			group.add(i);
+		}
+		for(Integer version : versionGroups.keySet()) {
+			List<Integer> group = versionGroups.get(version);
+			SafeEncryptor encryptor = null;
+			if(version != 0) {
+				encryptor = SafeEncryptorFactory.getInstance(version >>> 8, version & 0xFF, keyStore);
+			}
+			if(encryptor == null) {
+				for(int index : group) {
+					result.setError(index, 20100501, "not support encrypt version: " + (version >>> 8) + "." + (version & 0xFF));
+				}
+				continue;
+			}
+			byte[][] part = new byte[group.size()][];
+			for(int i=0; i<part.length; i++) {
+				part[i] = data[group.get(i)];
+			}
+			SafeData[] decrypted = encryptor.decryptBatch(part);
+			for(int i=0; i<part.length; i++) {
+				int index = group.get(i);
+				if(decrypted[i] == null) {
+					result.setError(index, 20100501, "not support encrypt version: " + (version >>> 8) + "." + (version & 0xFF));
+				} else {
+					result.setSafeData(index, decrypted[i]);
+				}
+			}
+		}
+	}
+
+	/** 校验一段数据（加密器按版本号从秘钥库缓存中获取） **/
+	private void verifyRange(byte[][] data, int from, int to, SafeVerifyResult result) {
+		for(int i=from; i<to; i++) {
+			int majorVersion = SafeEncryptorFactory.getMajorVersion(data[i]);
+			int minorVersion = SafeEncryptorFactory.getMinorVersion(data[i]);
+			SafeEncryptor encryptor = null;
+			if(majorVersion != 0) {
+				encryptor = SafeEncryptorFactory.getInstance(majorVersion, minorVersion, keyStore);
+			}
+			if(encryptor == null) {
+				result.set(i, 20100501, "not support encrypt version: " + majorVersion + "." + minorVersion, 0, 0L);
+			} else {
+				encryptor.verifyRecord(data[i], result, i);
+			}
+		}
+	}
+}
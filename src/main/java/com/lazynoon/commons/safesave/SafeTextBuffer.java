@@ -0,0 +1,97 @@
+package com.lazynoon.commons.safesave;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 字符串加解密的临时缓冲区（明文、密文、编码各一个数组，按需扩容）
+ *   缓冲区对象由对象池复用，每个对象同一时刻只被一个线程使用。归还时清除明文
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+class SafeTextBuffer {
+	/** 对象池最多缓存的缓冲区数量 **/
+	private static final int MAX_POOL_SIZE = 256;
+	/** 超过此长度的数组不缓存（避免个别大字段长期占用内存） **/
+	private static final int MAX_POOLED_LENGTH = 64 * 1024;
+	private static final Queue<SafeTextBuffer> bufferPool = new ConcurrentLinkedQueue<SafeTextBuffer>();
+	private static final AtomicInteger bufferPoolSize = new AtomicInteger(0);
+
+	private byte[] plainBuff = new byte[256];
+	private byte[] cipherBuff = new byte[320];
+	private byte[] textBuff = new byte[448];
+	/** 明文数组中已写入的长度（归还时清除） **/
+	private int plainLength = 0;
+
+	private SafeTextBuffer() {}
+
+	/**
+	 * 从对象池取出缓冲区
+	 * @return 缓冲区对象
+	 */
+	static SafeTextBuffer borrow() {
+		SafeTextBuffer buffer = bufferPool.poll();
+		if(buffer == null) {
+			buffer = new SafeTextBuffer();
+		} else {
+			bufferPoolSize.decrementAndGet();
+		}
+		return buffer;
+	}
+
+	/**
+	 * 清除明文，并归还到对象池
+	 * @param buffer 缓冲区对象
+	 */
+	static void release(SafeTextBuffer buffer) {
+		Arrays.fill(buffer.plainBuff, 0, buffer.plainLength, (byte) 0);
+		buffer.plainLength = 0;
+		if(buffer.plainBuff.length > MAX_POOLED_LENGTH || buffer.cipherBuff.length > MAX_POOLED_LENGTH
+				|| buffer.textBuff.length > MAX_POOLED_LENGTH) {
+			return;
+		}
+		if(bufferPoolSize.incrementAndGet() <= MAX_POOL_SIZE) {
+			bufferPool.offer(buffer);
+		} else {
+			bufferPoolSize.decrementAndGet();
+		}
+	}
+
+	/**
+	 * 获取明文数组（归还时清除前 length 字节）
+	 * @param length 最小长度
+	 */
+	byte[] plain(int length) {
+		if(plainBuff.length < length) {
+			Arrays.fill(plainBuff, 0, plainLength, (byte) 0);
+			plainBuff = new byte[length];
+		}
+		plainLength = length;
+		return plainBuff;
+	}
+
+	/**
+	 * 获取密文数组
+	 * @param length 最小长度
+	 */
+	byte[] cipher(int length) {
+		if(cipherBuff.length < length) {
+			cipherBuff = new byte[length];
+		}
+		return cipherBuff;
+	}
+
+	/**
+	 * 获取编码数组
+	 * @param length 最小长度
+	 */
+	byte[] text(int length) {
+		if(textBuff.length < length) {
+			textBuff = new byte[length];
+		}
+		return textBuff;
+	}
+}
@@ -0,0 +1,100 @@
+package com.lazynoon.commons.safesave;
+
+/**
+ * 批量校验结果（只校验密文能否解密且数据签名一致，不保存明文，与输入数据按下标一一对应）
+ *   结果以基本类型数组保存，校验大量数据时不为每条数据创建对象
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeVerifyResult {
+	/** 错误码（0表示校验通过） **/
+	private final int[] errorCodes;
+	/** 错误消息 **/
+	private final String[] errorMessages;
+	/** 秘钥ID（密文头部字段，头部无法解析时为0） **/
+	private final int[] secretKeyIds;
+	/** 加密时间（校验通过时有值，否则为0） **/
+	private final long[] encryptTimes;
+
+	SafeVerifyResult(int size) {
+		this.errorCodes = new int[size];
+		this.errorMessages = new String[size];
+		this.secretKeyIds = new int[size];
+		this.encryptTimes = new long[size];
+	}
+
+	void set(int index, int code, String message, int keyId, long encryptTime) {
+		errorCodes[index] = code;
+		errorMessages[index] = message;
+		secretKeyIds[index] = keyId;
+		encryptTimes[index] = code == 0 ? encryptTime : 0L;
+	}
+
+	/**
+	 * 获取数据条数
+	 * @return 与输入数据的条数相同
+	 */
+	public int size() {
+		return errorCodes.length;
+	}
+
+	/**
+	 * 是否校验通过
+	 * @param index 数据下标
+	 * @return 错误码为0返回 true
+	 */
+	public boolean isSuccess(int index) {
+		return errorCodes[index] == 0;
+	}
+
+	/**
+	 * 获取错误码
+	 * @param index 数据下标
+	 * @return 错误码（0表示校验通过）
+	 */
+	public int getErrorCode(int index) {
+		return errorCodes[index];
+	}
+
+	/**
+	 * 获取错误消息
+	 * @param index 数据下标
+	 * @return 错误消息（错误码非0时有意义）
+	 */
+	public String getErrorMessage(int index) {
+		return errorMessages[index];
+	}
+
+	/**
+	 * 获取秘钥ID
+	 * @param index 数据下标
+	 * @return 密文头部的秘钥ID（头部无法解析时为0）
+	 */
+	public int getSecretKeyId(int index) {
+		return secretKeyIds[index];
+	}
+
+	/**
+	 * 获取加密时间
+	 * @param index 数据下标
+	 * @return 毫秒时间戳（校验不通过时为0）
+	 */
+	public long getEncryptTime(int index) {
+		return encryptTimes[index];
+	}
+
+	/**
+	 * 获取校验不通过的数据条数
+	 * @return 错误码非0的数据条数
+	 */
+	public int getErrorCount() {
+		int count = 0;
+		for(int code : errorCodes) {
+			if(code != 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
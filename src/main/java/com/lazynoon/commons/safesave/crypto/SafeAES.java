@@ -4,15 +4,29 @@ import com.lazynoon.commons.safesave.SafeCryptoException;
 import com.lazynoon.commons.safesave.utils.SafeEncodeUtils;
 
 import javax.crypto.*;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SafeAES {
 
 	/** 默认的加密算法 **/
 	public static final String DEFAULT_CIPHER_ALGORITHM = "AES/ECB/PKCS5Padding";
+	/** 按分组加密的算法（不填充，调用方负责16字节对齐） **/
+	public static final String BLOCK_CIPHER_ALGORITHM = "AES/ECB/NoPadding";
+	/** 认证加密算法（与默认算法使用同一密钥） **/
+	public static final String GCM_CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+	/** GCM随机数长度（字节） **/
+	public static final int GCM_NONCE_LENGTH = 12;
+	/** GCM认证标签长度（字节） **/
+	public static final int GCM_TAG_LENGTH = 16;
 
 	/** 密钥转换算法 **/
 	public static enum KeyAlgorithm {
@@ -21,6 +35,8 @@ public class SafeAES {
 		/** 基于SHA1哈希算法的密钥转换 **/
 		SHA1PRNG
 	}
+	/** AES分组长度（字节） **/
+	public static final int BLOCK_SIZE = 16;
 	/** 加密算法名称 **/
 	private static final String KEY_ALGORITHM = "AES";
 	/** 最小密钥长度 **/
@@ -34,6 +50,12 @@ public class SafeAES {
 
 	/** 密钥 **/
 	private byte[] secretKey;
+	/** 转换密钥缓存（为空则不缓存） **/
+	private SafeDerivedKeyCache derivedKeyCache = null;
+	/** 每类密码器最多缓存的数量（超出的密码器归还时丢弃） **/
+	public static final int MAX_CACHED_CIPHERS = 64;
+	/** 密钥与密码器缓存（算法变更时整体替换，旧缓存中借出的密码器归还时丢弃） **/
+	private volatile CipherCache cipherCache = new CipherCache(0);
 
 	/**
 	 *
@@ -79,25 +101,16 @@ public class SafeAES {
 	}
 
 	public byte[] encrypt(byte[] bts) throws SafeCryptoException {
-
+		int generation = getCipherGeneration();
+		Cipher cipher = borrowCipher(Cipher.ENCRYPT_MODE);
 		try {
-			// 创建密码器
-			Cipher cipher = Cipher.getInstance(cipherAlgorithm);
-
-			// 初始化为加密模式的密码器
-			cipher.init(Cipher.ENCRYPT_MODE, getSecretKey());
-			
-			return cipher.doFinal(bts); //加密
+			byte[] result = cipher.doFinal(bts); //加密
+			releaseCipher(Cipher.ENCRYPT_MODE, cipher, generation);
+			return result;
 		} catch (IllegalBlockSizeException e) {
 			throw new SafeCryptoException(e);
 		} catch (BadPaddingException e) {
 			throw new SafeCryptoException(e);
-		} catch (InvalidKeyException e) {
-			throw new SafeCryptoException(e);
-		} catch (NoSuchAlgorithmException e) {
-			throw new SafeCryptoException(e);
-		} catch (NoSuchPaddingException e) {
-			throw new SafeCryptoException(e);
 		}
 	}
 
@@ -109,18 +122,62 @@ public class SafeAES {
 	 * @throws SafeCryptoException  解密异常
 	 */
 	public byte[] decrypt(byte[] bts)	throws SafeCryptoException {
+		int generation = getCipherGeneration();
+		Cipher cipher = borrowCipher(Cipher.DECRYPT_MODE);
 		try {
-			// 实例化
-			Cipher cipher = Cipher.getInstance(cipherAlgorithm);
-	
-			// 使用密钥初始化，设置为解密模式
-			cipher.init(Cipher.DECRYPT_MODE, getSecretKey());
-	
-			return cipher.doFinal(bts); //解密
+			byte[] result = cipher.doFinal(bts); //解密
+			releaseCipher(Cipher.DECRYPT_MODE, cipher, generation);
+			return result;
 		} catch (IllegalBlockSizeException e) {
 			throw new SafeCryptoException(e);
 		} catch (BadPaddingException e) {
 			throw new SafeCryptoException(e);
+		}
+	}
+
+	/**
+	 * 获取密码器缓存的代数（加密算法、密钥转换算法或转换密钥缓存变更后加1）
+	 *   在取出密码器之前调用，归还时传入，变更前取出的密码器归还时丢弃
+	 * @return 密码器缓存的代数
+	 */
+	public int getCipherGeneration() {
+		return cipherCache.generation;
+	}
+
+	/**
+	 * 从缓存中取出已初始化的密码器（缓存为空时，创建并初始化）
+	 *   取出的密码器由当前线程独占，用完须调用 releaseCipher 归还
+	 *   适用于分段 update 后 doFinal 的场景，单次加解密直接调用 encrypt / decrypt
+	 * @param mode 加密模式 Cipher.ENCRYPT_MODE 或 解密模式 Cipher.DECRYPT_MODE
+	 * @return 已初始化的密码器
+	 * @throws SafeCryptoException 密码器创建异常
+	 */
+	public Cipher borrowCipher(int mode) throws SafeCryptoException {
+		CipherCache cache = cipherCache;
+		CipherQueue queue = (mode == Cipher.ENCRYPT_MODE) ? cache.encryptQueue : cache.decryptQueue;
+		return borrowCipher(cache, queue, cipherAlgorithm, mode);
+	}
+
+	/**
+	 * 从指定的缓存中取出已初始化的密码器（缓存为空时，创建并初始化）
+	 * @param cache 密钥与密码器缓存
+	 * @param queue 密码器缓存
+	 * @param algorithm 加密算法
+	 * @param mode 加密模式 Cipher.ENCRYPT_MODE 或 解密模式 Cipher.DECRYPT_MODE
+	 * @return 已初始化的密码器
+	 * @throws SafeCryptoException 密码器创建异常
+	 */
+	private Cipher borrowCipher(CipherCache cache, CipherQueue queue, String algorithm, int mode) throws SafeCryptoException {
+		Cipher cipher = queue.poll();
+		if(cipher != null) {
+			return cipher;
+		}
+		try {
+			// 创建密码器
+			cipher = Cipher.getInstance(algorithm);
+			// 初始化为加密或解密模式的密码器
+			cipher.init(mode, getSecretKey(cache));
+			return cipher;
 		} catch (InvalidKeyException e) {
 			throw new SafeCryptoException(e);
 		} catch (NoSuchAlgorithmException e) {
@@ -130,6 +187,191 @@ public class SafeAES {
 		}
 	}
 
+	/**
+	 * 归还密码器到缓存（doFinal完成后，密码器恢复为初始化时的状态，可直接复用）
+	 *   doFinal异常的密码器，状态不确定，不要归还
+	 *   代数已变更（取出后算法或密钥变更）或缓存已满时，丢弃密码器
+	 * @param mode 加密模式 Cipher.ENCRYPT_MODE 或 解密模式 Cipher.DECRYPT_MODE
+	 * @param cipher 密码器
+	 * @param generation 取出前 getCipherGeneration() 的返回值
+	 */
+	public void releaseCipher(int mode, Cipher cipher, int generation) {
+		CipherCache cache = cipherCache;
+		if(cache.generation == generation) {
+			(mode == Cipher.ENCRYPT_MODE ? cache.encryptQueue : cache.decryptQueue).offer(cipher);
+		}
+	}
+
+	/**
+	 * 从缓存中取出GCM密码器，按随机数初始化（缓存为空时创建）
+	 *   同一密钥下，加密使用的随机数不得重复。用完须调用 releaseGcmCipher 归还
+	 *   GCM 需要 Java 8 及以上版本（Java 7 的 SunJCE 未实现 AES/GCM），可先调用 isGcmSupported 检查
+	 * @param mode 加密模式 Cipher.ENCRYPT_MODE 或 解密模式 Cipher.DECRYPT_MODE
+	 * @param nonce 随机数所在的数组
+	 * @param nonceOffset 随机数的偏移量（长度为 GCM_NONCE_LENGTH）
+	 * @return 已初始化的密码器
+	 * @throws SafeCryptoException 密码器创建异常
+	 */
+	public Cipher borrowGcmCipher(int mode, byte[] nonce, int nonceOffset) throws SafeCryptoException {
+		if(isGcmSupported() == false) {
+			throw new SafeCryptoException(20100013, GCM_CIPHER_ALGORITHM + " not supported by current JRE, requires Java 8 or later");
+		}
+		CipherCache cache = cipherCache;
+		Cipher cipher = cache.gcmQueue.poll();
+		try {
+			if(cipher == null) {
+				cipher = Cipher.getInstance(GCM_CIPHER_ALGORITHM);
+			}
+			cipher.init(mode, getSecretKey(cache), new GCMParameterSpec(GCM_TAG_LENGTH * 8, nonce, nonceOffset, GCM_NONCE_LENGTH));
+			return cipher;
+		} catch (GeneralSecurityException e) {
+			throw new SafeCryptoException(e);
+		}
+	}
+
+	/**
+	 * 当前运行环境是否支持GCM（v3.0 加密版本使用）
+	 * @return Java 8 及以上版本（或安装了支持 AES/GCM 的安全提供者）返回 true
+	 */
+	public static boolean isGcmSupported() {
+		return GcmSupport.SUPPORTED;
+	}
+
+	/**
+	 * 归还GCM密码器到缓存（doFinal完成后归还，下次取出时重新初始化）
+	 *   GCM密码器每次取出时按当前密钥重新初始化，不区分代数；缓存已满时丢弃
+	 * @param cipher 密码器
+	 */
+	public void releaseGcmCipher(Cipher cipher) {
+		cipherCache.gcmQueue.offer(cipher);
+	}
+
+	/**
+	 * 按16字节分组加密（ECB模式，不填充），一次 doFinal 处理全部分组
+	 *   与默认算法 AES/ECB/PKCS5Padding 使用同一密钥，调用方自行填充后，结果与默认算法一致
+	 * @param in 明文数据
+	 * @param inOffset 明文数据的偏移量
+	 * @param length 数据长度（16的整数倍）
+	 * @param out 密文写入的字节数组（可与明文为同一数组，原地加密）
+	 * @param outOffset 密文写入的位置
+	 * @return 写入的字节数
+	 * @throws SafeCryptoException 加密异常
+	 */
+	public int encryptBlocks(byte[] in, int inOffset, int length, byte[] out, int outOffset) throws SafeCryptoException {
+		return doFinalBlocks(true, in, inOffset, length, out, outOffset);
+	}
+
+	/**
+	 * 按16字节分组解密（ECB模式，不去除填充），一次 doFinal 处理全部分组
+	 * @param in 密文数据
+	 * @param inOffset 密文数据的偏移量
+	 * @param length 数据长度（16的整数倍）
+	 * @param out 明文写入的字节数组（可与密文为同一数组，原地解密）
+	 * @param outOffset 明文写入的位置
+	 * @return 写入的字节数
+	 * @throws SafeCryptoException 解密异常
+	 */
+	public int decryptBlocks(byte[] in, int inOffset, int length, byte[] out, int outOffset) throws SafeCryptoException {
+		return doFinalBlocks(false, in, inOffset, length, out, outOffset);
+	}
+
+	/**
+	 * 按16字节分组加密 ByteBuffer（ECB模式，不填充），适用于直接内存与文件映射的缓冲区
+	 * @param in 明文数据（从 position 到 limit，长度为16的整数倍；可与 out 共享同一内存，原地加密）
+	 * @param out 密文写入的缓冲区（从当前位置写入）
+	 * @return 写入的字节数
+	 * @throws SafeCryptoException 加密异常
+	 */
+	public int encryptBlocks(ByteBuffer in, ByteBuffer out) throws SafeCryptoException {
+		return doFinalBlocks(true, in, out);
+	}
+
+	/**
+	 * 按16字节分组解密 ByteBuffer（ECB模式，不去除填充），适用于直接内存与文件映射的缓冲区
+	 * @param in 密文数据（从 position 到 limit，长度为16的整数倍；可与 out 共享同一内存，原地解密）
+	 * @param out 明文写入的缓冲区（从当前位置写入）
+	 * @return 写入的字节数
+	 * @throws SafeCryptoException 解密异常
+	 */
+	public int decryptBlocks(ByteBuffer in, ByteBuffer out) throws SafeCryptoException {
+		return doFinalBlocks(false, in, out);
+	}
+
+	private int doFinalBlocks(boolean encrypt, byte[] in, int inOffset, int length,
+							  byte[] out, int outOffset) throws SafeCryptoException {
+		checkBlocks(length);
+		CipherCache cache = cipherCache;
+		CipherQueue queue = encrypt ? cache.blockEncryptQueue : cache.blockDecryptQueue;
+		Cipher cipher = borrowCipher(cache, queue, BLOCK_CIPHER_ALGORITHM, encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE);
+		try {
+			int size = cipher.doFinal(in, inOffset, length, out, outOffset);
+			queue.offer(cipher);
+			return size;
+		} catch (GeneralSecurityException e) {
+			throw new SafeCryptoException(e);
+		}
+	}
+
+	private int doFinalBlocks(boolean encrypt, ByteBuffer in, ByteBuffer out) throws SafeCryptoException {
+		checkBlocks(in.remaining());
+		CipherCache cache = cipherCache;
+		CipherQueue queue = encrypt ? cache.blockEncryptQueue : cache.blockDecryptQueue;
+		Cipher cipher = borrowCipher(cache, queue, BLOCK_CIPHER_ALGORITHM, encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE);
+		try {
+			int size = cipher.doFinal(in, out);
+			queue.offer(cipher);
+			return size;
+		} catch (GeneralSecurityException e) {
+			throw new SafeCryptoException(e);
+		}
+	}
+
+	private void checkBlocks(int length) throws SafeCryptoException {
+		if(!cipherAlgorithm.startsWith("AES/ECB/")) {
+			throw new SafeCryptoException(20100011, "block cipher not support algorithm: " + cipherAlgorithm);
+		}
+		if(length % BLOCK_SIZE != 0) {
+			throw new SafeCryptoException(20100012, "block data length is not multiple of " + BLOCK_SIZE);
+		}
+	}
+
+	/**
+	 * 预热：生成AES专用密钥，并为各类密码器缓存创建一个已初始化的密码器
+	 *   在秘钥投入使用前调用，首个加解密请求无需等待密钥转换与密码器初始化
+	 *   运行环境不支持GCM时（Java 7），跳过GCM密码器，不影响其它版本使用该密钥
+	 * @throws SafeCryptoException 密钥或加密算法不正确
+	 */
+	public void prewarm() throws SafeCryptoException {
+		int generation = getCipherGeneration();
+		releaseCipher(Cipher.ENCRYPT_MODE, borrowCipher(Cipher.ENCRYPT_MODE), generation);
+		releaseCipher(Cipher.DECRYPT_MODE, borrowCipher(Cipher.DECRYPT_MODE), generation);
+		if(cipherAlgorithm.startsWith("AES/ECB/")) {
+			byte[] block = new byte[BLOCK_SIZE];
+			encryptBlocks(block, 0, BLOCK_SIZE, block, 0);
+			decryptBlocks(block, 0, BLOCK_SIZE, block, 0);
+		}
+		if(isGcmSupported()) {
+			releaseGcmCipher(borrowGcmCipher(Cipher.DECRYPT_MODE, new byte[GCM_NONCE_LENGTH], 0));
+		}
+	}
+
+	/**
+	 * 清空密钥与密码器缓存（加密算法或密钥转换算法变更后调用）
+	 *   以新的缓存整体替换，代数加1；已借出的密码器归还时，因代数不一致而丢弃
+	 */
+	private synchronized void clearCipherCache() {
+		cipherCache = new CipherCache(cipherCache.generation + 1);
+	}
+
+	/**
+	 * 计算PKCS5填充后的密文长度（适用于默认的加密算法：AES/ECB/PKCS5Padding）
+	 * @param length 明文长度
+	 * @return 密文长度（16字节对齐，至少填充1字节）
+	 */
+	public static int getPaddedLength(int length) {
+		return (length / BLOCK_SIZE + 1) * BLOCK_SIZE;
+	}
+
 	/**
 	 * 获取加密算法
 	 * @return 加密算法名称
@@ -147,6 +389,7 @@ public class SafeAES {
 		try {
 			this.maxKeySize = Cipher.getMaxAllowedKeyLength(algorithm);
 			this.cipherAlgorithm = algorithm;
+			clearCipherCache();
 		} catch (NoSuchAlgorithmException e) {
 			throw new SafeCryptoException(e);
 		}
@@ -166,6 +409,24 @@ public class SafeAES {
 	 */
 	public void setKeyAlgorithm(KeyAlgorithm keyAlgorithm) {
 		this.keyAlgorithm = keyAlgorithm;
+		clearCipherCache();
+	}
+
+	/**
+	 * 获取转换密钥缓存
+	 * @return 转换密钥缓存，未设置返回 null
+	 */
+	public SafeDerivedKeyCache getDerivedKeyCache() {
+		return derivedKeyCache;
+	}
+
+	/**
+	 * 设置转换密钥缓存（多个加密对象共用，SHA1PRNG转换的密钥只计算一次）
+	 * @param derivedKeyCache 转换密钥缓存
+	 */
+	public void setDerivedKeyCache(SafeDerivedKeyCache derivedKeyCache) {
+		this.derivedKeyCache = derivedKeyCache;
+		clearCipherCache();
 	}
 
 	/**
@@ -176,24 +437,36 @@ public class SafeAES {
 		return maxKeySize;
 	}
 
+	/**
+	 * 获取加密秘钥（每代缓存首次调用时生成，之后复用）
+	 *
+	 * @param cache 密钥与密码器缓存
+	 * @return SecretKeySpec 加密秘钥
+	 * @throws NoSuchAlgorithmException 算法不存在异常
+	 */
+	private SecretKeySpec getSecretKey(CipherCache cache) throws NoSuchAlgorithmException {
+		SecretKeySpec keySpec = cache.secretKeySpec;
+		if(keySpec == null) {
+			keySpec = generateSecretKey();
+			cache.secretKeySpec = keySpec;
+		}
+		return keySpec;
+	}
+
 	/**
 	 * 生成加密秘钥
 	 *
 	 * @return SecretKeySpec 加密秘钥
 	 * @throws NoSuchAlgorithmException 算法不存在异常
 	 */
-	private SecretKeySpec getSecretKey() throws NoSuchAlgorithmException {
+	private SecretKeySpec generateSecretKey() throws NoSuchAlgorithmException {
 		byte[] encodedKey;
 		if(keyAlgorithm == KeyAlgorithm.SHA1PRNG) {
-			// 返回生成指定算法密钥生成器的 KeyGenerator 对象
-			KeyGenerator kg = null;
-			kg = KeyGenerator.getInstance(KEY_ALGORITHM);
-			// AES 要求密钥长度为 128
-			SecureRandom secureRandom = SecureRandom.getInstance("SHA1PRNG");
-			secureRandom.setSeed(secretKey);
-			kg.init(maxKeySize, secureRandom);
-			// 生成一个密钥
-			encodedKey = kg.generateKey().getEncoded();
+			if(derivedKeyCache != null) {
+				encodedKey = derivedKeyCache.getSHA1PRNGKey(secretKey, maxKeySize);
+			} else {
+				encodedKey = deriveSHA1PRNGKey(secretKey, maxKeySize);
+			}
 		} else { //KeyAlgorithm.PLAIN
 			int keyBytes = maxKeySize / 8;
 			if(maxKeySize % 8 != 0) {
@@ -218,5 +491,88 @@ public class SafeAES {
 		return new SecretKeySpec(encodedKey, KEY_ALGORITHM);
 	}
 
+	/**
+	 * 基于SHA1PRNG的密钥转换（相同的输入，生成相同的密钥）
+	 *
+	 * @param secretKey 原始密钥
+	 * @param keySize 密钥长度（以位为单位）
+	 * @return 转换后的密钥
+	 * @throws NoSuchAlgorithmException 算法不存在异常
+	 */
+	static byte[] deriveSHA1PRNGKey(byte[] secretKey, int keySize) throws NoSuchAlgorithmException {
+		// 返回生成指定算法密钥生成器的 KeyGenerator 对象
+		KeyGenerator kg = KeyGenerator.getInstance(KEY_ALGORITHM);
+		// AES 要求密钥长度为 128
+		SecureRandom secureRandom = SecureRandom.getInstance("SHA1PRNG");
+		secureRandom.setSeed(secretKey);
+		kg.init(keySize, secureRandom);
+		// 生成一个密钥
+		return kg.generateKey().getEncoded();
+	}
+
+	/**
+	 * GCM支持检查（首次使用时检查一次）
+	 */
+	private static final class GcmSupport {
+		private static final boolean SUPPORTED = check();
+
+		private static boolean check() {
+			try {
+				Cipher.getInstance(GCM_CIPHER_ALGORITHM);
+				return true;
+			} catch (GeneralSecurityException e) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * 同一代的密钥与密码器缓存
+	 */
+	private static final class CipherCache {
+		/** 代数 **/
+		private final int generation;
+		/** 已生成的AES专用密钥（首次使用时生成） **/
+		private volatile SecretKeySpec secretKeySpec = null;
+		/** 已初始化为加密模式的密码器（多线程复用，每个密码器同一时刻只被一个线程使用） **/
+		private final CipherQueue encryptQueue = new CipherQueue();
+		/** 已初始化为解密模式的密码器 **/
+		private final CipherQueue decryptQueue = new CipherQueue();
+		/** 已初始化为加密模式的分组密码器（不填充） **/
+		private final CipherQueue blockEncryptQueue = new CipherQueue();
+		/** 已初始化为解密模式的分组密码器（不填充） **/
+		private final CipherQueue blockDecryptQueue = new CipherQueue();
+		/** GCM密码器（每次使用前按随机数重新初始化） **/
+		private final CipherQueue gcmQueue = new CipherQueue();
+
+		private CipherCache(int generation) {
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * 限制数量的密码器缓存（最多 MAX_CACHED_CIPHERS 个）
+	 */
+	private static final class CipherQueue {
+		private final Queue<Cipher> queue = new ConcurrentLinkedQueue<Cipher>();
+		private final AtomicInteger size = new AtomicInteger(0);
+
+		private Cipher poll() {
+			Cipher cipher = queue.poll();
+			if(cipher != null) {
+				size.decrementAndGet();
+			}
+			return cipher;
+		}
+
+		private void offer(Cipher cipher) {
+			if(size.incrementAndGet() <= MAX_CACHED_CIPHERS) {
+				queue.offer(cipher);
+			} else {
+				size.decrementAndGet();
+			}
+		}
+	}
+
 
 }
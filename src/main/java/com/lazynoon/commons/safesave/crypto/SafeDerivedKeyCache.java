@@ -0,0 +1,123 @@
+package com.lazynoon.commons.safesave.crypto;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 转换密钥缓存（按“原始密钥 + 密钥长度”缓存转换后的密钥，最近最少使用的先淘汰）
+ *   用于 KeyAlgorithm.SHA1PRNG 等计算量较大的密钥转换算法
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeDerivedKeyCache {
+	/** 默认缓存容量 **/
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/** 缓存容量 **/
+	private final int capacity;
+	/** 转换后的密钥（按访问顺序排列） **/
+	private final LinkedHashMap<CacheKey, byte[]> derivedKeyMap;
+
+	public SafeDerivedKeyCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity 缓存容量（最小1）
+	 */
+	public SafeDerivedKeyCache(int capacity) {
+		if(capacity <= 0) {
+			throw new IllegalArgumentException("derived key cache capacity must greater than 0");
+		}
+		this.capacity = capacity;
+		this.derivedKeyMap = new LinkedHashMap<CacheKey, byte[]>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<CacheKey, byte[]> eldest) {
+				return size() > SafeDerivedKeyCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * 获取 SHA1PRNG 转换后的密钥（缓存不存在则转换并缓存）
+	 * @param secretKey 原始密钥
+	 * @param keySize 密钥长度（以位为单位）
+	 * @return 转换后的密钥，与 SafeAES.deriveSHA1PRNGKey 的结果完全相同
+	 * @throws NoSuchAlgorithmException 算法不存在异常
+	 */
+	public byte[] getSHA1PRNGKey(byte[] secretKey, int keySize) throws NoSuchAlgorithmException {
+		CacheKey cacheKey = new CacheKey(secretKey, keySize);
+		byte[] derivedKey;
+		synchronized (derivedKeyMap) {
+			derivedKey = derivedKeyMap.get(cacheKey);
+		}
+		if(derivedKey == null) {
+			//转换过程较慢，不在锁内执行（并发转换同一个密钥，结果相同）
+			derivedKey = SafeAES.deriveSHA1PRNGKey(secretKey, keySize);
+			synchronized (derivedKeyMap) {
+				derivedKeyMap.put(cacheKey, derivedKey);
+			}
+		}
+		return derivedKey;
+	}
+
+	/**
+	 * 获取缓存容量
+	 * @return 最多缓存的密钥数量
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * 获取已缓存的密钥数量
+	 * @return 密钥数量
+	 */
+	public int size() {
+		synchronized (derivedKeyMap) {
+			return derivedKeyMap.size();
+		}
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public void clear() {
+		synchronized (derivedKeyMap) {
+			derivedKeyMap.clear();
+		}
+	}
+
+	/** 缓存键：原始密钥（复制保存）+ 密钥长度 **/
+	private static class CacheKey {
+		private final byte[] secretKey;
+		private final int keySize;
+		private final int hash;
+
+		CacheKey(byte[] secretKey, int keySize) {
+			this.secretKey = secretKey.clone();
+			this.keySize = keySize;
+			this.hash = Arrays.hashCode(secretKey) * 31 + keySize;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return keySize == other.keySize && Arrays.equals(secretKey, other.secretKey);
+		}
+	}
+}
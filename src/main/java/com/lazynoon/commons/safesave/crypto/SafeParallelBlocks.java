@@ -0,0 +1,204 @@
+package com.lazynoon.commons.safesave.crypto;
+
+import com.lazynoon.commons.safesave.SafeCryptoException;
+import com.lazynoon.commons.safesave.utils.SafeByteUtils;
+import com.lazynoon.commons.safesave.utils.SafeExecutors;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 单条大数据的多线程分组加解密（ECB模式）
+ *   ECB模式下各分组相互独立，数据按16字节对齐拆分为多段，各段分别加解密与字节映射，结果与单线程处理完全一致
+ *   调用线程同样参与处理，并只等待已被领取的分段，在线程池的任务内调用也不会死锁
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeParallelBlocks {
+	/** 启用多线程处理的最小数据长度（字节） **/
+	public static final int PARALLEL_THRESHOLD = 4 * 1024 * 1024;
+	/** 每个分段的数据长度（AES分组长度的整数倍） **/
+	public static final int SEGMENT_SIZE = 1024 * 1024;
+
+	private SafeParallelBlocks() {}
+
+	/**
+	 * 是否按多线程处理
+	 * @param length 数据长度
+	 * @return 数据长度达到阈值，且CPU多于一核时返回 true
+	 */
+	public static boolean isParallel(int length) {
+		return length >= PARALLEL_THRESHOLD && SafeExecutors.getDefaultParallelism() > 1;
+	}
+
+	/**
+	 * 多线程原地加密（已填充的数据），加密后按字节映射表转换
+	 * @param aes AES加密引擎
+	 * @param data 待加密数据（加密结果写回原数组）
+	 * @param offset 数据的偏移量
+	 * @param length 数据长度（16的整数倍）
+	 * @param byteMapping 加密用的字节映射表（为null则不转换）
+	 * @throws SafeCryptoException 加密异常
+	 */
+	public static void encrypt(SafeAES aes, byte[] data, int offset, int length, byte[] byteMapping) throws SafeCryptoException {
+		encrypt(aes, data, offset, length, byteMapping, SafeExecutors.getDefaultExecutor(), SafeExecutors.getDefaultParallelism());
+	}
+
+	/**
+	 * 多线程原地加密（已填充的数据），加密后按字节映射表转换
+	 * @param aes AES加密引擎
+	 * @param data 待加密数据（加密结果写回原数组）
+	 * @param offset 数据的偏移量
+	 * @param length 数据长度（16的整数倍）
+	 * @param byteMapping 加密用的字节映射表（为null则不转换）
+	 * @param executor 线程池
+	 * @param parallelism 并行度
+	 * @throws SafeCryptoException 加密异常
+	 */
+	public static void encrypt(final SafeAES aes, final byte[] data, final int offset, int length, final byte[] byteMapping,
+							   ExecutorService executor, int parallelism) throws SafeCryptoException {
+		checkLength(length);
+		runSegments(new SegmentTask() {
+			@Override
+			public void run(int position, int size) throws SafeCryptoException {
+				aes.encryptBlocks(data, offset + position, size, data, offset + position);
+				if(byteMapping != null) {
+					SafeByteUtils.convertMapping(data, offset + position, size, byteMapping);
+				}
+			}
+		}, length, executor, parallelism);
+	}
+
+	/**
+	 * 多线程解密（不去除填充），解密前按字节映射表反向转换
+	 * @param aes AES加密引擎
+	 * @param src 密文数据（不修改）
+	 * @param srcOffset 密文数据的偏移量
+	 * @param dst 解密结果写入的字节数组
+	 * @param dstOffset 解密结果写入的位置
+	 * @param length 数据长度（16的整数倍）
+	 * @param byteMapping 解密用的字节映射表（为null则不转换）
+	 * @throws SafeCryptoException 解密异常
+	 */
+	public static void decrypt(SafeAES aes, byte[] src, int srcOffset, byte[] dst, int dstOffset, int length,
+							   byte[] byteMapping) throws SafeCryptoException {
+		decrypt(aes, src, srcOffset, dst, dstOffset, length, byteMapping,
+				SafeExecutors.getDefaultExecutor(), SafeExecutors.getDefaultParallelism());
+	}
+
+	/**
+	 * 多线程解密（不去除填充），解密前按字节映射表反向转换
+	 * @param aes AES加密引擎
+	 * @param src 密文数据（不修改）
+	 * @param srcOffset 密文数据的偏移量
+	 * @param dst 解密结果写入的字节数组
+	 * @param dstOffset 解密结果写入的位置
+	 * @param length 数据长度（16的整数倍）
+	 * @param byteMapping 解密用的字节映射表（为null则不转换）
+	 * @param executor 线程池
+	 * @param parallelism 并行度
+	 * @throws SafeCryptoException 解密异常
+	 */
+	public static void decrypt(final SafeAES aes, final byte[] src, final int srcOffset, final byte[] dst, final int dstOffset,
+							   int length, final byte[] byteMapping,
+							   ExecutorService executor, int parallelism) throws SafeCryptoException {
+		checkLength(length);
+		runSegments(new SegmentTask() {
+			@Override
+			public void run(int position, int size) throws SafeCryptoException {
+				if(byteMapping != null) {
+					System.arraycopy(src, srcOffset + position, dst, dstOffset + position, size);
+					SafeByteUtils.convertMapping(dst, dstOffset + position, size, byteMapping);
+					aes.decryptBlocks(dst, dstOffset + position, size, dst, dstOffset + position);
+				} else {
+					aes.decryptBlocks(src, srcOffset + position, size, dst, dstOffset + position);
+				}
+			}
+		}, length, executor, parallelism);
+	}
+
+	private static void checkLength(int length) throws SafeCryptoException {
+		if(length % SafeAES.BLOCK_SIZE != 0) {
+			throw new SafeCryptoException(20100021, "block data length is not multiple of " + SafeAES.BLOCK_SIZE);
+		}
+	}
+
+	/**
+	 * 按分段执行任务：提交 parallelism-1 个辅助任务，调用线程同时领取分段，直到全部分段处理完成
+	 * @param task 分段任务
+	 * @param length 数据总长度
+	 * @param executor 线程池
+	 * @param parallelism 并行度
+	 * @throws SafeCryptoException 任一分段的异常
+	 */
+	private static void runSegments(final SegmentTask task, final int length, ExecutorService executor,
+									int parallelism) throws SafeCryptoException {
+		final int segmentCount = (length + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+		if(segmentCount == 0) {
+			return;
+		}
+		final AtomicInteger nextSegment = new AtomicInteger(0);
+		final CountDownLatch latch = new CountDownLatch(segmentCount);
+		final AtomicReference<SafeCryptoException> error = new AtomicReference<SafeCryptoException>();
+		Runnable worker = new Runnable() {
+			@Override
+			public void run() {
+				int index;
+				while((index = nextSegment.getAndIncrement()) < segmentCount) {
+					int position = index * SEGMENT_SIZE;
+					try {
+						if(error.get() == null) { //已有分段出错时，其余分段不再处理
+							task.run(position, Math.min(SEGMENT_SIZE, length - position));
+						}
+					} catch (SafeCryptoException e) {
+						error.compareAndSet(null, e);
+					} catch (RuntimeException e) {
+						error.compareAndSet(null, new SafeCryptoException(e));
+					} finally {
+						latch.countDown();
+					}
+				}
+			}
+		};
+		int helperCount = Math.min(parallelism, segmentCount) - 1;
+		for(int i=0; i<helperCount; i++) {
+			try {
+				executor.execute(worker);
+			} catch (RejectedExecutionException e) {
+				break; //线程池不接受任务时，由调用线程处理剩余分段
+			}
+		}
+		worker.run();
+		//全部分段均已被领取，等待正在处理的分段完成（不响应中断，避免其它线程仍在写入数据）
+		boolean interrupted = false;
+		while(true) {
+			try {
+				latch.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if(error.get() != null) {
+			throw error.get();
+		}
+	}
+
+	/** 分段任务 **/
+	private interface SegmentTask {
+		/**
+		 * 处理一个分段
+		 * @param position 分段在数据中的位置
+		 * @param size 分段长度
+		 * @throws SafeCryptoException 处理异常
+		 */
+		void run(int position, int size) throws SafeCryptoException;
+	}
+}
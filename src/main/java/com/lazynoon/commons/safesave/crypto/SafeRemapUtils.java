@@ -0,0 +1,71 @@
+package com.lazynoon.commons.safesave.crypto;
+
+import com.lazynoon.commons.safesave.SafeCryptoException;
+import com.lazynoon.commons.safesave.utils.SafeByteUtils;
+import com.lazynoon.commons.safesave.utils.SafeMathUtils;
+
+/**
+ * 更换字节映射表的公共方法（v1、v2 共用）
+ *   字节映射在AES加密之后，密文只需按合并后的映射表转换；签名所在的末尾分组须重新加解密
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeRemapUtils {
+	/** 数据签名的长度（v1、v2 相同） **/
+	public static final int HASH_CODE_LENGTH = 8;
+
+	private SafeRemapUtils() {}
+
+	/**
+	 * 更换字节映射表时，重新生成密文末尾的两个分组（签名与填充所在位置）
+	 *   签名中的映射表ID按异或计入，新签名 = 原签名 ^ ((原映射表ID ^ 新映射表ID) << 32)
+	 *   适用于 v1 数据体与 v2 数据块（签名位于PKCS5填充之前）
+	 * @param aes AES加密引擎
+	 * @param data 密文数据
+	 * @param bodyEnd 密文数据体（或数据块）的结束位置（之前至少有两个分组）
+	 * @param decryptMapping 原映射表的反向映射（为 null 表示未转换）
+	 * @param encryptMapping 新映射表（为 null 表示不转换）
+	 * @param oldMappingId 原字节映射表ID
+	 * @param newMappingId 新字节映射表ID
+	 * @param errorCode 填充不正确时的错误码
+	 * @return 新的末尾两个分组（32字节，原密文不变）
+	 * @throws SafeCryptoException 解密异常，或填充不正确
+	 */
+	public static byte[] remapHashTail(SafeAES aes, byte[] data, int bodyEnd, byte[] decryptMapping, byte[] encryptMapping,
+									   int oldMappingId, int newMappingId, int errorCode) throws SafeCryptoException {
+		int tailLength = SafeAES.BLOCK_SIZE * 2;
+		byte[] tail = new byte[tailLength];
+		System.arraycopy(data, bodyEnd - tailLength, tail, 0, tailLength);
+		if(decryptMapping != null) {
+			SafeByteUtils.convertMapping(tail, 0, tailLength, decryptMapping);
+		}
+		try {
+			aes.decryptBlocks(tail, 0, tailLength, tail, 0);
+		} catch (SafeCryptoException e) {
+			throw new SafeCryptoException(errorCode, "CryptoException: " + e.getMessage());
+		}
+		int padding = tail[tailLength - 1] & 0xFF;
+		if(padding < 1 || padding > SafeAES.BLOCK_SIZE) {
+			throw new SafeCryptoException(errorCode, "CryptoException: javax.crypto.BadPaddingException");
+		}
+		for(int i=tailLength-padding; i<tailLength; i++) {
+			if((tail[i] & 0xFF) != padding) {
+				throw new SafeCryptoException(errorCode, "CryptoException: javax.crypto.BadPaddingException");
+			}
+		}
+		int hashOffset = tailLength - padding - HASH_CODE_LENGTH;
+		long hashCode = SafeMathUtils.parseLongAsBigEndian(tail, hashOffset, HASH_CODE_LENGTH);
+		hashCode ^= ((long) (oldMappingId ^ newMappingId)) << 32;
+		SafeMathUtils.writeLongAsBigEndian(tail, hashOffset, hashCode, HASH_CODE_LENGTH);
+		try {
+			aes.encryptBlocks(tail, 0, tailLength, tail, 0);
+		} catch (SafeCryptoException e) {
+			throw new SafeCryptoException(errorCode, "CryptoException: " + e.getMessage());
+		}
+		if(encryptMapping != null) {
+			SafeByteUtils.convertMapping(tail, 0, tailLength, encryptMapping);
+		}
+		return tail;
+	}
+}
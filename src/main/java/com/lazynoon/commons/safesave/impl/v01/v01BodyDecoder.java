@@ -0,0 +1,384 @@
+package com.lazynoon.commons.safesave.impl.v01;
+
+import com.lazynoon.commons.safesave.SafeCryptoException;
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.crypto.SafeParallelBlocks;
+import com.lazynoon.commons.safesave.utils.SafeByteUtils;
+import com.lazynoon.commons.safesave.utils.SafeMathUtils;
+
+import javax.crypto.Cipher;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * v1.0 密文数据体的分段解密器
+ *   密文按固定长度分段：反向字节映射 -> AES解密 -> 按字段位置分发（固定字段、明文数据、数据签名）
+ *   明文数据直接写入目标缓冲区，复制的同一遍计算摘要（按8字节整数），解密过程不创建与数据长度相关的中间数组
+ *   解密器对象（含分段缓冲区）由对象池复用，每个对象同一时刻只被一个线程使用
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+class v01BodyDecoder {
+	/** 分段解密的密文长度（AES分组长度的整数倍） **/
+	static final int CHUNK_SIZE = 4096;
+	/** 对象池最多缓存的解密器数量 **/
+	private static final int MAX_POOL_SIZE = 256;
+	private static final Queue<v01BodyDecoder> decoderPool = new ConcurrentLinkedQueue<v01BodyDecoder>();
+	private static final AtomicInteger decoderPoolSize = new AtomicInteger(0);
+
+	/** 反向字节映射后的密文分段 **/
+	private final byte[] inBuff = new byte[CHUNK_SIZE];
+	/** 解密后的数据分段 **/
+	private final byte[] outBuff = new byte[CHUNK_SIZE + SafeAES.BLOCK_SIZE];
+	/** 固定字段（18字节） **/
+	private final byte[] fieldBts = new byte[v01SafeData.BODY_HEAD_LENGTH];
+	/** 数据签名（8字节） **/
+	private final byte[] hashBts = new byte[v01SafeData.HASH_CODE_LENGTH];
+
+	/** 明文存储的头部字段 **/
+	int majorVersion;
+	int minorVersion;
+	int byteMappingId;
+	int secretKeyId;
+	/** 解密出的固定字段 **/
+	long reserved;
+	long encryptTime;
+	long randomCode;
+	int plaintextLength;
+	long hashCode;
+	/** 解密出的明文数据（按需创建时有值） **/
+	byte[] plaintextData;
+	/** 错误码与错误消息（0表示无异常） **/
+	int errorCode;
+	String errorMessage;
+
+	/** 密文数据体长度 **/
+	private int bodyLength;
+	/** 明文写入的缓冲区（为null，且不创建明文数组时，只校验不保存） **/
+	private ByteBuffer target;
+	/** 固定字段解密后，是否按明文长度创建明文数组 **/
+	private boolean allocatePlaintext;
+	/** 已解密的字节数 **/
+	private int position;
+	/** 明文数据的摘要（不含其它字段） **/
+	private long plaintextHash;
+
+	private v01BodyDecoder() {}
+
+	/**
+	 * 从对象池取出解密器
+	 * @return 已重置状态的解密器
+	 */
+	static v01BodyDecoder borrow() {
+		v01BodyDecoder decoder = decoderPool.poll();
+		if(decoder == null) {
+			decoder = new v01BodyDecoder();
+		} else {
+			decoderPoolSize.decrementAndGet();
+		}
+		return decoder;
+	}
+
+	/**
+	 * 归还解密器到对象池（归还后不再持有明文数据与目标缓冲区的引用）
+	 * @param decoder 解密器
+	 */
+	static void release(v01BodyDecoder decoder) {
+		decoder.target = null;
+		decoder.plaintextData = null;
+		if(decoderPoolSize.incrementAndGet() <= MAX_POOL_SIZE) {
+			decoderPool.offer(decoder);
+		} else {
+			decoderPoolSize.decrementAndGet();
+		}
+	}
+
+	/**
+	 * 解析明文存储的头部字段（6字节）
+	 * @param data 密文数据
+	 * @param offset 密文数据的偏移量
+	 */
+	void loadHead(byte[] data, int offset) {
+		majorVersion = data[offset] & 0xFF;
+		minorVersion = data[offset + 1] & 0xFF;
+		byteMappingId = data[offset + 2] & 0xFF;
+		secretKeyId = SafeMathUtils.parseIntAsBigEndian(data, offset + 3, 3);
+	}
+
+	/**
+	 * 解密密文数据体
+	 * @param aes AES加密引擎
+	 * @param byteMapping 解密用的字节映射表（为null则不转换）
+	 * @param src 密文数据
+	 * @param offset 密文数据体的偏移量（不含6字节明文头部）
+	 * @param length 密文数据体的长度
+	 * @param target 明文写入的缓冲区（从当前位置写入，可为null）
+	 * @param allocatePlaintext target为null时，是否创建明文数组
+	 * @return 解密成功返回 true，否则返回 false（错误码见 errorCode）
+	 */
+	boolean decrypt(SafeAES aes, byte[] byteMapping, byte[] src, int offset, int length,
+					ByteBuffer target, boolean allocatePlaintext) {
+		if(reset(length, target, allocatePlaintext) == false) {
+			return false;
+		}
+		int generation = aes.getCipherGeneration();
+		Cipher cipher;
+		try {
+			cipher = aes.borrowCipher(Cipher.DECRYPT_MODE);
+		} catch (SafeCryptoException e) {
+			return setError(20101604, "CryptoException: " + e.getMessage());
+		}
+		try {
+			int end = offset + length;
+			for(int pos=offset; pos<end; pos+=CHUNK_SIZE) {
+				int size = Math.min(CHUNK_SIZE, end - pos);
+				byte[] in = src;
+				int inOffset = pos;
+				if(byteMapping != null) {
+					System.arraycopy(src, pos, inBuff, 0, size);
+					SafeByteUtils.convertMapping(inBuff, 0, size, byteMapping);
+					in = inBuff;
+					inOffset = 0;
+				}
+				int outSize = cipher.update(in, inOffset, size, outBuff, 0);
+				if(accept(outBuff, 0, outSize) == false) {
+					return false; //密码器状态未完成，不归还
+				}
+			}
+			int outSize = cipher.doFinal(outBuff, 0);
+			aes.releaseCipher(Cipher.DECRYPT_MODE, cipher, generation);
+			if(accept(outBuff, 0, outSize) == false) {
+				return false;
+			}
+		} catch (GeneralSecurityException e) {
+			return setError(20101604, "CryptoException: " + e);
+		}
+		return finish();
+	}
+
+	/**
+	 * 加载已按分组解密（未去除PKCS5填充）的数据体
+	 * @param body 解密后的数据体
+	 * @param offset 数据体的偏移量
+	 * @param length 数据体的长度（含填充）
+	 * @param target 明文写入的缓冲区（从当前位置写入，可为null）
+	 * @param allocatePlaintext target为null时，是否创建明文数组
+	 * @return 解析成功返回 true，否则返回 false（错误码见 errorCode）
+	 */
+	boolean load(byte[] body, int offset, int length, ByteBuffer target, boolean allocatePlaintext) {
+		if(reset(length, target, allocatePlaintext) == false) {
+			return false;
+		}
+		int padding = paddingLength(body, offset, length);
+		if(padding < 0 || accept(body, offset, length - padding) == false) {
+			return false;
+		}
+		return finish();
+	}
+
+	/**
+	 * 多线程解密密文数据体（ECB模式，数据长度达到 SafeParallelBlocks 的阈值时使用）
+	 *   首尾分组在解密器的缓冲区中解密；中间只含明文的分组由多线程直接解密到明文的写入位置，不创建与数据长度相关的中间数组
+	 * @param aes AES加密引擎
+	 * @param byteMapping 解密用的字节映射表（为null则不转换）
+	 * @param src 密文数据
+	 * @param offset 密文数据体的偏移量（不含6字节明文头部）
+	 * @param length 密文数据体的长度
+	 * @param target 明文写入的缓冲区（须为数组缓冲区；为null时创建明文数组）
+	 * @return 解密成功返回 true，否则返回 false（错误码见 errorCode）
+	 */
+	boolean decryptParallel(SafeAES aes, byte[] byteMapping, byte[] src, int offset, int length, ByteBuffer target) {
+		if(reset(length, target, true) == false) {
+			return false;
+		}
+		int headLength = SafeAES.BLOCK_SIZE * 2;
+		try {
+			//前两个分组：固定字段（解析后确定明文的写入位置）与明文开头
+			decryptBlocks(aes, byteMapping, src, offset, headLength);
+			if(accept(outBuff, 0, headLength) == false) {
+				return false;
+			}
+			int blockEnd = Math.max(headLength,
+					(v01SafeData.BODY_HEAD_LENGTH + plaintextLength) / SafeAES.BLOCK_SIZE * SafeAES.BLOCK_SIZE);
+			if(blockEnd > headLength) {
+				int size = blockEnd - headLength;
+				int targetPosition = this.target.position();
+				int dstOffset = this.target.arrayOffset() + targetPosition;
+				SafeParallelBlocks.decrypt(aes, src, offset + headLength, this.target.array(), dstOffset, size, byteMapping);
+				plaintextHash = v01SafeData.hashPlaintext(plaintextHash, this.target.array(), dstOffset, size,
+						position - v01SafeData.BODY_HEAD_LENGTH);
+				this.target.position(targetPosition + size);
+				position += size;
+			}
+			//末尾的分组：明文结尾、数据签名与填充
+			int tailLength = length - blockEnd;
+			decryptBlocks(aes, byteMapping, src, offset + blockEnd, tailLength);
+			int padding = paddingLength(outBuff, 0, tailLength);
+			if(padding < 0 || accept(outBuff, 0, tailLength - padding) == false) {
+				return false;
+			}
+		} catch (SafeCryptoException e) {
+			return setError(20101604, "CryptoException: " + e.getMessage());
+		}
+		return finish();
+	}
+
+	/**
+	 * 在解密器的缓冲区中解密若干分组（反向字节映射后解密，结果写入 outBuff 的开头）
+	 * @param length 数据长度（16的整数倍，不超过 CHUNK_SIZE）
+	 */
+	private void decryptBlocks(SafeAES aes, byte[] byteMapping, byte[] src, int offset, int length) throws SafeCryptoException {
+		if(byteMapping != null) {
+			System.arraycopy(src, offset, inBuff, 0, length);
+			SafeByteUtils.convertMapping(inBuff, 0, length, byteMapping);
+			aes.decryptBlocks(inBuff, 0, length, outBuff, 0);
+		} else {
+			aes.decryptBlocks(src, offset, length, outBuff, 0);
+		}
+	}
+
+	/**
+	 * 检查PKCS5填充
+	 * @param body 解密后的数据（含填充）
+	 * @param offset 数据的偏移量
+	 * @param length 数据的长度（含填充）
+	 * @return 填充长度；填充无效时返回 -1（错误码见 errorCode）
+	 */
+	private int paddingLength(byte[] body, int offset, int length) {
+		int padding = length > 0 ? body[offset + length - 1] & 0xFF : 0;
+		if(padding < 1 || padding > SafeAES.BLOCK_SIZE) {
+			setError(20101604, "CryptoException: javax.crypto.BadPaddingException");
+			return -1;
+		}
+		for(int i=offset+length-padding; i<offset+length; i++) {
+			if((body[i] & 0xFF) != padding) {
+				setError(20101604, "CryptoException: javax.crypto.BadPaddingException");
+				return -1;
+			}
+		}
+		return padding;
+	}
+
+	/**
+	 * 重置解密状态
+	 * @param length 密文数据体的长度
+	 * @param target 明文写入的缓冲区
+	 * @param allocatePlaintext 是否创建明文数组
+	 * @return 密文长度有效返回 true
+	 */
+	private boolean reset(int length, ByteBuffer target, boolean allocatePlaintext) {
+		this.bodyLength = length;
+		this.target = target;
+		this.allocatePlaintext = allocatePlaintext;
+		this.plaintextData = null;
+		this.position = 0;
+		this.plaintextHash = 0;
+		this.errorCode = 0;
+		this.errorMessage = null;
+		if(length < SafeAES.getPaddedLength(v01SafeData.BODY_HEAD_LENGTH + v01SafeData.HASH_CODE_LENGTH)
+				|| length % SafeAES.BLOCK_SIZE != 0) {
+			return setError(20101604, "CryptoException: encrypted body length is not valid. length: " + length);
+		}
+		return true;
+	}
+
+	/**
+	 * 按字段位置分发解密后的数据
+	 * @param bts 解密后的数据
+	 * @param offset 偏移量
+	 * @param length 长度
+	 * @return 无错误返回 true
+	 */
+	private boolean accept(byte[] bts, int offset, int length) {
+		while(length > 0) {
+			int size;
+			if(position < v01SafeData.BODY_HEAD_LENGTH) {
+				size = Math.min(length, v01SafeData.BODY_HEAD_LENGTH - position);
+				System.arraycopy(bts, offset, fieldBts, position, size);
+				if(position + size == v01SafeData.BODY_HEAD_LENGTH && loadFields() == false) {
+					return false;
+				}
+			} else if(position < v01SafeData.BODY_HEAD_LENGTH + plaintextLength) {
+				int index = position - v01SafeData.BODY_HEAD_LENGTH;
+				size = Math.min(length, plaintextLength - index);
+				if(target != null && target.hasArray()) {
+					//复制到目标数组的同时计算摘要
+					int targetPosition = target.position();
+					plaintextHash = v01SafeData.copyAndHashPlaintext(plaintextHash, bts, offset,
+							target.array(), target.arrayOffset() + targetPosition, size, index);
+					target.position(targetPosition + size);
+				} else {
+					plaintextHash = v01SafeData.hashPlaintext(plaintextHash, bts, offset, size, index);
+					if(target != null) {
+						target.put(bts, offset, size);
+					}
+				}
+			} else {
+				int index = position - v01SafeData.BODY_HEAD_LENGTH - plaintextLength;
+				size = Math.min(length, v01SafeData.HASH_CODE_LENGTH - index);
+				if(size <= 0) {
+					return setError(20101135, "plaintextLength is not match encrypted data length");
+				}
+				System.arraycopy(bts, offset, hashBts, index, size);
+			}
+			position += size;
+			offset += size;
+			length -= size;
+		}
+		return true;
+	}
+
+	/**
+	 * 解析固定字段，并检查明文长度与密文长度是否匹配
+	 * @return 检查通过返回 true
+	 */
+	private boolean loadFields() {
+		reserved = SafeMathUtils.parseIntAsBigEndian(fieldBts, 0, 4);
+		encryptTime = SafeMathUtils.parseLongAsBigEndian(fieldBts, 4, 6);
+		randomCode = SafeMathUtils.parseLongAsBigEndian(fieldBts, 10, 4);
+		plaintextLength = SafeMathUtils.parseIntAsBigEndian(fieldBts, 14, 4);
+		if((reserved & ~v01SafeData.allowedReserved(minorVersion)) != 0) {
+			return setError(20101105, "reserved is not 0");
+		}
+		if(plaintextLength <= 0 || plaintextLength > bodyLength
+				|| SafeAES.getPaddedLength(v01SafeData.BODY_HEAD_LENGTH + plaintextLength + v01SafeData.HASH_CODE_LENGTH) != bodyLength) {
+			return setError(20101135, "plaintextLength is not match encrypted data length");
+		}
+		if(target != null) {
+			if(target.remaining() < plaintextLength) {
+				return setError(20101605, "buffer remaining is less than plaintextLength " + plaintextLength);
+			}
+		} else if(allocatePlaintext) {
+			plaintextData = new byte[plaintextLength];
+			target = ByteBuffer.wrap(plaintextData);
+		}
+		return true;
+	}
+
+	/**
+	 * 解密完成，校验数据签名
+	 * @return 校验通过返回 true
+	 */
+	private boolean finish() {
+		if(position != v01SafeData.BODY_HEAD_LENGTH + plaintextLength + v01SafeData.HASH_CODE_LENGTH) {
+			return setError(20101136, "decrypted body length is not complete");
+		}
+		hashCode = SafeMathUtils.parseLongAsBigEndian(hashBts, 0, v01SafeData.HASH_CODE_LENGTH);
+		long code = v01SafeData.hashFields(majorVersion, minorVersion, byteMappingId, secretKeyId,
+				reserved, encryptTime, randomCode, plaintextLength) ^ plaintextHash;
+		if(code != hashCode) {
+			return setError(20101137, "hashCode is not match");
+		}
+		return true;
+	}
+
+	private boolean setError(int code, String message) {
+		this.errorCode = code;
+		this.errorMessage = message;
+		return false;
+	}
+}
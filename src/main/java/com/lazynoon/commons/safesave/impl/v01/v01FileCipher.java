@@ -0,0 +1,207 @@
+package com.lazynoon.commons.safesave.impl.v01;
+
+import com.lazynoon.commons.safesave.SafeCryptoException;
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.utils.SafeByteUtils;
+import com.lazynoon.commons.safesave.utils.SafeMathUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * v1.0 文件加解密（文件映射）
+ *   按窗口映射文件，明文与密文均不整体复制到Java堆，输出与 v01SafeEncryptor.encrypt 的结果完全一致
+ *   加密：明文窗口直接复制到密文文件的映射窗口，补齐固定字段、签名与填充后，原地按分组加密与字节映射
+ *   解密：密文窗口反向映射、按分组解密到直接内存的缓冲区，明文部分写入目标文件的映射窗口，最后校验签名
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+class v01FileCipher {
+	/** 每个映射窗口的长度（AES分组长度的整数倍） **/
+	static final int WINDOW_SIZE = v01SafeEncryptor.FILE_WINDOW_SIZE;
+
+	private v01FileCipher() {}
+
+	/**
+	 * 加密文件
+	 * @param data 数据对象（明文长度与头部字段，须已检查）
+	 * @param aes AES加密引擎
+	 * @param byteMapping 加密用的字节映射表（为null则不转换）
+	 * @param in 明文文件
+	 * @param out 密文文件（可读写，内容为空）
+	 * @return 密文文件的长度
+	 * @throws SafeCryptoException 加密异常
+	 * @throws IOException 文件读写异常
+	 */
+	static long encrypt(v01SafeData data, SafeAES aes, byte[] byteMapping, FileChannel in, FileChannel out)
+			throws SafeCryptoException, IOException {
+		long plaintextLength = data.getPlaintextLength();
+		long dataEnd = v01SafeData.BODY_HEAD_LENGTH + plaintextLength;
+		long bodyLength = SafeAES.getPaddedLength((int) dataEnd + v01SafeData.HASH_CODE_LENGTH);
+		writeFully(out, ByteBuffer.wrap(data.mergeEncryptHead()), 0);
+		byte[] fieldBts = new byte[v01SafeData.BODY_HEAD_LENGTH];
+		data.writeEncryptBodyHead(fieldBts, 0);
+		//数据签名与填充字节（明文数据全部计入摘要后生成）
+		byte[] tailBts = new byte[(int) (bodyLength - dataEnd)];
+		boolean tailReady = false;
+		long code = data.getHashCode();
+		for(long start=0; start<bodyLength; start+=WINDOW_SIZE) {
+			int size = (int) Math.min(WINDOW_SIZE, bodyLength - start);
+			long end = start + size;
+			MappedByteBuffer window = out.map(FileChannel.MapMode.READ_WRITE, v01SafeData.PLAINTEXT_HEAD_LENGTH + start, size);
+			for(long pos=start; pos<Math.min(end, v01SafeData.BODY_HEAD_LENGTH); pos++) {
+				window.put((int) (pos - start), fieldBts[(int) pos]);
+			}
+			long dataStart = Math.max(start, v01SafeData.BODY_HEAD_LENGTH);
+			long dataStop = Math.min(end, dataEnd);
+			if(dataStart < dataStop) {
+				long index = dataStart - v01SafeData.BODY_HEAD_LENGTH;
+				MappedByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, index, dataStop - dataStart);
+				code = v01SafeData.hashPlaintext(code, src, (int) index);
+				window.position((int) (dataStart - start));
+				window.put(src);
+			}
+			for(long pos=Math.max(start, dataEnd); pos<end; pos++) {
+				if(tailReady == false) {
+					SafeMathUtils.writeLongAsBigEndian(tailBts, 0, code, v01SafeData.HASH_CODE_LENGTH);
+					for(int i=v01SafeData.HASH_CODE_LENGTH; i<tailBts.length; i++) {
+						tailBts[i] = (byte) (tailBts.length - v01SafeData.HASH_CODE_LENGTH);
+					}
+					tailReady = true;
+				}
+				window.put((int) (pos - start), tailBts[(int) (pos - dataEnd)]);
+			}
+			window.clear();
+			try {
+				aes.encryptBlocks(window.duplicate(), window);
+			} catch (SafeCryptoException e) {
+				throw new SafeCryptoException(20101503, e.getMessage());
+			}
+			if(byteMapping != null) {
+				SafeByteUtils.convertMapping(window, 0, size, byteMapping);
+			}
+		}
+		return v01SafeData.PLAINTEXT_HEAD_LENGTH + bodyLength;
+	}
+
+	/**
+	 * 解密文件（校验不通过时，删除已写入的目标文件）
+	 * @param head 已加载头部字段的数据对象
+	 * @param aes AES加密引擎
+	 * @param byteMapping 解密用的字节映射表（为null则不转换）
+	 * @param in 密文文件
+	 * @param dst 明文文件
+	 * @return 明文长度
+	 * @throws SafeCryptoException 解密异常，或数据校验不通过
+	 * @throws IOException 文件读写异常
+	 */
+	static long decrypt(v01SafeData head, SafeAES aes, byte[] byteMapping, FileChannel in, Path dst)
+			throws SafeCryptoException, IOException {
+		long bodyLength = in.size() - v01SafeData.PLAINTEXT_HEAD_LENGTH;
+		if(bodyLength < SafeAES.getPaddedLength(v01SafeData.BODY_HEAD_LENGTH + v01SafeData.HASH_CODE_LENGTH)
+				|| bodyLength % SafeAES.BLOCK_SIZE != 0 || bodyLength > Integer.MAX_VALUE) {
+			throw new SafeCryptoException(20101604, "CryptoException: encrypted body length is not valid. length: " + bodyLength);
+		}
+		ByteBuffer buff = ByteBuffer.allocateDirect((int) Math.min(WINDOW_SIZE, bodyLength));
+		byte[] fieldBts = new byte[v01SafeData.BODY_HEAD_LENGTH];
+		byte[] tailBts = null;
+		long reserved = 0, encryptTime = 0, randomCode = 0;
+		int plaintextLength = 0;
+		long dataEnd = 0;
+		long code = 0;
+		FileChannel out = null;
+		boolean success = false;
+		try {
+			for(long start=0; start<bodyLength; start+=WINDOW_SIZE) {
+				int size = (int) Math.min(WINDOW_SIZE, bodyLength - start);
+				long end = start + size;
+				MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, v01SafeData.PLAINTEXT_HEAD_LENGTH + start, size);
+				buff.clear();
+				try {
+					if(byteMapping != null) {
+						buff.put(window);
+						SafeByteUtils.convertMapping(buff, 0, size, byteMapping);
+						buff.flip();
+						aes.decryptBlocks(buff.duplicate(), buff);
+					} else {
+						aes.decryptBlocks(window, buff);
+					}
+				} catch (SafeCryptoException e) {
+					throw new SafeCryptoException(20101604, "CryptoException: " + e.getMessage());
+				}
+				if(start == 0) {
+					buff.position(0);
+					buff.get(fieldBts);
+					reserved = SafeMathUtils.parseIntAsBigEndian(fieldBts, 0, 4);
+					encryptTime = SafeMathUtils.parseLongAsBigEndian(fieldBts, 4, 6);
+					randomCode = SafeMathUtils.parseLongAsBigEndian(fieldBts, 10, 4);
+					plaintextLength = SafeMathUtils.parseIntAsBigEndian(fieldBts, 14, 4);
+					if((reserved & ~v01SafeData.allowedReserved(head.getMinorVersion())) != 0) {
+						throw new SafeCryptoException(20101105, "reserved is not 0");
+					}
+					if((reserved & v01SafeData.RESERVED_COMPRESSED) != 0) {
+						throw new SafeCryptoException(20101610, "compressed data not support file decrypt");
+					}
+					if(plaintextLength <= 0 || plaintextLength > bodyLength
+							|| SafeAES.getPaddedLength(v01SafeData.BODY_HEAD_LENGTH + plaintextLength + v01SafeData.HASH_CODE_LENGTH) != bodyLength) {
+						throw new SafeCryptoException(20101135, "plaintextLength is not match encrypted data length");
+					}
+					dataEnd = v01SafeData.BODY_HEAD_LENGTH + (long) plaintextLength;
+					tailBts = new byte[(int) (bodyLength - dataEnd)];
+					out = FileChannel.open(dst, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+							StandardOpenOption.READ, StandardOpenOption.WRITE);
+				}
+				long dataStart = Math.max(start, v01SafeData.BODY_HEAD_LENGTH);
+				long dataStop = Math.min(end, dataEnd);
+				if(dataStart < dataStop) {
+					long index = dataStart - v01SafeData.BODY_HEAD_LENGTH;
+					ByteBuffer plaintext = buff.duplicate();
+					plaintext.limit((int) (dataStop - start));
+					plaintext.position((int) (dataStart - start));
+					code = v01SafeData.hashPlaintext(code, plaintext, (int) index);
+					out.map(FileChannel.MapMode.READ_WRITE, index, dataStop - dataStart).put(plaintext);
+				}
+				for(long pos=Math.max(start, dataEnd); pos<end; pos++) {
+					tailBts[(int) (pos - dataEnd)] = buff.get((int) (pos - start));
+				}
+			}
+			int padding = tailBts.length - v01SafeData.HASH_CODE_LENGTH;
+			for(int i=v01SafeData.HASH_CODE_LENGTH; i<tailBts.length; i++) {
+				if((tailBts[i] & 0xFF) != padding) {
+					throw new SafeCryptoException(20101604, "CryptoException: javax.crypto.BadPaddingException");
+				}
+			}
+			long hashCode = SafeMathUtils.parseLongAsBigEndian(tailBts, 0, v01SafeData.HASH_CODE_LENGTH);
+			code ^= v01SafeData.hashFields(head.getMajorVersion(), head.getMinorVersion(), head.getByteMappingId(),
+					head.getSecretKeyId(), reserved, encryptTime, randomCode, plaintextLength);
+			if(code != hashCode) {
+				throw new SafeCryptoException(20101137, "hashCode is not match");
+			}
+			success = true;
+			return plaintextLength;
+		} finally {
+			if(out != null) {
+				out.close();
+				if(success == false) {
+					try {
+						Files.deleteIfExists(dst);
+					} catch (IOException e) {
+						//删除失败时保留原异常（如文件映射尚未释放）
+					}
+				}
+			}
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buff, long position) throws IOException {
+		while(buff.hasRemaining()) {
+			position += channel.write(buff, position);
+		}
+	}
+}
@@ -2,10 +2,13 @@ package com.lazynoon.commons.safesave.impl.v01;
 
 import com.lazynoon.commons.safesave.SafeData;
 import com.lazynoon.commons.safesave.SafeEncryptor;
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.utils.SafeCompressor;
 import com.lazynoon.commons.safesave.utils.SafeMathUtils;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
 
 /**
  * v1.0 数据格式
@@ -22,6 +25,8 @@ import java.nio.ByteOrder;
  *  ?B plaintextData 明文数据（可变长度，最少1B，最大2GB）
  *  8B hashCode 数据签名
  *
+ *  v1.1 起，reserved 的最低位为压缩标志：plaintextData 为压缩数据（SafeCompressor 格式），plaintextLength 与签名按压缩数据计算
+ *
  * @author Hansen
  * @date 2020-11-01
  */
@@ -30,12 +35,26 @@ public class v01SafeData extends SafeData {
 	public static final ByteOrder ENDIAN = ByteOrder.BIG_ENDIAN;
 	public static final int PLAINTEXT_HEAD_LENGTH = 6;
 	public static final int TOTAL_HEAD_LENGTH = 32;
+	/** 密文存储的固定字段长度（reserved, encryptTime, randomCode, plaintextLength） **/
+	public static final int BODY_HEAD_LENGTH = 18;
+	/** 数据签名长度 **/
+	public static final int HASH_CODE_LENGTH = 8;
+	/** 保留字段的压缩标志 **/
+	public static final long RESERVED_COMPRESSED = 1L;
+	/** 支持压缩的最小次要版本号 **/
+	public static final int COMPRESS_MINOR_VERSION = 1;
 
 
 	private static final long MASK_6_BYTE = 0xFFFFFFFFFFFFL;
 	private static final long MASK_4_BYTE = 0xFFFFFFFFL;
 	private static final long MASK_2_BYTE = 0xFFFFL;
 	private static final long MASK_1_BYTE = 0xFFL;
+	/** 明文摘要按8字节整数计算（低字节在前） **/
+	private static final int WORD_LENGTH = 8;
+	private static final ByteOrder WORD_ENDIAN = ByteOrder.LITTLE_ENDIAN;
+
+	/** 明文数据尚未计入摘要（加密时在复制或送入密码器的同一遍计入） **/
+	private boolean plaintextHashPending = false;
 
 	private v01SafeData() {}
 
@@ -63,8 +82,115 @@ public class v01SafeData extends SafeData {
 		return safeData;
 	}
 
+	/**
+	 * 创建待加密的数据对象（明文数据另行读取，摘要只含明文数据以外的字段）
+	 * @param encryptor 加密器
+	 * @param length 明文数据的长度
+	 * @param keyId 密钥ID
+	 * @param mappingId 字节映射表ID
+	 * @return 数据对象（plaintextData 为 null）
+	 */
+	static v01SafeData newInstance(SafeEncryptor encryptor, int length, int keyId, int mappingId) {
+		v01SafeData safeData = newInstance(encryptor, null, keyId, mappingId);
+		safeData.plaintextLength = length;
+		safeData.hashCode = safeData.generateHashCode();
+		return safeData;
+	}
+
+	/**
+	 * 创建待加密的数据对象（明文数据在加密时复制或送入密码器的同一遍计入摘要，不单独遍历）
+	 *   摘要在加密完成前只含明文数据以外的字段，不得对外提供
+	 * @param encryptor 加密器
+	 * @param data 明文数据（只加密数组的指定范围时为null）
+	 * @param length 明文数据的长度
+	 * @param keyId 密钥ID
+	 * @param mappingId 字节映射表ID
+	 * @return 数据对象
+	 */
+	static v01SafeData newDeferredInstance(SafeEncryptor encryptor, byte[] data, int length, int keyId, int mappingId) {
+		v01SafeData safeData = newInstance(encryptor, length, keyId, mappingId);
+		safeData.plaintextData = data;
+		safeData.plaintextHashPending = true;
+		return safeData;
+	}
+
+	/**
+	 * 创建待加密的压缩数据对象（保留字段带压缩标志，压缩数据在加密时计入摘要）
+	 * @param encryptor 加密器（次要版本号为 COMPRESS_MINOR_VERSION）
+	 * @param data 压缩数据（只加密数组的开头部分时为null）
+	 * @param length 压缩数据的长度
+	 * @param keyId 密钥ID
+	 * @param mappingId 字节映射表ID
+	 * @return 数据对象
+	 */
+	static v01SafeData newCompressedInstance(SafeEncryptor encryptor, byte[] data, int length, int keyId, int mappingId) {
+		v01SafeData safeData = newInstance(encryptor, null, keyId, mappingId);
+		safeData.reserved = RESERVED_COMPRESSED;
+		safeData.plaintextLength = length;
+		safeData.hashCode = safeData.generateHashCode();
+		safeData.plaintextData = data;
+		safeData.plaintextHashPending = true;
+		return safeData;
+	}
+
+	/**
+	 * 次要版本号允许的保留字段标志
+	 * @param minorVersion 次要版本号
+	 * @return 允许的标志位（v1.0 为0）
+	 */
+	static long allowedReserved(int minorVersion) {
+		return minorVersion == COMPRESS_MINOR_VERSION ? RESERVED_COMPRESSED : 0L;
+	}
+
+	/**
+	 * 明文数据是否为压缩数据
+	 * @return 保留字段带压缩标志返回 true
+	 */
+	public boolean isCompressed() {
+		return (reserved & RESERVED_COMPRESSED) != 0;
+	}
+
+	/**
+	 * 明文数据是否尚未计入摘要
+	 * @return 尚未计入返回 true
+	 */
+	boolean isPlaintextHashPending() {
+		return plaintextHashPending;
+	}
+
+	/**
+	 * 将加密时计算的明文摘要合并到数据签名
+	 * @param plaintextHash 明文数据的摘要（初始值为0）
+	 */
+	void completePlaintextHash(long plaintextHash) {
+		if(plaintextHashPending) {
+			hashCode ^= plaintextHash;
+			plaintextHashPending = false;
+		}
+	}
+
 	@Override
 	public boolean silentCheck() {
+		if(silentCheckHead() == false) {
+			return false;
+		}
+		if(plaintextData == null || plaintextData.length == 0) {
+			errorCode = 20101106;
+			errorMessage = "plaintext is empty";
+			return false;
+		} else if(plaintextLength != plaintextData.length) {
+			errorCode = 20101107;
+			errorMessage = "data length is not equal";
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 检查明文数据以外的字段
+	 * @return 检查通过返回 true，否则返回 false
+	 */
+	protected boolean silentCheckHead() {
 		if(super.silentCheckFront() == false) {
 			return false;
 		}
@@ -84,24 +210,11 @@ public class v01SafeData extends SafeData {
 			errorCode = 20101104;
 			errorMessage = "randomCode not in valid scope";
 			return false;
-		} else if(reserved != 0) {
-			errorCode = 20101105;
-			errorMessage = "reserved is not 0";
-			return false;
-		} else if(reserved != 0) {
+		} else if((reserved & ~allowedReserved(minorVersion)) != 0) {
 			errorCode = 20101105;
 			errorMessage = "reserved is not 0";
 			return false;
-		} else if(plaintextData == null || plaintextData.length == 0) {
-			errorCode = 20101106;
-			errorMessage = "plaintext is empty";
-			return false;
-		} else if(plaintextLength != plaintextData.length) {
-			errorCode = 20101107;
-			errorMessage = "data length is not equal";
-			return false;
 		}
-
 		return true;
 	}
 
@@ -111,13 +224,9 @@ public class v01SafeData extends SafeData {
 	 */
 	@Override
 	public byte[] mergeEncryptHead() {
-		byte[] bts = new byte[6];
+		byte[] bts = new byte[PLAINTEXT_HEAD_LENGTH];
 		ByteBuffer buff = ByteBuffer.wrap(bts);
-		buff.order(ENDIAN);
-		writeVersion(buff); //主次版本号，2字节
-		buff.put((byte) byteMappingId);
-		buff.put((byte) (secretKeyId >>> 16));
-		buff.putShort((short) (secretKeyId & MASK_2_BYTE));
+		writeEncryptHead(buff);
 		return bts;
 	}
 
@@ -127,30 +236,105 @@ public class v01SafeData extends SafeData {
 	 */
 	@Override
 	public byte[] mergeEncryptBody() {
-		byte[] bts = new byte[26 + plaintextLength];
-		ByteBuffer buff = ByteBuffer.wrap(bts);
-		buff.order(ENDIAN);
-		buff.putInt((int)reserved);
-		buff.putShort((short) (encryptTime >>> 32));
-		buff.putInt((int) (encryptTime & MASK_4_BYTE));
-		buff.putInt((int) randomCode);
-		buff.putInt(plaintextLength);
-		buff.put(plaintextData);
-		buff.putLong(hashCode);
-		//校验字节数组末尾的数据签名（hashCode）
-		long signedCode = SafeMathUtils.parseLongAsBigEndian(bts, bts.length - 8, 8);
-		if(hashCode != signedCode) {
-			throw new RuntimeException("[SafeData] plaintext byte array merge error.");
+		byte[] bts = new byte[BODY_HEAD_LENGTH + plaintextLength + HASH_CODE_LENGTH];
+		writeEncryptBodyHead(bts, 0);
+		if(plaintextHashPending) {
+			completePlaintextHash(copyAndHashPlaintext(0, plaintextData, 0, bts, BODY_HEAD_LENGTH, plaintextLength, 0));
+		} else {
+			System.arraycopy(plaintextData, 0, bts, BODY_HEAD_LENGTH, plaintextLength);
 		}
+		writeHashCode(bts, BODY_HEAD_LENGTH + plaintextLength);
 		return bts;
 	}
 
+	/**
+	 * 写入PKCS5填充后的密文数据源（固定字段、明文数据、数据签名、填充字节）
+	 * @param bts 字节数组
+	 * @param offset 写入位置
+	 * @return 写入的字节数（16字节对齐）
+	 */
+	protected int writePaddedEncryptBody(byte[] bts, int offset) {
+		return writePaddedEncryptBody(bts, offset, plaintextData, 0);
+	}
+
+	/**
+	 * 写入PKCS5填充后的密文数据源（明文数据从指定数组读取）
+	 * @param bts 字节数组
+	 * @param offset 写入位置
+	 * @param src 明文数据
+	 * @param srcOffset 明文数据的偏移量（长度为 plaintextLength）
+	 * @return 写入的字节数（16字节对齐）
+	 */
+	protected int writePaddedEncryptBody(byte[] bts, int offset, byte[] src, int srcOffset) {
+		int bodyLength = BODY_HEAD_LENGTH + plaintextLength + HASH_CODE_LENGTH;
+		int paddedLength = SafeAES.getPaddedLength(bodyLength);
+		writeEncryptBodyHead(bts, offset);
+		if(plaintextHashPending) {
+			completePlaintextHash(copyAndHashPlaintext(0, src, srcOffset, bts, offset + BODY_HEAD_LENGTH, plaintextLength, 0));
+		} else {
+			System.arraycopy(src, srcOffset, bts, offset + BODY_HEAD_LENGTH, plaintextLength);
+		}
+		writeHashCode(bts, offset + BODY_HEAD_LENGTH + plaintextLength);
+		byte padding = (byte) (paddedLength - bodyLength);
+		for(int i=offset+bodyLength; i<offset+paddedLength; i++) {
+			bts[i] = padding;
+		}
+		return paddedLength;
+	}
+
+	/**
+	 * 写入明文存储的头部字段（6字节）
+	 * @param buff ByteBuffer对象（从当前位置写入）
+	 */
+	protected void writeEncryptHead(ByteBuffer buff) {
+		writeVersion(buff); //主次版本号，2字节
+		buff.put((byte) byteMappingId);
+		buff.put((byte) (secretKeyId >>> 16));
+		buff.put((byte) (secretKeyId >>> 8));
+		buff.put((byte) secretKeyId);
+	}
+
+	/**
+	 * 写入密文存储的固定字段（18字节，高字节在前）
+	 * @param bts 字节数组
+	 * @param offset 写入位置
+	 */
+	protected void writeEncryptBodyHead(byte[] bts, int offset) {
+		SafeMathUtils.writeLongAsBigEndian(bts, offset, reserved, 4);
+		SafeMathUtils.writeLongAsBigEndian(bts, offset + 4, encryptTime, 6);
+		SafeMathUtils.writeLongAsBigEndian(bts, offset + 10, randomCode, 4);
+		SafeMathUtils.writeLongAsBigEndian(bts, offset + 14, plaintextLength, 4);
+	}
+
+	/**
+	 * 写入数据签名（8字节，高字节在前）
+	 * @param bts 字节数组
+	 * @param offset 写入位置
+	 */
+	protected void writeHashCode(byte[] bts, int offset) {
+		SafeMathUtils.writeLongAsBigEndian(bts, offset, hashCode, HASH_CODE_LENGTH);
+	}
+
 	/**
 	 * 计算全部字段，生成摘要
 	 * @return 8字节long型数（包含负数）
 	 */
 	@Override
 	public long generateHashCode() {
+		long code = hashFields(majorVersion, minorVersion, byteMappingId, secretKeyId,
+				reserved, encryptTime, randomCode, plaintextLength);
+		if(plaintextData != null) {
+			code = hashPlaintext(code, plaintextData, 0, plaintextData.length, 0);
+		}
+		return code;
+	}
+
+	/**
+	 * 计算明文数据以外字段的摘要
+	 * @return 8字节long型数（包含负数）
+	 */
+	public static long hashFields(int majorVersion, int minorVersion, int byteMappingId, int secretKeyId,
+								  long reserved, long encryptTime, long randomCode, int plaintextLength) {
 		long code = 0;
 		code ^= ((long)majorVersion) << 56;
 		code ^= ((long)minorVersion) << 48;
@@ -161,28 +345,125 @@ public class v01SafeData extends SafeData {
 		code ^= randomCode << 32;
 		code ^= randomCode;
 		code ^= plaintextLength;
-		if(plaintextData != null) {
-			int k = 0;
-			for(byte b : plaintextData) {
-				long num = ((long) b) & 0xFF;
-				if(k >= 64) {
-					k = 0;
-				}
-				if(k > 0) {
-					num <<= k;
-				}
-				k += 8;
-				code ^= num;
+		return code;
+	}
+
+	/**
+	 * 将明文数据计入摘要（可分段计算，各段结果依次传入）
+	 *   第 n 个字节左移 (n % 8) * 8 位后异或，即按小字节序读出的8字节整数依次异或
+	 *   对齐到8字节边界后每次处理8字节，结果与逐字节计算完全一致
+	 * @param code 已计算的摘要
+	 * @param data 明文数据
+	 * @param offset 明文数据的偏移量
+	 * @param length 明文数据的长度
+	 * @param index data[offset] 在完整明文数据中的位置
+	 * @return 8字节long型数（包含负数）
+	 */
+	public static long hashPlaintext(long code, byte[] data, int offset, int length, int index) {
+		int end = offset + length;
+		int i = offset;
+		//逐字节处理到8字节边界
+		for(int k=(index&7)*8; k!=0 && i<end; k=(k+8)&63) {
+			code ^= (data[i++] & MASK_1_BYTE) << k;
+		}
+		if(end - i >= WORD_LENGTH) {
+			ByteBuffer words = ByteBuffer.wrap(data).order(WORD_ENDIAN);
+			long word = 0;
+			for(; i<=end-WORD_LENGTH; i+=WORD_LENGTH) {
+				word ^= words.getLong(i);
 			}
+			code ^= word;
+		}
+		for(int k=0; i<end; i++, k+=8) {
+			code ^= (data[i] & MASK_1_BYTE) << k;
 		}
 		return code;
 	}
 
+	/**
+	 * 复制明文数据，同时计入摘要（明文只遍历一次）
+	 * @param code 已计算的摘要
+	 * @param src 明文数据
+	 * @param srcOffset 明文数据的偏移量
+	 * @param dst 目标数组
+	 * @param dstOffset 目标数组的写入位置
+	 * @param length 明文数据的长度
+	 * @param index src[srcOffset] 在完整明文数据中的位置
+	 * @return 8字节long型数（包含负数）
+	 */
+	public static long copyAndHashPlaintext(long code, byte[] src, int srcOffset, byte[] dst, int dstOffset,
+											int length, int index) {
+		int end = srcOffset + length;
+		int i = srcOffset;
+		int j = dstOffset;
+		for(int k=(index&7)*8; k!=0 && i<end; k=(k+8)&63) {
+			byte b = src[i++];
+			dst[j++] = b;
+			code ^= (b & MASK_1_BYTE) << k;
+		}
+		if(end - i >= WORD_LENGTH) {
+			ByteBuffer srcWords = ByteBuffer.wrap(src).order(WORD_ENDIAN);
+			ByteBuffer dstWords = ByteBuffer.wrap(dst).order(WORD_ENDIAN);
+			long word = 0;
+			for(; i<=end-WORD_LENGTH; i+=WORD_LENGTH, j+=WORD_LENGTH) {
+				long num = srcWords.getLong(i);
+				dstWords.putLong(j, num);
+				word ^= num;
+			}
+			code ^= word;
+		}
+		for(int k=0; i<end; i++, j++, k+=8) {
+			byte b = src[i];
+			dst[j] = b;
+			code ^= (b & MASK_1_BYTE) << k;
+		}
+		return code;
+	}
+
+	/**
+	 * 将 ByteBuffer 中的明文数据计入摘要（从 position 到 limit，不改变 position）
+	 * @param code 已计算的摘要
+	 * @param data 明文数据
+	 * @param index data.position() 在完整明文数据中的位置
+	 * @return 8字节long型数（包含负数）
+	 */
+	public static long hashPlaintext(long code, ByteBuffer data, int index) {
+		if(data.hasArray()) {
+			return hashPlaintext(code, data.array(), data.arrayOffset() + data.position(), data.remaining(), index);
+		}
+		int end = data.limit();
+		int i = data.position();
+		for(int k=(index&7)*8; k!=0 && i<end; k=(k+8)&63) {
+			code ^= (data.get(i++) & MASK_1_BYTE) << k;
+		}
+		if(end - i >= WORD_LENGTH) {
+			ByteBuffer words = data.duplicate().order(WORD_ENDIAN);
+			long word = 0;
+			for(; i<=end-WORD_LENGTH; i+=WORD_LENGTH) {
+				word ^= words.getLong(i);
+			}
+			code ^= word;
+		}
+		for(int k=0; i<end; i++, k+=8) {
+			code ^= (data.get(i) & MASK_1_BYTE) << k;
+		}
+		return code;
+	}
+
+	/**
+	 * 加载密文的头部字段（偏移量为0）
+	 * @deprecated 改用 loadEncryptedHead(byte[], int)，保留供子类兼容
+	 */
+	@Deprecated
 	protected boolean loadEncryptedHead(byte[] data) {
-		int theMajorVersion = SafeMathUtils.parseIntAsBigEndian(data, 0, 1);
-		int theMinorVersion = SafeMathUtils.parseIntAsBigEndian(data, 1, 1);
-		this.byteMappingId = SafeMathUtils.parseIntAsBigEndian(data, 2, 1);
-		this.secretKeyId = SafeMathUtils.parseIntAsBigEndian(data, 3, 3);
+		return loadEncryptedHead(data, 0);
+	}
+
+	protected boolean loadEncryptedHead(byte[] data, int offset) {
+		int theMajorVersion = SafeMathUtils.parseIntAsBigEndian(data, offset, 1);
+		int theMinorVersion = SafeMathUtils.parseIntAsBigEndian(data, offset + 1, 1);
+		this.byteMappingId = SafeMathUtils.parseIntAsBigEndian(data, offset + 2, 1);
+		this.secretKeyId = SafeMathUtils.parseIntAsBigEndian(data, offset + 3, 3);
 		if(theMajorVersion != this.majorVersion || theMinorVersion != this.minorVersion) {
 			this.errorCode = 20101131;
 			this.errorMessage = "SafeData version and data version is not equal";
@@ -190,21 +471,85 @@ public class v01SafeData extends SafeData {
 		return (this.errorCode == 0);
 	}
 
+	/**
+	 * 加载解密出的固定字段（18字节），检查明文长度与密文长度是否匹配（不加载明文数据，不校验签名）
+	 * @param bts 解密后的数据
+	 * @param offset 固定字段的偏移量
+	 * @param bodyLength 密文数据体的长度
+	 * @return 检查通过返回 true
+	 */
+	boolean loadBodyHead(byte[] bts, int offset, int bodyLength) {
+		reserved = SafeMathUtils.parseIntAsBigEndian(bts, offset, 4);
+		encryptTime = SafeMathUtils.parseLongAsBigEndian(bts, offset + 4, 6);
+		randomCode = SafeMathUtils.parseLongAsBigEndian(bts, offset + 10, 4);
+		plaintextLength = SafeMathUtils.parseIntAsBigEndian(bts, offset + 14, 4);
+		if((reserved & ~allowedReserved(minorVersion)) != 0) {
+			return setDataError(20101105, "reserved is not 0");
+		}
+		if(plaintextLength <= 0 || plaintextLength > bodyLength
+				|| SafeAES.getPaddedLength(BODY_HEAD_LENGTH + plaintextLength + HASH_CODE_LENGTH) != bodyLength) {
+			return setDataError(20101135, "plaintextLength is not match encrypted data length");
+		}
+		return true;
+	}
+
+	/**
+	 * 加载解密出的数据体（固定字段、明文数据与签名，压缩数据解压为原文，不校验签名）
+	 * @deprecated 解密流程改由 v01BodyDecoder 分段处理，不再调用此方法，保留供子类兼容
+	 */
+	@Deprecated
 	protected boolean loadDecryptedBody(byte[] bodyBts) {
 		try {
 			reserved = SafeMathUtils.parseIntAsBigEndian(bodyBts, 0, 4);
 			encryptTime = SafeMathUtils.parseLongAsBigEndian(bodyBts, 4, 6);
 			randomCode = SafeMathUtils.parseLongAsBigEndian(bodyBts, 10, 4);
 			plaintextLength = SafeMathUtils.parseIntAsBigEndian(bodyBts, 14, 4);
-			if(plaintextLength > bodyBts.length) {
+			if((reserved & ~allowedReserved(minorVersion)) != 0) {
+				return setDataError(20101105, "reserved is not 0");
+			}
+			if(plaintextLength < 0 || plaintextLength > bodyBts.length) {
 				return setDataError(20101135, "plaintextLength is greater than plaintextData length");
 			}
 			plaintextData = new byte[plaintextLength];
-			System.arraycopy(bodyBts, 18, plaintextData, 0, plaintextLength);
-			hashCode = SafeMathUtils.parseLongAsBigEndian(bodyBts, 18 + plaintextLength, 8);
+			System.arraycopy(bodyBts, BODY_HEAD_LENGTH, plaintextData, 0, plaintextLength);
+			hashCode = SafeMathUtils.parseLongAsBigEndian(bodyBts, BODY_HEAD_LENGTH + plaintextLength, HASH_CODE_LENGTH);
 		} catch(IndexOutOfBoundsException e) {
 			return setDataError(20101136, "IndexOutOfBoundsException");
 		}
+		if(isCompressed()) {
+			try {
+				plaintextData = SafeCompressor.decompress(plaintextData, 0, plaintextLength);
+			} catch (DataFormatException e) {
+				return setDataError(20101138, "compressed data is not valid: " + e.getMessage());
+			}
+			plaintextLength = plaintextData.length;
+		}
+		return (this.errorCode == 0);
+	}
+
+	/**
+	 * 加载分段解密器解出的字段与明文数据（压缩数据解压为原文，签名仍为压缩数据的签名）
+	 * @param decoder 已完成解密的解密器
+	 * @return 解密器无错误，且解压成功返回 true
+	 */
+	boolean loadDecryptedBody(v01BodyDecoder decoder) {
+		reserved = decoder.reserved;
+		encryptTime = decoder.encryptTime;
+		randomCode = decoder.randomCode;
+		plaintextLength = decoder.plaintextLength;
+		plaintextData = decoder.plaintextData;
+		hashCode = decoder.hashCode;
+		if(decoder.errorCode != 0) {
+			return setDataError(decoder.errorCode, decoder.errorMessage);
+		}
+		if(isCompressed() && plaintextData != null) {
+			try {
+				plaintextData = SafeCompressor.decompress(plaintextData, 0, plaintextLength);
+			} catch (DataFormatException e) {
+				return setDataError(20101138, "compressed data is not valid: " + e.getMessage());
+			}
+			plaintextLength = plaintextData.length;
+		}
 		return (this.errorCode == 0);
 	}
 
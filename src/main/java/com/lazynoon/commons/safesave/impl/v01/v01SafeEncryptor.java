@@ -2,9 +2,29 @@ package com.lazynoon.commons.safesave.impl.v01;
 
 import com.lazynoon.commons.safesave.SafeCryptoException;
 import com.lazynoon.commons.safesave.SafeData;
+import com.lazynoon.commons.safesave.SafeDataRange;
 import com.lazynoon.commons.safesave.SafeEncryptor;
+import com.lazynoon.commons.safesave.SafeVerifyResult;
 import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.crypto.SafeParallelBlocks;
+import com.lazynoon.commons.safesave.crypto.SafeRemapUtils;
 import com.lazynoon.commons.safesave.utils.SafeByteUtils;
+import com.lazynoon.commons.safesave.utils.SafeCompressor;
+import com.lazynoon.commons.safesave.utils.SafeMathUtils;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.DataFormatException;
 
 /**
  * v1.0 加密解密处理类
@@ -14,6 +34,14 @@ import com.lazynoon.commons.safesave.utils.SafeByteUtils;
  */
 public class v01SafeEncryptor extends SafeEncryptor {
 	public static final int MAJOR_VERSION = 1;
+	/** 批量加解密时，单次 doFinal 合并处理的最大数据量（字节） **/
+	private static final int BATCH_BUFFER_SIZE = 256 * 1024;
+	/** 加密时计算摘要与送入密码器交替进行的分段长度（分段保留在CPU缓存中） **/
+	private static final int HASH_CHUNK_SIZE = 16 * 1024;
+	/** 文件加解密时，每个映射窗口的长度（字节） **/
+	public static final int FILE_WINDOW_SIZE = 16 * 1024 * 1024;
+	/** 明文数据的最大长度（明文长度字段为4字节，密文长度不超过 Integer.MAX_VALUE） **/
+	public static final int MAX_PLAINTEXT_LENGTH = Integer.MAX_VALUE - 64;
 
 	public v01SafeEncryptor() {}
 
@@ -22,9 +50,59 @@ public class v01SafeEncryptor extends SafeEncryptor {
 		return MAJOR_VERSION;
 	}
 
+	/**
+	 * 加密字节数组（v1.1 起，值得压缩的明文先压缩再加密）
+	 */
 	@Override
 	public byte[] encrypt(byte[] data, int keyId, int mappingId) throws SafeCryptoException {
-		return encrypt(v01SafeData.newInstance(this, data, keyId, mappingId));
+		if(isCompressEnabled() && data != null) {
+			SafeCompressor compressor = SafeCompressor.borrow();
+			try {
+				int size = compressor.compress(data, 0, data.length);
+				if(size > 0) {
+					v01SafeData safeData = newCompressedData(size, keyId, mappingId);
+					byte[] result = new byte[encryptedLength(size)];
+					encryptTo(safeData, compressor.getBuffer(), 0, ByteBuffer.wrap(result));
+					return result;
+				}
+			} finally {
+				SafeCompressor.release(compressor);
+			}
+		}
+		return encrypt(v01SafeData.newDeferredInstance(this, data, data == null ? 0 : data.length, keyId, mappingId));
+	}
+
+	/**
+	 * 已定义的次要版本号：v1.0（不压缩）、v1.1（压缩后加密）
+	 */
+	@Override
+	public boolean isMinorVersionSupported(int minorVersion) {
+		return minorVersion <= v01SafeData.COMPRESS_MINOR_VERSION;
+	}
+
+	/**
+	 * 是否压缩后加密（次要版本号为 v01SafeData.COMPRESS_MINOR_VERSION）
+	 * @return 压缩返回 true
+	 */
+	public boolean isCompressEnabled() {
+		return minorVersion == v01SafeData.COMPRESS_MINOR_VERSION;
+	}
+
+	/**
+	 * 创建并检查待加密的压缩数据对象（压缩数据另行提供）
+	 */
+	private v01SafeData newCompressedData(int length, int keyId, int mappingId) throws SafeCryptoException {
+		v01SafeData safeData = v01SafeData.newCompressedInstance(this, null, length, keyId, mappingId);
+		if(safeData.silentCheckHead() == false) {
+			throw new SafeCryptoException(safeData.getErrorCode(), safeData.getErrorMessage());
+		}
+		return safeData;
+	}
+
+	@Override
+	public int encryptedLength(int plaintextLength) {
+		int bodyLength = v01SafeData.BODY_HEAD_LENGTH + plaintextLength + v01SafeData.HASH_CODE_LENGTH;
+		return v01SafeData.PLAINTEXT_HEAD_LENGTH + SafeAES.getPaddedLength(bodyLength);
 	}
 
 	@Override
@@ -35,8 +113,53 @@ public class v01SafeEncryptor extends SafeEncryptor {
 		if(silentCheckData(data) == false) {
 			throw new SafeCryptoException(data.getErrorCode(), data.getErrorMessage());
 		}
-		byte[] key = getSecretKey(data.getSecretKeyId());
-		if(key == null) {
+		if(!(data instanceof v01SafeData)) {
+			throw new SafeCryptoException(20101505, "SafeData is not v01SafeData");
+		}
+		byte[] result = new byte[encryptedLength(data.getPlaintextLength())];
+		encryptTo((v01SafeData) data, data.getPlaintextData(), 0, ByteBuffer.wrap(result));
+		return result;
+	}
+
+	@Override
+	public int encrypt(byte[] src, int offset, int length, int keyId, int mappingId, ByteBuffer dst) throws SafeCryptoException {
+		if(src == null || length <= 0) {
+			throw new SafeCryptoException(20101106, "plaintext is empty");
+		}
+		if(offset < 0 || offset + length > src.length) {
+			throw new SafeCryptoException(20101506, "plaintext offset out of bounds. offset: " + offset);
+		}
+		if(isCompressEnabled()) {
+			SafeCompressor compressor = SafeCompressor.borrow();
+			try {
+				int size = compressor.compress(src, offset, length);
+				if(size > 0) {
+					return encryptTo(newCompressedData(size, keyId, mappingId), compressor.getBuffer(), 0, dst);
+				}
+			} finally {
+				SafeCompressor.release(compressor);
+			}
+		}
+		v01SafeData safeData = v01SafeData.newDeferredInstance(this, null, length, keyId, mappingId);
+		if(safeData.silentCheckHead() == false) {
+			throw new SafeCryptoException(safeData.getErrorCode(), safeData.getErrorMessage());
+		}
+		return encryptTo(safeData, src, offset, dst);
+	}
+
+	/**
+	 * 加密数据对象，密文直接写入缓冲区
+	 *   头部字段、明文数据、数据签名依次送入密码器，字节映射在缓冲区内原地转换
+	 * @param data 数据对象（明文数据以外的字段，须已检查）
+	 * @param src 明文数据
+	 * @param offset 明文数据的偏移量（长度为 data.getPlaintextLength()）
+	 * @param dst 密文写入的缓冲区（从当前位置写入）
+	 * @return 写入的密文字节数
+	 * @throws SafeCryptoException 加密异常
+	 */
+	private int encryptTo(v01SafeData data, byte[] src, int offset, ByteBuffer dst) throws SafeCryptoException {
+		SafeAES aes = getCipherEngine(data.getSecretKeyId());
+		if(aes == null) {
 			throw new SafeCryptoException(20101501, "Key not found. keyId is "+data.getSecretKeyId());
 		}
 		byte[] byteMapping = null;
@@ -46,35 +169,131 @@ public class v01SafeEncryptor extends SafeEncryptor {
 				throw new SafeCryptoException(20101502, "Byte Mapping not found. mappingId is "+data.getByteMappingId());
 			}
 		}
-		byte[] headBts = data.mergeEncryptHead();
-		byte[] bodyBts = data.mergeEncryptBody();
-		SafeAES aes = new SafeAES(key);
+		int length = data.getPlaintextLength();
+		int totalLength = encryptedLength(length);
+		if(dst.remaining() < totalLength) {
+			throw new SafeCryptoException(20101504, "buffer remaining is less than " + totalLength);
+		}
+		if(dst.hasArray() && SafeParallelBlocks.isParallel(totalLength)) {
+			return encryptParallel(aes, byteMapping, data, src, offset, dst, totalLength);
+		}
+		int startPosition = dst.position();
+		data.writeEncryptHead(dst);
+		//头部字段（18字节）与数据签名（8字节）共用一个字节数组
+		byte[] fieldBts = new byte[v01SafeData.BODY_HEAD_LENGTH + v01SafeData.HASH_CODE_LENGTH];
+		data.writeEncryptBodyHead(fieldBts, 0);
+		int generation = aes.getCipherGeneration();
+		Cipher cipher = aes.borrowCipher(Cipher.ENCRYPT_MODE);
+		try {
+			cipher.update(ByteBuffer.wrap(fieldBts, 0, v01SafeData.BODY_HEAD_LENGTH), dst);
+			if(data.isPlaintextHashPending()) {
+				//按分段计算摘要后立即送入密码器，明文只从内存读取一次
+				long code = 0;
+				for(int pos=0; pos<length; pos+=HASH_CHUNK_SIZE) {
+					int size = Math.min(HASH_CHUNK_SIZE, length - pos);
+					code = v01SafeData.hashPlaintext(code, src, offset + pos, size, pos);
+					cipher.update(ByteBuffer.wrap(src, offset + pos, size), dst);
+				}
+				data.completePlaintextHash(code);
+			} else {
+				cipher.update(ByteBuffer.wrap(src, offset, length), dst);
+			}
+			data.writeHashCode(fieldBts, v01SafeData.BODY_HEAD_LENGTH);
+			cipher.doFinal(ByteBuffer.wrap(fieldBts, v01SafeData.BODY_HEAD_LENGTH, v01SafeData.HASH_CODE_LENGTH), dst);
+		} catch (GeneralSecurityException e) {
+			throw new SafeCryptoException(20101503, e.toString());
+		}
+		aes.releaseCipher(Cipher.ENCRYPT_MODE, cipher, generation);
+		if(byteMapping != null) {
+			int bodyPosition = startPosition + v01SafeData.PLAINTEXT_HEAD_LENGTH;
+			SafeByteUtils.convertMapping(dst, bodyPosition, totalLength - v01SafeData.PLAINTEXT_HEAD_LENGTH, byteMapping);
+		}
+		return totalLength;
+	}
+
+	/**
+	 * 大数据多线程加密：数据体填充后直接写入缓冲区的底层数组，按分段并行加密与字节映射
+	 * @param aes AES加密引擎
+	 * @param byteMapping 加密用的字节映射表（为null则不转换）
+	 * @param data 数据对象
+	 * @param src 明文数据
+	 * @param offset 明文数据的偏移量
+	 * @param dst 密文写入的缓冲区（须有底层数组）
+	 * @param totalLength 密文总长度
+	 * @return 写入的密文字节数
+	 * @throws SafeCryptoException 加密异常
+	 */
+	private int encryptParallel(SafeAES aes, byte[] byteMapping, v01SafeData data, byte[] src, int offset,
+								ByteBuffer dst, int totalLength) throws SafeCryptoException {
+		int startPosition = dst.position();
+		data.writeEncryptHead(dst);
+		byte[] bts = dst.array();
+		int bodyOffset = dst.arrayOffset() + dst.position();
+		int bodyLength = data.writePaddedEncryptBody(bts, bodyOffset, src, offset);
 		try {
-			bodyBts = aes.encrypt(bodyBts);
+			SafeParallelBlocks.encrypt(aes, bts, bodyOffset, bodyLength, byteMapping);
 		} catch (SafeCryptoException e) {
 			throw new SafeCryptoException(20101503, e.getMessage());
 		}
-		if(byteMapping != null) {
-			bodyBts = SafeByteUtils.convertMapping(bodyBts, byteMapping);
+		dst.position(startPosition + totalLength);
+		return totalLength;
+	}
+
+	/**
+	 * 解密密文数据体：大数据按分段多线程解密后再解析，否则由解密器分段流式解密
+	 * @param decoder 解密器（已加载头部字段）
+	 * @param aes AES加密引擎
+	 * @param byteMapping 解密用的字节映射表（为null则不转换）
+	 * @param src 密文数据
+	 * @param offset 密文数据体的偏移量
+	 * @param length 密文数据体的长度
+	 * @param target 明文写入的缓冲区（可为null）
+	 * @param allocatePlaintext target为null时，是否创建明文数组
+	 * @return 解密成功返回 true，否则返回 false（错误码见 decoder.errorCode）
+	 */
+	private boolean decryptBody(v01BodyDecoder decoder, SafeAES aes, byte[] byteMapping, byte[] src, int offset,
+								int length, ByteBuffer target, boolean allocatePlaintext) {
+		if(length > v01BodyDecoder.CHUNK_SIZE) {
+			//超过一个解密分段时先预检，秘钥错误或损坏的密文不解密整条数据
+			int code = precheckBody(aes, byteMapping, src, offset, length);
+			if(code != 0) {
+				decoder.errorCode = code;
+				decoder.errorMessage = precheckMessage(code);
+				return false;
+			}
 		}
-		byte[] result = new byte[headBts.length + bodyBts.length];
-		System.arraycopy(headBts, 0, result, 0, headBts.length);
-		System.arraycopy(bodyBts, 0, result, headBts.length, bodyBts.length);
-		return result;
+		//多线程解密直接写入明文数组，须有数组可写（直接内存的缓冲区，或只校验不保存时，按分段解密）
+		boolean writable = (target == null) ? allocatePlaintext : target.hasArray();
+		if(!writable || !SafeParallelBlocks.isParallel(length) || length % SafeAES.BLOCK_SIZE != 0) {
+			return decoder.decrypt(aes, byteMapping, src, offset, length, target, allocatePlaintext);
+		}
+		return decoder.decryptParallel(aes, byteMapping, src, offset, length, target);
 	}
 
 	@Override
 	public SafeData silentDecrypt(byte[] data) {
+		return silentDecrypt(data, 0, data == null ? 0 : data.length);
+	}
+
+	/**
+	 * 以安静模式解密字节数组的指定范围（直接解密原数组，不复制密文）
+	 */
+	@Override
+	public SafeData silentDecrypt(byte[] data, int offset, int length) {
 		v01SafeData safeData = v01SafeData.newInstance(this);
-		if(data == null || data.length < v01SafeData.TOTAL_HEAD_LENGTH) {
+		if(data == null || length < v01SafeData.TOTAL_HEAD_LENGTH) {
 			safeData.setDataError(20101601, "Encrypted Data length is less than " + 32);
 			return safeData;
 		}
-		if(safeData.loadEncryptedHead(data) == false) {
+		if(offset < 0 || offset + length > data.length) {
+			safeData.setDataError(20101608, "offset or length is out of bounds");
 			return safeData;
 		}
-		byte[] key = getSecretKey(safeData.getSecretKeyId());
-		if(key == null) {
+		if(safeData.loadEncryptedHead(data, offset) == false) {
+			return safeData;
+		}
+		SafeAES aes = getCipherEngine(safeData.getSecretKeyId());
+		if(aes == null) {
 			safeData.setDataError(20101602, "Key not found. keyId is "+safeData.getSecretKeyId());
 			return safeData;
 		}
@@ -86,22 +305,631 @@ public class v01SafeEncryptor extends SafeEncryptor {
 				return safeData;
 			}
 		}
-		byte[] bodyBts = new byte[data.length-v01SafeData.PLAINTEXT_HEAD_LENGTH];
-		System.arraycopy(data, v01SafeData.PLAINTEXT_HEAD_LENGTH, bodyBts, 0, bodyBts.length);
+		v01BodyDecoder decoder = v01BodyDecoder.borrow();
+		try {
+			decoder.loadHead(data, offset);
+			decryptBody(decoder, aes, byteMapping, data, offset + v01SafeData.PLAINTEXT_HEAD_LENGTH,
+					length - v01SafeData.PLAINTEXT_HEAD_LENGTH, null, true);
+			if(safeData.loadDecryptedBody(decoder) == false) {
+				return safeData;
+			}
+		} finally {
+			v01BodyDecoder.release(decoder);
+		}
+		safeData.silentCheck();
+		return safeData;
+	}
+
+	/**
+	 * 更换字节映射表：头部之后的密文按合并后的映射表转换，末尾两个分组重新生成签名
+	 */
+	@Override
+	protected void remapBody(byte[] data, int offset, int length, RemapTables tables) throws SafeCryptoException {
+		int bodyLength = length - v01SafeData.PLAINTEXT_HEAD_LENGTH;
+		if(length < v01SafeData.TOTAL_HEAD_LENGTH || bodyLength % SafeAES.BLOCK_SIZE != 0) {
+			throw new SafeCryptoException(20101609, "encrypted body length is not valid. length: " + bodyLength);
+		}
+		int keyId = SafeMathUtils.parseIntAsBigEndian(data, offset + 3, 3);
+		SafeAES aes = getCipherEngine(keyId);
+		if(aes == null) {
+			throw new SafeCryptoException(20101602, "Key not found. keyId is " + keyId);
+		}
+		int end = offset + length;
+		byte[] tail = SafeRemapUtils.remapHashTail(aes, data, end, tables.decryptMapping, tables.encryptMapping,
+				tables.oldMappingId, tables.newMappingId, 20101604);
+		if(tables.composedMapping != null) {
+			SafeByteUtils.convertMapping(data, offset + v01SafeData.PLAINTEXT_HEAD_LENGTH, bodyLength - tail.length, tables.composedMapping);
+		}
+		System.arraycopy(tail, 0, data, end - tail.length, tail.length);
+	}
+
+	/**
+	 * 预检：只解密第一个分组，检查保留字段为0、明文长度的高2字节与密文长度相符
+	 *   秘钥错误或密文损坏时，第一个分组解密出的字段为随机值，绝大多数在此被拒绝
+	 */
+	@Override
+	public int precheck(byte[] data, int offset, int length) {
+		if(data == null || length < v01SafeData.PLAINTEXT_HEAD_LENGTH + v01SafeData.TOTAL_HEAD_LENGTH) {
+			return 20101601;
+		}
+		if(offset < 0 || offset + length > data.length) {
+			return 20101608;
+		}
+		if((data[offset] & 0xFF) != majorVersion || (data[offset + 1] & 0xFF) != minorVersion) {
+			return 20101131;
+		}
+		SafeAES aes = getCipherEngine(SafeMathUtils.parseIntAsBigEndian(data, offset + 3, 3));
+		if(aes == null) {
+			return 20101602;
+		}
+		byte[] byteMapping = null;
+		int mappingId = data[offset + 2] & 0xFF;
+		if(mappingId != 0) {
+			byteMapping = getDecryptByteMapping(mappingId);
+			if(byteMapping == null) {
+				return 20101603;
+			}
+		}
+		return precheckBody(aes, byteMapping, data, offset + v01SafeData.PLAINTEXT_HEAD_LENGTH,
+				length - v01SafeData.PLAINTEXT_HEAD_LENGTH);
+	}
+
+	/**
+	 * 解密密文数据体的第一个分组，检查保留字段（v1.1 起允许压缩标志）与明文长度的高2字节
+	 * @param aes AES加密引擎
+	 * @param byteMapping 解密用的字节映射表（为null则不转换）
+	 * @param data 密文数据
+	 * @param offset 密文数据体的偏移量
+	 * @param length 密文数据体的长度
+	 * @return 预检通过返回 0，否则返回错误码
+	 */
+	private int precheckBody(SafeAES aes, byte[] byteMapping, byte[] data, int offset, int length) {
+		if(length < v01SafeData.TOTAL_HEAD_LENGTH || length % SafeAES.BLOCK_SIZE != 0) {
+			return 20101604;
+		}
+		byte[] block;
+		try {
+			block = decryptBlocks(aes, byteMapping, data, offset, SafeAES.BLOCK_SIZE);
+		} catch (SafeCryptoException e) {
+			return 20101604;
+		}
+		if((SafeMathUtils.parseIntAsBigEndian(block, 0, 4) & ~v01SafeData.allowedReserved(minorVersion)) != 0) {
+			return 20101105;
+		}
+		//明文长度（第14~17字节）的取值范围由数据体长度决定，第一个分组含其高2字节
+		int minLength = Math.max(1, length - SafeAES.BLOCK_SIZE - v01SafeData.BODY_HEAD_LENGTH - v01SafeData.HASH_CODE_LENGTH);
+		int maxLength = length - 1 - v01SafeData.BODY_HEAD_LENGTH - v01SafeData.HASH_CODE_LENGTH;
+		int highBytes = SafeMathUtils.parseIntAsBigEndian(block, 14, 2);
+		if(highBytes < (minLength >>> 16) || highBytes > (maxLength >>> 16)) {
+			return 20101135;
+		}
+		return 0;
+	}
+
+	/**
+	 * 预检不通过的错误消息
+	 */
+	private static String precheckMessage(int code) {
+		if(code == 20101105) {
+			return "reserved is not 0";
+		} else if(code == 20101135) {
+			return "plaintextLength is not match encrypted data length";
+		}
+		return "CryptoException: encrypted body precheck failed";
+	}
+
+	/**
+	 * 按范围解密：ECB模式下明文的每个字节对应固定位置的密文分组
+	 *   只反向映射并解密前两个分组（固定字段，含明文长度）与覆盖范围的分组，不校验整条数据的签名
+	 *   范围覆盖全部明文，或明文为压缩数据（原文位置与密文分组无对应关系）时，完整解密并校验签名
+	 */
+	@Override
+	public SafeDataRange decryptRange(byte[] data, long from, int length) throws SafeCryptoException {
+		checkRange(from, length);
+		int minLength = v01SafeData.PLAINTEXT_HEAD_LENGTH + v01SafeData.TOTAL_HEAD_LENGTH;
+		if(data == null || data.length < minLength) {
+			throw new SafeCryptoException(20101601, "Encrypted Data length is less than " + minLength);
+		}
+		int bodyLength = data.length - v01SafeData.PLAINTEXT_HEAD_LENGTH;
+		if(bodyLength % SafeAES.BLOCK_SIZE != 0) {
+			throw new SafeCryptoException(20101604, "CryptoException: encrypted body length is not valid. length: " + bodyLength);
+		}
+		v01SafeData safeData = v01SafeData.newInstance(this);
+		if(safeData.loadEncryptedHead(data, 0) == false) {
+			throw new SafeCryptoException(safeData.getErrorCode(), safeData.getErrorMessage());
+		}
+		SafeAES aes = getCipherEngine(safeData.getSecretKeyId());
+		if(aes == null) {
+			throw new SafeCryptoException(20101602, "Key not found. keyId is "+safeData.getSecretKeyId());
+		}
+		byte[] byteMapping = null;
+		if(safeData.getByteMappingId() != 0) {
+			byteMapping = getDecryptByteMapping(safeData.getByteMappingId());
+			if(byteMapping == null) {
+				throw new SafeCryptoException(20101603, "Byte Mapping not found. mappingId is "+safeData.getByteMappingId());
+			}
+		}
+		byte[] head = decryptBlocks(aes, byteMapping, data, v01SafeData.PLAINTEXT_HEAD_LENGTH, v01SafeData.TOTAL_HEAD_LENGTH);
+		if(safeData.loadBodyHead(head, 0, bodyLength) == false) {
+			throw new SafeCryptoException(safeData.getErrorCode(), safeData.getErrorMessage());
+		}
+		if(safeData.isCompressed()) {
+			return sliceRange(decrypt(data), from, length);
+		}
+		int size = rangeLength(from, length, safeData.getPlaintextLength());
+		if(size == safeData.getPlaintextLength()) {
+			return sliceRange(decrypt(data), from, length);
+		}
+		byte[] result = new byte[size];
+		//范围在数据体中的位置，扩展到分组边界
+		int start = v01SafeData.BODY_HEAD_LENGTH + (int) from;
+		int end = start + size;
+		if(end <= head.length) {
+			System.arraycopy(head, start, result, 0, size);
+		} else if(size > 0) {
+			int blockStart = start - start % SafeAES.BLOCK_SIZE;
+			int blockEnd = SafeAES.getPaddedLength(end - 1);
+			byte[] blocks = decryptBlocks(aes, byteMapping, data, v01SafeData.PLAINTEXT_HEAD_LENGTH + blockStart, blockEnd - blockStart);
+			System.arraycopy(blocks, start - blockStart, result, 0, size);
+		}
+		return new SafeDataRange(safeData, from, result, false);
+	}
+
+	/**
+	 * 复制密文分组，反向字节映射后解密（不去除填充）
+	 */
+	private static byte[] decryptBlocks(SafeAES aes, byte[] byteMapping, byte[] data, int offset, int length) throws SafeCryptoException {
+		byte[] bts = new byte[length];
+		System.arraycopy(data, offset, bts, 0, length);
 		if(byteMapping != null) {
-			bodyBts = SafeByteUtils.convertMapping(bodyBts, byteMapping);
+			SafeByteUtils.convertMapping(bts, 0, length, byteMapping);
 		}
-		SafeAES aes = new SafeAES(key);
 		try {
-			bodyBts = aes.decrypt(bodyBts);
+			aes.decryptBlocks(bts, 0, length, bts, 0);
 		} catch (SafeCryptoException e) {
-			safeData.setDataError(20101604, "CryptoException: "+e.getMessage());
-			return safeData;
+			throw new SafeCryptoException(20101604, "CryptoException: " + e.getMessage());
 		}
-		if(safeData.loadDecryptedBody(bodyBts) == false) {
-			return safeData;
+		return bts;
+	}
+
+	/**
+	 * 解密到缓冲区；压缩数据（v1.1）先写入解压前的数据，再原位置解压
+	 *   缓冲区的剩余长度须不少于 decryptedLength 的返回值（原文长度），不足时返回 -20101605
+	 */
+	@Override
+	public int decryptInto(byte[] src, int offset, int length, ByteBuffer dst) {
+		if(src == null || length < v01SafeData.TOTAL_HEAD_LENGTH) {
+			return -20101601;
 		}
-		safeData.silentCheck();
-		return safeData;
+		if(offset < 0 || offset + length > src.length) {
+			return -20101606;
+		}
+		if((src[offset] & 0xFF) != majorVersion || (src[offset + 1] & 0xFF) != minorVersion) {
+			return -20101131;
+		}
+		v01BodyDecoder decoder = v01BodyDecoder.borrow();
+		try {
+			decoder.loadHead(src, offset);
+			SafeAES aes = getCipherEngine(decoder.secretKeyId);
+			if(aes == null) {
+				return -20101602;
+			}
+			byte[] byteMapping = null;
+			if(decoder.byteMappingId != 0) {
+				byteMapping = getDecryptByteMapping(decoder.byteMappingId);
+				if(byteMapping == null) {
+					return -20101603;
+				}
+			}
+			int startPosition = dst.position();
+			if(decryptBody(decoder, aes, byteMapping, src, offset + v01SafeData.PLAINTEXT_HEAD_LENGTH,
+					length - v01SafeData.PLAINTEXT_HEAD_LENGTH, dst, false) == false) {
+				dst.position(startPosition);
+				return -decoder.errorCode;
+			}
+			if((decoder.reserved & v01SafeData.RESERVED_COMPRESSED) != 0) {
+				return decompressInto(dst, startPosition, decoder.plaintextLength);
+			}
+			return decoder.plaintextLength;
+		} finally {
+			v01BodyDecoder.release(decoder);
+		}
+	}
+
+	/**
+	 * 查询明文长度：只解密前两个分组（固定字段与压缩数据头部），压缩数据返回原文长度
+	 */
+	@Override
+	public int decryptedLength(byte[] src, int offset, int length) {
+		if(src == null || length < v01SafeData.PLAINTEXT_HEAD_LENGTH + v01SafeData.TOTAL_HEAD_LENGTH) {
+			return -20101601;
+		}
+		if(offset < 0 || offset + length > src.length) {
+			return -20101606;
+		}
+		int bodyLength = length - v01SafeData.PLAINTEXT_HEAD_LENGTH;
+		if(bodyLength % SafeAES.BLOCK_SIZE != 0) {
+			return -20101604;
+		}
+		v01SafeData safeData = v01SafeData.newInstance(this);
+		if(safeData.loadEncryptedHead(src, offset) == false) {
+			return -safeData.getErrorCode();
+		}
+		SafeAES aes = getCipherEngine(safeData.getSecretKeyId());
+		if(aes == null) {
+			return -20101602;
+		}
+		byte[] byteMapping = null;
+		if(safeData.getByteMappingId() != 0) {
+			byteMapping = getDecryptByteMapping(safeData.getByteMappingId());
+			if(byteMapping == null) {
+				return -20101603;
+			}
+		}
+		byte[] head;
+		try {
+			head = decryptBlocks(aes, byteMapping, src, offset + v01SafeData.PLAINTEXT_HEAD_LENGTH, v01SafeData.TOTAL_HEAD_LENGTH);
+		} catch (SafeCryptoException e) {
+			return -e.getCode();
+		}
+		if(safeData.loadBodyHead(head, 0, bodyLength) == false) {
+			return -safeData.getErrorCode();
+		}
+		if(safeData.isCompressed() == false) {
+			return safeData.getPlaintextLength();
+		}
+		try {
+			return SafeCompressor.originalLength(head, v01SafeData.BODY_HEAD_LENGTH, safeData.getPlaintextLength());
+		} catch (DataFormatException e) {
+			return -20101138;
+		}
+	}
+
+	/**
+	 * 将缓冲区中已解密的压缩数据，原位置替换为解压后的原文
+	 * @param dst 明文缓冲区（position 在压缩数据之后）
+	 * @param startPosition 压缩数据的起始位置
+	 * @param length 压缩数据的长度
+	 * @return 成功返回原文长度，失败返回错误码的相反数（position 恢复为起始位置）
+	 */
+	private static int decompressInto(ByteBuffer dst, int startPosition, int length) {
+		byte[] compressed = new byte[length];
+		dst.position(startPosition);
+		dst.get(compressed);
+		dst.position(startPosition);
+		SafeCompressor compressor = SafeCompressor.borrow();
+		try {
+			int originalLength = SafeCompressor.originalLength(compressed, 0, length);
+			if(dst.remaining() < originalLength) {
+				return -20101605;
+			}
+			if(dst.hasArray()) {
+				compressor.decompress(compressed, 0, length, dst.array(), dst.arrayOffset() + startPosition);
+				dst.position(startPosition + originalLength);
+			} else {
+				byte[] data = new byte[originalLength];
+				compressor.decompress(compressed, 0, length, data, 0);
+				dst.put(data);
+			}
+			return originalLength;
+		} catch (DataFormatException e) {
+			dst.position(startPosition);
+			return -20101138;
+		} finally {
+			SafeCompressor.release(compressor);
+		}
+	}
+
+	/**
+	 * 校验密文：数据体按分段流经解密器的固定缓冲区，只计算签名不保存明文（不创建与数据长度相关的数组）
+	 */
+	@Override
+	protected void verifyRecord(byte[] data, SafeVerifyResult result, int index) {
+		if(data == null || data.length < v01SafeData.TOTAL_HEAD_LENGTH) {
+			setVerifyResult(result, index, 20101601, "Encrypted Data length is less than " + 32, 0, 0L);
+			return;
+		}
+		int keyId = SafeMathUtils.parseIntAsBigEndian(data, 3, 3);
+		if((data[0] & 0xFF) != majorVersion || (data[1] & 0xFF) != minorVersion) {
+			setVerifyResult(result, index, 20101131, "SafeData version and data version is not equal", keyId, 0L);
+			return;
+		}
+		SafeAES aes = getCipherEngine(keyId);
+		if(aes == null) {
+			setVerifyResult(result, index, 20101602, "Key not found. keyId is " + keyId, keyId, 0L);
+			return;
+		}
+		byte[] byteMapping = null;
+		int mappingId = data[2] & 0xFF;
+		if(mappingId != 0) {
+			byteMapping = getDecryptByteMapping(mappingId);
+			if(byteMapping == null) {
+				setVerifyResult(result, index, 20101603, "Byte Mapping not found. mappingId is " + mappingId, keyId, 0L);
+				return;
+			}
+		}
+		int bodyLength = data.length - v01SafeData.PLAINTEXT_HEAD_LENGTH;
+		int code = precheckBody(aes, byteMapping, data, v01SafeData.PLAINTEXT_HEAD_LENGTH, bodyLength);
+		if(code != 0) {
+			setVerifyResult(result, index, code, precheckMessage(code), keyId, 0L);
+			return;
+		}
+		v01BodyDecoder decoder = v01BodyDecoder.borrow();
+		try {
+			decoder.loadHead(data, 0);
+			if(decoder.decrypt(aes, byteMapping, data, v01SafeData.PLAINTEXT_HEAD_LENGTH, bodyLength, null, false)) {
+				setVerifyResult(result, index, 0, null, keyId, decoder.encryptTime);
+			} else {
+				setVerifyResult(result, index, decoder.errorCode, decoder.errorMessage, keyId, 0L);
+			}
+		} finally {
+			v01BodyDecoder.release(decoder);
+		}
+	}
+
+	/**
+	 * 文件加密：按窗口映射明文与密文文件，明文不整体读入Java堆，结果与 encrypt(byte[]) 完全一致
+	 */
+	@Override
+	public long encryptFile(Path src, Path dst, int keyId, int mappingId) throws SafeCryptoException, IOException {
+		FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+		try {
+			long size = in.size();
+			if(size <= 0) {
+				throw new SafeCryptoException(20101106, "plaintext is empty");
+			}
+			if(size > MAX_PLAINTEXT_LENGTH) {
+				throw new SafeCryptoException(20101507, "plaintext length is greater than " + MAX_PLAINTEXT_LENGTH);
+			}
+			if(Files.exists(dst) && Files.isSameFile(src, dst)) {
+				throw new SafeCryptoException(20101508, "source file and target file is same");
+			}
+			v01SafeData safeData = v01SafeData.newInstance(this, (int) size, keyId, mappingId);
+			if(safeData.silentCheckHead() == false) {
+				throw new SafeCryptoException(safeData.getErrorCode(), safeData.getErrorMessage());
+			}
+			SafeAES aes = getCipherEngine(keyId);
+			if(aes == null) {
+				throw new SafeCryptoException(20101501, "Key not found. keyId is "+keyId);
+			}
+			byte[] byteMapping = null;
+			if(mappingId != 0) {
+				byteMapping = getEncryptByteMapping(mappingId);
+				if(byteMapping == null) {
+					throw new SafeCryptoException(20101502, "Byte Mapping not found. mappingId is "+mappingId);
+				}
+			}
+			FileChannel out = FileChannel.open(dst, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			try {
+				return v01FileCipher.encrypt(safeData, aes, byteMapping, in, out);
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * 文件解密：按窗口映射密文与明文文件，密文不整体读入Java堆，校验不通过时删除已写入的明文文件
+	 */
+	@Override
+	public long decryptFile(Path src, Path dst) throws SafeCryptoException, IOException {
+		FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+		try {
+			if(in.size() < v01SafeData.TOTAL_HEAD_LENGTH) {
+				throw new SafeCryptoException(20101601, "Encrypted Data length is less than " + 32);
+			}
+			if(Files.exists(dst) && Files.isSameFile(src, dst)) {
+				throw new SafeCryptoException(20101607, "source file and target file is same");
+			}
+			ByteBuffer headBuff = ByteBuffer.allocate(v01SafeData.PLAINTEXT_HEAD_LENGTH);
+			while(headBuff.hasRemaining() && in.read(headBuff, headBuff.position()) > 0) {
+				//读满头部字段
+			}
+			v01SafeData safeData = v01SafeData.newInstance(this);
+			if(safeData.loadEncryptedHead(headBuff.array(), 0) == false) {
+				throw new SafeCryptoException(safeData.getErrorCode(), safeData.getErrorMessage());
+			}
+			SafeAES aes = getCipherEngine(safeData.getSecretKeyId());
+			if(aes == null) {
+				throw new SafeCryptoException(20101602, "Key not found. keyId is "+safeData.getSecretKeyId());
+			}
+			byte[] byteMapping = null;
+			if(safeData.getByteMappingId() != 0) {
+				byteMapping = getDecryptByteMapping(safeData.getByteMappingId());
+				if(byteMapping == null) {
+					throw new SafeCryptoException(20101603, "Byte Mapping not found. mappingId is "+safeData.getByteMappingId());
+				}
+			}
+			return v01FileCipher.decrypt(safeData, aes, byteMapping, in, dst);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * 批量加密：各条数据分别填充后，拼接为一个缓冲区，按分组一次 doFinal 加密，再拆分为各自的密文
+	 *   ECB模式下各分组相互独立，结果与逐条加密完全一致
+	 */
+	@Override
+	public byte[][] encryptBatch(byte[][] data, int keyId, int mappingId) throws SafeCryptoException {
+		if(data == null) {
+			return null;
+		}
+		SafeAES aes = getCipherEngine(keyId);
+		if(aes == null) {
+			throw new SafeCryptoException(20101501, "Key not found. keyId is "+keyId);
+		}
+		byte[] byteMapping = null;
+		if(mappingId != 0) {
+			byteMapping = getEncryptByteMapping(mappingId);
+			if(byteMapping == null) {
+				throw new SafeCryptoException(20101502, "Byte Mapping not found. mappingId is "+mappingId);
+			}
+		}
+		v01SafeData[] safeDataArr = new v01SafeData[data.length];
+		int[] bodyLengths = new int[data.length];
+		long totalLength = 0;
+		int maxLength = 0;
+		SafeCompressor compressor = isCompressEnabled() ? SafeCompressor.borrow() : null;
+		try {
+			for(int i=0; i<data.length; i++) {
+				v01SafeData safeData = null;
+				if(compressor != null && data[i] != null) {
+					int size = compressor.compress(data[i], 0, data[i].length);
+					if(size > 0) {
+						safeData = v01SafeData.newCompressedInstance(this, Arrays.copyOf(compressor.getBuffer(), size), size, keyId, mappingId);
+					}
+				}
+				if(safeData == null) {
+					safeData = v01SafeData.newDeferredInstance(this, data[i], data[i] == null ? 0 : data[i].length, keyId, mappingId);
+				}
+				if(silentCheckData(safeData) == false) {
+					throw new SafeCryptoException(safeData.getErrorCode(), safeData.getErrorMessage() + " index: " + i);
+				}
+				safeDataArr[i] = safeData;
+				bodyLengths[i] = encryptedLength(safeData.getPlaintextLength()) - v01SafeData.PLAINTEXT_HEAD_LENGTH;
+				totalLength += bodyLengths[i];
+				maxLength = Math.max(maxLength, bodyLengths[i]);
+			}
+		} finally {
+			if(compressor != null) {
+				SafeCompressor.release(compressor);
+			}
+		}
+		byte[] buff = new byte[(int) Math.max(maxLength, Math.min(totalLength, BATCH_BUFFER_SIZE))];
+		byte[][] result = new byte[data.length][];
+		int start = 0;
+		while(start < data.length) {
+			int end = start;
+			int size = 0;
+			while(end < data.length && (size == 0 || size + bodyLengths[end] <= buff.length)) {
+				safeDataArr[end].writePaddedEncryptBody(buff, size);
+				size += bodyLengths[end];
+				end++;
+			}
+			try {
+				aes.encryptBlocks(buff, 0, size, buff, 0);
+			} catch (SafeCryptoException e) {
+				throw new SafeCryptoException(20101503, e.getMessage());
+			}
+			int position = 0;
+			for(int i=start; i<end; i++) {
+				byte[] bts = new byte[v01SafeData.PLAINTEXT_HEAD_LENGTH + bodyLengths[i]];
+				safeDataArr[i].writeEncryptHead(ByteBuffer.wrap(bts));
+				System.arraycopy(buff, position, bts, v01SafeData.PLAINTEXT_HEAD_LENGTH, bodyLengths[i]);
+				if(byteMapping != null) {
+					SafeByteUtils.convertMapping(bts, v01SafeData.PLAINTEXT_HEAD_LENGTH, bodyLengths[i], byteMapping);
+				}
+				position += bodyLengths[i];
+				result[i] = bts;
+			}
+			start = end;
+		}
+		return result;
+	}
+
+	/**
+	 * 批量解密：按密钥ID分组，同组的密文反向映射后拼接为一个缓冲区，按分组一次 doFinal 解密，再逐条校验
+	 */
+	@Override
+	public SafeData[] decryptBatch(byte[][] data) {
+		if(data == null) {
+			return null;
+		}
+		v01SafeData[] result = new v01SafeData[data.length];
+		LinkedHashMap<Integer, List<Integer>> keyGroups = new LinkedHashMap<Integer, List<Integer>>();
+		long totalLength = 0;
+		int maxLength = 0;
+		for(int i=0; i<data.length; i++) {
+			v01SafeData safeData = v01SafeData.newInstance(this);
+			result[i] = safeData;
+			byte[] bts = data[i];
+			if(bts == null || bts.length < v01SafeData.TOTAL_HEAD_LENGTH) {
+				safeData.setDataError(20101601, "Encrypted Data length is less than " + 32);
+				continue;
+			}
+			if(safeData.loadEncryptedHead(bts, 0) == false) {
+				continue;
+			}
+			if(getCipherEngine(safeData.getSecretKeyId()) == null) {
+				safeData.setDataError(20101602, "Key not found. keyId is "+safeData.getSecretKeyId());
+				continue;
+			}
+			if(safeData.getByteMappingId() != 0 && getDecryptByteMapping(safeData.getByteMappingId()) == null) {
+				safeData.setDataError(20101603, "Byte Mapping not found. mappingId is "+safeData.getByteMappingId());
+				continue;
+			}
+			if((bts.length - v01SafeData.PLAINTEXT_HEAD_LENGTH) % SafeAES.BLOCK_SIZE != 0) {
+				safeData.setDataError(20101604, "CryptoException: encrypted body length is not valid. length: " + bts.length);
+				continue;
+			}
+			List<Integer> group = keyGroups.get(safeData.getSecretKeyId());
+			if(group == null) {
+				group = new ArrayList<Integer>();
+				keyGroups.put(safeData.getSecretKeyId(), group);
+			}
+			group.add(i);
+			totalLength += bts.length - v01SafeData.PLAINTEXT_HEAD_LENGTH;
+			maxLength = Math.max(maxLength, bts.length - v01SafeData.PLAINTEXT_HEAD_LENGTH);
+		}
+		if(keyGroups.isEmpty()) {
+			return result;
+		}
+		byte[] buff = new byte[(int) Math.max(maxLength, Math.min(totalLength, BATCH_BUFFER_SIZE))];
+		v01BodyDecoder decoder = v01BodyDecoder.borrow();
+		try {
+			for(Integer keyId : keyGroups.keySet()) {
+				SafeAES aes = getCipherEngine(keyId);
+				List<Integer> group = keyGroups.get(keyId);
+				int start = 0;
+				while(start < group.size()) {
+					int end = start;
+					int size = 0;
+					while(end < group.size()) {
+						byte[] bts = data[group.get(end)];
+						int bodyLength = bts.length - v01SafeData.PLAINTEXT_HEAD_LENGTH;
+						if(size > 0 && size + bodyLength > buff.length) {
+							break;
+						}
+						System.arraycopy(bts, v01SafeData.PLAINTEXT_HEAD_LENGTH, buff, size, bodyLength);
+						int mappingId = result[group.get(end)].getByteMappingId();
+						if(mappingId != 0) {
+							SafeByteUtils.convertMapping(buff, size, bodyLength, getDecryptByteMapping(mappingId));
+						}
+						size += bodyLength;
+						end++;
+					}
+					String cryptoError = null;
+					try {
+						aes.decryptBlocks(buff, 0, size, buff, 0);
+					} catch (SafeCryptoException e) {
+						cryptoError = "CryptoException: " + e.getMessage();
+					}
+					int position = 0;
+					for(int i=start; i<end; i++) {
+						int index = group.get(i);
+						int bodyLength = data[index].length - v01SafeData.PLAINTEXT_HEAD_LENGTH;
+						v01SafeData safeData = result[index];
+						if(cryptoError != null) {
+							safeData.setDataError(20101604, cryptoError);
+						} else {
+							decoder.loadHead(data[index], 0);
+							decoder.load(buff, position, bodyLength, null, true);
+							if(safeData.loadDecryptedBody(decoder)) {
+								safeData.silentCheck();
+							}
+						}
+						position += bodyLength;
+					}
+					start = end;
+				}
+			}
+		} finally {
+			v01BodyDecoder.release(decoder);
+		}
+		return result;
 	}
 }
@@ -0,0 +1,258 @@
+package com.lazynoon.commons.safesave.impl.v02;
+
+import com.lazynoon.commons.safesave.SafeCryptoException;
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.utils.SafeByteUtils;
+import com.lazynoon.commons.safesave.utils.SafeMathUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * v2.0 解密输入流
+ *   按数据块读取密文：反向字节映射 -> AES解密 -> 校验固定字段、数据块序号与签名，校验通过后才返回明文
+ *   读到最后一个数据块后返回 -1，不再读取下层输入流；下层输入流在最后一个数据块前结束，视为数据被截断
+ *   解密异常以 IOException 抛出，getCause() 为含错误码的 SafeCryptoException
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+class v02DecryptInputStream extends InputStream {
+	private final InputStream in;
+	private final v02SafeEncryptor encryptor;
+	/** 数据流的头部字段（读取首个数据块后完整） **/
+	private final v02SafeData head;
+	private SafeAES aes;
+	private byte[] byteMapping;
+	/** 数据块缓冲区（按需扩容，最大不超过 MAX_CHUNK_SIZE 对应的密文长度） **/
+	private byte[] buff;
+	/** 当前数据块未读明文的起止位置 **/
+	private int dataOffset = 0;
+	private int dataEnd = 0;
+	/** 下一个数据块的序号 **/
+	private int chunkIndex = 0;
+	/** 最后一个数据块的签名 **/
+	long hashCode = 0;
+	private boolean headLoaded = false;
+	private boolean finished = false;
+	private boolean closed = false;
+	/** 已发生的解密异常（之后的读取都抛出此异常） **/
+	private IOException failure = null;
+
+	v02DecryptInputStream(v02SafeEncryptor encryptor, InputStream in) {
+		this.encryptor = encryptor;
+		this.in = in;
+		this.head = v02SafeData.newInstance(encryptor);
+		this.buff = new byte[SafeAES.getPaddedLength(
+				v02SafeData.CHUNK_HEAD_LENGTH + v02SafeData.DEFAULT_CHUNK_SIZE + v02SafeData.HASH_CODE_LENGTH)];
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(ensureData() == false) {
+			return -1;
+		}
+		return buff[dataOffset++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException("offset: " + off + ", length: " + len);
+		}
+		if(len == 0) {
+			return 0;
+		}
+		if(ensureData() == false) {
+			return -1;
+		}
+		int size = Math.min(len, dataEnd - dataOffset);
+		System.arraycopy(buff, dataOffset, b, off, size);
+		dataOffset += size;
+		return size;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return dataEnd - dataOffset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		in.close();
+	}
+
+	/**
+	 * 获取数据流的头部字段（读取完首个数据块后，加密时间与随机数有效）
+	 * @return 数据对象（不含明文数据）
+	 */
+	v02SafeData getHead() {
+		return head;
+	}
+
+	/**
+	 * 数据流是否已读到最后一个数据块
+	 * @return 已读到最后一个数据块返回 true
+	 */
+	boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * 确保当前数据块有未读的明文（当前数据块读完时，读取下一个数据块）
+	 * @return 有明文可读返回 true，数据流结束返回 false
+	 * @throws IOException 读取或解密异常
+	 */
+	private boolean ensureData() throws IOException {
+		if(closed) {
+			throw new IOException("decrypt stream is closed");
+		}
+		if(failure != null) {
+			throw failure;
+		}
+		while(dataOffset == dataEnd) {
+			if(finished) {
+				return false;
+			}
+			if(headLoaded == false) {
+				loadHead();
+			}
+			loadChunk();
+		}
+		return true;
+	}
+
+	/**
+	 * 读取并检查明文存储的头部字段
+	 * @throws IOException 读取异常，或头部字段不正确
+	 */
+	private void loadHead() throws IOException {
+		byte[] bts = new byte[v02SafeData.PLAINTEXT_HEAD_LENGTH];
+		if(readFully(bts, 0, bts.length) < bts.length) {
+			throw fail(20102601, "Encrypted stream length is less than " + bts.length);
+		}
+		if((bts[0] & 0xFF) != encryptor.getMajorVersion() || (bts[1] & 0xFF) != encryptor.getMinorVersion()) {
+			throw fail(20102631, "Encryptor version and data version is not equal");
+		}
+		head.loadEncryptedHead(bts, 0);
+		aes = encryptor.findCipherEngine(head.getSecretKeyId());
+		if(aes == null) {
+			throw fail(20102602, "Key not found. keyId is " + head.getSecretKeyId());
+		}
+		if(head.getByteMappingId() != 0) {
+			byteMapping = encryptor.findDecryptByteMapping(head.getByteMappingId());
+			if(byteMapping == null) {
+				throw fail(20102603, "Byte Mapping not found. mappingId is " + head.getByteMappingId());
+			}
+		}
+		headLoaded = true;
+	}
+
+	/**
+	 * 读取、解密并校验一个数据块
+	 * @throws IOException 读取异常，或数据块校验不通过
+	 */
+	private void loadChunk() throws IOException {
+		int lengthSize = readFully(buff, 0, v02SafeData.CHUNK_LENGTH_SIZE);
+		if(lengthSize < v02SafeData.CHUNK_LENGTH_SIZE) {
+			throw fail(20102636, "Encrypted stream is truncated, last chunk not found. chunkIndex: " + chunkIndex);
+		}
+		int chunkLength = SafeMathUtils.parseIntAsBigEndian(buff, 0, v02SafeData.CHUNK_LENGTH_SIZE);
+		int minLength = SafeAES.getPaddedLength(v02SafeData.CHUNK_HEAD_LENGTH + v02SafeData.HASH_CODE_LENGTH);
+		int maxLength = SafeAES.getPaddedLength(v02SafeData.CHUNK_HEAD_LENGTH + v02SafeData.MAX_CHUNK_SIZE + v02SafeData.HASH_CODE_LENGTH);
+		if(chunkLength < minLength || chunkLength > maxLength || chunkLength % SafeAES.BLOCK_SIZE != 0) {
+			throw fail(20102604, "CryptoException: encrypted chunk length is not valid. length: " + chunkLength);
+		}
+		if(buff.length < chunkLength) {
+			buff = new byte[chunkLength];
+		}
+		if(readFully(buff, 0, chunkLength) < chunkLength) {
+			throw fail(20102636, "Encrypted stream is truncated. chunkIndex: " + chunkIndex);
+		}
+		if(byteMapping != null) {
+			SafeByteUtils.convertMapping(buff, 0, chunkLength, byteMapping);
+		}
+		try {
+			aes.decryptBlocks(buff, 0, chunkLength, buff, 0);
+		} catch (SafeCryptoException e) {
+			throw fail(20102604, "CryptoException: " + e.getMessage());
+		}
+		int padding = buff[chunkLength - 1] & 0xFF;
+		if(padding < 1 || padding > SafeAES.BLOCK_SIZE) {
+			throw fail(20102604, "CryptoException: javax.crypto.BadPaddingException");
+		}
+		for(int i=chunkLength-padding; i<chunkLength; i++) {
+			if((buff[i] & 0xFF) != padding) {
+				throw fail(20102604, "CryptoException: javax.crypto.BadPaddingException");
+			}
+		}
+		long reserved = SafeMathUtils.parseIntAsBigEndian(buff, 0, 4);
+		long encryptTime = SafeMathUtils.parseLongAsBigEndian(buff, 4, 6);
+		long randomCode = SafeMathUtils.parseLongAsBigEndian(buff, 10, 4);
+		int theChunkIndex = SafeMathUtils.parseIntAsBigEndian(buff, 14, 4);
+		int chunkFlag = buff[18] & 0xFF;
+		int dataLength = SafeMathUtils.parseIntAsBigEndian(buff, 19, 4);
+		if(reserved != 0) {
+			throw fail(20102105, "reserved is not 0");
+		}
+		if(chunkIndex == 0) {
+			head.loadChunkFields(reserved, encryptTime, randomCode);
+		} else if(encryptTime != head.getEncryptTime() || randomCode != head.getRandomCode()) {
+			throw fail(20102633, "chunk is not belong to this stream. chunkIndex: " + chunkIndex);
+		}
+		if(theChunkIndex != chunkIndex) {
+			throw fail(20102632, "chunkIndex is not match. expect: " + chunkIndex + ", actual: " + theChunkIndex);
+		}
+		if(chunkFlag != 0 && chunkFlag != v02SafeData.CHUNK_FLAG_LAST) {
+			throw fail(20102634, "chunkFlag is not valid: " + chunkFlag);
+		}
+		if(dataLength < 0 || dataLength > v02SafeData.MAX_CHUNK_SIZE
+				|| SafeAES.getPaddedLength(v02SafeData.CHUNK_HEAD_LENGTH + dataLength + v02SafeData.HASH_CODE_LENGTH) != chunkLength) {
+			throw fail(20102635, "chunkDataLength is not match encrypted chunk length");
+		}
+		int dataStart = v02SafeData.CHUNK_HEAD_LENGTH;
+		long chunkHash = SafeMathUtils.parseLongAsBigEndian(buff, dataStart + dataLength, v02SafeData.HASH_CODE_LENGTH);
+		if(head.chunkHashCode(chunkIndex, chunkFlag, buff, dataStart, dataLength) != chunkHash) {
+			throw fail(20102637, "hashCode is not match. chunkIndex: " + chunkIndex);
+		}
+		dataOffset = dataStart;
+		dataEnd = dataStart + dataLength;
+		chunkIndex++;
+		if(chunkFlag == v02SafeData.CHUNK_FLAG_LAST) {
+			finished = true;
+			hashCode = chunkHash;
+		}
+	}
+
+	/**
+	 * 从下层输入流读取指定长度的数据（直到读满或输入流结束）
+	 * @return 实际读取的字节数
+	 */
+	private int readFully(byte[] b, int off, int len) throws IOException {
+		int total = 0;
+		while(total < len) {
+			int size = in.read(b, off + total, len - total);
+			if(size < 0) {
+				break;
+			}
+			total += size;
+		}
+		return total;
+	}
+
+	/**
+	 * 记录解密异常（之后的读取都抛出此异常）
+	 * @param code 错误码
+	 * @param message 错误消息
+	 * @return IOException（cause 为含错误码的 SafeCryptoException）
+	 */
+	private IOException fail(int code, String message) {
+		dataOffset = dataEnd = 0;
+		failure = new IOException(message, new SafeCryptoException(code, message));
+		return failure;
+	}
+}
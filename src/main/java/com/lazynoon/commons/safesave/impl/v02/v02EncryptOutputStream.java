@@ -0,0 +1,166 @@
+package com.lazynoon.commons.safesave.impl.v02;
+
+import com.lazynoon.commons.safesave.SafeCryptoException;
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.utils.SafeByteUtils;
+import com.lazynoon.commons.safesave.utils.SafeMathUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * v2.0 加密输出流
+ *   写入的明文按数据块长度缓存，缓存满且有后续数据时，加密输出一个数据块，关闭时输出最后一个数据块
+ *   数据块长度字段、固定字段、明文数据、签名与填充共用一个缓冲区，原地加密，内存占用与数据总长度无关
+ *   flush() 只刷新下层输出流，不输出未满的数据块
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+class v02EncryptOutputStream extends OutputStream {
+	/** 明文数据在缓冲区中的位置 **/
+	private static final int DATA_OFFSET = v02SafeData.CHUNK_LENGTH_SIZE + v02SafeData.CHUNK_HEAD_LENGTH;
+
+	private final OutputStream out;
+	/** 数据流的头部字段（版本号、秘钥ID、字节映射表ID、加密时间、随机数） **/
+	private final v02SafeData head;
+	private final SafeAES aes;
+	private final byte[] byteMapping;
+	private final int chunkSize;
+	private final byte[] buff;
+
+	/** 缓冲区中待加密的明文长度 **/
+	private int dataLength = 0;
+	/** 下一个数据块的序号 **/
+	private int chunkIndex = 0;
+	private boolean headWritten = false;
+	private boolean closed = false;
+	/** 数据块输出失败（之后关闭时不再输出最后一个数据块） **/
+	private boolean failed = false;
+
+	/**
+	 * @param out 密文写入的输出流
+	 * @param head 数据流的头部字段（须已检查）
+	 * @param aes AES加密引擎
+	 * @param byteMapping 加密用的字节映射表（为null则不转换）
+	 * @param chunkSize 数据块的明文长度
+	 */
+	v02EncryptOutputStream(OutputStream out, v02SafeData head, SafeAES aes, byte[] byteMapping, int chunkSize) {
+		this.out = out;
+		this.head = head;
+		this.aes = aes;
+		this.byteMapping = byteMapping;
+		this.chunkSize = chunkSize;
+		this.buff = new byte[v02SafeData.encryptedChunkLength(chunkSize)];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		if(dataLength == chunkSize) {
+			writeChunk(0);
+		}
+		buff[DATA_OFFSET + dataLength] = (byte) b;
+		dataLength++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if(off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException("offset: " + off + ", length: " + len);
+		}
+		while(len > 0) {
+			if(dataLength == chunkSize) {
+				writeChunk(0);
+			}
+			int size = Math.min(len, chunkSize - dataLength);
+			System.arraycopy(b, off, buff, DATA_OFFSET + dataLength, size);
+			dataLength += size;
+			off += size;
+			len -= size;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		out.flush();
+	}
+
+	/**
+	 * 输出最后一个数据块，并关闭下层输出流
+	 *   之前的数据块输出失败时，不输出最后一个数据块，只关闭下层输出流，避免截断的密文以完整数据流结束
+	 * @throws IOException 加密或输出异常
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		try {
+			if(failed == false) {
+				writeChunk(v02SafeData.CHUNK_FLAG_LAST);
+			}
+		} finally {
+			closed = true;
+			out.close();
+		}
+	}
+
+	/**
+	 * 加密并输出缓冲区中的数据块
+	 * @param chunkFlag 数据块标志
+	 * @throws IOException 加密或输出异常
+	 */
+	private void writeChunk(int chunkFlag) throws IOException {
+		if(failed) {
+			throw new IOException("encrypt stream is failed");
+		}
+		boolean success = false;
+		try {
+			writeChunkData(chunkFlag);
+			success = true;
+		} finally {
+			if(success == false) {
+				failed = true;
+			}
+		}
+	}
+
+	private void writeChunkData(int chunkFlag) throws IOException {
+		if(headWritten == false) {
+			out.write(head.mergeEncryptHead());
+			headWritten = true;
+		}
+		int bodyOffset = v02SafeData.CHUNK_LENGTH_SIZE;
+		head.writeChunkHead(buff, bodyOffset, chunkIndex, chunkFlag, dataLength);
+		long hashCode = head.chunkHashCode(chunkIndex, chunkFlag, buff, DATA_OFFSET, dataLength);
+		SafeMathUtils.writeLongAsBigEndian(buff, DATA_OFFSET + dataLength, hashCode, v02SafeData.HASH_CODE_LENGTH);
+		int bodyLength = v02SafeData.CHUNK_HEAD_LENGTH + dataLength + v02SafeData.HASH_CODE_LENGTH;
+		int paddedLength = SafeAES.getPaddedLength(bodyLength);
+		byte padding = (byte) (paddedLength - bodyLength);
+		for(int i=bodyOffset+bodyLength; i<bodyOffset+paddedLength; i++) {
+			buff[i] = padding;
+		}
+		try {
+			aes.encryptBlocks(buff, bodyOffset, paddedLength, buff, bodyOffset);
+		} catch (SafeCryptoException e) {
+			SafeCryptoException cause = new SafeCryptoException(20102503, e.getMessage());
+			throw new IOException(cause.getMessage(), cause);
+		}
+		if(byteMapping != null) {
+			SafeByteUtils.convertMapping(buff, bodyOffset, paddedLength, byteMapping);
+		}
+		SafeMathUtils.writeLongAsBigEndian(buff, 0, paddedLength, v02SafeData.CHUNK_LENGTH_SIZE);
+		out.write(buff, 0, bodyOffset + paddedLength);
+		chunkIndex++;
+		dataLength = 0;
+	}
+
+	private void ensureOpen() throws IOException {
+		if(closed) {
+			throw new IOException("encrypt stream is closed");
+		}
+	}
+}
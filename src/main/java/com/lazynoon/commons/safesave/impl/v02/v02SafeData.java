@@ -0,0 +1,279 @@
+package com.lazynoon.commons.safesave.impl.v02;
+
+import com.lazynoon.commons.safesave.SafeData;
+import com.lazynoon.commons.safesave.SafeEncryptor;
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.impl.v01.v01SafeData;
+import com.lazynoon.commons.safesave.utils.SafeMathUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * v2.0 数据格式（分块流式加密，内存占用与数据块大小相关，与数据总长度无关）
+ * ----- 明文存储（长度：6B） -----
+ *  1B majorVersion 加密算法主要版本号
+ *  1B minorVersion 加密算法次要版本号
+ *  1B mappingId 字节映射表ID（从1开始，最大容量255个）
+ *  3B keyId 密钥ID（从1开始，最大容量16777215个）
+ * ----- 数据块（重复多次，直到最后一块） -----
+ *  4B chunkLength 密文数据块长度（明文存储，16的整数倍）
+ *  ?B 密文数据块（AES加密后按字节映射表转换）
+ *    4B reserved 保留字段
+ *    6B encryptTime 毫秒时间戳（同一数据流的各数据块相同）
+ *    4B randomCode 随机数（同一数据流的各数据块相同）
+ *    4B chunkIndex 数据块序号（从0开始）
+ *    1B chunkFlag 数据块标志（1：最后一块，0：后续还有数据块）
+ *    4B chunkDataLength 数据块的明文长度
+ *    ?B chunkData 数据块的明文数据（可变长度，最后一块允许0B）
+ *    8B hashCode 数据块签名
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class v02SafeData extends SafeData {
+	public static final int PLAINTEXT_HEAD_LENGTH = 6;
+	/** 数据块长度字段的长度 **/
+	public static final int CHUNK_LENGTH_SIZE = 4;
+	/** 密文数据块的固定字段长度（reserved, encryptTime, randomCode, chunkIndex, chunkFlag, chunkDataLength） **/
+	public static final int CHUNK_HEAD_LENGTH = 23;
+	/** 数据块签名长度 **/
+	public static final int HASH_CODE_LENGTH = 8;
+	/** 数据块标志：最后一块 **/
+	public static final int CHUNK_FLAG_LAST = 1;
+	/** 默认的数据块明文长度 **/
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+	/** 数据块明文长度的最大值（解密时超过此长度视为数据错误） **/
+	public static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+	private static final long MASK_6_BYTE = 0xFFFFFFFFFFFFL;
+	private static final long MASK_4_BYTE = 0xFFFFFFFFL;
+
+	private v02SafeData() {}
+
+	static v02SafeData newInstance(SafeEncryptor encryptor) {
+		v02SafeData safeData = new v02SafeData();
+		safeData.loadVersion(encryptor);
+		return safeData;
+	}
+
+	public static v02SafeData newInstance(SafeEncryptor encryptor, byte[] data, int keyId, int mappingId) {
+		v02SafeData safeData = newInstance(encryptor);
+		safeData.byteMappingId = mappingId;
+		safeData.secretKeyId = keyId;
+		safeData.randomCode = Math.round(Math.random() * 0x1FFFFFFFFL);
+		safeData.randomCode &= MASK_4_BYTE;
+		if(data != null) {
+			safeData.plaintextLength = data.length;
+		}
+		safeData.plaintextData = data;
+		safeData.encryptTime = System.currentTimeMillis();
+		safeData.encryptTime &= MASK_6_BYTE;
+		safeData.hashCode = safeData.generateHashCode();
+		return safeData;
+	}
+
+	/**
+	 * 计算按指定数据块长度分块后的密文长度
+	 * @param plaintextLength 明文数据长度
+	 * @param chunkSize 数据块的明文长度
+	 * @return 密文数据的字节数
+	 */
+	public static long encryptedLength(long plaintextLength, int chunkSize) {
+		long fullChunks = plaintextLength / chunkSize;
+		int lastSize = (int) (plaintextLength % chunkSize);
+		if(fullChunks > 0 && lastSize == 0) {
+			fullChunks--;
+			lastSize = chunkSize;
+		}
+		return PLAINTEXT_HEAD_LENGTH + fullChunks * encryptedChunkLength(chunkSize) + encryptedChunkLength(lastSize);
+	}
+
+	/**
+	 * 计算一个数据块加密后的长度（含数据块长度字段）
+	 * @param chunkDataLength 数据块的明文长度
+	 * @return 密文数据块的字节数
+	 */
+	static int encryptedChunkLength(int chunkDataLength) {
+		return CHUNK_LENGTH_SIZE + SafeAES.getPaddedLength(CHUNK_HEAD_LENGTH + chunkDataLength + HASH_CODE_LENGTH);
+	}
+
+	@Override
+	public boolean silentCheck() {
+		if(silentCheckHead() == false) {
+			return false;
+		}
+		if(plaintextData == null) {
+			errorCode = 20102106;
+			errorMessage = "plaintext is null";
+			return false;
+		} else if(plaintextLength != plaintextData.length) {
+			errorCode = 20102107;
+			errorMessage = "data length is not equal";
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 检查明文数据以外的字段
+	 * @return 检查通过返回 true，否则返回 false
+	 */
+	protected boolean silentCheckHead() {
+		if(super.silentCheckFront() == false) {
+			return false;
+		}
+		if(byteMappingId < 0 || byteMappingId > 0xFF) {
+			errorCode = 20102101;
+			errorMessage = "mappingId not in valid scope";
+			return false;
+		} else if(secretKeyId <= 0 || secretKeyId > 0xFFFFFF) {
+			errorCode = 20102102;
+			errorMessage = "keyId not in valid scope";
+			return false;
+		} else if(encryptTime <= 0L || encryptTime > MASK_6_BYTE) {
+			errorCode = 20102103;
+			errorMessage = "encryptTime not in valid scope";
+			return false;
+		} else if(randomCode < 0L || randomCode > MASK_4_BYTE) {
+			errorCode = 20102104;
+			errorMessage = "randomCode not in valid scope";
+			return false;
+		} else if(reserved != 0) {
+			errorCode = 20102105;
+			errorMessage = "reserved is not 0";
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 计算全部字段与完整明文数据的摘要（不写入密文，各数据块单独签名）
+	 * @return 8字节long型数（包含负数）
+	 */
+	@Override
+	public long generateHashCode() {
+		long code = v01SafeData.hashFields(majorVersion, minorVersion, byteMappingId, secretKeyId,
+				reserved, encryptTime, randomCode, plaintextLength);
+		if(plaintextData != null) {
+			code = v01SafeData.hashPlaintext(code, plaintextData, 0, plaintextData.length, 0);
+		}
+		return code;
+	}
+
+	/**
+	 * 合并加密用的头部数据（明文存储）
+	 * @return 包含全部明文存储的字段
+	 */
+	@Override
+	public byte[] mergeEncryptHead() {
+		byte[] bts = new byte[PLAINTEXT_HEAD_LENGTH];
+		writeEncryptHead(ByteBuffer.wrap(bts));
+		return bts;
+	}
+
+	/**
+	 * 合并加密用的数据源（按默认数据块长度分块，各数据块的固定字段、明文数据、签名依次拼接，不含填充）
+	 * @return 包含全部密文存储的字段
+	 */
+	@Override
+	public byte[] mergeEncryptBody() {
+		int chunkCount = Math.max(1, (plaintextLength + DEFAULT_CHUNK_SIZE - 1) / DEFAULT_CHUNK_SIZE);
+		byte[] bts = new byte[chunkCount * (CHUNK_HEAD_LENGTH + HASH_CODE_LENGTH) + plaintextLength];
+		int position = 0;
+		for(int i=0; i<chunkCount; i++) {
+			int dataOffset = i * DEFAULT_CHUNK_SIZE;
+			int dataLength = Math.min(DEFAULT_CHUNK_SIZE, plaintextLength - dataOffset);
+			int chunkFlag = (i == chunkCount - 1) ? CHUNK_FLAG_LAST : 0;
+			writeChunkHead(bts, position, i, chunkFlag, dataLength);
+			position += CHUNK_HEAD_LENGTH;
+			System.arraycopy(plaintextData, dataOffset, bts, position, dataLength);
+			position += dataLength;
+			long chunkHash = chunkHashCode(i, chunkFlag, plaintextData, dataOffset, dataLength);
+			SafeMathUtils.writeLongAsBigEndian(bts, position, chunkHash, HASH_CODE_LENGTH);
+			position += HASH_CODE_LENGTH;
+		}
+		return bts;
+	}
+
+	/**
+	 * 写入明文存储的头部字段（6字节）
+	 * @param buff ByteBuffer对象（从当前位置写入）
+	 */
+	protected void writeEncryptHead(ByteBuffer buff) {
+		writeVersion(buff); //主次版本号，2字节
+		buff.put((byte) byteMappingId);
+		buff.put((byte) (secretKeyId >>> 16));
+		buff.put((byte) (secretKeyId >>> 8));
+		buff.put((byte) secretKeyId);
+	}
+
+	/**
+	 * 写入数据块的固定字段（23字节，高字节在前）
+	 * @param bts 字节数组
+	 * @param offset 写入位置
+	 * @param chunkIndex 数据块序号
+	 * @param chunkFlag 数据块标志
+	 * @param chunkDataLength 数据块的明文长度
+	 */
+	protected void writeChunkHead(byte[] bts, int offset, int chunkIndex, int chunkFlag, int chunkDataLength) {
+		SafeMathUtils.writeLongAsBigEndian(bts, offset, reserved, 4);
+		SafeMathUtils.writeLongAsBigEndian(bts, offset + 4, encryptTime, 6);
+		SafeMathUtils.writeLongAsBigEndian(bts, offset + 10, randomCode, 4);
+		SafeMathUtils.writeLongAsBigEndian(bts, offset + 14, chunkIndex, 4);
+		bts[offset + 18] = (byte) chunkFlag;
+		SafeMathUtils.writeLongAsBigEndian(bts, offset + 19, chunkDataLength, 4);
+	}
+
+	/**
+	 * 计算数据块签名
+	 *   与v1.0相同的字段摘要（明文长度取数据块的明文长度），再计入数据块序号、标志与明文数据
+	 * @param chunkIndex 数据块序号
+	 * @param chunkFlag 数据块标志
+	 * @param data 数据块的明文数据
+	 * @param offset 明文数据的偏移量
+	 * @param length 明文数据的长度
+	 * @return 8字节long型数（包含负数）
+	 */
+	protected long chunkHashCode(int chunkIndex, int chunkFlag, byte[] data, int offset, int length) {
+		long code = v01SafeData.hashFields(majorVersion, minorVersion, byteMappingId, secretKeyId,
+				reserved, encryptTime, randomCode, length);
+		code ^= ((long) chunkIndex) << 24;
+		code ^= ((long) chunkFlag) << 40;
+		return v01SafeData.hashPlaintext(code, data, offset, length, 0);
+	}
+
+	/**
+	 * 解析明文存储的头部字段（不检查版本号）
+	 * @param data 密文数据
+	 * @param offset 密文数据的偏移量
+	 */
+	protected void loadEncryptedHead(byte[] data, int offset) {
+		this.majorVersion = data[offset] & 0xFF;
+		this.minorVersion = data[offset + 1] & 0xFF;
+		this.byteMappingId = data[offset + 2] & 0xFF;
+		this.secretKeyId = SafeMathUtils.parseIntAsBigEndian(data, offset + 3, 3);
+	}
+
+	/**
+	 * 加载首个数据块解出的字段（同一数据流的各数据块相同）
+	 * @param reserved 保留字段
+	 * @param encryptTime 毫秒时间戳
+	 * @param randomCode 随机数
+	 */
+	void loadChunkFields(long reserved, long encryptTime, long randomCode) {
+		this.reserved = reserved;
+		this.encryptTime = encryptTime;
+		this.randomCode = randomCode;
+	}
+
+	/**
+	 * 加载解密后的明文数据与最后一个数据块的签名
+	 * @param data 明文数据
+	 * @param hashCode 最后一个数据块的签名
+	 */
+	void loadPlaintext(byte[] data, long hashCode) {
+		this.plaintextLength = data.length;
+		this.plaintextData = data;
+		this.hashCode = hashCode;
+	}
+}
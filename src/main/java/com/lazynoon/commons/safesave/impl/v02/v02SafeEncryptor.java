@@ -0,0 +1,292 @@
+package com.lazynoon.commons.safesave.impl.v02;
+
+import com.lazynoon.commons.safesave.SafeCryptoException;
+import com.lazynoon.commons.safesave.SafeData;
+import com.lazynoon.commons.safesave.SafeEncryptor;
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.crypto.SafeRemapUtils;
+import com.lazynoon.commons.safesave.utils.SafeByteUtils;
+import com.lazynoon.commons.safesave.utils.SafeMathUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * v2.0 加密解密处理类（分块流式加密）
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class v02SafeEncryptor extends SafeEncryptor {
+	public static final int MAJOR_VERSION = 2;
+
+	public v02SafeEncryptor() {}
+
+	@Override
+	public int getClassMajorVersion() {
+		return MAJOR_VERSION;
+	}
+
+	@Override
+	public byte[] encrypt(byte[] data, int keyId, int mappingId) throws SafeCryptoException {
+		return encrypt(v02SafeData.newInstance(this, data, keyId, mappingId));
+	}
+
+	@Override
+	public int encryptedLength(int plaintextLength) {
+		return (int) v02SafeData.encryptedLength(plaintextLength, v02SafeData.DEFAULT_CHUNK_SIZE);
+	}
+
+	@Override
+	public byte[] encrypt(SafeData data) throws SafeCryptoException {
+		if(data == null) {
+			return null;
+		}
+		if(silentCheckData(data) == false) {
+			throw new SafeCryptoException(data.getErrorCode(), data.getErrorMessage());
+		}
+		if(!(data instanceof v02SafeData)) {
+			throw new SafeCryptoException(20102505, "SafeData is not v02SafeData");
+		}
+		byte[] result = new byte[encryptedLength(data.getPlaintextLength())];
+		final ByteBuffer buff = ByteBuffer.wrap(result);
+		OutputStream out = new OutputStream() {
+			@Override
+			public void write(int b) {
+				buff.put((byte) b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				buff.put(b, off, len);
+			}
+		};
+		OutputStream encryptStream = openEncryptStream(out, (v02SafeData) data, v02SafeData.DEFAULT_CHUNK_SIZE);
+		try {
+			encryptStream.write(data.getPlaintextData());
+			encryptStream.close();
+		} catch (IOException e) {
+			throw toCryptoException(e, 20102503);
+		}
+		return result;
+	}
+
+	@Override
+	public SafeData silentDecrypt(byte[] data) {
+		v02SafeData safeData = v02SafeData.newInstance(this);
+		int minLength = v02SafeData.PLAINTEXT_HEAD_LENGTH + v02SafeData.encryptedChunkLength(0);
+		if(data == null || data.length < minLength) {
+			safeData.setDataError(20102601, "Encrypted Data length is less than " + minLength);
+			return safeData;
+		}
+		safeData.loadEncryptedHead(data, 0);
+		ByteArrayInputStream in = new ByteArrayInputStream(data);
+		v02DecryptInputStream decryptStream = new v02DecryptInputStream(this, in);
+		//明文长度不超过密文长度，读取完成后按实际长度截取
+		byte[] plaintext = new byte[data.length];
+		int length = 0;
+		try {
+			int size;
+			while((size = decryptStream.read(plaintext, length, plaintext.length - length)) > 0) {
+				length += size;
+			}
+		} catch (IOException e) {
+			SafeCryptoException cause = toCryptoException(e, 20102604);
+			safeData.setDataError(cause.getCode(), cause.getMessage());
+			return safeData;
+		}
+		if(in.available() > 0) {
+			safeData.setDataError(20102638, "Encrypted Data has " + in.available() + " bytes after last chunk");
+			return safeData;
+		}
+		v02SafeData head = decryptStream.getHead();
+		safeData.loadChunkFields(head.getReserved(), head.getEncryptTime(), head.getRandomCode());
+		safeData.loadPlaintext(Arrays.copyOf(plaintext, length), decryptStream.hashCode);
+		return safeData;
+	}
+
+	@Override
+	public OutputStream openEncryptStream(OutputStream out, int keyId, int mappingId) throws SafeCryptoException {
+		return openEncryptStream(out, keyId, mappingId, v02SafeData.DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * 打开加密输出流（指定数据块长度）
+	 * @param out 密文写入的输出流（加密流关闭时一并关闭）
+	 * @param keyId 秘钥ID
+	 * @param mappingId 字节映射表ID
+	 * @param chunkSize 数据块的明文长度（1 ~ MAX_CHUNK_SIZE），决定加解密时的内存占用
+	 * @return 明文写入的输出流（须关闭，关闭时输出最后一个数据块）
+	 * @throws SafeCryptoException 秘钥或字节映射表不存在，或参数不正确
+	 */
+	public OutputStream openEncryptStream(OutputStream out, int keyId, int mappingId, int chunkSize) throws SafeCryptoException {
+		v02SafeData head = v02SafeData.newInstance(this, null, keyId, mappingId);
+		if(head.silentCheckHead() == false) {
+			throw new SafeCryptoException(head.getErrorCode(), head.getErrorMessage());
+		}
+		return openEncryptStream(out, head, chunkSize);
+	}
+
+	private OutputStream openEncryptStream(OutputStream out, v02SafeData head, int chunkSize) throws SafeCryptoException {
+		if(out == null) {
+			throw new SafeCryptoException(20102506, "output stream is null");
+		}
+		if(chunkSize <= 0 || chunkSize > v02SafeData.MAX_CHUNK_SIZE) {
+			throw new SafeCryptoException(20102507, "chunkSize not in valid scope: " + chunkSize);
+		}
+		SafeAES aes = getCipherEngine(head.getSecretKeyId());
+		if(aes == null) {
+			throw new SafeCryptoException(20102501, "Key not found. keyId is "+head.getSecretKeyId());
+		}
+		byte[] byteMapping = null;
+		if(head.getByteMappingId() != 0) {
+			byteMapping = getEncryptByteMapping(head.getByteMappingId());
+			if(byteMapping == null) {
+				throw new SafeCryptoException(20102502, "Byte Mapping not found. mappingId is "+head.getByteMappingId());
+			}
+		}
+		return new v02EncryptOutputStream(out, head, aes, byteMapping, chunkSize);
+	}
+
+	@Override
+	public InputStream openDecryptStream(InputStream in) throws SafeCryptoException {
+		if(in == null) {
+			throw new SafeCryptoException(20102606, "input stream is null");
+		}
+		return new v02DecryptInputStream(this, in);
+	}
+
+	/**
+	 * 文件加密：按数据块流式加密，内存占用与文件长度无关，失败时删除已写入的密文文件
+	 */
+	@Override
+	public long encryptFile(Path src, Path dst, int keyId, int mappingId) throws SafeCryptoException, IOException {
+		if(Files.exists(dst) && Files.isSameFile(src, dst)) {
+			throw new SafeCryptoException(20102508, "source file and target file is same");
+		}
+		OutputStream raw = Files.newOutputStream(dst);
+		boolean success = false;
+		try {
+			OutputStream out = openEncryptStream(raw, keyId, mappingId);
+			Files.copy(src, out);
+			out.close();
+			success = true;
+		} catch (IOException e) {
+			throw rethrowCryptoException(e);
+		} finally {
+			if(success == false) {
+				//失败时不输出最后一个数据块，直接关闭文件并删除不完整的密文
+				raw.close();
+				try {
+					Files.deleteIfExists(dst);
+				} catch (IOException e) {
+					//删除失败时保留原异常
+				}
+			}
+		}
+		return Files.size(dst);
+	}
+
+	/**
+	 * 文件解密：按数据块流式解密，校验不通过时删除已写入的明文文件
+	 */
+	@Override
+	public long decryptFile(Path src, Path dst) throws SafeCryptoException, IOException {
+		if(Files.exists(dst) && Files.isSameFile(src, dst)) {
+			throw new SafeCryptoException(20102607, "source file and target file is same");
+		}
+		InputStream in = openDecryptStream(Files.newInputStream(src));
+		try {
+			return Files.copy(in, dst, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Files.deleteIfExists(dst);
+			throw rethrowCryptoException(e);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * 更换字节映射表：逐个数据块转换（数据块长度字段为明文存储，不转换），各数据块末尾两个分组重新生成签名
+	 *   先检查全部数据块并生成新的末尾分组，再写回，检查不通过时密文不变
+	 */
+	@Override
+	protected void remapBody(byte[] data, int offset, int length, RemapTables tables) throws SafeCryptoException {
+		int keyId = SafeMathUtils.parseIntAsBigEndian(data, offset + 3, 3);
+		SafeAES aes = getCipherEngine(keyId);
+		if(aes == null) {
+			throw new SafeCryptoException(20102602, "Key not found. keyId is " + keyId);
+		}
+		int end = offset + length;
+		int minLength = SafeAES.getPaddedLength(v02SafeData.CHUNK_HEAD_LENGTH + v02SafeData.HASH_CODE_LENGTH);
+		List<byte[]> tails = new ArrayList<byte[]>();
+		int position = offset + v02SafeData.PLAINTEXT_HEAD_LENGTH;
+		do {
+			if(end - position < v02SafeData.CHUNK_LENGTH_SIZE) {
+				throw new SafeCryptoException(20102609, "Encrypted Data is truncated at " + (position - offset));
+			}
+			int chunkLength = SafeMathUtils.parseIntAsBigEndian(data, position, v02SafeData.CHUNK_LENGTH_SIZE);
+			position += v02SafeData.CHUNK_LENGTH_SIZE;
+			if(chunkLength < minLength || chunkLength % SafeAES.BLOCK_SIZE != 0 || chunkLength > end - position) {
+				throw new SafeCryptoException(20102609, "encrypted chunk length is not valid. length: " + chunkLength);
+			}
+			position += chunkLength;
+			tails.add(SafeRemapUtils.remapHashTail(aes, data, position, tables.decryptMapping, tables.encryptMapping,
+					tables.oldMappingId, tables.newMappingId, 20102604));
+		} while(position < end);
+		position = offset + v02SafeData.PLAINTEXT_HEAD_LENGTH;
+		for(byte[] tail : tails) {
+			int chunkLength = SafeMathUtils.parseIntAsBigEndian(data, position, v02SafeData.CHUNK_LENGTH_SIZE);
+			position += v02SafeData.CHUNK_LENGTH_SIZE + chunkLength;
+			if(tables.composedMapping != null) {
+				SafeByteUtils.convertMapping(data, position - chunkLength, chunkLength - tail.length, tables.composedMapping);
+			}
+			System.arraycopy(tail, 0, data, position - tail.length, tail.length);
+		}
+	}
+
+	/** 按秘钥ID，获取AES加密引擎（供解密输入流使用） **/
+	SafeAES findCipherEngine(int keyId) {
+		return getCipherEngine(keyId);
+	}
+
+	/** 获取解密用的字节映射（供解密输入流使用） **/
+	byte[] findDecryptByteMapping(int mappingId) {
+		return getDecryptByteMapping(mappingId);
+	}
+
+	/**
+	 * 加解密流的异常含 SafeCryptoException 时，抛出 SafeCryptoException
+	 * @param e 加解密流的异常
+	 * @return 下层流的读写异常（原样返回，由调用方抛出）
+	 * @throws SafeCryptoException 加解密异常
+	 */
+	private static IOException rethrowCryptoException(IOException e) throws SafeCryptoException {
+		if(e.getCause() instanceof SafeCryptoException) {
+			throw (SafeCryptoException) e.getCause();
+		}
+		return e;
+	}
+
+	/**
+	 * 取出加解密流抛出的 SafeCryptoException
+	 * @param e 加解密流的异常
+	 * @param defaultCode 非加解密错误（如下层流的读写异常）时使用的错误码
+	 * @return 含错误码的异常
+	 */
+	private static SafeCryptoException toCryptoException(IOException e, int defaultCode) {
+		if(e.getCause() instanceof SafeCryptoException) {
+			return (SafeCryptoException) e.getCause();
+		}
+		return new SafeCryptoException(defaultCode, e.toString());
+	}
+}
@@ -0,0 +1,262 @@
+package com.lazynoon.commons.safesave.impl.v03;
+
+import com.lazynoon.commons.safesave.SafeData;
+import com.lazynoon.commons.safesave.SafeEncryptor;
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.utils.SafeMathUtils;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * v3.0 数据格式（AES-GCM认证加密）
+ * ----- 明文存储（长度：6B，同时作为GCM附加认证数据） -----
+ *  1B majorVersion 加密算法主要版本号
+ *  1B minorVersion 加密算法次要版本号
+ *  1B mappingId 字节映射表ID（从1开始，最大容量255个）
+ *  3B keyId 密钥ID（从1开始，最大容量16777215个）
+ * ----- 随机数（长度：12B，GCM nonce） -----
+ *  4B noncePrefix 进程随机前缀
+ *  8B nonceCounter 进程内递增计数（初始值随机）
+ * ----- 加密存储（长度：14B + length，AES-GCM） -----
+ *  4B reserved 保留字段
+ *  6B encryptTime 毫秒时间戳
+ *  4B randomCode 随机数
+ *  ?B plaintextData 明文数据（可变长度，允许0B）
+ * ----- 认证标签（长度：16B） -----
+ *  16B tag GCM认证标签（头部字段、随机数、密文的任一字节被修改，解密均失败）
+ *
+ *  随机数、密文与认证标签按字节映射表转换（字节映射在AES加密之后）
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class v03SafeData extends SafeData {
+	public static final int PLAINTEXT_HEAD_LENGTH = 6;
+	/** GCM随机数长度 **/
+	public static final int NONCE_LENGTH = SafeAES.GCM_NONCE_LENGTH;
+	/** 密文存储的固定字段长度（reserved, encryptTime, randomCode） **/
+	public static final int BODY_HEAD_LENGTH = 14;
+	/** GCM认证标签长度 **/
+	public static final int TAG_LENGTH = SafeAES.GCM_TAG_LENGTH;
+	/** 明文数据以外的总长度 **/
+	public static final int OVERHEAD_LENGTH = PLAINTEXT_HEAD_LENGTH + NONCE_LENGTH + BODY_HEAD_LENGTH + TAG_LENGTH;
+	/** 明文数据的最大长度（密文长度不超过 Integer.MAX_VALUE） **/
+	public static final int MAX_PLAINTEXT_LENGTH = Integer.MAX_VALUE - 64;
+
+	private static final long MASK_6_BYTE = 0xFFFFFFFFFFFFL;
+	private static final long MASK_4_BYTE = 0xFFFFFFFFL;
+
+	/** 随机数的进程前缀与计数器（同一进程内不重复，不同进程的前缀与计数起点均随机） **/
+	private static final int NONCE_PREFIX;
+	private static final AtomicLong NONCE_COUNTER;
+
+	static {
+		SecureRandom random = new SecureRandom();
+		NONCE_PREFIX = random.nextInt();
+		NONCE_COUNTER = new AtomicLong(random.nextLong());
+	}
+
+	private v03SafeData() {}
+
+	static v03SafeData newInstance(SafeEncryptor encryptor) {
+		v03SafeData safeData = new v03SafeData();
+		safeData.loadVersion(encryptor);
+		return safeData;
+	}
+
+	public static v03SafeData newInstance(SafeEncryptor encryptor, byte[] data, int keyId, int mappingId) {
+		v03SafeData safeData = newInstance(encryptor);
+		safeData.byteMappingId = mappingId;
+		safeData.secretKeyId = keyId;
+		safeData.randomCode = Math.round(Math.random() * 0x1FFFFFFFFL);
+		safeData.randomCode &= MASK_4_BYTE;
+		if(data != null) {
+			safeData.plaintextLength = data.length;
+		}
+		safeData.plaintextData = data;
+		safeData.encryptTime = System.currentTimeMillis();
+		safeData.encryptTime &= MASK_6_BYTE;
+		return safeData;
+	}
+
+	/**
+	 * 计算明文加密后的密文长度
+	 * @param plaintextLength 明文数据长度
+	 * @return 密文数据的字节数
+	 */
+	public static int encryptedLength(int plaintextLength) {
+		return OVERHEAD_LENGTH + plaintextLength;
+	}
+
+	@Override
+	public boolean silentCheck() {
+		if(silentCheckHead() == false) {
+			return false;
+		}
+		if(plaintextData == null) {
+			errorCode = 20103106;
+			errorMessage = "plaintext is null";
+			return false;
+		} else if(plaintextLength != plaintextData.length) {
+			errorCode = 20103107;
+			errorMessage = "data length is not equal";
+			return false;
+		} else if(plaintextLength > MAX_PLAINTEXT_LENGTH) {
+			errorCode = 20103108;
+			errorMessage = "plaintext length is greater than " + MAX_PLAINTEXT_LENGTH;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 检查明文数据以外的字段
+	 * @return 检查通过返回 true，否则返回 false
+	 */
+	protected boolean silentCheckHead() {
+		if(super.silentCheckFront() == false) {
+			return false;
+		}
+		if(byteMappingId < 0 || byteMappingId > 0xFF) {
+			errorCode = 20103101;
+			errorMessage = "mappingId not in valid scope";
+			return false;
+		} else if(secretKeyId <= 0 || secretKeyId > 0xFFFFFF) {
+			errorCode = 20103102;
+			errorMessage = "keyId not in valid scope";
+			return false;
+		} else if(encryptTime <= 0L || encryptTime > MASK_6_BYTE) {
+			errorCode = 20103103;
+			errorMessage = "encryptTime not in valid scope";
+			return false;
+		} else if(randomCode < 0L || randomCode > MASK_4_BYTE) {
+			errorCode = 20103104;
+			errorMessage = "randomCode not in valid scope";
+			return false;
+		} else if(reserved != 0) {
+			errorCode = 20103105;
+			errorMessage = "reserved is not 0";
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 数据签名由AES-GCM在加密时生成（认证标签的前8字节），不单独计算
+	 * @return 加密或解密后的数据签名，加密前为0
+	 */
+	@Override
+	public long generateHashCode() {
+		return hashCode;
+	}
+
+	/**
+	 * 合并加密用的头部数据（明文存储，同时作为附加认证数据）
+	 * @return 包含全部明文存储的字段
+	 */
+	@Override
+	public byte[] mergeEncryptHead() {
+		byte[] bts = new byte[PLAINTEXT_HEAD_LENGTH];
+		writeEncryptHead(ByteBuffer.wrap(bts));
+		return bts;
+	}
+
+	/**
+	 * 合并加密用的数据源（固定字段与明文数据）
+	 * @return 包含全部密文存储的字段
+	 */
+	@Override
+	public byte[] mergeEncryptBody() {
+		byte[] bts = new byte[BODY_HEAD_LENGTH + plaintextLength];
+		writeEncryptBodyHead(bts, 0);
+		System.arraycopy(plaintextData, 0, bts, BODY_HEAD_LENGTH, plaintextLength);
+		return bts;
+	}
+
+	/**
+	 * 写入明文存储的头部字段（6字节）
+	 * @param buff ByteBuffer对象（从当前位置写入）
+	 */
+	protected void writeEncryptHead(ByteBuffer buff) {
+		writeVersion(buff); //主次版本号，2字节
+		buff.put((byte) byteMappingId);
+		buff.put((byte) (secretKeyId >>> 16));
+		buff.put((byte) (secretKeyId >>> 8));
+		buff.put((byte) secretKeyId);
+	}
+
+	/**
+	 * 写入密文存储的固定字段（14字节，高字节在前）
+	 * @param bts 字节数组
+	 * @param offset 写入位置
+	 */
+	protected void writeEncryptBodyHead(byte[] bts, int offset) {
+		SafeMathUtils.writeLongAsBigEndian(bts, offset, reserved, 4);
+		SafeMathUtils.writeLongAsBigEndian(bts, offset + 4, encryptTime, 6);
+		SafeMathUtils.writeLongAsBigEndian(bts, offset + 10, randomCode, 4);
+	}
+
+	/**
+	 * 生成加密用的随机数（同一进程内不重复）
+	 * @param bts 字节数组
+	 * @param offset 写入位置（长度为 NONCE_LENGTH）
+	 */
+	static void nextNonce(byte[] bts, int offset) {
+		SafeMathUtils.writeLongAsBigEndian(bts, offset, NONCE_PREFIX, 4);
+		SafeMathUtils.writeLongAsBigEndian(bts, offset + 4, NONCE_COUNTER.getAndIncrement(), 8);
+	}
+
+	/**
+	 * 解析明文存储的头部字段，并检查版本号
+	 * @param data 密文数据
+	 * @param offset 密文数据的偏移量
+	 * @return 版本号一致返回 true
+	 */
+	protected boolean loadEncryptedHead(byte[] data, int offset) {
+		int theMajorVersion = data[offset] & 0xFF;
+		int theMinorVersion = data[offset + 1] & 0xFF;
+		this.byteMappingId = data[offset + 2] & 0xFF;
+		this.secretKeyId = SafeMathUtils.parseIntAsBigEndian(data, offset + 3, 3);
+		if(theMajorVersion != this.majorVersion || theMinorVersion != this.minorVersion) {
+			this.errorCode = 20103131;
+			this.errorMessage = "SafeData version and data version is not equal";
+		}
+		return (this.errorCode == 0);
+	}
+
+	/**
+	 * 加载解密出的固定字段（14字节）
+	 * @param bts 解密后的数据
+	 * @param offset 固定字段的偏移量
+	 * @return 检查通过返回 true
+	 */
+	boolean loadBodyHead(byte[] bts, int offset) {
+		reserved = SafeMathUtils.parseIntAsBigEndian(bts, offset, 4);
+		encryptTime = SafeMathUtils.parseLongAsBigEndian(bts, offset + 4, 6);
+		randomCode = SafeMathUtils.parseLongAsBigEndian(bts, offset + 10, 4);
+		if(reserved != 0) {
+			return setDataError(20103105, "reserved is not 0");
+		}
+		return true;
+	}
+
+	/**
+	 * 加载明文数据
+	 * @param data 明文数据
+	 */
+	void loadPlaintext(byte[] data) {
+		this.plaintextLength = data.length;
+		this.plaintextData = data;
+	}
+
+	/**
+	 * 按认证标签设置数据签名（认证标签的前8字节，高字节在前）
+	 * @param tag 认证标签所在的数组
+	 * @param offset 认证标签的偏移量
+	 */
+	void loadTag(byte[] tag, int offset) {
+		this.hashCode = SafeMathUtils.parseLongAsBigEndian(tag, offset, 8);
+	}
+}
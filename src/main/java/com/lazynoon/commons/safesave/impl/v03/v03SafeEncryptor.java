@@ -0,0 +1,293 @@
+package com.lazynoon.commons.safesave.impl.v03;
+
+import com.lazynoon.commons.safesave.SafeCryptoException;
+import com.lazynoon.commons.safesave.SafeData;
+import com.lazynoon.commons.safesave.SafeEncryptor;
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.utils.SafeByteUtils;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * v3.0 加密解密处理类（AES-GCM认证加密）
+ *   头部字段作为附加认证数据，由GCM认证标签校验完整性，不再单独计算明文摘要
+ *   GCM模式由JDK按硬件指令（AES-NI、CLMUL）加速，相同明文每次加密的密文不同
+ *   需要 Java 8 及以上版本（Java 7 的 SunJCE 未实现 AES/GCM，加解密返回错误），v1.0、v2.0 不受影响
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class v03SafeEncryptor extends SafeEncryptor {
+	public static final int MAJOR_VERSION = 3;
+
+	public v03SafeEncryptor() {}
+
+	@Override
+	public int getClassMajorVersion() {
+		return MAJOR_VERSION;
+	}
+
+	@Override
+	public byte[] encrypt(byte[] data, int keyId, int mappingId) throws SafeCryptoException {
+		return encrypt(v03SafeData.newInstance(this, data, keyId, mappingId));
+	}
+
+	@Override
+	public int encryptedLength(int plaintextLength) {
+		return v03SafeData.encryptedLength(plaintextLength);
+	}
+
+	@Override
+	public byte[] encrypt(SafeData data) throws SafeCryptoException {
+		if(data == null) {
+			return null;
+		}
+		if(silentCheckData(data) == false) {
+			throw new SafeCryptoException(data.getErrorCode(), data.getErrorMessage());
+		}
+		if(!(data instanceof v03SafeData)) {
+			throw new SafeCryptoException(20103505, "SafeData is not v03SafeData");
+		}
+		byte[] result = new byte[encryptedLength(data.getPlaintextLength())];
+		encryptTo((v03SafeData) data, data.getPlaintextData(), 0, ByteBuffer.wrap(result));
+		return result;
+	}
+
+	@Override
+	public int encrypt(byte[] src, int offset, int length, int keyId, int mappingId, ByteBuffer dst) throws SafeCryptoException {
+		if(src == null || length < 0) {
+			throw new SafeCryptoException(20103106, "plaintext is null");
+		}
+		if(offset < 0 || offset + length > src.length) {
+			throw new SafeCryptoException(20103506, "plaintext offset out of bounds. offset: " + offset);
+		}
+		v03SafeData safeData = v03SafeData.newInstance(this, null, keyId, mappingId);
+		if(safeData.silentCheckHead() == false) {
+			throw new SafeCryptoException(safeData.getErrorCode(), safeData.getErrorMessage());
+		}
+		return encryptTo(safeData, src, offset, length, dst);
+	}
+
+	private int encryptTo(v03SafeData data, byte[] src, int offset, ByteBuffer dst) throws SafeCryptoException {
+		return encryptTo(data, src, offset, data.getPlaintextLength(), dst);
+	}
+
+	/**
+	 * 加密数据对象，密文直接写入缓冲区
+	 * @param data 数据对象（明文数据以外的字段，须已检查）
+	 * @param src 明文数据
+	 * @param offset 明文数据的偏移量
+	 * @param length 明文数据的长度
+	 * @param dst 密文写入的缓冲区（从当前位置写入）
+	 * @return 写入的密文字节数
+	 * @throws SafeCryptoException 加密异常
+	 */
+	private int encryptTo(v03SafeData data, byte[] src, int offset, int length, ByteBuffer dst) throws SafeCryptoException {
+		SafeAES aes = getCipherEngine(data.getSecretKeyId());
+		if(aes == null) {
+			throw new SafeCryptoException(20103501, "Key not found. keyId is "+data.getSecretKeyId());
+		}
+		byte[] byteMapping = null;
+		if(data.getByteMappingId() != 0) {
+			byteMapping = getEncryptByteMapping(data.getByteMappingId());
+			if(byteMapping == null) {
+				throw new SafeCryptoException(20103502, "Byte Mapping not found. mappingId is "+data.getByteMappingId());
+			}
+		}
+		int totalLength = encryptedLength(length);
+		if(dst.remaining() < totalLength) {
+			throw new SafeCryptoException(20103504, "buffer remaining is less than " + totalLength);
+		}
+		byte[] head = data.mergeEncryptHead();
+		byte[] fieldBts = new byte[v03SafeData.BODY_HEAD_LENGTH];
+		data.writeEncryptBodyHead(fieldBts, 0);
+		dst.put(head);
+		seal(aes, byteMapping, head, fieldBts, src, offset, length, dst, data);
+		return totalLength;
+	}
+
+	/**
+	 * 生成随机数，加密固定字段与明文数据，依次写入随机数、密文与认证标签，再按字节映射表转换
+	 * @param aes AES加密引擎
+	 * @param byteMapping 加密用的字节映射表（为null则不转换）
+	 * @param head 头部字段（附加认证数据）
+	 * @param fieldBts 固定字段（14字节）
+	 * @param src 明文数据
+	 * @param offset 明文数据的偏移量
+	 * @param length 明文数据的长度
+	 * @param dst 写入的缓冲区（从当前位置写入）
+	 * @param data 数据对象（加密后设置数据签名）
+	 * @throws SafeCryptoException 加密异常
+	 */
+	private void seal(SafeAES aes, byte[] byteMapping, byte[] head, byte[] fieldBts, byte[] src, int offset, int length,
+					  ByteBuffer dst, v03SafeData data) throws SafeCryptoException {
+		int startPosition = dst.position();
+		byte[] nonce = new byte[v03SafeData.NONCE_LENGTH];
+		v03SafeData.nextNonce(nonce, 0);
+		dst.put(nonce);
+		Cipher cipher;
+		try {
+			cipher = aes.borrowGcmCipher(Cipher.ENCRYPT_MODE, nonce, 0);
+		} catch (SafeCryptoException e) {
+			throw new SafeCryptoException(20103503, e.getMessage());
+		}
+		try {
+			cipher.updateAAD(head, 0, v03SafeData.PLAINTEXT_HEAD_LENGTH);
+			cipher.update(ByteBuffer.wrap(fieldBts, 0, v03SafeData.BODY_HEAD_LENGTH), dst);
+			cipher.doFinal(ByteBuffer.wrap(src, offset, length), dst);
+		} catch (GeneralSecurityException e) {
+			throw new SafeCryptoException(20103503, e.toString());
+		} finally {
+			aes.releaseGcmCipher(cipher);
+		}
+		byte[] tag = new byte[8];
+		int tagPosition = dst.position() - v03SafeData.TAG_LENGTH;
+		for(int i=0; i<tag.length; i++) {
+			tag[i] = dst.get(tagPosition + i);
+		}
+		data.loadTag(tag, 0);
+		if(byteMapping != null) {
+			SafeByteUtils.convertMapping(dst, startPosition, dst.position() - startPosition, byteMapping);
+		}
+	}
+
+	@Override
+	public SafeData silentDecrypt(byte[] data) {
+		return silentDecrypt(data, 0, data == null ? 0 : data.length);
+	}
+
+	/**
+	 * 以安静模式解密字节数组的指定范围（未使用字节映射表时，直接解密原数组，不复制密文）
+	 */
+	@Override
+	public SafeData silentDecrypt(byte[] data, int offset, int length) {
+		v03SafeData safeData = v03SafeData.newInstance(this);
+		if(data == null || length < v03SafeData.OVERHEAD_LENGTH) {
+			safeData.setDataError(20103601, "Encrypted Data length is less than " + v03SafeData.OVERHEAD_LENGTH);
+			return safeData;
+		}
+		if(offset < 0 || offset + length > data.length) {
+			safeData.setDataError(20103608, "offset or length is out of bounds");
+			return safeData;
+		}
+		if(safeData.loadEncryptedHead(data, offset) == false) {
+			return safeData;
+		}
+		byte[] body = decryptBody(safeData, data, offset, length);
+		if(body == null) {
+			return safeData;
+		}
+		safeData.loadPlaintext(Arrays.copyOfRange(body, v03SafeData.BODY_HEAD_LENGTH, body.length));
+		return safeData;
+	}
+
+	@Override
+	public int decryptInto(byte[] src, int offset, int length, ByteBuffer dst) {
+		if(src == null || length < v03SafeData.OVERHEAD_LENGTH) {
+			return -20103601;
+		}
+		if(offset < 0 || offset + length > src.length) {
+			return -20103606;
+		}
+		v03SafeData safeData = v03SafeData.newInstance(this);
+		if(safeData.loadEncryptedHead(src, offset) == false) {
+			return -safeData.getErrorCode();
+		}
+		byte[] body = decryptBody(safeData, src, offset, length);
+		if(body == null) {
+			return -safeData.getErrorCode();
+		}
+		int plaintextLength = body.length - v03SafeData.BODY_HEAD_LENGTH;
+		if(dst.remaining() < plaintextLength) {
+			return -20103605;
+		}
+		dst.put(body, v03SafeData.BODY_HEAD_LENGTH, plaintextLength);
+		return plaintextLength;
+	}
+
+	/**
+	 * 解密头部之后的密文，校验认证标签
+	 * @param safeData 已加载头部字段的数据对象（解密后加载固定字段与数据签名，失败时设置错误码）
+	 * @param data 密文数据
+	 * @param offset 密文数据的偏移量
+	 * @param length 密文数据的长度
+	 * @return 固定字段与明文数据，解密失败返回 null
+	 */
+	private byte[] decryptBody(v03SafeData safeData, byte[] data, int offset, int length) {
+		SafeAES aes = getCipherEngine(safeData.getSecretKeyId());
+		if(aes == null) {
+			safeData.setDataError(20103602, "Key not found. keyId is "+safeData.getSecretKeyId());
+			return null;
+		}
+		byte[] body = data;
+		int bodyOffset = offset + v03SafeData.PLAINTEXT_HEAD_LENGTH;
+		int bodyLength = length - v03SafeData.PLAINTEXT_HEAD_LENGTH;
+		if(safeData.getByteMappingId() != 0) {
+			byte[] byteMapping = getDecryptByteMapping(safeData.getByteMappingId());
+			if(byteMapping == null) {
+				safeData.setDataError(20103603, "Byte Mapping not found. mappingId is "+safeData.getByteMappingId());
+				return null;
+			}
+			body = new byte[bodyLength];
+			System.arraycopy(data, bodyOffset, body, 0, bodyLength);
+			SafeByteUtils.convertMapping(body, 0, bodyLength, byteMapping);
+			bodyOffset = 0;
+		}
+		Cipher cipher;
+		try {
+			cipher = aes.borrowGcmCipher(Cipher.DECRYPT_MODE, body, bodyOffset);
+		} catch (SafeCryptoException e) {
+			safeData.setDataError(20103604, "CryptoException: " + e.getMessage());
+			return null;
+		}
+		byte[] result = new byte[bodyLength - v03SafeData.NONCE_LENGTH - v03SafeData.TAG_LENGTH];
+		try {
+			cipher.updateAAD(data, offset, v03SafeData.PLAINTEXT_HEAD_LENGTH);
+			cipher.doFinal(body, bodyOffset + v03SafeData.NONCE_LENGTH, bodyLength - v03SafeData.NONCE_LENGTH, result, 0);
+		} catch (AEADBadTagException e) {
+			safeData.setDataError(20103137, "authentication tag is not match");
+			return null;
+		} catch (GeneralSecurityException e) {
+			safeData.setDataError(20103604, "CryptoException: " + e);
+			return null;
+		} finally {
+			aes.releaseGcmCipher(cipher);
+		}
+		safeData.loadTag(body, bodyOffset + bodyLength - v03SafeData.TAG_LENGTH);
+		if(safeData.loadBodyHead(result, 0) == false) {
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * 更换字节映射表：映射表ID属于附加认证数据，解密后使用新的随机数重新加密（固定字段与明文不变，密文长度不变）
+	 */
+	@Override
+	protected void remapBody(byte[] data, int offset, int length, RemapTables tables) throws SafeCryptoException {
+		if(length < v03SafeData.OVERHEAD_LENGTH) {
+			throw new SafeCryptoException(20103609, "encrypted data length is not valid. length: " + length);
+		}
+		v03SafeData safeData = v03SafeData.newInstance(this);
+		safeData.loadEncryptedHead(data, offset);
+		SafeAES aes = getCipherEngine(safeData.getSecretKeyId());
+		if(aes == null) {
+			throw new SafeCryptoException(20103602, "Key not found. keyId is " + safeData.getSecretKeyId());
+		}
+		byte[] body = decryptBody(safeData, data, offset, length);
+		if(body == null) {
+			throw new SafeCryptoException(safeData.getErrorCode(), safeData.getErrorMessage());
+		}
+		byte[] head = Arrays.copyOfRange(data, offset, offset + v03SafeData.PLAINTEXT_HEAD_LENGTH);
+		head[2] = (byte) tables.newMappingId;
+		byte[] sealed = new byte[length - v03SafeData.PLAINTEXT_HEAD_LENGTH];
+		seal(aes, tables.encryptMapping, head,
+				Arrays.copyOf(body, v03SafeData.BODY_HEAD_LENGTH), body, v03SafeData.BODY_HEAD_LENGTH,
+				body.length - v03SafeData.BODY_HEAD_LENGTH, ByteBuffer.wrap(sealed), safeData);
+		System.arraycopy(sealed, 0, data, offset + v03SafeData.PLAINTEXT_HEAD_LENGTH, sealed.length);
+	}
+}
@@ -0,0 +1,25 @@
+package com.lazynoon.commons.safesave.rekey;
+
+import java.io.IOException;
+
+/**
+ * 更换秘钥的检查点存储（中断后从检查点继续）
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public interface SafeRekeyCheckpoint {
+	/**
+	 * 读取检查点
+	 * @return 已处理的最后一条记录的标识，没有检查点返回 null
+	 * @throws IOException 读取异常
+	 */
+	String load() throws IOException;
+
+	/**
+	 * 保存检查点
+	 * @param checkpoint 已处理的最后一条记录的标识
+	 * @throws IOException 写入异常
+	 */
+	void save(String checkpoint) throws IOException;
+}
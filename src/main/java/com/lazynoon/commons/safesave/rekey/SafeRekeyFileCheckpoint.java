@@ -0,0 +1,53 @@
+package com.lazynoon.commons.safesave.rekey;
+
+import com.lazynoon.commons.safesave.utils.SafeEncodeUtils;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 保存在文件中的检查点（先写临时文件再替换，中断时不会留下不完整的检查点）
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeRekeyFileCheckpoint implements SafeRekeyCheckpoint {
+	private final Path file;
+
+	/**
+	 * @param file 检查点文件（UTF-8 文本）
+	 */
+	public SafeRekeyFileCheckpoint(Path file) {
+		if(file == null) {
+			throw new IllegalArgumentException("checkpoint file is null");
+		}
+		this.file = file.toAbsolutePath();
+	}
+
+	@Override
+	public String load() throws IOException {
+		if(Files.exists(file) == false) {
+			return null;
+		}
+		String checkpoint = new String(Files.readAllBytes(file), SafeEncodeUtils.Charsets.UTF_8);
+		return checkpoint.length() == 0 ? null : checkpoint;
+	}
+
+	@Override
+	public void save(String checkpoint) throws IOException {
+		Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.write(tempFile, checkpoint.getBytes(SafeEncodeUtils.Charsets.UTF_8));
+		try {
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	public Path getFile() {
+		return file;
+	}
+}
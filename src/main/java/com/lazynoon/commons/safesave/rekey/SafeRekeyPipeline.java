@@ -0,0 +1,234 @@
+package com.lazynoon.commons.safesave.rekey;
+
+import com.lazynoon.commons.safesave.SafeBatchResult;
+import com.lazynoon.commons.safesave.SafeCryptoException;
+import com.lazynoon.commons.safesave.SafeDataView;
+import com.lazynoon.commons.safesave.SafeEncryptor;
+import com.lazynoon.commons.safesave.SafeEncryptorFactory;
+import com.lazynoon.commons.safesave.SafeKeyStore;
+import com.lazynoon.commons.safesave.SafeParallelEncryptor;
+import com.lazynoon.commons.safesave.utils.SafeExecutors;
+import com.lazynoon.commons.safesave.utils.SafeRateLimiter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 在线批量更换秘钥（秘钥轮换）
+ *   从数据源按批读取密文 -> 按头部字段跳过已使用目标秘钥的记录（不解密），只有字节映射表不同的记录直接转换密文
+ *   -> 多线程批量解密并用目标秘钥重新加密 -> 写入目标 -> 保存检查点
+ *   使用独立的线程池（默认为CPU核数的一半），并可按每秒记录数限速，避免影响在线业务
+ *   中断后再次执行，从检查点继续
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeRekeyPipeline {
+	/** 默认的每批记录数 **/
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private final SafeKeyStore keyStore;
+	private final SafeRekeySource source;
+	private final SafeRekeySink sink;
+	private final int majorVersion;
+	private final int minorVersion;
+	private final int keyId;
+	private final int mappingId;
+
+	private SafeRekeyCheckpoint checkpoint = null;
+	private SafeRateLimiter rateLimiter = null;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private int parallelism = Math.max(1, SafeExecutors.getDefaultParallelism() / 2);
+	private volatile boolean stopped = false;
+
+	/**
+	 * @param keyStore 秘钥存储器（须包含原秘钥与目标秘钥）
+	 * @param source 数据源
+	 * @param sink 写入目标
+	 * @param majorVersion 目标加密算法主要版本号
+	 * @param minorVersion 目标加密算法次要版本号
+	 * @param keyId 目标秘钥ID
+	 * @param mappingId 目标字节映射表ID
+	 */
+	public SafeRekeyPipeline(SafeKeyStore keyStore, SafeRekeySource source, SafeRekeySink sink,
+							 int majorVersion, int minorVersion, int keyId, int mappingId) {
+		if(keyStore == null) {
+			throw new IllegalArgumentException("keyStore is null");
+		}
+		if(source == null) {
+			throw new IllegalArgumentException("rekey source is null");
+		}
+		if(sink == null) {
+			throw new IllegalArgumentException("rekey sink is null");
+		}
+		this.keyStore = keyStore;
+		this.source = source;
+		this.sink = sink;
+		this.majorVersion = majorVersion;
+		this.minorVersion = minorVersion;
+		this.keyId = keyId;
+		this.mappingId = mappingId;
+	}
+
+	/**
+	 * 执行更换秘钥，直到数据源读完或调用 stop()
+	 * @return 执行结果
+	 * @throws SafeCryptoException 目标版本、秘钥或字节映射表不可用
+	 * @throws IOException 数据源、写入目标或检查点的读写异常（已写入的批次均已保存检查点）
+	 */
+	public SafeRekeyResult run() throws SafeCryptoException, IOException {
+		SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(majorVersion, minorVersion, keyStore);
+		if(encryptor == null) {
+			throw new SafeCryptoException(20100601, "not support encrypt version: " + majorVersion + "." + minorVersion);
+		}
+		//目标秘钥与字节映射表不可用时，在读取数据前失败
+		encryptor.encrypt(new byte[1], keyId, mappingId);
+		SafeRekeyResult result = new SafeRekeyResult();
+		String position = checkpoint == null ? null : checkpoint.load();
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+				new SafeExecutors.DaemonThreadFactory("safe-rekey-"));
+		try {
+			SafeParallelEncryptor parallelEncryptor = new SafeParallelEncryptor(keyStore, executor, parallelism);
+			SafeDataView view = new SafeDataView(keyStore);
+			while(stopped == false) {
+				List<SafeRekeyRecord> batch = source.read(position, batchSize);
+				if(batch == null || batch.isEmpty()) {
+					result.setFinished(true);
+					break;
+				}
+				if(rateLimiter != null) {
+					try {
+						rateLimiter.acquire(batch.size());
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException("rekey interrupted");
+					}
+				}
+				List<SafeRekeyRecord> pending = new ArrayList<SafeRekeyRecord>(batch.size());
+				List<SafeRekeyRecord> rekeyed = new ArrayList<SafeRekeyRecord>(batch.size());
+				int skippedSize = 0;
+				for(SafeRekeyRecord record : batch) {
+					view.wrap(record.getData());
+					if(view.getMajorVersion() != majorVersion || view.getMinorVersion() != minorVersion
+							|| view.getSecretKeyId() != keyId) {
+						pending.add(record);
+					} else if(view.getByteMappingId() == mappingId) {
+						skippedSize++;
+					} else {
+						//只更换字节映射表：不解密，直接转换密文
+						try {
+							record.setData(encryptor.remapCiphertext(record.getData(), mappingId));
+							rekeyed.add(record);
+						} catch (SafeCryptoException e) {
+							result.addFailure(record.getKey(), e.getCode(), e.getMessage());
+						}
+					}
+				}
+				view.reset();
+				rekeyed.addAll(rekey(parallelEncryptor, pending, result));
+				if(rekeyed.isEmpty() == false) {
+					sink.write(rekeyed);
+				}
+				position = batch.get(batch.size() - 1).getKey();
+				if(checkpoint != null) {
+					checkpoint.save(position);
+				}
+				result.addBatch(batch.size(), skippedSize, rekeyed.size(), position);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		return result;
+	}
+
+	/**
+	 * 批量解密并用目标秘钥重新加密
+	 * @return 成功更换秘钥的记录（失败的记录计入执行结果）
+	 */
+	private List<SafeRekeyRecord> rekey(SafeParallelEncryptor parallelEncryptor, List<SafeRekeyRecord> pending,
+										SafeRekeyResult result) throws SafeCryptoException {
+		List<SafeRekeyRecord> decrypted = new ArrayList<SafeRekeyRecord>(pending.size());
+		if(pending.isEmpty()) {
+			return decrypted;
+		}
+		byte[][] data = new byte[pending.size()][];
+		for(int i=0; i<data.length; i++) {
+			data[i] = pending.get(i).getData();
+		}
+		SafeBatchResult decryptResult = parallelEncryptor.decryptBatch(data);
+		List<byte[]> plaintexts = new ArrayList<byte[]>(data.length);
+		for(int i=0; i<data.length; i++) {
+			if(decryptResult.isSuccess(i)) {
+				decrypted.add(pending.get(i));
+				plaintexts.add(decryptResult.getData(i));
+			} else {
+				result.addFailure(pending.get(i).getKey(), decryptResult.getErrorCode(i), decryptResult.getErrorMessage(i));
+			}
+		}
+		List<SafeRekeyRecord> rekeyed = new ArrayList<SafeRekeyRecord>(decrypted.size());
+		if(decrypted.isEmpty()) {
+			return rekeyed;
+		}
+		SafeBatchResult encryptResult = parallelEncryptor.encryptBatch(majorVersion, minorVersion, plaintexts, keyId, mappingId);
+		for(int i=0; i<decrypted.size(); i++) {
+			SafeRekeyRecord record = decrypted.get(i);
+			if(encryptResult.isSuccess(i)) {
+				record.setData(encryptResult.getData(i));
+				rekeyed.add(record);
+			} else {
+				result.addFailure(record.getKey(), encryptResult.getErrorCode(i), encryptResult.getErrorMessage(i));
+			}
+		}
+		return rekeyed;
+	}
+
+	/**
+	 * 在当前批次完成后停止（可由其他线程调用）
+	 *   停止后不可恢复：在 run() 之前调用时，run() 不处理任何记录；继续执行须创建新的对象（从检查点继续）
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * 设置检查点存储（执行时从检查点继续，每批写入后保存）
+	 * @param checkpoint 检查点存储（为 null 则不保存）
+	 */
+	public void setCheckpoint(SafeRekeyCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * 设置限速器（按记录数限速，执行中可调整限速器的速度）
+	 * @param rateLimiter 限速器（为 null 则不限速）
+	 */
+	public void setRateLimiter(SafeRateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * 设置每批记录数
+	 * @param batchSize 每批记录数（大于0）
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize must greater than 0");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * 设置加解密的线程数
+	 * @param parallelism 线程数（大于0）
+	 */
+	public void setParallelism(int parallelism) {
+		if(parallelism <= 0) {
+			throw new IllegalArgumentException("parallelism must greater than 0");
+		}
+		this.parallelism = parallelism;
+	}
+}
@@ -0,0 +1,35 @@
+package com.lazynoon.commons.safesave.rekey;
+
+/**
+ * 待更换秘钥的密文记录
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeRekeyRecord {
+	/** 记录的唯一标识（数据源按此排序，同时作为检查点） **/
+	private final String key;
+	/** 密文数据（更换秘钥后为新密文） **/
+	private byte[] data;
+
+	/**
+	 * @param key 记录的唯一标识（数据源按此排序）
+	 * @param data 密文数据
+	 */
+	public SafeRekeyRecord(String key, byte[] data) {
+		this.key = key;
+		this.data = data;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	void setData(byte[] data) {
+		this.data = data;
+	}
+}
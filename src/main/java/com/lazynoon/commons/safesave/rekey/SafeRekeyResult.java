@@ -0,0 +1,90 @@
+package com.lazynoon.commons.safesave.rekey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 更换秘钥的执行结果
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeRekeyResult {
+	/** 最多记录的失败记录数 **/
+	public static final int MAX_FAILURES = 1000;
+
+	private long readCount = 0;
+	private long skippedCount = 0;
+	private long rekeyedCount = 0;
+	private long failedCount = 0;
+	private int batchCount = 0;
+	private String checkpoint = null;
+	private boolean finished = false;
+	private final List<String> failures = new ArrayList<String>();
+
+	void addBatch(int readSize, int skippedSize, int rekeyedSize, String checkpoint) {
+		this.readCount += readSize;
+		this.skippedCount += skippedSize;
+		this.rekeyedCount += rekeyedSize;
+		this.batchCount++;
+		this.checkpoint = checkpoint;
+	}
+
+	void addFailure(String key, int errorCode, String errorMessage) {
+		failedCount++;
+		if(failures.size() < MAX_FAILURES) {
+			failures.add(key + ": [" + errorCode + "] " + errorMessage);
+		}
+	}
+
+	void setFinished(boolean finished) {
+		this.finished = finished;
+	}
+
+	/** 读取的记录数 **/
+	public long getReadCount() {
+		return readCount;
+	}
+
+	/** 已使用目标秘钥、跳过的记录数 **/
+	public long getSkippedCount() {
+		return skippedCount;
+	}
+
+	/** 更换秘钥并写入的记录数 **/
+	public long getRekeyedCount() {
+		return rekeyedCount;
+	}
+
+	/** 解密或加密失败、未写入的记录数 **/
+	public long getFailedCount() {
+		return failedCount;
+	}
+
+	/** 处理的批次数 **/
+	public int getBatchCount() {
+		return batchCount;
+	}
+
+	/** 最后保存的检查点 **/
+	public String getCheckpoint() {
+		return checkpoint;
+	}
+
+	/** 数据源是否已全部处理（调用 stop() 停止时为 false） **/
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/** 失败记录的标识与错误信息（最多 MAX_FAILURES 条） **/
+	public List<String> getFailures() {
+		return Collections.unmodifiableList(failures);
+	}
+
+	@Override
+	public String toString() {
+		return "read: " + readCount + ", skipped: " + skippedCount + ", rekeyed: " + rekeyedCount
+				+ ", failed: " + failedCount + ", batches: " + batchCount + ", finished: " + finished;
+	}
+}
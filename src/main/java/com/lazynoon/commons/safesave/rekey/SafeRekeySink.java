@@ -0,0 +1,20 @@
+package com.lazynoon.commons.safesave.rekey;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 更换秘钥后的写入目标（如按主键更新数据库）
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public interface SafeRekeySink {
+	/**
+	 * 写入已更换秘钥的记录（只包含本批次中实际更换了秘钥的记录）
+	 *   写入完成后才保存检查点，写入须是幂等的（中断后从上一个检查点重做）
+	 * @param records 新密文记录
+	 * @throws IOException 写入异常
+	 */
+	void write(List<SafeRekeyRecord> records) throws IOException;
+}
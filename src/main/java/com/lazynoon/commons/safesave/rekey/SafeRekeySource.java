@@ -0,0 +1,21 @@
+package com.lazynoon.commons.safesave.rekey;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 更换秘钥的数据源（如按主键分页读取数据库）
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public interface SafeRekeySource {
+	/**
+	 * 读取检查点之后的一批记录（按记录标识顺序）
+	 * @param checkpoint 已处理的最后一条记录的标识（为 null 时从头读取）
+	 * @param maxSize 最多读取的记录数
+	 * @return 记录列表，没有后续记录时返回空列表
+	 * @throws IOException 读取异常
+	 */
+	List<SafeRekeyRecord> read(String checkpoint, int maxSize) throws IOException;
+}
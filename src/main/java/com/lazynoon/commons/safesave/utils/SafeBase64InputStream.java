@@ -0,0 +1,43 @@
+package com.lazynoon.commons.safesave.utils;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * 64进制解码输入流（标准base64或HTTP64字符表，解码结果与 SafeEncodeUtils 整体解码完全一致）
+ *   可作为解密输入流的下层输入流，边解码边解密
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeBase64InputStream extends SafeDecodeInputStream {
+	private final SafeEncodeUtils.Base64Alphabet alphabet;
+
+	/**
+	 * @param in 编码数据的输入流（关闭时一并关闭）
+	 * @param alphabet 字符表
+	 */
+	public SafeBase64InputStream(InputStream in, SafeEncodeUtils.Base64Alphabet alphabet) {
+		super(in, null, 4, alphabet.isBackfill() ? SafeEncodeUtils.Base64Alphabet.MAX_BACKFILL_COUNT : 0);
+		this.alphabet = alphabet;
+	}
+
+	/**
+	 * @param reader 编码数据的字符流（关闭时一并关闭）
+	 * @param alphabet 字符表
+	 */
+	public SafeBase64InputStream(Reader reader, SafeEncodeUtils.Base64Alphabet alphabet) {
+		super(null, reader, 4, alphabet.isBackfill() ? SafeEncodeUtils.Base64Alphabet.MAX_BACKFILL_COUNT : 0);
+		this.alphabet = alphabet;
+	}
+
+	@Override
+	int decodeGroups(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		return SafeEncodeUtils.decode64(alphabet, src, offset, length, dst, dstOffset);
+	}
+
+	@Override
+	int decodeFinal(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		return SafeEncodeUtils.decodeBase64(alphabet, src, offset, length, dst, dstOffset);
+	}
+}
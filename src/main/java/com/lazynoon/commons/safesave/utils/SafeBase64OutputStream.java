@@ -0,0 +1,38 @@
+package com.lazynoon.commons.safesave.utils;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * 64进制编码输出流（标准base64或HTTP64字符表，编码结果与 SafeEncodeUtils 整体编码完全一致）
+ *   可作为加密输出流的下层输出流，密文边加密边编码
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeBase64OutputStream extends SafeEncodeOutputStream {
+	private final SafeEncodeUtils.Base64Alphabet alphabet;
+
+	/**
+	 * @param out 编码写入的输出流（关闭时一并关闭）
+	 * @param alphabet 字符表
+	 */
+	public SafeBase64OutputStream(OutputStream out, SafeEncodeUtils.Base64Alphabet alphabet) {
+		super(out, null, 3, alphabet.encodedLength(CHUNK_SIZE));
+		this.alphabet = alphabet;
+	}
+
+	/**
+	 * @param writer 编码写入的字符流（关闭时一并关闭）
+	 * @param alphabet 字符表
+	 */
+	public SafeBase64OutputStream(Writer writer, SafeEncodeUtils.Base64Alphabet alphabet) {
+		super(null, writer, 3, alphabet.encodedLength(CHUNK_SIZE));
+		this.alphabet = alphabet;
+	}
+
+	@Override
+	int encode(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		return SafeEncodeUtils.encodeBase64(alphabet, src, offset, length, dst, dstOffset);
+	}
+}
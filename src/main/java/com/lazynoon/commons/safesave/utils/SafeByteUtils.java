@@ -1,5 +1,6 @@
 package com.lazynoon.commons.safesave.utils;
 
+import java.nio.ByteBuffer;
 
 /**
  * 常用字节数组处理类
@@ -30,6 +31,66 @@ public class SafeByteUtils {
 		return result;
 	}
 
+	/**
+	 * 根据字节映射表，原地转换字节数组的指定范围
+	 * 注意：字节映射表，必须唯一对应关系，接口内部不检查唯一性
+	 * @param data 待转换数据（转换结果写回原数组）
+	 * @param offset 转换的起始位置
+	 * @param length 转换的字节数
+	 * @param byteMapping 字节映射表（共256字节）
+	 */
+	public static void convertMapping(byte[] data, int offset, int length, byte[] byteMapping) {
+		if(byteMapping == null || byteMapping.length != 256 || byteMapping[0] == byteMapping[255]) {
+			throw new IllegalArgumentException("byteMapping length must be 256");
+		}
+		int end = offset + length;
+		for(int i=offset; i<end; i++) {
+			data[i] = byteMapping[data[i] & 0xFF];
+		}
+	}
+
+	/**
+	 * 根据字节映射表，原地转换 ByteBuffer 的指定范围（按绝对位置，不改变 position）
+	 * @param buff 待转换数据（转换结果写回原缓冲区）
+	 * @param offset 转换的起始位置
+	 * @param length 转换的字节数
+	 * @param byteMapping 字节映射表（共256字节）
+	 */
+	public static void convertMapping(ByteBuffer buff, int offset, int length, byte[] byteMapping) {
+		if(buff.hasArray()) {
+			convertMapping(buff.array(), buff.arrayOffset() + offset, length, byteMapping);
+			return;
+		}
+		if(byteMapping == null || byteMapping.length != 256 || byteMapping[0] == byteMapping[255]) {
+			throw new IllegalArgumentException("byteMapping length must be 256");
+		}
+		int end = offset + length;
+		for(int i=offset; i<end; i++) {
+			buff.put(i, byteMapping[buff.get(i) & 0xFF]);
+		}
+	}
+
+	/**
+	 * 合并两个字节映射表：先按 first 转换、再按 second 转换的结果，与按合并后的映射表转换一次相同
+	 * @param first 先转换的字节映射表（为 null 表示不转换）
+	 * @param second 后转换的字节映射表（为 null 表示不转换）
+	 * @return 合并后的字节映射表（共256字节），两者都为 null 时返回 null
+	 */
+	public static byte[] composeMapping(byte[] first, byte[] second) {
+		if(first == null && second == null) {
+			return null;
+		}
+		if((first != null && first.length != 256) || (second != null && second.length != 256)) {
+			throw new IllegalArgumentException("byteMapping length must be 256");
+		}
+		byte[] result = new byte[256];
+		for(int i=0; i<result.length; i++) {
+			int index = (first == null) ? i : (first[i] & 0xFF);
+			result[i] = (second == null) ? (byte) index : second[index];
+		}
+		return result;
+	}
+
 	/**
 	 * 检查字节映射表是否正确
 	 * @param byteMapping 字节映射表（共256字节）
@@ -0,0 +1,243 @@
+package com.lazynoon.commons.safesave.utils;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 加密前的数据压缩（Deflater/Inflater 由对象池复用，不为每次调用创建压缩流与缓冲区）
+ * ----- 压缩数据格式 -----
+ *  4B originalLength 原文长度（高字节在前）
+ *  ?B deflateData 原始 deflate 数据（无 zlib 头部与校验码，完整性由加密数据的签名保证）
+ *
+ *   原文过短、抽样熵值过高（已压缩或已加密的数据），或压缩后节省不足1/8时，不压缩
+ *   压缩器对象同一时刻只被一个线程使用，归还时清除缓冲区中的压缩数据
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeCompressor {
+	/** 压缩数据头部（原文长度）的长度 **/
+	public static final int HEAD_LENGTH = 4;
+	/** 小于此长度的原文不压缩 **/
+	public static final int MIN_COMPRESS_LENGTH = 256;
+	/** 压缩级别（加密存储的热点路径，优先速度） **/
+	private static final int COMPRESS_LEVEL = Deflater.BEST_SPEED;
+	/** 不小于此长度的原文先抽样估算熵值 **/
+	private static final int ENTROPY_SAMPLE_MIN_LENGTH = 4096;
+	/** 抽样的分段长度与分段数 **/
+	private static final int SAMPLE_RUN_LENGTH = 16;
+	private static final int SAMPLE_RUN_COUNT = 64;
+	/** 抽样熵值超过此值（比特/字节）时不压缩 **/
+	private static final double MAX_SAMPLE_ENTROPY = 7.2;
+	/** deflate 的最大压缩比（解压前据此拒绝伪造的原文长度） **/
+	private static final int MAX_DEFLATE_RATIO = 1032;
+	/** 对象池最多缓存的压缩器数量 **/
+	private static final int MAX_POOL_SIZE = 256;
+	/** 超过此长度的缓冲区不缓存 **/
+	private static final int MAX_POOLED_LENGTH = 64 * 1024;
+	private static final Queue<SafeCompressor> compressorPool = new ConcurrentLinkedQueue<SafeCompressor>();
+	private static final AtomicInteger compressorPoolSize = new AtomicInteger(0);
+
+	private Deflater deflater = null;
+	private Inflater inflater = null;
+	private byte[] buff = new byte[1024];
+	/** 缓冲区中已写入的长度（归还时清除） **/
+	private int buffLength = 0;
+	private final int[] histogram = new int[256];
+	private final byte[] probe = new byte[1];
+
+	private SafeCompressor() {}
+
+	/**
+	 * 从对象池取出压缩器
+	 * @return 压缩器对象
+	 */
+	public static SafeCompressor borrow() {
+		SafeCompressor compressor = compressorPool.poll();
+		if(compressor == null) {
+			compressor = new SafeCompressor();
+		} else {
+			compressorPoolSize.decrementAndGet();
+		}
+		return compressor;
+	}
+
+	/**
+	 * 清除缓冲区，并归还到对象池（对象池已满时释放 Deflater/Inflater 的本地内存）
+	 * @param compressor 压缩器对象
+	 */
+	public static void release(SafeCompressor compressor) {
+		Arrays.fill(compressor.buff, 0, compressor.buffLength, (byte) 0);
+		compressor.buffLength = 0;
+		if(compressor.buff.length > MAX_POOLED_LENGTH) {
+			compressor.buff = new byte[1024];
+		}
+		if(compressorPoolSize.incrementAndGet() <= MAX_POOL_SIZE) {
+			compressorPool.offer(compressor);
+		} else {
+			compressorPoolSize.decrementAndGet();
+			compressor.end();
+		}
+	}
+
+	/**
+	 * 压缩原文，压缩数据（含4字节原文长度）写入 getBuffer() 的开头
+	 * @param src 原文
+	 * @param offset 原文的偏移量
+	 * @param length 原文的长度
+	 * @return 压缩数据的长度；不值得压缩时返回 -1
+	 */
+	public int compress(byte[] src, int offset, int length) {
+		if(length < MIN_COMPRESS_LENGTH) {
+			return -1;
+		}
+		if(length >= ENTROPY_SAMPLE_MIN_LENGTH && sampleEntropy(src, offset, length) > MAX_SAMPLE_ENTROPY) {
+			return -1;
+		}
+		//至少节省1/8，否则按原文存储
+		int limit = length - length / 8;
+		if(buff.length < limit) {
+			buff = new byte[limit];
+		}
+		if(deflater == null) {
+			deflater = new Deflater(COMPRESS_LEVEL, true);
+		} else {
+			deflater.reset();
+		}
+		deflater.setInput(src, offset, length);
+		deflater.finish();
+		int position = HEAD_LENGTH;
+		while(deflater.finished() == false && position < limit) {
+			position += deflater.deflate(buff, position, limit - position);
+		}
+		buffLength = Math.max(buffLength, position);
+		if(deflater.finished() == false) {
+			return -1;
+		}
+		SafeMathUtils.writeLongAsBigEndian(buff, 0, length, HEAD_LENGTH);
+		return position;
+	}
+
+	/**
+	 * 获取压缩数据所在的缓冲区
+	 * @return 缓冲区（长度可能大于压缩数据）
+	 */
+	public byte[] getBuffer() {
+		return buff;
+	}
+
+	/**
+	 * 读取压缩数据中的原文长度，并检查是否可能由压缩数据的长度解压得到
+	 * @param src 压缩数据
+	 * @param offset 压缩数据的偏移量
+	 * @param length 压缩数据的长度
+	 * @return 原文长度
+	 * @throws DataFormatException 压缩数据过短，或原文长度无效
+	 */
+	public static int originalLength(byte[] src, int offset, int length) throws DataFormatException {
+		if(length <= HEAD_LENGTH) {
+			throw new DataFormatException("compressed data length is less than " + (HEAD_LENGTH + 1));
+		}
+		int originalLength = SafeMathUtils.parseIntAsBigEndian(src, offset, HEAD_LENGTH);
+		if(originalLength <= 0 || originalLength > (long) (length - HEAD_LENGTH) * MAX_DEFLATE_RATIO) {
+			throw new DataFormatException("original length is not valid: " + originalLength);
+		}
+		return originalLength;
+	}
+
+	/**
+	 * 解压数据
+	 * @param src 压缩数据（含4字节原文长度）
+	 * @param offset 压缩数据的偏移量
+	 * @param length 压缩数据的长度
+	 * @param dst 原文写入的数组（剩余长度不少于 originalLength(src, offset, length)）
+	 * @param dstOffset 写入位置
+	 * @return 原文长度
+	 * @throws DataFormatException 压缩数据无效，或解压出的长度与原文长度不一致
+	 */
+	public int decompress(byte[] src, int offset, int length, byte[] dst, int dstOffset) throws DataFormatException {
+		int originalLength = originalLength(src, offset, length);
+		if(dst.length - dstOffset < originalLength) {
+			throw new DataFormatException("buffer remaining is less than original length " + originalLength);
+		}
+		if(inflater == null) {
+			inflater = new Inflater(true);
+		} else {
+			inflater.reset();
+		}
+		inflater.setInput(src, offset + HEAD_LENGTH, length - HEAD_LENGTH);
+		int position = 0;
+		while(position < originalLength) {
+			int size = inflater.inflate(dst, dstOffset + position, originalLength - position);
+			if(size == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+				break;
+			}
+			position += size;
+		}
+		//原文长度之后不能再有数据，且压缩数据须完整结束
+		if(position != originalLength || inflater.inflate(probe, 0, 1) != 0
+				|| inflater.finished() == false || inflater.getRemaining() != 0) {
+			throw new DataFormatException("decompressed length is not match original length " + originalLength);
+		}
+		return originalLength;
+	}
+
+	/**
+	 * 解压数据到新数组
+	 * @param src 压缩数据（含4字节原文长度）
+	 * @param offset 压缩数据的偏移量
+	 * @param length 压缩数据的长度
+	 * @return 原文
+	 * @throws DataFormatException 压缩数据无效
+	 */
+	public static byte[] decompress(byte[] src, int offset, int length) throws DataFormatException {
+		byte[] data = new byte[originalLength(src, offset, length)];
+		SafeCompressor compressor = borrow();
+		try {
+			compressor.decompress(src, offset, length, data, 0);
+		} finally {
+			release(compressor);
+		}
+		return data;
+	}
+
+	/**
+	 * 按间隔抽取若干分段，估算字节分布的熵值（比特/字节，最大为8）
+	 */
+	private double sampleEntropy(byte[] src, int offset, int length) {
+		Arrays.fill(histogram, 0);
+		int step = (length - SAMPLE_RUN_LENGTH) / (SAMPLE_RUN_COUNT - 1);
+		int total = 0;
+		for(int k=0; k<SAMPLE_RUN_COUNT; k++) {
+			int start = offset + k * step;
+			for(int i=start; i<start+SAMPLE_RUN_LENGTH; i++) {
+				histogram[src[i] & 0xFF]++;
+			}
+			total += SAMPLE_RUN_LENGTH;
+		}
+		double entropy = 0;
+		for(int count : histogram) {
+			if(count > 0) {
+				double p = (double) count / total;
+				entropy -= p * Math.log(p);
+			}
+		}
+		return entropy / Math.log(2);
+	}
+
+	private void end() {
+		if(deflater != null) {
+			deflater.end();
+			deflater = null;
+		}
+		if(inflater != null) {
+			inflater.end();
+			inflater = null;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package com.lazynoon.commons.safesave.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * 解码输入流（按分组解码，读到的编码数据不足一个分组时缓存，跨多次读取延续）
+ *   中间段只解码整组数据；保留末尾可能是填充字符的部分，读到数据流末尾后按末尾规则解码
+ *   解码结果与整体解码完全一致，内存占用与数据总长度无关
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+abstract class SafeDecodeInputStream extends InputStream {
+	/** 每次读取的编码数据长度（4与8的公倍数） **/
+	static final int CHUNK_SIZE = 5120;
+
+	private final InputStream in;
+	private final Reader reader;
+	/** 每个分组的编码长度 **/
+	private final int groupSize;
+	/** 读到数据流末尾前保留的编码长度（末尾的填充字符） **/
+	private final int holdBack;
+	private final byte[] inBuff;
+	private final char[] charBuff;
+	private final byte[] outBuff;
+
+	private int inLength = 0;
+	private int outOffset = 0;
+	private int outLength = 0;
+	private boolean eof = false;
+	private boolean closed = false;
+
+	/**
+	 * @param in 编码数据的输入流（与 reader 二选一）
+	 * @param reader 编码数据的字符流（与 in 二选一）
+	 * @param groupSize 每个分组的编码长度
+	 * @param holdBack 读到数据流末尾前保留的编码长度
+	 */
+	SafeDecodeInputStream(InputStream in, Reader reader, int groupSize, int holdBack) {
+		if(in == null && reader == null) {
+			throw new IllegalArgumentException("input stream is null");
+		}
+		this.in = in;
+		this.reader = reader;
+		this.groupSize = groupSize;
+		this.holdBack = holdBack;
+		this.inBuff = new byte[CHUNK_SIZE + groupSize + holdBack];
+		this.charBuff = reader == null ? null : new char[inBuff.length];
+		this.outBuff = new byte[inBuff.length];
+	}
+
+	/**
+	 * 解码整组数据（长度为分组长度的整数倍）
+	 * @return 写入的字节数
+	 */
+	abstract int decodeGroups(byte[] src, int offset, int length, byte[] dst, int dstOffset);
+
+	/**
+	 * 解码数据流末尾的数据（去除填充字符，并按末尾规则解码）
+	 * @return 写入的字节数
+	 */
+	abstract int decodeFinal(byte[] src, int offset, int length, byte[] dst, int dstOffset);
+
+	@Override
+	public int read() throws IOException {
+		if(ensureData() == false) {
+			return -1;
+		}
+		return outBuff[outOffset++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException("offset: " + off + ", length: " + len);
+		}
+		if(len == 0) {
+			return 0;
+		}
+		if(ensureData() == false) {
+			return -1;
+		}
+		int size = Math.min(len, outLength - outOffset);
+		System.arraycopy(outBuff, outOffset, b, off, size);
+		outOffset += size;
+		return size;
+	}
+
+	@Override
+	public int available() throws IOException {
+		if(closed) {
+			throw new IOException("decode stream is closed");
+		}
+		return outLength - outOffset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		if(reader != null) {
+			reader.close();
+		} else {
+			in.close();
+		}
+	}
+
+	/**
+	 * 确保有已解码的数据可读
+	 * @return 有数据可读返回 true，数据流结束返回 false
+	 */
+	private boolean ensureData() throws IOException {
+		if(closed) {
+			throw new IOException("decode stream is closed");
+		}
+		while(outOffset == outLength) {
+			outOffset = 0;
+			outLength = 0;
+			if(eof) {
+				if(inLength == 0) {
+					return false;
+				}
+				outLength = decodeFinal(inBuff, 0, inLength, outBuff, 0);
+				inLength = 0;
+				continue;
+			}
+			int size = readSource(inLength, inBuff.length - inLength);
+			if(size < 0) {
+				eof = true;
+				continue;
+			}
+			inLength += size;
+			int ready = inLength - holdBack;
+			ready -= ready % groupSize;
+			if(ready > 0) {
+				outLength = decodeGroups(inBuff, 0, ready, outBuff, 0);
+				inLength -= ready;
+				System.arraycopy(inBuff, ready, inBuff, 0, inLength);
+			}
+		}
+		return true;
+	}
+
+	/** 读取编码数据到缓冲区（字符流中的非单字节字符按“?”处理，与字符串解码一致） **/
+	private int readSource(int offset, int length) throws IOException {
+		if(reader == null) {
+			return in.read(inBuff, offset, length);
+		}
+		int size = reader.read(charBuff, 0, length);
+		for(int i=0; i<size; i++) {
+			char ch = charBuff[i];
+			inBuff[offset + i] = ch < 0x100 ? (byte) ch : (byte) '?';
+		}
+		return size;
+	}
+}
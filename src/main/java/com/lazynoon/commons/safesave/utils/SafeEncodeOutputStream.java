@@ -0,0 +1,160 @@
+package com.lazynoon.commons.safesave.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * 编码输出流（按分组编码，写入的原文不足一个分组时缓存，跨多次写入延续）
+ *   整组原文按固定长度分段直接编码，内存占用与数据总长度无关
+ *   flush() 只刷新下层输出，不输出未满的分组；finish() 或 close() 时按末尾规则输出剩余数据
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+abstract class SafeEncodeOutputStream extends OutputStream {
+	/** 每次编码的原文长度（3与5的公倍数） **/
+	static final int CHUNK_SIZE = 3840;
+
+	private final OutputStream out;
+	private final Writer writer;
+	/** 每个分组的原文长度 **/
+	private final int groupSize;
+	/** 未满一个分组的原文 **/
+	private final byte[] pending;
+	private final byte[] outBuff;
+	private final char[] charBuff;
+
+	private int pendingLength = 0;
+	private boolean finished = false;
+	private boolean closed = false;
+
+	/**
+	 * @param out 编码写入的输出流（与 writer 二选一）
+	 * @param writer 编码写入的字符流（与 out 二选一）
+	 * @param groupSize 每个分组的原文长度
+	 * @param chunkEncodedLength 一个分段（CHUNK_SIZE 字节原文）编码后的长度
+	 */
+	SafeEncodeOutputStream(OutputStream out, Writer writer, int groupSize, int chunkEncodedLength) {
+		if(out == null && writer == null) {
+			throw new IllegalArgumentException("output stream is null");
+		}
+		this.out = out;
+		this.writer = writer;
+		this.groupSize = groupSize;
+		this.pending = new byte[groupSize];
+		this.outBuff = new byte[chunkEncodedLength];
+		this.charBuff = writer == null ? null : new char[chunkEncodedLength];
+	}
+
+	/**
+	 * 编码原文（长度不足一个分组时，按末尾规则编码）
+	 * @return 写入的字节数
+	 */
+	abstract int encode(byte[] src, int offset, int length, byte[] dst, int dstOffset);
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		pending[pendingLength++] = (byte) b;
+		if(pendingLength == groupSize) {
+			writeEncoded(pending, 0, groupSize);
+			pendingLength = 0;
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if(off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException("offset: " + off + ", length: " + len);
+		}
+		if(pendingLength > 0) {
+			int size = Math.min(len, groupSize - pendingLength);
+			System.arraycopy(b, off, pending, pendingLength, size);
+			pendingLength += size;
+			off += size;
+			len -= size;
+			if(pendingLength < groupSize) {
+				return;
+			}
+			writeEncoded(pending, 0, groupSize);
+			pendingLength = 0;
+		}
+		while(len >= groupSize) {
+			int size = Math.min(len - len % groupSize, CHUNK_SIZE);
+			writeEncoded(b, off, size);
+			off += size;
+			len -= size;
+		}
+		System.arraycopy(b, off, pending, 0, len);
+		pendingLength = len;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if(closed) {
+			throw new IOException("encode stream is closed");
+		}
+		if(writer != null) {
+			writer.flush();
+		} else {
+			out.flush();
+		}
+	}
+
+	/**
+	 * 输出末尾不足一个分组的数据，不关闭下层输出（之后不能再写入）
+	 * @throws IOException 输出异常
+	 */
+	public void finish() throws IOException {
+		if(finished) {
+			return;
+		}
+		finished = true;
+		if(pendingLength > 0) {
+			writeEncoded(pending, 0, pendingLength);
+			pendingLength = 0;
+		}
+		flush();
+	}
+
+	/**
+	 * 输出末尾不足一个分组的数据，并关闭下层输出
+	 * @throws IOException 输出异常
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		try {
+			finish();
+		} finally {
+			closed = true;
+			if(writer != null) {
+				writer.close();
+			} else {
+				out.close();
+			}
+		}
+	}
+
+	private void writeEncoded(byte[] src, int offset, int length) throws IOException {
+		int size = encode(src, offset, length, outBuff, 0);
+		if(writer != null) {
+			for(int i=0; i<size; i++) {
+				charBuff[i] = (char) outBuff[i];
+			}
+			writer.write(charBuff, 0, size);
+		} else {
+			out.write(outBuff, 0, size);
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if(finished) {
+			throw new IOException("encode stream is finished");
+		}
+	}
+}
@@ -20,6 +20,8 @@ package com.lazynoon.commons.safesave.utils;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -37,19 +39,21 @@ public class SafeEncodeUtils {
 	/** 支持http协议的62进制编码 **/
 	private static byte[] myBase62EncodeMap = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".getBytes(Charsets.ISO_8859_1);
 	private static final byte[] myBase62DecodeMap = new byte[256];
-	private static final long[] myBase62Mode = {1L, 62L, 62L*62L, 62L*62L*62L, 62L*62L*62L*62L, 62L*62L*62L*62L*62L, 62L*62L*62L*62L*62L*62L};
-	/** 支持http协议的64进制编码 **/
-	private static byte[] encodeHttp64Map = "-.0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".getBytes(Charsets.ISO_8859_1);
-	private static final byte[] decodeHttp64Map = new byte[127];
+	/** 62的4次方，及其倒数乘数（2^40 / 62^4 向上取整） **/
+	private static final int BASE62_POW4 = 62 * 62 * 62 * 62;
+	private static final long BASE62_POW4_RECIPROCAL = 74411L;
+	/** 除以62的倒数乘数（2^32 / 62 向上取整，被除数小于62^4时结果精确） **/
+	private static final long BASE62_RECIPROCAL = 69273667L;
+	/** 末尾剩余字节数对应的字符数，及末尾剩余字符数对应的字节数（-1为无效长度） **/
+	private static final int[] BASE62_CHAR_COUNT = {0, 2, 3, 5, 6};
+	private static final int[] BASE62_BYTE_COUNT = {0, -1, 1, 2, -1, 3, 4};
 	/** 支持http协议的32进制编码 **/
 	private static byte[] encodeHttp32Map = "0123456789abcdefghjkmnpqrstuvxyz".getBytes(Charsets.ISO_8859_1);
-	private static final byte[] decodeHttp32Map = new byte[127];
-	/** 标准base64编码 **/
-	private static byte[] encodeBase64Map = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(Charsets.ISO_8859_1);
-	private static final byte[] decodeBase64Map = new byte[127];
+	private static final byte[] decodeHttp32Map = new byte[256];
+	/** 标准base64编码的填充字符 **/
 	private static final byte base64BackfillChar = '=';
-	/** bit位掩码 **/
-	private static int[] bitMask = {0, 1, 3, 7, 15, 31, 63, 127};
+	/** 非数组缓冲区编码解码的分段长度（3的整数倍） **/
+	private static final int CODEC_CHUNK_SIZE = 3072;
 	/** long型1字节未掩码 **/
 	private static final long MASK_1_BYTE_LONG = 0xFFL;
 	/** 自增量 **/
@@ -58,9 +62,6 @@ public class SafeEncodeUtils {
 
 	static {
 		//32进制编码
-		for(int i=0; i<decodeHttp32Map.length; i++) {
-			decodeHttp32Map[i] = -1;
-		}
 		for(int i=0; i<encodeHttp32Map.length; i++) {
 			decodeHttp32Map[encodeHttp32Map[i]] = (byte)i;
 		}
@@ -71,20 +72,6 @@ public class SafeEncodeUtils {
 		for(int i=0; i<myBase62EncodeMap.length; i++) {
 			myBase62DecodeMap[myBase62EncodeMap[i]] = (byte)i;
 		}
-		//64进制编码
-		for(int i=0; i<decodeHttp64Map.length; i++) {
-			decodeHttp64Map[i] = -1;
-		}
-		for(int i=0; i<encodeHttp64Map.length; i++) {
-			decodeHttp64Map[encodeHttp64Map[i]] = (byte)i;
-		}
-		//base64编码
-		for(int i=0; i<decodeBase64Map.length; i++) {
-			decodeBase64Map[i] = -1;
-		}
-		for(int i=0; i<encodeBase64Map.length; i++) {
-			decodeBase64Map[encodeBase64Map[i]] = (byte)i;
-		}
 	}
 	
 	/** MD5使用的16字节表示字符 **/
@@ -119,6 +106,51 @@ public class SafeEncodeUtils {
 		return new String(bts, Charsets.UTF_8);
 	}
 
+	/**
+	 * 计算按UTF-8编码的最大字节数
+	 * @param charCount 字符数（UTF-16）
+	 * @return 每个字符最多3字节（代理对共4字节）
+	 */
+	public static int maxUTF8Length(int charCount) {
+		return charCount * 3;
+	}
+
+	/**
+	 * 按UTF-8编码写入字节数组（结果与 String.getBytes(UTF-8) 一致，不成对的代理字符编码为“?”）
+	 * @param str 字符序列
+	 * @param dst 写入的字节数组（剩余长度不少于 maxUTF8Length(str.length())）
+	 * @param dstOffset 写入位置
+	 * @return 写入的字节数
+	 */
+	public static int encodeUTF8(CharSequence str, byte[] dst, int dstOffset) {
+		int position = dstOffset;
+		int length = str.length();
+		for(int i=0; i<length; i++) {
+			char ch = str.charAt(i);
+			if(ch < 0x80) {
+				dst[position++] = (byte) ch;
+			} else if(ch < 0x800) {
+				dst[position++] = (byte) (0xC0 | ch >>> 6);
+				dst[position++] = (byte) (0x80 | (ch & 0x3F));
+			} else if(Character.isSurrogate(ch)) {
+				if(Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(ch, str.charAt(++i));
+					dst[position++] = (byte) (0xF0 | codePoint >>> 18);
+					dst[position++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3F));
+					dst[position++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3F));
+					dst[position++] = (byte) (0x80 | (codePoint & 0x3F));
+				} else {
+					dst[position++] = '?';
+				}
+			} else {
+				dst[position++] = (byte) (0xE0 | ch >>> 12);
+				dst[position++] = (byte) (0x80 | ((ch >>> 6) & 0x3F));
+				dst[position++] = (byte) (0x80 | (ch & 0x3F));
+			}
+		}
+		return position - dstOffset;
+	}
+
 //	/**
 //	 * 预知可靠String类型，按UTF-8编码转换为byte[]数据流
 //	 */
@@ -184,37 +216,8 @@ public class SafeEncodeUtils {
 		if(bts == null) {
 			return null;
 		}
-		int mode = bts.length % 5;
-		if(mode >= 3) {
-			mode += 2;
-		} else if(mode >= 1) {
-			mode++;
-		}
-		byte[] buff = new byte[bts.length / 5 * 7 + mode];
-		int offset = 0;
-		for(int loop=0; loop<bts.length; loop+=5) {
-			int byteCount = bts.length - loop;
-			if(byteCount > 5) {
-				byteCount = 5;
-			}
-			int modeOffset = byteCount;
-			if(byteCount >= 3) {
-				modeOffset += 2;
-			} else {
-				modeOffset++;
-			}
-			int moveBit = (byteCount - 1) * 8;
-			long num = 0;
-			for(int i=loop; i<bts.length && moveBit >= 0; i++) {
-				num |= (bts[i] & MASK_1_BYTE_LONG) << moveBit;
-				moveBit -= 8;
-			}
-			for(int i=1; i<modeOffset; i++) {
-				buff[offset++] = myBase62EncodeMap[(int) (num / myBase62Mode[modeOffset - i])];
-				num %= myBase62Mode[modeOffset - i];
-			}
-			buff[offset++] = myBase62EncodeMap[(int) (num % 62L)];
-		}
+		byte[] buff = new byte[encodedBase62Length(bts.length)];
+		encodeBase62(bts, 0, bts.length, buff, 0);
 		return new String(buff, Charsets.ISO_8859_1);
 	}
 
@@ -222,65 +225,188 @@ public class SafeEncodeUtils {
 	 * 按62进制编码（编码率：7/5）
 	 * @param str 62进制编码的字字符串（编码字符范围：0-9A-Za-z）
 	 * @return 解密的字节数组
+	 * @throws IllegalArgumentException 编码字符、长度或数值无效
 	 */
 	public static byte[] myBase62Decode(String str) {
 		if(str == null) {
 			return null;
 		}
 		byte[] bts = str.getBytes(Charsets.ISO_8859_1);
-		int mode = bts.length % 7;
-		if(mode >= 5) {
-			mode -= 2;
-		} else if(mode >= 1) {
-			mode--;
-		}
-		byte[] buff = new byte[bts.length / 7 * 5 + mode];
-		int offset = 0;
-		for(int loop=0; loop<bts.length; loop+=7) {
-			int byteCount = bts.length - loop;
-			if(byteCount > 7) {
-				byteCount = 7;
+		byte[] buff = new byte[decodedBase62Length(bts.length)];
+		decodeBase62(bts, 0, bts.length, buff, 0);
+		return buff;
+	}
+
+	/**
+	 * 计算62进制编码后的长度
+	 * @param length 原文长度
+	 * @return 编码的字符数（每5字节7个字符，末尾1~4字节分别为2、3、5、6个字符）
+	 */
+	public static int encodedBase62Length(int length) {
+		return length / 5 * 7 + BASE62_CHAR_COUNT[length % 5];
+	}
+
+	/**
+	 * 计算62进制解码后的长度
+	 * @param length 编码的字符数
+	 * @return 原文的字节数
+	 * @throws IllegalArgumentException 编码长度无效（末尾分组为1或4个字符）
+	 */
+	public static int decodedBase62Length(int length) {
+		int byteCount = BASE62_BYTE_COUNT[length % 7];
+		if(byteCount < 0) {
+			throw new IllegalArgumentException("base62 length is not valid: " + length);
+		}
+		return length / 7 * 5 + byteCount;
+	}
+
+	/**
+	 * 62进制编码（每5字节按大端数值编码为7个字符，高位在前）
+	 *   除以62的幂按倒数乘法计算，不使用长整数除法
+	 * @param src 原文
+	 * @param offset 原文的偏移量
+	 * @param length 原文的长度
+	 * @param dst 编码写入的数组（剩余长度不少于 encodedBase62Length(length)）
+	 * @param dstOffset 写入位置
+	 * @return 写入的字节数
+	 */
+	public static int encodeBase62(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		int end = offset + length - length % 5;
+		int position = dstOffset;
+		for(int i=offset; i<end; i+=5) {
+			long num = (src[i] & MASK_1_BYTE_LONG) << 32 | (src[i + 1] & MASK_1_BYTE_LONG) << 24
+					| (src[i + 2] & MASK_1_BYTE_LONG) << 16 | (src[i + 3] & MASK_1_BYTE_LONG) << 8
+					| (src[i + 4] & MASK_1_BYTE_LONG);
+			encode62(num, 7, dst, position);
+			position += 7;
+		}
+		int mode = length % 5;
+		if(mode > 0) {
+			long num = 0;
+			for(int i=end; i<end+mode; i++) {
+				num = num << 8 | (src[i] & MASK_1_BYTE_LONG);
+			}
+			int charCount = BASE62_CHAR_COUNT[mode];
+			encode62(num, charCount, dst, position);
+			position += charCount;
+		}
+		return position - dstOffset;
+	}
+
+	/**
+	 * 62进制解码（每7个字符解码为5字节）
+	 * @param src 编码数据
+	 * @param offset 编码数据的偏移量
+	 * @param length 编码数据的长度
+	 * @param dst 原文写入的数组（剩余长度不少于 decodedBase62Length(length)）
+	 * @param dstOffset 写入位置
+	 * @return 写入的字节数
+	 * @throws IllegalArgumentException 编码字符无效、编码长度无效，或分组数值超出字节数的范围
+	 */
+	public static int decodeBase62(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		int byteCount = BASE62_BYTE_COUNT[length % 7];
+		if(byteCount < 0) {
+			throw new IllegalArgumentException("base62 length is not valid: " + length);
+		}
+		byte[] map = myBase62DecodeMap;
+		int end = offset + length - length % 7;
+		int position = dstOffset;
+		for(int i=offset; i<end; i+=7) {
+			int d0 = map[src[i] & 0xFF];
+			int d1 = map[src[i + 1] & 0xFF];
+			int d2 = map[src[i + 2] & 0xFF];
+			int d3 = map[src[i + 3] & 0xFF];
+			int d4 = map[src[i + 4] & 0xFF];
+			int d5 = map[src[i + 5] & 0xFF];
+			int d6 = map[src[i + 6] & 0xFF];
+			if((d0 | d1 | d2 | d3 | d4 | d5 | d6) < 0) {
+				throw new IllegalArgumentException("base62 char is not valid at " + invalidBase62Index(src, i, 7, offset));
 			}
+			long num = (long) ((d0 * 62 + d1) * 62 + d2) * BASE62_POW4 + (((d3 * 62 + d4) * 62 + d5) * 62 + d6);
+			if((num >>> 40) != 0) {
+				throw new IllegalArgumentException("base62 value is out of range at " + (i - offset));
+			}
+			dst[position] = (byte) (num >>> 32);
+			dst[position + 1] = (byte) (num >>> 24);
+			dst[position + 2] = (byte) (num >>> 16);
+			dst[position + 3] = (byte) (num >>> 8);
+			dst[position + 4] = (byte) num;
+			position += 5;
+		}
+		if(byteCount > 0) {
+			int mode = length % 7;
 			long num = 0;
-			for(int i=0; i<byteCount; i++) {
-				int chNum = myBase62DecodeMap[bts[loop+i] & 0xFF];
-				if(chNum >= 0) {
-					num += chNum * myBase62Mode[byteCount - i - 1];
-				} else {
-					//TODO
+			for(int i=end; i<end+mode; i++) {
+				int digit = map[src[i] & 0xFF];
+				if(digit < 0) {
+					throw new IllegalArgumentException("base62 char is not valid at " + (i - offset));
 				}
+				num = num * 62 + digit;
 			}
-			int modeOffset = byteCount;
-			if(byteCount >= 5) {
-				modeOffset -= 2;
-			} else {
-				modeOffset--;
+			if((num >>> (byteCount * 8)) != 0) {
+				throw new IllegalArgumentException("base62 value is out of range at " + (end - offset));
 			}
-			int moveBit = (modeOffset - 1) * 8;
-			for(; moveBit>=0; moveBit-=8) {
-				buff[offset++] = (byte) ((num >>> moveBit) & MASK_1_BYTE_LONG);
+			for(int k=(byteCount-1)*8; k>=0; k-=8) {
+				dst[position++] = (byte) (num >>> k);
 			}
 		}
-		return buff;
+		return position - dstOffset;
+	}
+
+	/**
+	 * 按62进制写入一个分组的字符（从末位向前写）
+	 *   num / 62^4 用倒数乘法估算商（最多大1，由余数修正），62^4以内的数值除以62用精确的32位倒数乘法
+	 * @param num 分组数值（小于2^40）
+	 * @param charCount 字符数（不超过7）
+	 */
+	private static void encode62(long num, int charCount, byte[] dst, int position) {
+		byte[] map = myBase62EncodeMap;
+		int high = (int) ((num * BASE62_POW4_RECIPROCAL) >>> 40);
+		int low = (int) (num - (long) high * BASE62_POW4);
+		if(low < 0) {
+			high--;
+			low += BASE62_POW4;
+		}
+		int index = position + charCount - 1;
+		int lowCount = charCount < 4 ? charCount : 4;
+		for(int k=0; k<lowCount; k++) {
+			int quotient = (int) ((low * BASE62_RECIPROCAL) >>> 32);
+			dst[index--] = map[low - quotient * 62];
+			low = quotient;
+		}
+		for(int k=lowCount; k<charCount; k++) {
+			int quotient = (int) ((high * BASE62_RECIPROCAL) >>> 32);
+			dst[index--] = map[high - quotient * 62];
+			high = quotient;
+		}
+	}
+
+	/** 查找分组中第一个无效字符的位置（用于异常消息） **/
+	private static int invalidBase62Index(byte[] src, int from, int count, int offset) {
+		for(int i=from; i<from+count; i++) {
+			if(myBase62DecodeMap[src[i] & 0xFF] < 0) {
+				return i - offset;
+			}
+		}
+		return from - offset;
 	}
 
 	/** 支持HTTP协议的base64编码（字符升序，扩展字符用用".-"代替） **/
 	public static byte[] encodeHttp64(byte[] bts) {
-		return _encodeBase64(encodeHttp64Map, bts, false);
+		return encodeBase64(Base64Alphabet.HTTP64, bts);
 	}
 
 	/** 支持HTTP协议的base64编码（字符升序，扩展字符用用".-"代替）**/
 	public static String encodeHttp64ToString(byte[] bts) {
-		bts = _encodeBase64(encodeHttp64Map, bts, false);
 		if(bts == null) {
 			return null;
 		}
-		return new String(bts, Charsets.US_ASCII);
+		return encodeBase64ToString(Base64Alphabet.HTTP64, bts, 0, bts.length);
 	}
 
 	/** base64解码（字符升序，扩展字符用用".-"代替） **/
 	public static byte[] decodeHttp64(byte[] bts) {
-		return _decodeBase64(decodeHttp64Map, bts, false);
+		return decodeBase64(Base64Alphabet.HTTP64, bts);
 	}
 
 	/** base64解码（字符升序，扩展字符用用".-"代替） **/
@@ -288,26 +414,25 @@ public class SafeEncodeUtils {
 		if(str == null) {
 			return null;
 		}
-		return _decodeBase64(decodeHttp64Map, str.getBytes(Charsets.US_ASCII), false);
+		return decodeBase64(Base64Alphabet.HTTP64, str.getBytes(Charsets.ISO_8859_1));
 	}
 
 	/** base64编码 **/
 	public static byte[] encodeBase64(byte[] bts) {
-		return _encodeBase64(encodeBase64Map, bts, true);
+		return encodeBase64(Base64Alphabet.STANDARD, bts);
 	}
 
 	/** base64编码 **/
 	public static String encodeBase64ToString(byte[] bts) {
-		bts = _encodeBase64(encodeBase64Map, bts, true);
 		if(bts == null) {
 			return null;
 		}
-		return new String(bts, Charsets.US_ASCII);
+		return encodeBase64ToString(Base64Alphabet.STANDARD, bts, 0, bts.length);
 	}
 
 	/** base64解码 **/
 	public static byte[] decodeBase64(byte[] bts) {
-		return _decodeBase64(decodeBase64Map, bts, true);
+		return decodeBase64(Base64Alphabet.STANDARD, bts);
 	}
 
 	/** base64解码 **/
@@ -315,51 +440,298 @@ public class SafeEncodeUtils {
 		if (str == null) {
 			return null;
 		}
-		return _decodeBase64(decodeBase64Map, str.getBytes(Charsets.US_ASCII), true);
+		return decodeBase64(Base64Alphabet.STANDARD, str.getBytes(Charsets.ISO_8859_1));
 	}
 
 	/**
-	 * 转换bigint为12字节的字符串
-	 * @param bts 待编码数据
-	 * @return string
+	 * 按指定字符表编码
+	 * @param alphabet 字符表
+	 * @param bts 原文（为null返回null）
+	 * @return 编码字节数组
 	 */
-	public static byte[] encodeHttp32(byte[] bts) {
+	public static byte[] encodeBase64(Base64Alphabet alphabet, byte[] bts) {
 		if(bts == null) {
 			return null;
 		}
-		int buffSize = bts.length * 8 / 5;
-		if(bts.length * 8 % 5 > 0) {
-			buffSize++;
-		}
-		int offset = 0;
-		byte[] buff = new byte[buffSize];
-		int prevBitCount = 0;
-		int prevBitNum = 0;
-		for(int i=0; i<bts.length; i++) {
-			int nextBitCount = 3 + prevBitCount;
-			int nextBitNum = bts[i] & bitMask[nextBitCount];
-			int numIndex = (bts[i] >>> nextBitCount) & bitMask[8-nextBitCount];
-			if(prevBitCount > 0) {
-				numIndex |= (byte)(prevBitNum << (5 - prevBitCount));
+		byte[] buff = new byte[alphabet.encodedLength(bts.length)];
+		encodeBase64(alphabet, bts, 0, bts.length, buff, 0);
+		return buff;
+	}
+
+	/**
+	 * 按指定字符表编码为字符串
+	 * @param alphabet 字符表
+	 * @param bts 原文
+	 * @param offset 原文的偏移量
+	 * @param length 原文的长度
+	 * @return 编码字符串
+	 */
+	public static String encodeBase64ToString(Base64Alphabet alphabet, byte[] bts, int offset, int length) {
+		byte[] buff = new byte[alphabet.encodedLength(length)];
+		encodeBase64(alphabet, bts, offset, length, buff, 0);
+		//编码字符均为单字节字符，ISO-8859-1 直接按字节创建字符串，不逐字符检查
+		return new String(buff, Charsets.ISO_8859_1);
+	}
+
+	/**
+	 * 按指定字符表解码
+	 * @param alphabet 字符表
+	 * @param bts 编码字节数组（为null返回null）
+	 * @return 原文
+	 */
+	public static byte[] decodeBase64(Base64Alphabet alphabet, byte[] bts) {
+		if(bts == null) {
+			return null;
+		}
+		byte[] buff = new byte[alphabet.decodedLength(bts, 0, bts.length)];
+		decodeBase64(alphabet, bts, 0, bts.length, buff, 0);
+		return buff;
+	}
+
+	/**
+	 * 按指定字符表编码（每3字节编码为4个字符，末尾不足3字节按字符表的规则处理）
+	 * @param alphabet 字符表
+	 * @param src 原文
+	 * @param offset 原文的偏移量
+	 * @param length 原文的长度
+	 * @param dst 编码写入的数组（剩余长度不少于 alphabet.encodedLength(length)）
+	 * @param dstOffset 写入位置
+	 * @return 写入的字节数
+	 */
+	public static int encodeBase64(Base64Alphabet alphabet, byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		byte[] map = alphabet.encodeMap;
+		int end = offset + length - length % 3;
+		int position = dstOffset;
+		for(int i=offset; i<end; i+=3) {
+			int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+			dst[position] = map[bits >>> 18];
+			dst[position + 1] = map[(bits >>> 12) & 0x3F];
+			dst[position + 2] = map[(bits >>> 6) & 0x3F];
+			dst[position + 3] = map[bits & 0x3F];
+			position += 4;
+		}
+		int mode = length % 3;
+		if(mode > 0) {
+			int tail = encodeTail(alphabet, src, end, mode);
+			for(int i=mode; i>=0; i--) {
+				dst[position++] = map[(tail >>> (i * 6)) & 0x3F];
 			}
-			buff[offset++] = encodeHttp32Map[numIndex];
-			if(nextBitCount > 5) {
-				numIndex = (nextBitNum >>> (nextBitCount-5)) & bitMask[7];
-				buff[offset++] = encodeHttp32Map[numIndex];
-				prevBitCount = nextBitCount - 5;
-				prevBitNum = nextBitNum & bitMask[prevBitCount];
-			} else if(nextBitCount == 5) {
-				buff[offset++] = encodeHttp32Map[nextBitNum];
-				prevBitCount = 0;
-				prevBitNum = 0;
-			} else {
-				prevBitCount = nextBitCount;
-				prevBitNum = nextBitNum;				
+			if(alphabet.backfill) {
+				for(int i=mode; i<3; i++) {
+					dst[position++] = base64BackfillChar;
+				}
 			}
 		}
-		if(prevBitCount > 0) {
-			buff[offset++] = encodeHttp32Map[prevBitNum << (5 - prevBitCount)];
+		return position - dstOffset;
+	}
+
+	/**
+	 * 按指定字符表编码为字符数组
+	 * @param alphabet 字符表
+	 * @param src 原文
+	 * @param offset 原文的偏移量
+	 * @param length 原文的长度
+	 * @param dst 编码写入的字符数组（剩余长度不少于 alphabet.encodedLength(length)）
+	 * @param dstOffset 写入位置
+	 * @return 写入的字符数
+	 */
+	public static int encodeBase64(Base64Alphabet alphabet, byte[] src, int offset, int length, char[] dst, int dstOffset) {
+		char[] map = alphabet.encodeChars;
+		int end = offset + length - length % 3;
+		int position = dstOffset;
+		for(int i=offset; i<end; i+=3) {
+			int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+			dst[position] = map[bits >>> 18];
+			dst[position + 1] = map[(bits >>> 12) & 0x3F];
+			dst[position + 2] = map[(bits >>> 6) & 0x3F];
+			dst[position + 3] = map[bits & 0x3F];
+			position += 4;
+		}
+		int mode = length % 3;
+		if(mode > 0) {
+			int tail = encodeTail(alphabet, src, end, mode);
+			for(int i=mode; i>=0; i--) {
+				dst[position++] = map[(tail >>> (i * 6)) & 0x3F];
+			}
+			if(alphabet.backfill) {
+				for(int i=mode; i<3; i++) {
+					dst[position++] = (char) base64BackfillChar;
+				}
+			}
+		}
+		return position - dstOffset;
+	}
+
+	/**
+	 * 按指定字符表编码缓冲区（读取 src 的全部剩余字节，两个缓冲区的位置均向后移动）
+	 * @param alphabet 字符表
+	 * @param src 原文
+	 * @param dst 编码写入的缓冲区
+	 * @return 写入的字节数
+	 * @throws BufferOverflowException dst 的剩余空间不足（两个缓冲区的位置均不变）
+	 */
+	public static int encodeBase64(Base64Alphabet alphabet, ByteBuffer src, ByteBuffer dst) {
+		int length = src.remaining();
+		int size = alphabet.encodedLength(length);
+		if(dst.remaining() < size) {
+			throw new BufferOverflowException();
+		}
+		if(src.hasArray() && dst.hasArray()) {
+			encodeBase64(alphabet, src.array(), src.arrayOffset() + src.position(), length,
+					dst.array(), dst.arrayOffset() + dst.position());
+			src.position(src.limit());
+			dst.position(dst.position() + size);
+			return size;
+		}
+		//非数组缓冲区按固定长度分段编码（分段长度为3的整数倍，只有最后一段有末尾处理）
+		byte[] in = new byte[Math.min(length, CODEC_CHUNK_SIZE)];
+		byte[] out = new byte[alphabet.encodedLength(in.length)];
+		while(src.hasRemaining()) {
+			int chunk = Math.min(src.remaining(), in.length);
+			src.get(in, 0, chunk);
+			dst.put(out, 0, encodeBase64(alphabet, in, 0, chunk, out, 0));
+		}
+		return size;
+	}
+
+	/**
+	 * 按指定字符表解码（每4个字符解码为3字节，无效字符按0处理）
+	 * @param alphabet 字符表
+	 * @param src 编码数据
+	 * @param offset 编码数据的偏移量
+	 * @param length 编码数据的长度（含末尾的填充字符）
+	 * @param dst 原文写入的数组（剩余长度不少于 alphabet.decodedLength(src, offset, length)）
+	 * @param dstOffset 写入位置
+	 * @return 写入的字节数
+	 */
+	public static int decodeBase64(Base64Alphabet alphabet, byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		return decode64(alphabet, src, offset, alphabet.stripBackfill(src, offset, length), dst, dstOffset);
+	}
+
+	/** 解码已去除填充字符的编码数据（按4个字符分组，编码流解码中间段时直接调用） **/
+	static int decode64(Base64Alphabet alphabet, byte[] src, int offset, int size, byte[] dst, int dstOffset) {
+		byte[] map = alphabet.decodeMap;
+		int end = offset + size - size % 4;
+		int position = dstOffset;
+		for(int i=offset; i<end; i+=4) {
+			int bits = map[src[i] & 0xFF] << 18 | map[src[i + 1] & 0xFF] << 12
+					| map[src[i + 2] & 0xFF] << 6 | map[src[i + 3] & 0xFF];
+			dst[position] = (byte) (bits >>> 16);
+			dst[position + 1] = (byte) (bits >>> 8);
+			dst[position + 2] = (byte) bits;
+			position += 3;
+		}
+		int mode = size % 4;
+		if(mode >= 2) {
+			int n1 = map[src[end + 1] & 0xFF];
+			int n2 = mode == 3 ? map[src[end + 2] & 0xFF] : 0;
+			position += decodeTail(alphabet, map[src[end] & 0xFF], n1, n2, mode, dst, position);
+		}
+		return position - dstOffset;
+	}
+
+	/**
+	 * 按指定字符表解码字符数组（无效字符与非ASCII字符按0处理）
+	 * @param alphabet 字符表
+	 * @param src 编码字符数组
+	 * @param offset 编码字符的偏移量
+	 * @param length 编码字符的长度（含末尾的填充字符）
+	 * @param dst 原文写入的数组（剩余长度不少于 alphabet.decodedLength(src, offset, length)）
+	 * @param dstOffset 写入位置
+	 * @return 写入的字节数
+	 */
+	public static int decodeBase64(Base64Alphabet alphabet, char[] src, int offset, int length, byte[] dst, int dstOffset) {
+		int size = alphabet.stripBackfill(src, offset, length);
+		int end = offset + size - size % 4;
+		int position = dstOffset;
+		for(int i=offset; i<end; i+=4) {
+			int bits = alphabet.decode(src[i]) << 18 | alphabet.decode(src[i + 1]) << 12
+					| alphabet.decode(src[i + 2]) << 6 | alphabet.decode(src[i + 3]);
+			dst[position] = (byte) (bits >>> 16);
+			dst[position + 1] = (byte) (bits >>> 8);
+			dst[position + 2] = (byte) bits;
+			position += 3;
+		}
+		int mode = size % 4;
+		if(mode >= 2) {
+			int n1 = alphabet.decode(src[end + 1]);
+			int n2 = mode == 3 ? alphabet.decode(src[end + 2]) : 0;
+			position += decodeTail(alphabet, alphabet.decode(src[end]), n1, n2, mode, dst, position);
+		}
+		return position - dstOffset;
+	}
+
+	/**
+	 * 按指定字符表解码缓冲区（读取 src 的全部剩余字节，两个缓冲区的位置均向后移动）
+	 * @param alphabet 字符表
+	 * @param src 编码数据
+	 * @param dst 原文写入的缓冲区
+	 * @return 写入的字节数
+	 * @throws BufferOverflowException dst 的剩余空间不足（两个缓冲区的位置均不变）
+	 */
+	public static int decodeBase64(Base64Alphabet alphabet, ByteBuffer src, ByteBuffer dst) {
+		int size = alphabet.stripBackfill(src);
+		int decodedSize = Base64Alphabet.decodedLength(size);
+		if(dst.remaining() < decodedSize) {
+			throw new BufferOverflowException();
+		}
+		if(src.hasArray() && dst.hasArray()) {
+			decode64(alphabet, src.array(), src.arrayOffset() + src.position(), size,
+					dst.array(), dst.arrayOffset() + dst.position());
+			src.position(src.limit());
+			dst.position(dst.position() + decodedSize);
+			return decodedSize;
+		}
+		//非数组缓冲区按固定长度分段解码（分段长度为4的整数倍，填充字符已排除）
+		int chunkSize = CODEC_CHUNK_SIZE / 3 * 4;
+		byte[] in = new byte[Math.min(size, chunkSize)];
+		byte[] out = new byte[in.length / 4 * 3 + 2];
+		int end = src.position() + size;
+		while(src.position() < end) {
+			int chunk = Math.min(end - src.position(), in.length);
+			src.get(in, 0, chunk);
+			dst.put(out, 0, decode64(alphabet, in, 0, chunk, out, 0));
+		}
+		src.position(src.limit());
+		return decodedSize;
+	}
+
+	/**
+	 * 末尾不足3字节的数据（1或2字节）转换为字符序号（每6位一个序号，共 mode+1 个）
+	 *   标准BASE64编码，剩余的2位或4位移至高位；HTTP64编码不移位
+	 */
+	private static int encodeTail(Base64Alphabet alphabet, byte[] src, int offset, int mode) {
+		int b0 = src[offset] & 0xFF;
+		if(mode == 1) {
+			return (b0 >>> 2) << 6 | (alphabet.backfill ? (b0 & 0x03) << 4 : b0 & 0x03);
 		}
+		int b1 = src[offset + 1] & 0xFF;
+		return (b0 >>> 2) << 12 | ((b0 & 0x03) << 4 | b1 >>> 4) << 6
+				| (alphabet.backfill ? (b1 & 0x0F) << 2 : b1 & 0x0F);
+	}
+
+	/** 解码末尾不足4个字符的数据（2或3个字符） **/
+	private static int decodeTail(Base64Alphabet alphabet, int n0, int n1, int n2, int mode, byte[] dst, int position) {
+		if(mode == 2) {
+			dst[position] = (byte) (n0 << 2 | (alphabet.backfill ? n1 >>> 4 : n1 & 0x03));
+			return 1;
+		}
+		dst[position] = (byte) (n0 << 2 | n1 >>> 4);
+		dst[position + 1] = (byte) ((n1 & 0x0F) << 4 | (alphabet.backfill ? n2 >>> 2 : n2 & 0x0F));
+		return 2;
+	}
+
+	/**
+	 * 转换bigint为12字节的字符串
+	 * @param bts 待编码数据
+	 * @return string
+	 */
+	public static byte[] encodeHttp32(byte[] bts) {
+		if(bts == null) {
+			return null;
+		}
+		byte[] buff = new byte[encodedHttp32Length(bts.length)];
+		encodeHttp32(bts, 0, bts.length, buff, 0);
 		return buff;
 	}
 
@@ -367,35 +739,100 @@ public class SafeEncodeUtils {
 		if(bts == null) {
 			return null;
 		}
-		int buffSize = bts.length * 5 / 8;
-		int lastPosition = bts.length - 1;
-		byte[] buff = new byte[buffSize]; //创建buff
-		int offset = 0;
-		int prevBitCount = 0;
-		for(int i=0; i<bts.length; i++) {
-			int ch = bts[i] & 0xFF;
-			int num = 0; //默认为0
-			if(ch < decodeHttp32Map.length && decodeHttp32Map[ch] > 0) {
-				num = decodeHttp32Map[ch];
+		byte[] buff = new byte[decodedHttp32Length(bts.length)];
+		decodeHttp32(bts, 0, bts.length, buff, 0);
+		return buff;
+	}
+
+	/**
+	 * 计算32进制编码后的长度
+	 * @param length 原文长度
+	 * @return 编码的字符数（每5位一个字符）
+	 */
+	public static int encodedHttp32Length(int length) {
+		return (int) (((long) length * 8 + 4) / 5);
+	}
+
+	/**
+	 * 计算32进制解码后的长度
+	 * @param length 编码的字符数
+	 * @return 原文的字节数（末尾不足8位的部分忽略）
+	 */
+	public static int decodedHttp32Length(int length) {
+		return (int) ((long) length * 5 / 8);
+	}
+
+	/**
+	 * 32进制编码（每5字节编码为8个字符，末尾剩余位移至高位，不补填充字符）
+	 * @param src 原文
+	 * @param offset 原文的偏移量
+	 * @param length 原文的长度
+	 * @param dst 编码写入的数组（剩余长度不少于 encodedHttp32Length(length)）
+	 * @param dstOffset 写入位置
+	 * @return 写入的字节数
+	 */
+	public static int encodeHttp32(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		byte[] map = encodeHttp32Map;
+		int end = offset + length - length % 5;
+		int position = dstOffset;
+		for(int i=offset; i<end; i+=5) {
+			long bits = (src[i] & MASK_1_BYTE_LONG) << 32 | (src[i + 1] & MASK_1_BYTE_LONG) << 24
+					| (src[i + 2] & MASK_1_BYTE_LONG) << 16 | (src[i + 3] & MASK_1_BYTE_LONG) << 8
+					| (src[i + 4] & MASK_1_BYTE_LONG);
+			for(int k=35; k>=0; k-=5) {
+				dst[position++] = map[(int) (bits >>> k) & 0x1F];
 			}
-			if(prevBitCount == 0) {
-				buff[offset] = (byte) (num << 3);
-				prevBitCount = 3;
-			} else if(prevBitCount > 5) {
-				buff[offset] |= (byte) (num << (prevBitCount - 5));
-				prevBitCount = prevBitCount - 5;				
-			} else if(prevBitCount == 5) {
-				buff[offset++] |= (byte)num;
-				prevBitCount = 0;
-			} else { // 1~4
-				buff[offset++] |= (byte) (num >>> (5-prevBitCount));
-				if(i < lastPosition) {
-					buff[offset] = (byte) ((num & bitMask[5-prevBitCount]) << 3+prevBitCount);
-				}
-				prevBitCount = 3 + prevBitCount;
+		}
+		int mode = length % 5;
+		if(mode > 0) {
+			long bits = 0;
+			for(int i=end; i<end+mode; i++) {
+				bits = bits << 8 | (src[i] & MASK_1_BYTE_LONG);
+			}
+			int charCount = (mode * 8 + 4) / 5;
+			bits <<= charCount * 5 - mode * 8;
+			for(int k=(charCount-1)*5; k>=0; k-=5) {
+				dst[position++] = map[(int) (bits >>> k) & 0x1F];
 			}
 		}
-		return buff;
+		return position - dstOffset;
+	}
+
+	/**
+	 * 32进制解码（每8个字符解码为5字节，无效字符按0处理）
+	 * @param src 编码数据
+	 * @param offset 编码数据的偏移量
+	 * @param length 编码数据的长度
+	 * @param dst 原文写入的数组（剩余长度不少于 decodedHttp32Length(length)）
+	 * @param dstOffset 写入位置
+	 * @return 写入的字节数
+	 */
+	public static int decodeHttp32(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		byte[] map = decodeHttp32Map;
+		int end = offset + length - length % 8;
+		int position = dstOffset;
+		for(int i=offset; i<end; i+=8) {
+			long bits = 0;
+			for(int k=i; k<i+8; k++) {
+				bits = bits << 5 | map[src[k] & 0xFF];
+			}
+			for(int k=32; k>=0; k-=8) {
+				dst[position++] = (byte) (bits >>> k);
+			}
+		}
+		int mode = length % 8;
+		int byteCount = mode * 5 / 8;
+		if(byteCount > 0) {
+			long bits = 0;
+			for(int i=end; i<end+mode; i++) {
+				bits = bits << 5 | map[src[i] & 0xFF];
+			}
+			bits >>>= mode * 5 - byteCount * 8;
+			for(int k=(byteCount-1)*8; k>=0; k-=8) {
+				dst[position++] = (byte) (bits >>> k);
+			}
+		}
+		return position - dstOffset;
 	}
 
 	public static byte[] encodeGZIP(byte[] bts) throws IOException {
@@ -509,115 +946,6 @@ public class SafeEncodeUtils {
 		return decodeBase64(str);
 	}
 
-	/** base64编码算法实现 **/
-	private static byte[] _encodeBase64(byte[] encodeMap, byte[] bts, boolean backfill) {
-		if(bts == null) {
-			return null;
-		}
-		int buffSize = bts.length * 4 / 3;
-		int mode = bts.length % 3;
-		if(mode > 0) {
-			buffSize++;
-			if(backfill) {
-				if (mode == 1) {
-					buffSize += 2;
-				} else {
-					buffSize++;
-				}
-			}
-		}
-		int offset = 0;
-		byte[] buff = new byte[buffSize];
-		//最后1位或2位，补填充字符“=”
-		if(backfill && mode > 0) {
-			buff[buffSize-1] = base64BackfillChar;
-			if (mode == 1) {
-				buff[buffSize - 2] = base64BackfillChar;
-			}
-		}
-		int prevBitCount = 0;
-		int prevBitNum = 0;
-		for(int i=0; i<bts.length; i++) {
-			int nextBitCount = 2 + prevBitCount;
-			int nextBitNum = bts[i] & bitMask[nextBitCount];
-			int index = (bts[i] >>> (2 + prevBitCount)) & bitMask[6-prevBitCount];
-			index |= prevBitNum << (6 - prevBitCount);
-			buff[offset++] = encodeMap[index];
-			if(nextBitCount >= 6) {
-				buff[offset++] = encodeMap[nextBitNum];
-				prevBitCount = 0;
-				prevBitNum = 0;
-			} else {
-				prevBitCount = nextBitCount;
-				prevBitNum = nextBitNum;
-			}
-		}
-		if(prevBitCount > 0) {
-			if(backfill) { //标准BASE64编码，移至高位
-				if (prevBitCount < 6) {
-					prevBitNum <<= 6 - prevBitCount;
-				}
-			}
-			buff[offset++] = encodeMap[prevBitNum];
-		}
-		return buff;
-	}
-
-	/** base64解码算法实现 **/
-	private static byte[] _decodeBase64(byte[] decodeMap, byte[] bts, boolean backfill) {
-		if(bts == null) {
-			return null;
-		}
-		int srcSize = bts.length;
-		if(backfill) {
-			for(int i=1; i<8 && srcSize > 0; i++) {
-				if(bts[srcSize - 1] != base64BackfillChar) {
-					break;
-				}
-				srcSize--;
-			}
-		}
-		int buffSize = srcSize * 3 / 4;
-		int mode = srcSize % 4;
-		int lastBitCount = 0;
-		int lastPosition = srcSize - 1;
-		if(mode > 0) {
-			if(mode == 3) {
-				lastBitCount = 4;
-			} else {
-				lastBitCount = 2;
-			}
-		}
-		byte[] buff = new byte[buffSize]; //创建buff
-		int offset = 0;
-		int prevBitCount = 0;
-		for(int i=0; i<srcSize; i++) {
-			int ch = bts[i] & 0xFF;
-			int num = 0; //默认为0
-			if(ch < decodeMap.length && decodeMap[ch] > 0) {
-				num = decodeMap[ch];
-			}
-			if(prevBitCount == 0) {
-				buff[offset] = (byte) (num << 2);
-				prevBitCount = 2;
-			} else if(prevBitCount == 6) {
-				buff[offset++] |= (byte)num;
-				prevBitCount = 0;
-			} else if(i == lastPosition && lastBitCount > 0) {
-				if(backfill) { //标准BASE64编码
-					buff[offset++] |= num >>> (6-lastBitCount) & bitMask[lastBitCount];
-				} else {
-					buff[offset++] |= num & bitMask[lastBitCount];
-				}
-			} else {
-				buff[offset++] |= (byte) (num >>> (6-prevBitCount));
-				buff[offset] = (byte) ((num & bitMask[6-prevBitCount]) << 2+prevBitCount);
-				prevBitCount = 2 + prevBitCount;
-			}
-		}
-		return buff;
-	}
-
 	private static byte[] messageDigest(String mode, byte[] bts) throws NoSuchAlgorithmException {
 		MessageDigest messageDigest = MessageDigest.getInstance(mode);
 		messageDigest.update(bts);
@@ -696,6 +1024,121 @@ public class SafeEncodeUtils {
 		}
 	}
 
+	/**
+	 * 64进制编码的字符表
+	 *   编码按字符表查表，每3字节转换为4个字符；解码按256项的反向表查表，不在字符表中的字符按0处理
+	 */
+	public enum Base64Alphabet {
+		/** 标准base64编码（末尾不足3字节时，剩余位移至高位，并补填充字符“=”） **/
+		STANDARD("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/", true),
+		/** 支持HTTP协议的64进制编码（字符升序，扩展字符用".-"代替；末尾剩余位不移位，不补填充字符） **/
+		HTTP64("-.0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz", false);
+
+		/** 末尾最多去除的填充字符数 **/
+		static final int MAX_BACKFILL_COUNT = 7;
+
+		private final byte[] encodeMap = new byte[64];
+		private final char[] encodeChars;
+		private final byte[] decodeMap = new byte[256];
+		private final boolean backfill;
+
+		Base64Alphabet(String chars, boolean backfill) {
+			this.encodeChars = chars.toCharArray();
+			for(int i=0; i<encodeChars.length; i++) {
+				encodeMap[i] = (byte) encodeChars[i];
+				decodeMap[encodeChars[i]] = (byte) i;
+			}
+			this.backfill = backfill;
+		}
+
+		/**
+		 * 是否补填充字符（标准base64编码）
+		 * @return 补填充字符返回 true
+		 */
+		public boolean isBackfill() {
+			return backfill;
+		}
+
+		/**
+		 * 计算编码后的长度
+		 * @param length 原文长度
+		 * @return 编码的字符数
+		 */
+		public int encodedLength(int length) {
+			int mode = length % 3;
+			if(mode == 0) {
+				return length / 3 * 4;
+			}
+			return length / 3 * 4 + (backfill ? 4 : mode + 1);
+		}
+
+		/**
+		 * 计算解码后的长度（去除末尾的填充字符）
+		 * @param src 编码数据
+		 * @param offset 编码数据的偏移量
+		 * @param length 编码数据的长度
+		 * @return 原文的字节数
+		 */
+		public int decodedLength(byte[] src, int offset, int length) {
+			return decodedLength(stripBackfill(src, offset, length));
+		}
+
+		/**
+		 * 计算解码后的长度（去除末尾的填充字符）
+		 * @param src 编码字符数组
+		 * @param offset 编码字符的偏移量
+		 * @param length 编码字符的长度
+		 * @return 原文的字节数
+		 */
+		public int decodedLength(char[] src, int offset, int length) {
+			return decodedLength(stripBackfill(src, offset, length));
+		}
+
+		/** 按去除填充字符后的长度计算（末尾单个字符不足1字节，忽略） **/
+		static int decodedLength(int size) {
+			return size / 4 * 3 + Math.max(size % 4 - 1, 0);
+		}
+
+		/** 去除末尾的填充字符后的长度 **/
+		int stripBackfill(byte[] src, int offset, int length) {
+			if(backfill) {
+				int end = offset + length;
+				for(int i=0; i<MAX_BACKFILL_COUNT && length > 0 && src[end - 1 - i] == base64BackfillChar; i++) {
+					length--;
+				}
+			}
+			return length;
+		}
+
+		/** 去除末尾的填充字符后的长度 **/
+		int stripBackfill(char[] src, int offset, int length) {
+			if(backfill) {
+				int end = offset + length;
+				for(int i=0; i<MAX_BACKFILL_COUNT && length > 0 && src[end - 1 - i] == base64BackfillChar; i++) {
+					length--;
+				}
+			}
+			return length;
+		}
+
+		/** 去除缓冲区剩余数据末尾的填充字符后的长度（不改变缓冲区位置） **/
+		int stripBackfill(ByteBuffer src) {
+			int length = src.remaining();
+			if(backfill) {
+				int end = src.limit();
+				for(int i=0; i<MAX_BACKFILL_COUNT && length > 0 && src.get(end - 1 - i) == base64BackfillChar; i++) {
+					length--;
+				}
+			}
+			return length;
+		}
+
+		/** 字符的6位序号（非ASCII字符按0处理） **/
+		int decode(char ch) {
+			return ch < 0x80 ? decodeMap[ch] : 0;
+		}
+	}
+
 	public static class Charsets {
 		/**
 		 * Seven-bit ASCII, a.k.a. ISO646-US, a.k.a. the Basic Latin block of the
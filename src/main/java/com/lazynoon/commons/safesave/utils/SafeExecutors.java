@@ -0,0 +1,65 @@
+package com.lazynoon.commons.safesave.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行加解密使用的线程池
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeExecutors {
+	/** 默认并行度（CPU核数） **/
+	private static final int DEFAULT_PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors());
+	/** 默认线程池（首次使用时创建，守护线程，不阻止JVM退出） **/
+	private static volatile ExecutorService defaultExecutor = null;
+
+	private SafeExecutors() {}
+
+	/**
+	 * 获取默认线程池（线程数等于CPU核数）
+	 *   注意：不要在默认线程池的任务内，再次提交并等待默认线程池的任务，否则可能死锁
+	 * @return 线程池
+	 */
+	public static ExecutorService getDefaultExecutor() {
+		ExecutorService executor = defaultExecutor;
+		if(executor == null) {
+			synchronized (SafeExecutors.class) {
+				executor = defaultExecutor;
+				if(executor == null) {
+					executor = Executors.newFixedThreadPool(DEFAULT_PARALLELISM, new DaemonThreadFactory("SafeSave-worker-"));
+					defaultExecutor = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * 获取默认并行度
+	 * @return CPU核数
+	 */
+	public static int getDefaultParallelism() {
+		return DEFAULT_PARALLELISM;
+	}
+
+	/** 创建守护线程的线程工厂 **/
+	public static class DaemonThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+		private final String namePrefix;
+
+		public DaemonThreadFactory(String namePrefix) {
+			this.namePrefix = namePrefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
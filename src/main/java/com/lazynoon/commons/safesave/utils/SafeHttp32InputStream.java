@@ -0,0 +1,37 @@
+package com.lazynoon.commons.safesave.utils;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * 32进制解码输入流（解码结果与 SafeEncodeUtils.decodeHttp32 整体解码完全一致）
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeHttp32InputStream extends SafeDecodeInputStream {
+
+	/**
+	 * @param in 编码数据的输入流（关闭时一并关闭）
+	 */
+	public SafeHttp32InputStream(InputStream in) {
+		super(in, null, 8, 0);
+	}
+
+	/**
+	 * @param reader 编码数据的字符流（关闭时一并关闭）
+	 */
+	public SafeHttp32InputStream(Reader reader) {
+		super(null, reader, 8, 0);
+	}
+
+	@Override
+	int decodeGroups(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		return SafeEncodeUtils.decodeHttp32(src, offset, length, dst, dstOffset);
+	}
+
+	@Override
+	int decodeFinal(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		return SafeEncodeUtils.decodeHttp32(src, offset, length, dst, dstOffset);
+	}
+}
@@ -0,0 +1,32 @@
+package com.lazynoon.commons.safesave.utils;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * 32进制编码输出流（编码结果与 SafeEncodeUtils.encodeHttp32 整体编码完全一致）
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeHttp32OutputStream extends SafeEncodeOutputStream {
+
+	/**
+	 * @param out 编码写入的输出流（关闭时一并关闭）
+	 */
+	public SafeHttp32OutputStream(OutputStream out) {
+		super(out, null, 5, SafeEncodeUtils.encodedHttp32Length(CHUNK_SIZE));
+	}
+
+	/**
+	 * @param writer 编码写入的字符流（关闭时一并关闭）
+	 */
+	public SafeHttp32OutputStream(Writer writer) {
+		super(null, writer, 5, SafeEncodeUtils.encodedHttp32Length(CHUNK_SIZE));
+	}
+
+	@Override
+	int encode(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		return SafeEncodeUtils.encodeHttp32(src, offset, length, dst, dstOffset);
+	}
+}
@@ -92,4 +92,25 @@ public class SafeMathUtils {
 		}
 		return (short)result;
 	}
+
+	/**
+	 * 按高字节在前的存储方式，将 long 型数字的低 byteCount 个字节写入字节数组
+	 *   注意：若写入的位置，不在字节数组的范围内，抛出异常 IndexOutOfBoundsException
+	 * @param data 字节数组
+	 * @param offset 写入数据的偏移量
+	 * @param num long型数字
+	 * @param byteCount 写入字节数量（最小1，最大8）
+	 */
+	public static void writeLongAsBigEndian(byte[] data, int offset, long num, int byteCount) {
+		if(byteCount <= 0 || byteCount > 8) {
+			throw new IndexOutOfBoundsException("Can not write long number. byteCount: " + byteCount);
+		}
+		if(data == null || offset < 0 || offset + byteCount > data.length) {
+			throw new IndexOutOfBoundsException("Can not write long number. offset: " + offset);
+		}
+		for(int i=offset+byteCount-1; i>=offset; i--) {
+			data[i] = (byte) num;
+			num >>>= 8;
+		}
+	}
 }
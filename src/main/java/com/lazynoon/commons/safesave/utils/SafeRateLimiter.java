@@ -0,0 +1,60 @@
+package com.lazynoon.commons.safesave.utils;
+
+/**
+ * 令牌桶限速器（每秒许可数可在运行时调整，如业务高峰期降低后台任务的速度）
+ *   桶容量为1秒的许可数，空闲时最多积累1秒的许可
+ *
+ * @author Hansen
+ * @date 2026-10-17
+ */
+public class SafeRateLimiter {
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	/** 每秒许可数（小于等于0表示不限速） **/
+	private volatile double permitsPerSecond;
+	/** 当前可用的许可数（可为负数，表示已预支） **/
+	private double storedPermits = 0;
+	private long lastNanos = System.nanoTime();
+
+	/**
+	 * @param permitsPerSecond 每秒许可数（小于等于0表示不限速）
+	 */
+	public SafeRateLimiter(double permitsPerSecond) {
+		this.permitsPerSecond = permitsPerSecond;
+	}
+
+	/**
+	 * 获取许可（许可不足时阻塞等待；单次请求超过桶容量时预支，由后续请求等待）
+	 * @param permits 许可数
+	 * @throws InterruptedException 等待时线程被中断
+	 */
+	public void acquire(int permits) throws InterruptedException {
+		long waitNanos;
+		synchronized (this) {
+			double rate = permitsPerSecond;
+			if(rate <= 0) {
+				return;
+			}
+			long now = System.nanoTime();
+			storedPermits = Math.min(rate, storedPermits + (now - lastNanos) * rate / NANOS_PER_SECOND);
+			lastNanos = now;
+			waitNanos = storedPermits >= 0 ? 0 : (long) (-storedPermits * NANOS_PER_SECOND / rate);
+			storedPermits -= permits;
+		}
+		if(waitNanos > 0) {
+			Thread.sleep(waitNanos / 1000000, (int) (waitNanos % 1000000));
+		}
+	}
+
+	public double getPermitsPerSecond() {
+		return permitsPerSecond;
+	}
+
+	/**
+	 * 调整每秒许可数
+	 * @param permitsPerSecond 每秒许可数（小于等于0表示不限速）
+	 */
+	public void setPermitsPerSecond(double permitsPerSecond) {
+		this.permitsPerSecond = permitsPerSecond;
+	}
+}
@@ -13,6 +13,7 @@ public class EncryptionHelper {
 	private static final int BYTE_SIZE = 256;
 	private static final EncryptionHelper instance = new EncryptionHelper();
 	private SafeKeyStore keyStore = new SafeKeyStore();
+	private SafeDecryptor decryptor = new SafeDecryptor(keyStore);
 	private int currentMajorVersion = 1;
 	private int currentMinorVersion = 0;
 	private int currentKeyId = 10001;
@@ -53,13 +54,7 @@ public class EncryptionHelper {
 
 
 	protected SafeData _decrypt(byte[] data) throws SafeCryptoException {
-		int majorVersion = SafeEncryptorFactory.getMajorVersion(data);
-		int minorVersion = SafeEncryptorFactory.getMinorVersion(data);
-		SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(majorVersion, minorVersion, keyStore);
-		if(encryptor == null) {
-			throw new IllegalArgumentException("not support encrypt version: "+minorVersion+", "+minorVersion);
-		}
-		return encryptor.decrypt(data);
+		return decryptor.decrypt(data);
 	}
 
 	protected byte[] _encrypt(byte[] data) throws SafeCryptoException {
@@ -70,6 +65,24 @@ public class EncryptionHelper {
 		return encryptor.encrypt(data, currentKeyId, currentMappingId);
 	}
 
+	public static SafeEncryptor getEncryptor() {
+		return SafeEncryptorFactory.getInstance(instance.currentMajorVersion, instance.currentMinorVersion, instance.keyStore);
+	}
+	public static SafeKeyStore getKeyStore() {
+		return instance.keyStore;
+	}
+	public static int getCurrentMajorVersion() {
+		return instance.currentMajorVersion;
+	}
+	public static int getCurrentMinorVersion() {
+		return instance.currentMinorVersion;
+	}
+	public static int getCurrentKeyId() {
+		return instance.currentKeyId;
+	}
+	public static int getCurrentMappingId() {
+		return instance.currentMappingId;
+	}
 	public static SafeData decryptBytes(byte[] data) throws SafeCryptoException {
 		return instance._decrypt(data);
 	}
@@ -80,19 +93,12 @@ public class EncryptionHelper {
 		if(str == null || str.length() == 0) {
 			return str;
 		}
-		byte[] data = str.getBytes(SafeEncodeUtils.Charsets.UTF_8);
-		data = instance._encrypt(data);
-		return SafeEncodeUtils.encodeBase64ToString(data);
+		return getEncryptor().encryptToString(str, instance.currentKeyId, instance.currentMappingId);
 	}
 	public static String decryptString(String str) throws SafeCryptoException {
 		if(str == null || str.length() == 0) {
 			return str;
 		}
-		byte[] data = SafeEncodeUtils.decodeBase64(str);
-		SafeData safeData = instance._decrypt(data);
-		if(safeData == null || safeData.getErrorCode() != 0) {
-			throw new SafeCryptoException(1101, "decrypt error");
-		}
-		return new String(safeData.getPlaintextData(), SafeEncodeUtils.Charsets.UTF_8);
+		return instance.decryptor.decryptToString(str);
 	}
 }
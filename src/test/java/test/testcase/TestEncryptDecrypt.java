@@ -1,12 +1,57 @@
 package test.testcase;
 
 import com.lazynoon.commons.safesave.SafeCryptoException;
+import com.lazynoon.commons.safesave.SafeBatchResult;
 import com.lazynoon.commons.safesave.SafeData;
+import com.lazynoon.commons.safesave.SafeDataRange;
+import com.lazynoon.commons.safesave.SafeDataView;
+import com.lazynoon.commons.safesave.SafeDecryptor;
+import com.lazynoon.commons.safesave.SafeEncryptor;
+import com.lazynoon.commons.safesave.SafeEncryptorFactory;
+import com.lazynoon.commons.safesave.SafeKeyStore;
+import com.lazynoon.commons.safesave.SafeKeyStoreLoader;
+import com.lazynoon.commons.safesave.SafeParallelEncryptor;
+import com.lazynoon.commons.safesave.SafeVerifyResult;
+import com.lazynoon.commons.safesave.crypto.SafeAES;
+import com.lazynoon.commons.safesave.crypto.SafeDerivedKeyCache;
+import com.lazynoon.commons.safesave.crypto.SafeParallelBlocks;
+import com.lazynoon.commons.safesave.impl.v01.v01SafeData;
+import com.lazynoon.commons.safesave.impl.v01.v01SafeEncryptor;
+import com.lazynoon.commons.safesave.rekey.SafeRekeyFileCheckpoint;
+import com.lazynoon.commons.safesave.rekey.SafeRekeyPipeline;
+import com.lazynoon.commons.safesave.rekey.SafeRekeyRecord;
+import com.lazynoon.commons.safesave.rekey.SafeRekeyResult;
+import com.lazynoon.commons.safesave.rekey.SafeRekeySink;
+import com.lazynoon.commons.safesave.rekey.SafeRekeySource;
+import com.lazynoon.commons.safesave.impl.v02.v02SafeData;
+import com.lazynoon.commons.safesave.utils.SafeBase64InputStream;
+import com.lazynoon.commons.safesave.utils.SafeBase64OutputStream;
 import com.lazynoon.commons.safesave.utils.SafeEncodeUtils;
+import com.lazynoon.commons.safesave.utils.SafeExecutors;
 import com.lazynoon.commons.safesave.utils.SafeNetLog;
+import com.lazynoon.commons.safesave.utils.SafeRateLimiter;
 import com.lazynoon.commons.safesave.utils.SafeByteUtils;
 import test.sample.EncryptionHelper;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * 加密数据解密后与源数据比较一致性测试
  *
@@ -20,8 +65,31 @@ public class TestEncryptDecrypt {
 		this.sourceData = sourceData;
 	}
 
-	public void runTest() throws SafeCryptoException {
+	public void runTest() throws SafeCryptoException, IOException {
 		testDecryptEqual();
+		testDerivedKeyCache();
+		testCipherCache();
+		testEncryptToBuffer();
+		testDecryptInto();
+		testBatch();
+		testParallelBatch();
+		testParallelBlocks();
+		testStreamEncrypt();
+		testFileEncrypt();
+		testDataView();
+		testEncryptorFactory();
+		testKeyStoreSnapshot();
+		testKeyStoreLoader();
+		testRekeyPipeline();
+		testRemapCiphertext();
+		testHashPlaintext();
+		testGcmEncrypt();
+		testDecryptRange();
+		testPrecheck();
+		testVerify();
+		testEncodeStream();
+		testEncryptToString();
+		testCompress();
 	}
 
 	protected void testDecryptEqual() throws SafeCryptoException {
@@ -47,4 +115,1277 @@ public class TestEncryptDecrypt {
 				"costTime: " + costTime + "ms");
 	}
 
+	protected void testDerivedKeyCache() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeDerivedKeyCache keyCache = new SafeDerivedKeyCache(2);
+		byte[][] keyPool = new byte[3][];
+		for(int i=0; i<keyPool.length; i++) {
+			keyPool[i] = ("626a8034bb8e" + i).getBytes(SafeEncodeUtils.Charsets.UTF_8);
+		}
+		int totalRows = 0;
+		for(int i=0; i<sourceData.length && i<512; i++) {
+			byte[] secretKey = keyPool[i % keyPool.length];
+			SafeAES plainAES = new SafeAES(secretKey);
+			plainAES.setKeyAlgorithm(SafeAES.KeyAlgorithm.SHA1PRNG);
+			SafeAES cachedAES = new SafeAES(secretKey);
+			cachedAES.setKeyAlgorithm(SafeAES.KeyAlgorithm.SHA1PRNG);
+			cachedAES.setDerivedKeyCache(keyCache);
+			byte[] encryptData = plainAES.encrypt(sourceData[i]);
+			if(SafeByteUtils.isEqual(encryptData, cachedAES.encrypt(sourceData[i])) == false
+					|| SafeByteUtils.isEqual(sourceData[i], cachedAES.decrypt(encryptData)) == false) {
+				throw new SafeCryptoException(20100722, "cached SHA1PRNG key not equal. row: " + i);
+			}
+			totalRows++;
+		}
+		if(keyCache.size() > keyCache.getCapacity()) {
+			throw new SafeCryptoException(20100723, "derived key cache size exceed: " + keyCache.size());
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testDerivedKeyCache, " +
+				"totalRows: " + totalRows +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testCipherCache() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		final SafeAES aes = new SafeAES("626a8034bb8e".getBytes(SafeEncodeUtils.Charsets.UTF_8));
+		final byte[] data = "cipher cache generation test".getBytes(SafeEncodeUtils.Charsets.UTF_8);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicInteger workerErrors = new AtomicInteger(0);
+		Thread[] workers = new Thread[8];
+		for(int i=0; i<workers.length; i++) {
+			workers[i] = new Thread() {
+				public void run() {
+					byte[] block = new byte[SafeAES.BLOCK_SIZE];
+					while(running.get()) {
+						try {
+							aes.encrypt(data);
+							aes.encryptBlocks(block, 0, block.length, block, 0);
+						} catch (SafeCryptoException e) {
+							workerErrors.incrementAndGet();
+						}
+					}
+				}
+			};
+			workers[i].start();
+		}
+		//运行中切换密钥转换算法，切换前借出的密码器归还时应被丢弃
+		int changeCount = 40;
+		for(int i=0; i<changeCount; i++) {
+			aes.setKeyAlgorithm(i % 2 == 0 ? SafeAES.KeyAlgorithm.SHA1PRNG : SafeAES.KeyAlgorithm.PLAIN);
+			Thread.yield();
+		}
+		running.set(false);
+		for(Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if(workerErrors.get() > 0) {
+			throw new SafeCryptoException(20100828, "cipher cache worker error count: " + workerErrors.get());
+		}
+		//缓存为先进先出，轮换超过缓存上限的次数，覆盖缓存中的全部密码器
+		SafeAES expectAES = new SafeAES("626a8034bb8e".getBytes(SafeEncodeUtils.Charsets.UTF_8));
+		byte[] expectData = expectAES.encrypt(data);
+		byte[] expectBlock = new byte[SafeAES.BLOCK_SIZE];
+		expectAES.encryptBlocks(expectBlock, 0, expectBlock.length, expectBlock, 0);
+		for(int i=0; i<SafeAES.MAX_CACHED_CIPHERS*2; i++) {
+			byte[] block = new byte[SafeAES.BLOCK_SIZE];
+			aes.encryptBlocks(block, 0, block.length, block, 0);
+			if(SafeByteUtils.isEqual(expectData, aes.encrypt(data)) == false
+					|| SafeByteUtils.isEqual(expectBlock, block) == false) {
+				throw new SafeCryptoException(20100829, "stale cipher returned to cache after key algorithm changed");
+			}
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testCipherCache, " +
+				"changeCount: " + changeCount +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testEncryptToBuffer() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeEncryptor encryptor = EncryptionHelper.getEncryptor();
+		int keyId = EncryptionHelper.getCurrentKeyId();
+		int mappingId = EncryptionHelper.getCurrentMappingId();
+		ByteBuffer directBuff = ByteBuffer.allocateDirect(encryptor.encryptedLength(4096) + 7);
+		byte[] arrayBuff = new byte[encryptor.encryptedLength(4096) + 7];
+		int totalRows = 0;
+		for(byte[] originData : sourceData) {
+			int length = encryptor.encryptedLength(originData.length);
+			directBuff.clear();
+			directBuff.position(7);
+			if(encryptor.encrypt(originData, 0, originData.length, keyId, mappingId, directBuff) != length
+					|| directBuff.position() != 7 + length) {
+				throw new SafeCryptoException(20100724, "encrypted length not equal: " + originData.length);
+			}
+			byte[] encryptData = new byte[length];
+			directBuff.position(7);
+			directBuff.get(encryptData);
+			SafeData decrypted = EncryptionHelper.decryptBytes(encryptData);
+			byte[] decryptData = decrypted.getPlaintextData();
+			//签名须与解密出的字段、明文重新计算的结果一致
+			if(SafeByteUtils.isEqual(originData, decryptData) == false || decrypted.getHashCode() != decrypted.generateHashCode()) {
+				throw new SafeCryptoException(20100725, "direct buffer encrypt & decrypt not equal: " + originData.length);
+			}
+			if(originData.length > 2) {
+				int offset = 1;
+				int size = originData.length - 2;
+				length = encryptor.encrypt(originData, offset, size, keyId, mappingId, arrayBuff, 7);
+				encryptData = new byte[length];
+				System.arraycopy(arrayBuff, 7, encryptData, 0, length);
+				decrypted = EncryptionHelper.decryptBytes(encryptData);
+				decryptData = decrypted.getPlaintextData();
+				if(decrypted.getHashCode() != decrypted.generateHashCode()) {
+					throw new SafeCryptoException(20100726, "array encrypt hashCode not match: " + originData.length);
+				}
+				for(int i=0; i<size; i++) {
+					if(decryptData.length != size || decryptData[i] != originData[offset + i]) {
+						throw new SafeCryptoException(20100726, "array encrypt & decrypt not equal: " + originData.length);
+					}
+				}
+			}
+			totalRows++;
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testEncryptToBuffer, " +
+				"totalRows: " + totalRows +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testDecryptInto() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeEncryptor encryptor = EncryptionHelper.getEncryptor();
+		ByteBuffer directBuff = ByteBuffer.allocateDirect(4096 + 3);
+		byte[] arrayBuff = new byte[4096 + 3];
+		int totalRows = 0;
+		for(byte[] originData : sourceData) {
+			byte[] encryptData = EncryptionHelper.encryptBytes(originData);
+			byte[] paddedData = new byte[encryptData.length + 5];
+			System.arraycopy(encryptData, 0, paddedData, 2, encryptData.length);
+			directBuff.clear();
+			directBuff.position(3);
+			int length = encryptor.decryptInto(paddedData, 2, encryptData.length, directBuff);
+			if(length != originData.length || directBuff.position() != 3 + length) {
+				throw new SafeCryptoException(20100727, "decryptInto length not equal: " + length);
+			}
+			length = encryptor.decryptInto(encryptData, 0, encryptData.length, arrayBuff, 3);
+			for(int i=0; i<originData.length; i++) {
+				if(length != originData.length || arrayBuff[3 + i] != originData[i] || directBuff.get(3 + i) != originData[i]) {
+					throw new SafeCryptoException(20100728, "decryptInto data not equal: " + originData.length);
+				}
+			}
+			//缓冲区不足与密文被篡改，返回错误码
+			if(encryptor.decryptInto(encryptData, 0, encryptData.length, new byte[originData.length - 1], 0) >= 0) {
+				throw new SafeCryptoException(20100729, "decryptInto short buffer not detected: " + originData.length);
+			}
+			encryptData[encryptData.length - 1 - totalRows % (encryptData.length - 6)]++;
+			if(encryptor.decryptInto(encryptData, 0, encryptData.length, arrayBuff, 0) >= 0
+					|| encryptor.silentDecrypt(encryptData).isDecryptSuccess()) {
+				throw new SafeCryptoException(20100730, "decryptInto broken data not detected: " + originData.length);
+			}
+			totalRows++;
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testDecryptInto, " +
+				"totalRows: " + totalRows +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testBatch() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeEncryptor encryptor = EncryptionHelper.getEncryptor();
+		byte[][] encryptData = encryptor.encryptBatch(sourceData,
+				EncryptionHelper.getCurrentKeyId(), EncryptionHelper.getCurrentMappingId());
+		for(int i=0; i<sourceData.length; i++) {
+			byte[] decryptData = EncryptionHelper.decryptBytes(encryptData[i]).getPlaintextData();
+			if(SafeByteUtils.isEqual(sourceData[i], decryptData) == false) {
+				throw new SafeCryptoException(20100741, "encryptBatch & decrypt not equal. index: " + i);
+			}
+		}
+		//混合逐条加密的数据、批量加密的数据、错误数据
+		byte[][] mixedData = new byte[sourceData.length + 2][];
+		for(int i=0; i<sourceData.length; i++) {
+			mixedData[i] = (i % 2 == 0) ? encryptData[i] : EncryptionHelper.encryptBytes(sourceData[i]);
+		}
+		mixedData[sourceData.length] = null;
+		mixedData[sourceData.length + 1] = encryptData[0].clone();
+		mixedData[sourceData.length + 1][mixedData[sourceData.length + 1].length - 20]++;
+		SafeData[] safeDataArr = encryptor.decryptBatch(mixedData);
+		for(int i=0; i<sourceData.length; i++) {
+			if(safeDataArr[i].isDecryptSuccess() == false
+					|| SafeByteUtils.isEqual(sourceData[i], safeDataArr[i].getPlaintextData()) == false) {
+				throw new SafeCryptoException(20100742, "decryptBatch not equal. index: " + i);
+			}
+		}
+		if(safeDataArr[sourceData.length].isDecryptSuccess() || safeDataArr[sourceData.length + 1].isDecryptSuccess()) {
+			throw new SafeCryptoException(20100743, "decryptBatch error data not detected");
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testBatch, " +
+				"totalRows: " + sourceData.length +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testParallelBatch() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeParallelEncryptor parallelEncryptor = new SafeParallelEncryptor(EncryptionHelper.getKeyStore());
+		byte[][] originData = new byte[sourceData.length + 1][];
+		System.arraycopy(sourceData, 0, originData, 0, sourceData.length);
+		SafeBatchResult encryptResult = parallelEncryptor.encryptBatch(
+				EncryptionHelper.getCurrentMajorVersion(), EncryptionHelper.getCurrentMinorVersion(), originData,
+				EncryptionHelper.getCurrentKeyId(), EncryptionHelper.getCurrentMappingId());
+		if(encryptResult.getErrorCount() != 1 || encryptResult.isSuccess(sourceData.length)) {
+			throw new SafeCryptoException(20100744, "parallel encrypt error count: " + encryptResult.getErrorCount());
+		}
+		SafeBatchResult decryptResult = parallelEncryptor.decryptBatch(encryptResult.getData());
+		for(int i=0; i<sourceData.length; i++) {
+			if(SafeByteUtils.isEqual(sourceData[i], decryptResult.getData(i)) == false) {
+				throw new SafeCryptoException(20100745, "parallel encrypt & decrypt not equal. index: " + i);
+			}
+		}
+		if(decryptResult.getErrorCount() != 1 || decryptResult.getErrorCode(sourceData.length) == 0) {
+			throw new SafeCryptoException(20100746, "parallel decrypt error count: " + decryptResult.getErrorCount());
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testParallelBatch, " +
+				"totalRows: " + sourceData.length +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testParallelBlocks() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeAES aes = new SafeAES("626a8034bb8e".getBytes(SafeEncodeUtils.Charsets.UTF_8));
+		byte[] byteMapping = new byte[256];
+		for(int i=0; i<byteMapping.length; i++) {
+			byteMapping[i] = (byte) (i ^ 0x5A);
+		}
+		int length = SafeParallelBlocks.SEGMENT_SIZE * 3 + SafeAES.BLOCK_SIZE * 5;
+		byte[] originData = new byte[length];
+		new Random().nextBytes(originData);
+		byte[] serialData = new byte[length];
+		aes.encryptBlocks(originData, 0, length, serialData, 0);
+		SafeByteUtils.convertMapping(serialData, 0, length, byteMapping);
+		byte[] parallelData = originData.clone();
+		SafeParallelBlocks.encrypt(aes, parallelData, 0, length, byteMapping, SafeExecutors.getDefaultExecutor(), 4);
+		if(SafeByteUtils.isEqual(serialData, parallelData) == false) {
+			throw new SafeCryptoException(20100747, "parallel encrypt blocks not equal to serial encrypt");
+		}
+		byte[] decryptData = new byte[length];
+		SafeParallelBlocks.decrypt(aes, parallelData, 0, decryptData, 0, length, byteMapping, SafeExecutors.getDefaultExecutor(), 4);
+		if(SafeByteUtils.isEqual(originData, decryptData) == false) {
+			throw new SafeCryptoException(20100748, "parallel decrypt blocks not equal to origin data");
+		}
+		try {
+			aes.encryptBlocks(originData, 0, SafeAES.BLOCK_SIZE - 1, serialData, 0);
+			throw new SafeCryptoException(20100830, "unaligned block length is not rejected");
+		} catch (SafeCryptoException e) {
+			if(e.getCode() != 20100012) {
+				throw e;
+			}
+		}
+		byte[] largeData = new byte[SafeParallelBlocks.PARALLEL_THRESHOLD + 7];
+		new Random().nextBytes(largeData);
+		byte[] largeEncrypted = EncryptionHelper.encryptBytes(largeData);
+		SafeData safeData = EncryptionHelper.decryptBytes(largeEncrypted);
+		if(SafeByteUtils.isEqual(largeData, safeData.getPlaintextData()) == false) {
+			throw new SafeCryptoException(20100749, "large record encrypt & decrypt not equal");
+		}
+		//多线程解密直接写入目标数组的指定位置
+		byte[] intoBuff = new byte[largeData.length + 9];
+		int intoLength = EncryptionHelper.getEncryptor().decryptInto(largeEncrypted, 0, largeEncrypted.length, intoBuff, 9);
+		if(intoLength != largeData.length
+				|| SafeByteUtils.isEqual(largeData, Arrays.copyOfRange(intoBuff, 9, intoBuff.length)) == false) {
+			throw new SafeCryptoException(20100831, "large record decrypt into array not equal. result: " + intoLength);
+		}
+		largeEncrypted[largeEncrypted.length / 2] ^= 1;
+		if(EncryptionHelper.getEncryptor().decryptInto(largeEncrypted, 0, largeEncrypted.length, intoBuff, 9) >= 0) {
+			throw new SafeCryptoException(20100832, "modified large record is not rejected");
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testParallelBlocks, " +
+				"totalBytes: " + (length + largeData.length) +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testStreamEncrypt() throws SafeCryptoException, IOException {
+		long startTime = System.nanoTime();
+		SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(2, 0, EncryptionHelper.getKeyStore());
+		int keyId = EncryptionHelper.getCurrentKeyId();
+		int mappingId = EncryptionHelper.getCurrentMappingId();
+		byte[] largeData = new byte[v02SafeData.DEFAULT_CHUNK_SIZE * 3 + 5];
+		new Random().nextBytes(largeData);
+		byte[][] originData = new byte[Math.min(sourceData.length, 256) + 2][];
+		System.arraycopy(sourceData, 0, originData, 0, originData.length - 2);
+		originData[originData.length - 2] = largeData;
+		originData[originData.length - 1] = new byte[0];
+		long totalBytes = 0;
+		for(int i=0; i<originData.length; i++) {
+			//流式加密，按不同长度分段写入
+			ByteArrayOutputStream encryptBuff = new ByteArrayOutputStream();
+			OutputStream encryptStream = encryptor.openEncryptStream(encryptBuff, keyId, mappingId);
+			for(int pos=0, step=1; pos<originData[i].length; pos+=step, step=step*3+1) {
+				encryptStream.write(originData[i], pos, Math.min(step, originData[i].length - pos));
+			}
+			encryptStream.close();
+			byte[] encryptData = encryptBuff.toByteArray();
+			if(encryptData.length != encryptor.encryptedLength(originData[i].length)) {
+				throw new SafeCryptoException(20100751, "stream encrypted length not match. row: " + i);
+			}
+			//流式解密与整体解密
+			InputStream decryptStream = encryptor.openDecryptStream(new ByteArrayInputStream(encryptData));
+			ByteArrayOutputStream decryptBuff = new ByteArrayOutputStream();
+			byte[] bts = new byte[1000];
+			int size;
+			while((size = decryptStream.read(bts)) >= 0) {
+				decryptBuff.write(bts, 0, size);
+			}
+			decryptStream.close();
+			if(SafeByteUtils.isEqual(originData[i], decryptBuff.toByteArray()) == false
+					|| SafeByteUtils.isEqual(originData[i], encryptor.decrypt(encryptData).getPlaintextData()) == false) {
+				throw new SafeCryptoException(20100752, "stream encrypt & decrypt not equal. row: " + i);
+			}
+			totalBytes += originData[i].length;
+		}
+		//篡改与截断
+		byte[] encryptData = encryptor.encrypt(largeData, keyId, mappingId);
+		byte[] tamperData = encryptData.clone();
+		tamperData[tamperData.length / 2] ^= 1;
+		if(encryptor.silentDecrypt(tamperData).isDecryptSuccess()) {
+			throw new SafeCryptoException(20100753, "tampered stream decrypt success");
+		}
+		byte[] truncateData = Arrays.copyOf(encryptData, encryptor.encryptedLength(v02SafeData.DEFAULT_CHUNK_SIZE)); //只保留首个数据块
+		if(encryptor.silentDecrypt(truncateData).getErrorCode() != 20102636) {
+			throw new SafeCryptoException(20100754, "truncated stream error code: " + encryptor.silentDecrypt(truncateData).getErrorCode());
+		}
+		//不分块的版本，使用缓存全部数据的默认实现
+		SafeEncryptor v01Encryptor = EncryptionHelper.getEncryptor();
+		ByteArrayOutputStream encryptBuff = new ByteArrayOutputStream();
+		OutputStream encryptStream = v01Encryptor.openEncryptStream(encryptBuff, keyId, mappingId);
+		encryptStream.write(largeData);
+		encryptStream.close();
+		InputStream decryptStream = v01Encryptor.openDecryptStream(new ByteArrayInputStream(encryptBuff.toByteArray()));
+		byte[] decryptData = new byte[largeData.length];
+		int length = 0;
+		int size;
+		while(length < decryptData.length && (size = decryptStream.read(decryptData, length, decryptData.length - length)) > 0) {
+			length += size;
+		}
+		if(SafeByteUtils.isEqual(largeData, decryptData) == false || decryptStream.read() != -1) {
+			throw new SafeCryptoException(20100755, "v1 stream encrypt & decrypt not equal");
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testStreamEncrypt, " +
+				"totalRows: " + originData.length +", " +
+				"totalBytes: " + totalBytes +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testFileEncrypt() throws SafeCryptoException, IOException {
+		long startTime = System.nanoTime();
+		SafeEncryptor encryptor = EncryptionHelper.getEncryptor();
+		SafeEncryptor streamEncryptor = SafeEncryptorFactory.getInstance(2, 0, EncryptionHelper.getKeyStore());
+		int keyId = EncryptionHelper.getCurrentKeyId();
+		int mappingId = EncryptionHelper.getCurrentMappingId();
+		Path tempDir = Files.createTempDirectory("safesave");
+		Path srcFile = tempDir.resolve("source.dat");
+		Path encryptFile = tempDir.resolve("encrypt.dat");
+		Path decryptFile = tempDir.resolve("decrypt.dat");
+		int[] lengths = {1, 100, 1024 * 1024 + 3, v01SafeEncryptor.FILE_WINDOW_SIZE + 37};
+		long totalBytes = 0;
+		try {
+			for(int length : lengths) {
+				byte[] originData = new byte[length];
+				new Random().nextBytes(originData);
+				Files.write(srcFile, originData);
+				//文件加密的结果，与字节数组加密的格式一致
+				long encryptLength = encryptor.encryptFile(srcFile, encryptFile, keyId, mappingId);
+				byte[] encryptData = Files.readAllBytes(encryptFile);
+				if(encryptLength != encryptor.encryptedLength(length) || encryptData.length != encryptLength
+						|| SafeByteUtils.isEqual(originData, encryptor.decrypt(encryptData).getPlaintextData()) == false) {
+					throw new SafeCryptoException(20100761, "encrypt file & decrypt bytes not equal. length: " + length);
+				}
+				Files.write(encryptFile, encryptor.encrypt(originData, keyId, mappingId));
+				if(encryptor.decryptFile(encryptFile, decryptFile) != length
+						|| SafeByteUtils.isEqual(originData, Files.readAllBytes(decryptFile)) == false) {
+					throw new SafeCryptoException(20100762, "encrypt bytes & decrypt file not equal. length: " + length);
+				}
+				streamEncryptor.encryptFile(srcFile, encryptFile, keyId, mappingId);
+				if(streamEncryptor.decryptFile(encryptFile, decryptFile) != length
+						|| SafeByteUtils.isEqual(originData, Files.readAllBytes(decryptFile)) == false) {
+					throw new SafeCryptoException(20100763, "v2 encrypt file & decrypt file not equal. length: " + length);
+				}
+				totalBytes += length;
+			}
+			//篡改后解密失败，且不保留明文文件
+			byte[] encryptData = encryptor.encrypt(new byte[1000], keyId, mappingId);
+			encryptData[encryptData.length / 2] ^= 1;
+			Files.write(encryptFile, encryptData);
+			Files.deleteIfExists(decryptFile);
+			try {
+				encryptor.decryptFile(encryptFile, decryptFile);
+				throw new SafeCryptoException(20100764, "tampered file decrypt success");
+			} catch (SafeCryptoException e) {
+				if(e.getCode() == 20100764 || Files.exists(decryptFile)) {
+					throw new SafeCryptoException(20100764, "tampered file decrypt error: " + e.getMessage());
+				}
+			}
+			//v2 文件加密失败时（秘钥不存在、源文件不存在），不保留密文文件
+			Files.write(encryptFile, encryptData);
+			try {
+				streamEncryptor.encryptFile(srcFile, encryptFile, 0, mappingId);
+				throw new SafeCryptoException(20100765, "v2 encrypt file without key success");
+			} catch (SafeCryptoException e) {
+				if(e.getCode() == 20100765 || Files.exists(encryptFile)) {
+					throw new SafeCryptoException(20100765, "v2 encrypt file without key error: " + e.getMessage());
+				}
+			}
+			Files.deleteIfExists(srcFile);
+			try {
+				streamEncryptor.encryptFile(srcFile, encryptFile, keyId, mappingId);
+				throw new SafeCryptoException(20100766, "v2 encrypt missing file success");
+			} catch (IOException e) {
+				if(Files.exists(encryptFile)) {
+					throw new SafeCryptoException(20100766, "v2 encrypt missing file keeps target: " + e.getMessage());
+				}
+			}
+		} finally {
+			Files.deleteIfExists(srcFile);
+			Files.deleteIfExists(encryptFile);
+			Files.deleteIfExists(decryptFile);
+			Files.deleteIfExists(tempDir);
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testFileEncrypt, " +
+				"totalFiles: " + lengths.length +", " +
+				"totalBytes: " + totalBytes +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testDataView() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeEncryptor encryptor = EncryptionHelper.getEncryptor();
+		int keyId = EncryptionHelper.getCurrentKeyId();
+		int mappingId = EncryptionHelper.getCurrentMappingId();
+		SafeDataView view = new SafeDataView(EncryptionHelper.getKeyStore());
+		int bodyCount = 0;
+		for(int i=0; i<sourceData.length; i++) {
+			byte[] encryptData = encryptor.encrypt(sourceData[i], keyId, mappingId);
+			//头部字段不解密
+			view.wrap(encryptData);
+			if(view.getMajorVersion() != encryptor.getMajorVersion() || view.getMinorVersion() != encryptor.getMinorVersion()
+					|| view.getSecretKeyId() != keyId || view.getByteMappingId() != mappingId || view.isBodyLoaded()) {
+				throw new SafeCryptoException(20100771, "view head not match. index: " + i);
+			}
+			if(i % 10 != 0) {
+				continue;
+			}
+			//密文位于数组中间或直接内存中，访问明文时解密
+			byte[] bts = new byte[encryptData.length + 7];
+			System.arraycopy(encryptData, 0, bts, 3, encryptData.length);
+			ByteBuffer direct = ByteBuffer.allocateDirect(encryptData.length);
+			direct.put(encryptData).flip();
+			SafeData safeData = encryptor.decrypt(encryptData);
+			for(int j=0; j<2; j++) {
+				if(j == 0) {
+					view.wrap(bts, 3, encryptData.length);
+				} else {
+					view.wrap(direct);
+				}
+				if(view.getSecretKeyId() != keyId || SafeByteUtils.isEqual(sourceData[i], view.getPlaintextData()) == false
+						|| view.getEncryptTime() != safeData.getEncryptTime() || view.getRandomCode() != safeData.getRandomCode()
+						|| view.isBodyLoaded() == false || direct.position() != 0) {
+					throw new SafeCryptoException(20100772, "view body not match. index: " + i + ", mode: " + j);
+				}
+			}
+			bodyCount++;
+		}
+		//篡改或不完整的密文，头部字段可读，解密失败
+		byte[] encryptData = encryptor.encrypt(new byte[100], keyId, mappingId);
+		encryptData[encryptData.length - 1] ^= 1;
+		if(view.wrap(encryptData).getSecretKeyId() != keyId || view.isDecryptSuccess() || view.getPlaintextData() != null
+				|| view.wrap(encryptData, 0, 5).getSecretKeyId() != 0 || view.getErrorCode() != 20100401) {
+			throw new SafeCryptoException(20100773, "view of tampered data not fail");
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testDataView, " +
+				"totalRecords: " + sourceData.length +", " +
+				"bodyRecords: " + bodyCount +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testEncryptorFactory() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeKeyStore keyStore = EncryptionHelper.getKeyStore();
+		int keyId = EncryptionHelper.getCurrentKeyId();
+		int mappingId = EncryptionHelper.getCurrentMappingId();
+		//同一秘钥库、同一版本号，返回同一加密机
+		SafeEncryptor v1Encryptor = SafeEncryptorFactory.getInstance(1, 0, keyStore);
+		SafeEncryptor v2Encryptor = SafeEncryptorFactory.getInstance(2, 0, keyStore);
+		if(v1Encryptor == null || v2Encryptor == null || v1Encryptor != SafeEncryptorFactory.getInstance(1, 0, keyStore)
+				|| v2Encryptor != SafeEncryptorFactory.getInstance(2, 0, keyStore) || v1Encryptor == SafeEncryptorFactory.getInstance(1, 1, keyStore)
+				|| v1Encryptor == SafeEncryptorFactory.getInstance(1, 0, new SafeKeyStore())) {
+			throw new SafeCryptoException(20100781, "encryptor cache not match");
+		}
+		//按密文版本号自动选择加密机
+		SafeDecryptor decryptor = new SafeDecryptor(keyStore);
+		for(int i=0; i<sourceData.length; i++) {
+			SafeEncryptor encryptor = (i % 2 == 0) ? v1Encryptor : v2Encryptor;
+			byte[] encryptData = encryptor.encrypt(sourceData[i], keyId, mappingId);
+			if(decryptor.getEncryptor(encryptData) != encryptor
+					|| SafeByteUtils.isEqual(sourceData[i], decryptor.decrypt(encryptData).getPlaintextData()) == false) {
+				throw new SafeCryptoException(20100782, "decryptor result not match. index: " + i);
+			}
+		}
+		//只实现抽象方法的第三方加密机：后续版本新增的方法均有默认实现
+		final SafeEncryptor delegate = v1Encryptor;
+		SafeEncryptor minimalEncryptor = new SafeEncryptor() {
+			@Override
+			public int getClassMajorVersion() {
+				return delegate.getClassMajorVersion();
+			}
+
+			@Override
+			public byte[] encrypt(byte[] data, int keyId, int mappingId) throws SafeCryptoException {
+				return delegate.encrypt(data, keyId, mappingId);
+			}
+
+			@Override
+			public byte[] encrypt(SafeData data) throws SafeCryptoException {
+				return delegate.encrypt(data);
+			}
+
+			@Override
+			public SafeData silentDecrypt(byte[] data) {
+				return delegate.silentDecrypt(data);
+			}
+		};
+		String minimalText = "minimal encryptor " + keyId;
+		if(minimalEncryptor.encryptedLength(10) != -20100215
+				|| minimalText.equals(v1Encryptor.decryptToString(minimalEncryptor.encryptToString(minimalText, keyId, mappingId))) == false) {
+			throw new SafeCryptoException(20100836, "minimal encryptor default methods not match");
+		}
+		byte[] unknownData = v1Encryptor.encrypt(new byte[10], keyId, mappingId);
+		unknownData[0] = (byte) 200;
+		try {
+			decryptor.decrypt(unknownData);
+			throw new SafeCryptoException(20100783, "unknown version decrypt success");
+		} catch (SafeCryptoException e) {
+			if(e.getCode() != 20100501 || decryptor.silentDecrypt(unknownData) != null) {
+				throw new SafeCryptoException(20100783, "unknown version decrypt error: " + e.getMessage());
+			}
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testEncryptorFactory, " +
+				"totalRows: " + sourceData.length +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testKeyStoreSnapshot() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		final SafeKeyStore keyStore = new SafeKeyStore();
+		keyStore.registerSecretKey(1, "key-1".getBytes());
+		final SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(1, 0, keyStore);
+		final byte[] encryptData = encryptor.encrypt(sourceData[0], 1, 0);
+		//轮换秘钥期间，其他线程持续解密
+		final AtomicInteger decryptErrors = new AtomicInteger();
+		final AtomicBoolean running = new AtomicBoolean(true);
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				while(running.get()) {
+					SafeData safeData = encryptor.silentDecrypt(encryptData);
+					if(safeData.isDecryptSuccess() == false) {
+						decryptErrors.incrementAndGet();
+					}
+				}
+			}
+		};
+		reader.start();
+		int keyCount = 3000;
+		Random random = new Random();
+		for(int i=0; i<keyCount; i++) {
+			keyStore.registerSecretKey(random.nextInt(0xFFFFFF) + 2, ("key-" + i).getBytes());
+		}
+		running.set(false);
+		try {
+			reader.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(decryptErrors.get() > 0) {
+			throw new SafeCryptoException(20100791, "decrypt error during key rotation. errors: " + decryptErrors.get());
+		}
+		//删除后，同一探测链上的其他秘钥仍可查找
+		int[] keyIds = keyStore.getSecretKeyIds();
+		for(int i=0; i<keyIds.length; i+=2) {
+			if(keyIds[i] != 1 && keyStore.removeSecretKey(keyIds[i]) == false) {
+				throw new SafeCryptoException(20100792, "remove key fail. keyId: " + keyIds[i]);
+			}
+		}
+		for(int i=0; i<keyIds.length; i++) {
+			boolean expect = (i % 2 == 1) || keyIds[i] == 1;
+			if(keyStore.containsSecretKey(keyIds[i]) != expect) {
+				throw new SafeCryptoException(20100792, "key lookup not match. keyId: " + keyIds[i]);
+			}
+		}
+		if(SafeByteUtils.isEqual(sourceData[0], encryptor.decrypt(encryptData).getPlaintextData()) == false) {
+			throw new SafeCryptoException(20100793, "decrypt after key removal not match");
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testKeyStoreSnapshot, " +
+				"totalKeys: " + keyIds.length +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testKeyStoreLoader() throws SafeCryptoException, IOException {
+		long startTime = System.nanoTime();
+		Path tempDir = Files.createTempDirectory("safesave");
+		Path keyFile = tempDir.resolve("keystore.properties");
+		byte[] mapping = new byte[256];
+		for(int i=0; i<mapping.length; i++) {
+			mapping[i] = (byte) (i + 7);
+		}
+		String mappingLine = "mapping.3=" + SafeEncodeUtils.encodeBase64ToString(mapping) + "\n";
+		String key1Line = "key.101=PLAIN:" + SafeEncodeUtils.encodeBase64ToString("file-key-101".getBytes()) + "\n";
+		String key2Line = "key.102=SHA1PRNG:" + SafeEncodeUtils.encodeBase64ToString("file-key-102".getBytes()) + "\n";
+		SafeKeyStore keyStore = new SafeKeyStore();
+		keyStore.registerSecretKey(1, "code-key-1".getBytes());
+		SafeKeyStoreLoader loader = new SafeKeyStoreLoader(keyStore, keyFile);
+		try {
+			Files.write(keyFile, ("# keystore\n" + mappingLine + key1Line).getBytes());
+			SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(1, 0, keyStore);
+			if(loader.reload() != 2 || loader.reload() != 0) {
+				throw new SafeCryptoException(20100794, "keystore file load count not match");
+			}
+			byte[] encryptData = encryptor.encrypt(sourceData[1], 101, 3);
+			if(SafeByteUtils.isEqual(sourceData[1], encryptor.decrypt(encryptData).getPlaintextData()) == false) {
+				throw new SafeCryptoException(20100794, "decrypt with file key not match");
+			}
+			//内容有误时整体不生效
+			Files.write(keyFile, (mappingLine + key1Line + "key.103=NONE:AAAA\n").getBytes());
+			try {
+				loader.reload();
+				throw new SafeCryptoException(20100795, "invalid keystore file load success");
+			} catch (IllegalArgumentException e) {
+				if(keyStore.containsSecretKey(103) || keyStore.containsSecretKey(101) == false) {
+					throw new SafeCryptoException(20100795, "invalid keystore file changed key store");
+				}
+			}
+			//文件变更：新增 key.102，删除 key.101，代码注册的秘钥保留
+			//  监听线程的事件送达时间依赖平台（部分平台按轮询间隔检测），此处直接调用 reload，不等待事件
+			//  监听线程可能先完成重新加载，因此只校验加载后的秘钥，不校验本次的变更数量
+			loader.watch();
+			Files.write(keyFile, (mappingLine + key2Line).getBytes());
+			loader.reload();
+			if(keyStore.containsSecretKey(102) == false || keyStore.containsSecretKey(101) || keyStore.containsSecretKey(1) == false) {
+				throw new SafeCryptoException(20100796, "watched keystore file not reloaded");
+			}
+			encryptData = encryptor.encrypt(sourceData[2], 102, 3);
+			if(SafeByteUtils.isEqual(sourceData[2], encryptor.decrypt(encryptData).getPlaintextData()) == false) {
+				throw new SafeCryptoException(20100796, "decrypt with reloaded key not match");
+			}
+		} finally {
+			loader.close();
+			Files.deleteIfExists(keyFile);
+			Files.deleteIfExists(tempDir);
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testKeyStoreLoader, " +
+				"reloadCount: " + loader.getReloadCount() +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testRekeyPipeline() throws SafeCryptoException, IOException {
+		long startTime = System.nanoTime();
+		SafeKeyStore keyStore = EncryptionHelper.getKeyStore();
+		SafeEncryptor encryptor = EncryptionHelper.getEncryptor();
+		int oldKeyId = EncryptionHelper.getCurrentKeyId();
+		int newKeyId = oldKeyId + 1;
+		int mappingId = EncryptionHelper.getCurrentMappingId();
+		//模拟数据表：一部分记录已使用新秘钥（其中一半只需更换字节映射表），一条记录已损坏
+		final TreeMap<String, byte[]> table = new TreeMap<String, byte[]>();
+		int rowCount = Math.min(sourceData.length, 1000);
+		for(int i=0; i<rowCount; i++) {
+			int keyId = (i % 4 == 0) ? newKeyId : oldKeyId;
+			int rowMappingId = (i % 8 == 4) ? mappingId + 1 : mappingId;
+			table.put(String.format("row-%06d", i), encryptor.encrypt(sourceData[i], keyId, rowMappingId));
+		}
+		table.get("row-000501")[10] ^= 1;
+		SafeRekeySource source = new SafeRekeySource() {
+			@Override
+			public List<SafeRekeyRecord> read(String checkpoint, int maxSize) {
+				Map<String, byte[]> rows = checkpoint == null ? table : table.tailMap(checkpoint, false);
+				List<SafeRekeyRecord> records = new ArrayList<SafeRekeyRecord>();
+				for(Map.Entry<String, byte[]> row : rows.entrySet()) {
+					if(records.size() >= maxSize) {
+						break;
+					}
+					records.add(new SafeRekeyRecord(row.getKey(), row.getValue().clone()));
+				}
+				return records;
+			}
+		};
+		final int[] writeCount = {0};
+		SafeRekeySink sink = new SafeRekeySink() {
+			@Override
+			public void write(List<SafeRekeyRecord> records) throws IOException {
+				if(++writeCount[0] == 3) {
+					throw new IOException("simulated sink failure");
+				}
+				for(SafeRekeyRecord record : records) {
+					table.put(record.getKey(), record.getData());
+				}
+			}
+		};
+		Path checkpointFile = Files.createTempFile("safesave", ".checkpoint");
+		Files.delete(checkpointFile);
+		long rekeyed = 0;
+		//执行前调用 stop()：不读取、不写入任何记录
+		SafeRekeyPipeline stoppedPipeline = new SafeRekeyPipeline(keyStore, source, sink, 1, 0, newKeyId, mappingId);
+		stoppedPipeline.stop();
+		SafeRekeyResult stoppedResult = stoppedPipeline.run();
+		if(stoppedResult.isFinished() || stoppedResult.getReadCount() != 0 || writeCount[0] != 0) {
+			throw new SafeCryptoException(20100837, "rekey stopped before run not match: " + stoppedResult);
+		}
+		try {
+			SafeRekeyPipeline pipeline = new SafeRekeyPipeline(keyStore, source, sink, 1, 0, newKeyId, mappingId);
+			pipeline.setCheckpoint(new SafeRekeyFileCheckpoint(checkpointFile));
+			pipeline.setBatchSize(100);
+			pipeline.setRateLimiter(new SafeRateLimiter(100000));
+			//第3批写入失败，再次执行时从检查点继续
+			try {
+				pipeline.run();
+				throw new SafeCryptoException(20100797, "rekey with sink failure success");
+			} catch (IOException e) {
+				if(new SafeRekeyFileCheckpoint(checkpointFile).load() == null) {
+					throw new SafeCryptoException(20100797, "checkpoint not saved before sink failure");
+				}
+			}
+			SafeRekeyResult result = pipeline.run();
+			rekeyed = result.getRekeyedCount();
+			if(result.isFinished() == false || result.getFailedCount() != 1 || result.getReadCount() != rowCount - 200
+					|| result.getFailures().get(0).startsWith("row-000501") == false) {
+				throw new SafeCryptoException(20100798, "rekey result not match: " + result);
+			}
+		} finally {
+			Files.deleteIfExists(checkpointFile);
+		}
+		SafeDataView view = new SafeDataView(keyStore);
+		for(int i=0; i<rowCount; i++) {
+			view.wrap(table.get(String.format("row-%06d", i)));
+			if(i != 501 && (view.getSecretKeyId() != newKeyId || view.getByteMappingId() != mappingId
+					|| SafeByteUtils.isEqual(sourceData[i], view.getPlaintextData()) == false)) {
+				throw new SafeCryptoException(20100799, "rekeyed row not match. index: " + i);
+			}
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testRekeyPipeline, " +
+				"totalRows: " + rowCount +", " +
+				"rekeyedRows: " + rekeyed +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testRemapCiphertext() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeKeyStore keyStore = EncryptionHelper.getKeyStore();
+		int keyId = EncryptionHelper.getCurrentKeyId();
+		SafeEncryptor[] encryptors = {SafeEncryptorFactory.getInstance(1, 0, keyStore), SafeEncryptorFactory.getInstance(2, 0, keyStore)};
+		int[][] mappingChanges = {{1, 2}, {2, 0}, {0, 1}};
+		int totalRows = 0;
+		for(SafeEncryptor encryptor : encryptors) {
+			for(int i=0; i<sourceData.length; i+=16) {
+				int[] change = mappingChanges[i % mappingChanges.length];
+				byte[] encryptData = encryptor.encrypt(sourceData[i], keyId, change[0]);
+				byte[] remapData = encryptor.remapCiphertext(encryptData, change[1]);
+				SafeData safeData = encryptor.decrypt(remapData);
+				if(safeData.getByteMappingId() != change[1] || SafeByteUtils.isEqual(sourceData[i], safeData.getPlaintextData()) == false
+						|| SafeByteUtils.isEqual(encryptData, encryptor.remapCiphertext(remapData, change[0])) == false) {
+					throw new SafeCryptoException(20100801, "remap ciphertext not match. version: " + encryptor.getMajorVersion() + ", index: " + i);
+				}
+				totalRows++;
+			}
+		}
+		try {
+			encryptors[0].remapCiphertext(encryptors[0].encrypt(sourceData[0], keyId, 1), 256);
+			throw new SafeCryptoException(20100833, "mappingId out of scope is not rejected");
+		} catch (SafeCryptoException e) {
+			if(e.getCode() != 20100212) {
+				throw e;
+			}
+		}
+		//批量原地转换，损坏的密文单独记录错误且不修改
+		SafeEncryptor encryptor = encryptors[1];
+		byte[][] batch = new byte[3][];
+		for(int i=0; i<batch.length; i++) {
+			batch[i] = encryptor.encrypt(sourceData[i], keyId, 1);
+		}
+		batch[1] = Arrays.copyOf(batch[1], batch[1].length - 1);
+		byte[] broken = batch[1].clone();
+		SafeBatchResult result = encryptor.remapBatch(batch, 2);
+		if(result.getErrorCount() != 1 || result.getErrorCode(1) != 20102609 || SafeByteUtils.isEqual(broken, batch[1]) == false) {
+			throw new SafeCryptoException(20100802, "remap batch error not match");
+		}
+		for(int i=0; i<batch.length; i+=2) {
+			if(SafeByteUtils.isEqual(sourceData[i], encryptor.decrypt(batch[i]).getPlaintextData()) == false) {
+				throw new SafeCryptoException(20100803, "remap batch result not match. index: " + i);
+			}
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testRemapCiphertext, " +
+				"totalRows: " + totalRows +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testHashPlaintext() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		Random random = new Random(20201101);
+		int totalRows = 0;
+		for(int i=0; i<sourceData.length; i++) {
+			byte[] data = sourceData[i];
+			if(data.length == 0) {
+				continue;
+			}
+			int offset = random.nextInt(Math.min(data.length, 16));
+			int length = random.nextInt(data.length - offset + 1);
+			int index = random.nextInt(64);
+			long code = random.nextLong();
+			long expect = hashPlaintextBytewise(code, data, offset, length, index);
+			if(v01SafeData.hashPlaintext(code, data, offset, length, index) != expect) {
+				throw new SafeCryptoException(20100804, "hashPlaintext not match. index: " + i);
+			}
+			ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+			direct.put(data).limit(offset + length).position(offset);
+			if(v01SafeData.hashPlaintext(code, direct, index) != expect || direct.position() != offset) {
+				throw new SafeCryptoException(20100805, "hashPlaintext of direct buffer not match. index: " + i);
+			}
+			byte[] copy = new byte[length + 3];
+			if(v01SafeData.copyAndHashPlaintext(code, data, offset, copy, 3, length, index) != expect
+					|| SafeByteUtils.isEqual(Arrays.copyOfRange(data, offset, offset + length), Arrays.copyOfRange(copy, 3, copy.length)) == false) {
+				throw new SafeCryptoException(20100806, "copyAndHashPlaintext not match. index: " + i);
+			}
+			totalRows++;
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testHashPlaintext, " +
+				"totalRows: " + totalRows +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testGcmEncrypt() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeKeyStore keyStore = EncryptionHelper.getKeyStore();
+		int keyId = EncryptionHelper.getCurrentKeyId();
+		SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(3, 0, keyStore);
+		SafeDecryptor decryptor = new SafeDecryptor(keyStore);
+		int totalRows = 0;
+		int totalBytes = 0;
+		for(int i=0; i<sourceData.length; i++) {
+			int mappingId = i % 3;
+			byte[] encryptData = encryptor.encrypt(sourceData[i], keyId, mappingId);
+			SafeData safeData = decryptor.decrypt(encryptData);
+			if(safeData.getMajorVersion() != 3 || safeData.getByteMappingId() != mappingId
+					|| SafeByteUtils.isEqual(sourceData[i], safeData.getPlaintextData()) == false) {
+				throw new SafeCryptoException(20100807, "gcm encrypt & decrypt not equal. index: " + i);
+			}
+			//密文的任一字节被修改，解密失败
+			if(i % 16 == 0) {
+				byte[] tampered = encryptData.clone();
+				tampered[tampered.length - 1 - i % tampered.length % 40] ^= 0x01;
+				SafeData tamperedData = encryptor.silentDecrypt(tampered);
+				if(tamperedData.isDecryptSuccess() || tamperedData.getErrorCode() != 20103137) {
+					throw new SafeCryptoException(20100808, "gcm tampered data decrypt success. index: " + i);
+				}
+				if(SafeByteUtils.isEqual(encryptData, encryptor.encrypt(sourceData[i], keyId, mappingId))) {
+					throw new SafeCryptoException(20100808, "gcm encrypt result is repeated. index: " + i);
+				}
+				byte[] remapData = encryptor.remapCiphertext(encryptData, (mappingId + 1) % 3);
+				if(SafeByteUtils.isEqual(sourceData[i], decryptor.decrypt(remapData).getPlaintextData()) == false) {
+					throw new SafeCryptoException(20100809, "gcm remap ciphertext not match. index: " + i);
+				}
+			}
+			totalRows++;
+			totalBytes += sourceData[i].length;
+		}
+		//头部字段为附加认证数据：改为同一秘钥的另一个秘钥ID，解密失败
+		SafeKeyStore aliasKeyStore = new SafeKeyStore();
+		aliasKeyStore.registerSecretKey(1, "gcm-key".getBytes());
+		aliasKeyStore.registerSecretKey(2, "gcm-key".getBytes());
+		SafeEncryptor aliasEncryptor = SafeEncryptorFactory.getInstance(3, 0, aliasKeyStore);
+		byte[] aliasData = aliasEncryptor.encrypt(sourceData[0], 1, 0);
+		aliasData[5] = 2;
+		if(aliasEncryptor.silentDecrypt(aliasData).getErrorCode() != 20103137) {
+			throw new SafeCryptoException(20100808, "gcm head is not authenticated");
+		}
+		//密文写入缓冲区，并按范围解密
+		byte[] plaintext = sourceData[sourceData.length - 1];
+		ByteBuffer buff = ByteBuffer.allocate(encryptor.encryptedLength(plaintext.length) + 5);
+		buff.position(5);
+		int length = encryptor.encrypt(plaintext, 0, plaintext.length, keyId, 1, buff);
+		ByteBuffer dst = ByteBuffer.allocate(plaintext.length);
+		if(encryptor.decryptInto(buff.array(), 5, length, dst) != plaintext.length
+				|| SafeByteUtils.isEqual(plaintext, dst.array()) == false) {
+			throw new SafeCryptoException(20100809, "gcm encrypt into buffer not match");
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testGcmEncrypt, " +
+				"totalRows: " + totalRows +", " +
+				"totalBytes: " + totalBytes +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testDecryptRange() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeKeyStore keyStore = EncryptionHelper.getKeyStore();
+		int keyId = EncryptionHelper.getCurrentKeyId();
+		Random random = new Random(20201018);
+		int totalRows = 0;
+		for(int version=1; version<=3; version++) {
+			SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(version, 0, keyStore);
+			for(int i=0; i<sourceData.length; i+=8) {
+				byte[] plaintext = sourceData[i];
+				if(plaintext.length == 0) {
+					continue;
+				}
+				byte[] encryptData = encryptor.encrypt(plaintext, keyId, i % 3);
+				int from = random.nextInt(plaintext.length + 1);
+				int length = random.nextInt(plaintext.length + 8);
+				SafeDataRange range = encryptor.decryptRange(encryptData, from, length);
+				int size = Math.min(length, plaintext.length - from);
+				boolean full = from == 0 && size == plaintext.length;
+				if(range.getPlaintextLength() != plaintext.length || range.getFrom() != from
+						|| SafeByteUtils.isEqual(Arrays.copyOfRange(plaintext, from, from + size), range.getData()) == false) {
+					throw new SafeCryptoException(20100810, "decrypt range not match. version: " + version + ", index: " + i);
+				}
+				if(range.isHashVerified() != (full || version != 1)) {
+					throw new SafeCryptoException(20100811, "decrypt range hash verified flag not match. version: " + version + ", index: " + i);
+				}
+				totalRows++;
+			}
+		}
+		try {
+			SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(1, 0, keyStore);
+			encryptor.decryptRange(encryptor.encrypt(sourceData[1], keyId, 1), sourceData[1].length + 1, 1);
+			throw new SafeCryptoException(20100812, "decrypt range out of bounds not failed");
+		} catch (SafeCryptoException e) {
+			if(e.getCode() != 20100213) {
+				throw e;
+			}
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testDecryptRange, " +
+				"totalRows: " + totalRows +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testPrecheck() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeKeyStore keyStore = new SafeKeyStore();
+		keyStore.registerSecretKey(1, "precheck-key-a".getBytes());
+		keyStore.registerSecretKey(2, "precheck-key-b".getBytes());
+		SafeDecryptor decryptor = new SafeDecryptor(keyStore);
+		SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(1, 0, keyStore);
+		int totalRows = 0;
+		for(int i=0; i<sourceData.length; i++) {
+			byte[] plaintext = sourceData[i];
+			if(plaintext.length == 0) {
+				continue;
+			}
+			byte[] encryptData = encryptor.encrypt(plaintext, 1, 0);
+			if(decryptor.precheck(encryptData) != 0) {
+				throw new SafeCryptoException(20100813, "precheck failed. index: " + i);
+			}
+			//改为另一个秘钥ID（秘钥错误）：预检不通过，且与完整解密的错误码一致
+			encryptData[5] = 2;
+			int code = decryptor.precheck(encryptData);
+			if(code == 0 || (plaintext.length > 4096 && decryptor.silentDecrypt(encryptData).getErrorCode() != code)) {
+				throw new SafeCryptoException(20100814, "precheck wrong key not rejected. index: " + i + ", code: " + code);
+			}
+			totalRows++;
+		}
+		//第一个分组损坏
+		byte[] encryptData = encryptor.encrypt(sourceData[sourceData.length - 1], 1, 0);
+		encryptData[v01SafeData.PLAINTEXT_HEAD_LENGTH + 3] ^= 1;
+		if(encryptor.precheck(encryptData) == 0 || decryptor.precheck(new byte[] {9, 0, 0, 0, 0, 1}) != 20100501) {
+			throw new SafeCryptoException(20100815, "precheck corrupt data not rejected");
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testPrecheck, " +
+				"totalRows: " + totalRows +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testVerify() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeKeyStore keyStore = EncryptionHelper.getKeyStore();
+		int keyId = EncryptionHelper.getCurrentKeyId();
+		SafeDecryptor decryptor = new SafeDecryptor(keyStore);
+		List<byte[]> encryptList = new ArrayList<byte[]>();
+		int corruptCount = 0;
+		for(int i=0; i<sourceData.length; i++) {
+			if(sourceData[i].length == 0) {
+				continue;
+			}
+			SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(i % 3 + 1, 0, keyStore);
+			byte[] encryptData = encryptor.encrypt(sourceData[i], keyId, i % 3);
+			if(i % 5 == 0) {
+				//修改密文中间的一个字节
+				encryptData[v01SafeData.PLAINTEXT_HEAD_LENGTH + (encryptData.length - v01SafeData.PLAINTEXT_HEAD_LENGTH) / 2] ^= 0x10;
+				corruptCount++;
+			}
+			SafeData safeData = decryptor.silentDecrypt(encryptData);
+			SafeVerifyResult result = decryptor.verify(encryptData);
+			if(result.getErrorCode(0) != safeData.getErrorCode()
+					|| result.getSecretKeyId(0) != keyId
+					|| (result.isSuccess(0) && result.getEncryptTime(0) != safeData.getEncryptTime())) {
+				throw new SafeCryptoException(20100816, "verify result not match decrypt. index: " + i
+						+ ", verify code: " + result.getErrorCode(0) + ", decrypt code: " + safeData.getErrorCode());
+			}
+			if(result.isSuccess(0) == (i % 5 == 0)) {
+				throw new SafeCryptoException(20100817, "verify result not match. index: " + i);
+			}
+			encryptList.add(encryptData);
+		}
+		encryptList.add(new byte[] {9, 0, 0, 0, 0, 1});
+		SafeVerifyResult batchResult = new SafeParallelEncryptor(keyStore).verifyBatch(encryptList);
+		if(batchResult.getErrorCount() != corruptCount + 1
+				|| batchResult.getErrorCode(encryptList.size() - 1) != 20100501) {
+			throw new SafeCryptoException(20100818, "parallel verify error count not match: " + batchResult.getErrorCount());
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testVerify, " +
+				"totalRows: " + encryptList.size() +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testEncodeStream() throws SafeCryptoException, IOException {
+		long startTime = System.nanoTime();
+		SafeKeyStore keyStore = EncryptionHelper.getKeyStore();
+		int keyId = EncryptionHelper.getCurrentKeyId();
+		SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(2, 0, keyStore);
+		//明文 -> 加密输出流 -> base64编码输出流 -> 字符流，边加密边编码
+		ByteArrayOutputStream plainBuff = new ByteArrayOutputStream();
+		StringWriter writer = new StringWriter();
+		OutputStream encryptStream = encryptor.openEncryptStream(
+				new SafeBase64OutputStream(writer, SafeEncodeUtils.Base64Alphabet.STANDARD), keyId, 1);
+		for(int i=0; i<sourceData.length; i+=16) {
+			encryptStream.write(sourceData[i]);
+			plainBuff.write(sourceData[i]);
+		}
+		encryptStream.close();
+		byte[] plaintext = plainBuff.toByteArray();
+		String text = writer.toString();
+		if(SafeByteUtils.isEqual(plaintext, encryptor.decrypt(SafeEncodeUtils.decodeBase64(text)).getPlaintextData()) == false) {
+			throw new SafeCryptoException(20100819, "encode stream ciphertext not match");
+		}
+		//字符流 -> base64解码输入流 -> 解密输入流 -> 明文
+		InputStream decryptStream = encryptor.openDecryptStream(
+				new SafeBase64InputStream(new StringReader(text), SafeEncodeUtils.Base64Alphabet.STANDARD));
+		ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+		byte[] buff = new byte[3000];
+		int size;
+		while((size = decryptStream.read(buff)) >= 0) {
+			decrypted.write(buff, 0, size);
+		}
+		decryptStream.close();
+		if(SafeByteUtils.isEqual(plaintext, decrypted.toByteArray()) == false) {
+			throw new SafeCryptoException(20100820, "decode stream plaintext not match");
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testEncodeStream, " +
+				"totalBytes: " + plaintext.length +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testEncryptToString() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		SafeKeyStore keyStore = EncryptionHelper.getKeyStore();
+		int keyId = EncryptionHelper.getCurrentKeyId();
+		SafeDecryptor decryptor = new SafeDecryptor(keyStore);
+		byte[] longest = sourceData[0];
+		for(int i=1; i<sourceData.length; i++) {
+			if(sourceData[i].length > longest.length) {
+				longest = sourceData[i];
+			}
+		}
+		String[] texts = new String[] {"a", "SafeSave 加解密", "\u00e9\u4e2d\ud83d\ude00\u0800\u07ff",
+				"\ud83d", "x\ude00y", new String(longest, SafeEncodeUtils.Charsets.UTF_8)};
+		SafeEncodeUtils.Base64Alphabet[] alphabets = SafeEncodeUtils.Base64Alphabet.values();
+		int totalRows = 0;
+		for(int version=1; version<=3; version++) {
+			SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(version, 0, keyStore);
+			for(SafeEncodeUtils.Base64Alphabet alphabet : alphabets) {
+				for(String text : texts) {
+					String cipherText = encryptor.encryptToString(text, keyId, 1, alphabet);
+					//与原有路径对照：解码 -> 解密 -> 按UTF-8解码
+					byte[] cipher = SafeEncodeUtils.decodeBase64(alphabet, cipherText.getBytes(SafeEncodeUtils.Charsets.ISO_8859_1));
+					String expected = new String(text.getBytes(SafeEncodeUtils.Charsets.UTF_8), SafeEncodeUtils.Charsets.UTF_8);
+					String decrypted = new String(encryptor.decrypt(cipher).getPlaintextData(), SafeEncodeUtils.Charsets.UTF_8);
+					if(expected.equals(decrypted) == false) {
+						throw new SafeCryptoException(20100821, "encryptToString plaintext not match. version: " + version);
+					}
+					if(expected.equals(encryptor.decryptToString(cipherText, alphabet)) == false
+							|| expected.equals(decryptor.decryptToString(cipherText, alphabet)) == false) {
+						throw new SafeCryptoException(20100822, "decryptToString plaintext not match. version: " + version);
+					}
+					totalRows++;
+				}
+			}
+			//密文被修改时，抛出与 silentDecrypt 一致的错误码
+			String cipherText = encryptor.encryptToString(texts[1], keyId, 1);
+			char[] chars = cipherText.toCharArray();
+			chars[chars.length / 2] = chars[chars.length / 2] == 'A' ? 'B' : 'A';
+			byte[] corrupted = SafeEncodeUtils.decodeBase64(new String(chars));
+			int errorCode = encryptor.silentDecrypt(corrupted).getErrorCode();
+			try {
+				encryptor.decryptToString(new String(chars));
+				throw new SafeCryptoException(20100823, "decryptToString corrupted text not fail. version: " + version);
+			} catch (SafeCryptoException e) {
+				if(e.getCode() != errorCode || errorCode == 0) {
+					throw new SafeCryptoException(20100823, "decryptToString error code not match: " + e.getCode() + ", " + errorCode);
+				}
+			}
+		}
+		try {
+			decryptor.decryptToString("CQAA");
+			throw new SafeCryptoException(20100823, "decryptToString unknown version not fail");
+		} catch (SafeCryptoException e) {
+			if(e.getCode() != 20100501) {
+				throw e;
+			}
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testEncryptToString, " +
+				"totalRows: " + totalRows +", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	protected void testCompress() throws SafeCryptoException, IOException {
+		long startTime = System.nanoTime();
+		SafeKeyStore keyStore = EncryptionHelper.getKeyStore();
+		int keyId = EncryptionHelper.getCurrentKeyId();
+		SafeEncryptor plainEncryptor = SafeEncryptorFactory.getInstance(1, 0, keyStore);
+		SafeEncryptor encryptor = SafeEncryptorFactory.getInstance(1, v01SafeData.COMPRESS_MINOR_VERSION, keyStore);
+		SafeDecryptor decryptor = new SafeDecryptor(keyStore);
+		//JSON文档（可压缩）、随机数据（不可压缩）、短数据（不压缩）
+		StringBuilder json = new StringBuilder("[");
+		for(int i=0; i<400; i++) {
+			json.append("{\"id\":").append(10000 + i).append(",\"name\":\"user-").append(i)
+					.append("\",\"status\":\"active\",\"tags\":[\"safe\",\"save\"]},");
+		}
+		json.append("{}]");
+		byte[] document = json.toString().getBytes(SafeEncodeUtils.Charsets.UTF_8);
+		byte[] random = new byte[8192];
+		new Random(20201022).nextBytes(random);
+		byte[][] rows = new byte[][] {document, random, Arrays.copyOf(document, 200), Arrays.copyOf(document, 256)};
+		boolean[] compressed = new boolean[] {true, false, false, true};
+		for(int i=0; i<rows.length; i++) {
+			byte[] row = rows[i];
+			byte[] encryptData = encryptor.encrypt(row, keyId, 1);
+			SafeData safeData = decryptor.decrypt(encryptData);
+			if(SafeByteUtils.isEqual(row, safeData.getPlaintextData()) == false || safeData.getPlaintextLength() != row.length) {
+				throw new SafeCryptoException(20100824, "compressed plaintext not match. index: " + i);
+			}
+			int plainLength = plainEncryptor.encrypt(row, keyId, 1).length;
+			if((safeData.getReserved() == v01SafeData.RESERVED_COMPRESSED) != compressed[i]
+					|| (encryptData.length < plainLength) != compressed[i]) {
+				throw new SafeCryptoException(20100825, "compress decision not match. index: " + i
+						+ ", length: " + encryptData.length + ", uncompressed length: " + plainLength);
+			}
+			//写入缓冲区的加解密、按范围解密、校验与预检
+			byte[] buff = new byte[encryptor.encryptedLength(row.length) + 3];
+			int size = encryptor.encrypt(row, 0, row.length, keyId, 1, buff, 3);
+			byte[] rangeEncrypted = Arrays.copyOfRange(buff, 3, 3 + size);
+			ByteBuffer direct = ByteBuffer.allocateDirect(row.length);
+			byte[] plain = new byte[row.length + 1];
+			byte[] directBts = new byte[row.length];
+			int directSize = encryptor.decryptInto(rangeEncrypted, 0, size, direct);
+			direct.flip();
+			direct.get(directBts);
+			SafeDataRange range = encryptor.decryptRange(encryptData, 100, 50);
+			if(encryptor.decryptInto(rangeEncrypted, 0, size, plain, 1) != row.length || directSize != row.length
+					|| SafeByteUtils.isEqual(row, Arrays.copyOfRange(plain, 1, plain.length)) == false
+					|| SafeByteUtils.isEqual(row, directBts) == false
+					|| SafeByteUtils.isEqual(Arrays.copyOfRange(row, 100, 150), range.getData()) == false
+					|| encryptor.verify(rangeEncrypted).isSuccess(0) == false || encryptor.precheck(encryptData) != 0) {
+				throw new SafeCryptoException(20100826, "compressed buffer decrypt not match. index: " + i);
+			}
+			if(compressed[i] && encryptor.decryptInto(encryptData, 0, encryptData.length, new byte[row.length - 1], 0) != -20101605) {
+				throw new SafeCryptoException(20100826, "compressed decrypt into small buffer not fail. index: " + i);
+			}
+			//按 decryptedLength 分配缓冲区（压缩数据为原文长度）
+			int decryptedLength = encryptor.decryptedLength(encryptData, 0, encryptData.length);
+			byte[] sized = new byte[Math.max(decryptedLength, 0)];
+			if(decryptedLength != row.length || encryptor.decryptInto(encryptData, 0, encryptData.length, sized, 0) != row.length
+					|| SafeByteUtils.isEqual(row, sized) == false) {
+				throw new SafeCryptoException(20100834, "decrypt into sized buffer not match. index: " + i
+						+ ", decryptedLength: " + decryptedLength);
+			}
+		}
+		//压缩后的密文远小于原文：字符串解密按原文长度分配缓冲区（超过对象池缓存上限，与之前的调用无关）
+		StringBuilder largeJson = new StringBuilder(json);
+		while(largeJson.length() < 256 * 1024) {
+			largeJson.append(json);
+		}
+		String largeText = largeJson.toString();
+		byte[] largeEncrypted = encryptor.encrypt(largeText.getBytes(SafeEncodeUtils.Charsets.UTF_8), keyId, 1);
+		String largeEncoded = SafeEncodeUtils.encodeBase64ToString(largeEncrypted);
+		if(largeEncrypted.length * 8 > largeText.length() || largeText.equals(encryptor.decryptToString(largeEncoded)) == false
+				|| largeText.equals(decryptor.decryptToString(largeEncoded)) == false) {
+			throw new SafeCryptoException(20100835, "compressed text decrypt to string not match. encrypted length: " + largeEncrypted.length);
+		}
+		//批量加解密
+		byte[][] batch = encryptor.encryptBatch(rows, keyId, 1);
+		SafeData[] batchResult = encryptor.decryptBatch(batch);
+		for(int i=0; i<rows.length; i++) {
+			if(SafeByteUtils.isEqual(rows[i], batchResult[i].getPlaintextData()) == false
+					|| (batchResult[i].getReserved() == v01SafeData.RESERVED_COMPRESSED) != compressed[i]) {
+				throw new SafeCryptoException(20100827, "compressed batch not match. index: " + i);
+			}
+		}
+		//文件解密不支持压缩数据；v1.0 不识别压缩标志
+		byte[] downgraded = batch[0].clone();
+		downgraded[1] = 0;
+		if(plainEncryptor.silentDecrypt(downgraded).getErrorCode() != 20101105) {
+			throw new SafeCryptoException(20100827, "compressed data decrypt by v1.0 not fail");
+		}
+		//未定义的次要版本号：不创建加密机，密文不按压缩格式解密
+		byte[] unknownMinor = batch[0].clone();
+		unknownMinor[1] = (byte) (v01SafeData.COMPRESS_MINOR_VERSION + 1);
+		if(SafeEncryptorFactory.getInstance(1, v01SafeData.COMPRESS_MINOR_VERSION + 1, keyStore) != null
+				|| decryptor.getEncryptor(unknownMinor) != null) {
+			throw new SafeCryptoException(20100827, "unknown v1 minor version encryptor created");
+		}
+		Path encryptFile = Files.createTempFile("safesave", ".compressed");
+		Path decryptFile = encryptFile.resolveSibling(encryptFile.getFileName() + ".plain");
+		try {
+			Files.write(encryptFile, batch[0]);
+			encryptor.decryptFile(encryptFile, decryptFile);
+			throw new SafeCryptoException(20100827, "compressed file decrypt not fail");
+		} catch (SafeCryptoException e) {
+			if(e.getCode() != 20101610) {
+				throw e;
+			}
+		} finally {
+			Files.deleteIfExists(encryptFile);
+			Files.deleteIfExists(decryptFile);
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testCompress, " +
+				"documentBytes: " + document.length + ", " +
+				"encryptedBytes: " + batch[0].length + ", " +
+				"costTime: " + costTime + "ms");
+	}
+
+	/** 逐字节计算明文摘要（与按8字节计算的结果对照） **/
+	private static long hashPlaintextBytewise(long code, byte[] data, int offset, int length, int index) {
+		int k = (index % 8) * 8;
+		for(int i=offset; i<offset+length; i++) {
+			code ^= (((long) data[i]) & 0xFF) << k;
+			k = (k + 8) % 64;
+		}
+		return code;
+	}
 }
@@ -1,11 +1,26 @@
 package test.testcase;
 
 import com.lazynoon.commons.safesave.SafeCryptoException;
+import com.lazynoon.commons.safesave.utils.SafeBase64InputStream;
+import com.lazynoon.commons.safesave.utils.SafeBase64OutputStream;
 import com.lazynoon.commons.safesave.utils.SafeEncodeUtils;
+import com.lazynoon.commons.safesave.utils.SafeHttp32InputStream;
+import com.lazynoon.commons.safesave.utils.SafeHttp32OutputStream;
 import com.lazynoon.commons.safesave.utils.SafeNetLog;
 import com.lazynoon.commons.safesave.utils.SafeByteUtils;
 import com.lazynoon.commons.safesave.utils.SafeMathUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
 /**
  * 常用类方法测试
  *
@@ -14,15 +29,19 @@ import com.lazynoon.commons.safesave.utils.SafeMathUtils;
  */
 public class TestUtilsMethod {
 	private static final int BYTE_SIZE = 256;
+	private static final int[] BIT_MASK = {0, 1, 3, 7, 15, 31, 63, 127};
 	private byte[][] sourceData;
 
 	public TestUtilsMethod(byte[][] sourceData) {
 		this.sourceData = sourceData;
 	}
 
-	public void runTest() throws SafeCryptoException {
+	public void runTest() throws SafeCryptoException, IOException {
 		testMathUtils();
 		testIsByteMappingValid();
+		testBase64Codec();
+		testCodecStreams();
+		testBase62Codec();
 	}
 
 	protected void testMathUtils() throws SafeCryptoException {
@@ -119,4 +138,434 @@ public class TestUtilsMethod {
 		SafeNetLog.logInfo("PASS - testIsByteMappingValid, costTime: " + costTime + " ms");
 	}
 
+	protected void testBase64Codec() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		int totalBytes = 0;
+		Random random = new Random(20201019);
+		for(SafeEncodeUtils.Base64Alphabet alphabet : SafeEncodeUtils.Base64Alphabet.values()) {
+			byte[] encodeMap = new byte[64];
+			byte[] decodeMap = new byte[127];
+			Arrays.fill(decodeMap, (byte) -1);
+			byte[] encoded = new byte[8];
+			for(int i=0; i<64; i++) {
+				//按字符序号构造3字节原文，取编码结果的第4个字符得到字符表
+				byte[] plain = new byte[] {0, 0, (byte) i};
+				SafeEncodeUtils.encodeBase64(alphabet, plain, 0, 3, encoded, 0);
+				encodeMap[i] = encoded[3];
+				decodeMap[encoded[3]] = (byte) i;
+			}
+			for(int i=0; i<sourceData.length; i++) {
+				byte[] row = sourceData[i];
+				int offset = row.length == 0 ? 0 : random.nextInt(row.length);
+				byte[] part = Arrays.copyOfRange(row, offset, row.length);
+				byte[] expected = encodeBase64Bitwise(encodeMap, part, alphabet.isBackfill());
+				byte[] actual = SafeEncodeUtils.encodeBase64(alphabet, part);
+				char[] chars = new char[alphabet.encodedLength(part.length) + 2];
+				int charCount = SafeEncodeUtils.encodeBase64(alphabet, row, offset, part.length, chars, 2);
+				ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+				SafeEncodeUtils.encodeBase64(alphabet, ByteBuffer.wrap(part), direct);
+				direct.flip();
+				byte[] directBts = new byte[direct.remaining()];
+				direct.get(directBts);
+				if(SafeByteUtils.isEqual(expected, actual) == false || charCount != expected.length
+						|| new String(chars, 2, charCount).equals(new String(expected, SafeEncodeUtils.Charsets.US_ASCII)) == false
+						|| SafeByteUtils.isEqual(expected, directBts) == false) {
+					throw new SafeCryptoException(20100737, "base64 encode not equal. alphabet: " + alphabet + ", index: " + i);
+				}
+				//解码（随机替换为无效字符，不产生只剩1个字符的末尾分组）
+				if(expected.length % 4 != 1) {
+					if(expected.length > 0 && i % 4 == 0) {
+						expected[random.nextInt(expected.length)] = (byte) "*?~ \n".charAt(i % 5);
+					}
+					byte[] decodeExpected = decodeBase64Bitwise(decodeMap, expected, alphabet.isBackfill());
+					byte[] decodeActual = SafeEncodeUtils.decodeBase64(alphabet, expected);
+					char[] decodeChars = new String(expected, SafeEncodeUtils.Charsets.ISO_8859_1).toCharArray();
+					byte[] decodeCharsActual = new byte[alphabet.decodedLength(decodeChars, 0, decodeChars.length)];
+					SafeEncodeUtils.decodeBase64(alphabet, decodeChars, 0, decodeChars.length, decodeCharsActual, 0);
+					ByteBuffer src = ByteBuffer.allocateDirect(expected.length);
+					src.put(expected).flip();
+					ByteBuffer decodeDirect = ByteBuffer.allocate(decodeExpected.length);
+					SafeEncodeUtils.decodeBase64(alphabet, src, decodeDirect);
+					if(SafeByteUtils.isEqual(decodeExpected, decodeActual) == false
+							|| SafeByteUtils.isEqual(decodeExpected, decodeCharsActual) == false
+							|| SafeByteUtils.isEqual(decodeExpected, decodeDirect.array()) == false
+							|| decodeDirect.hasRemaining() || src.hasRemaining()) {
+						throw new SafeCryptoException(20100738, "base64 decode not equal. alphabet: " + alphabet + ", index: " + i);
+					}
+				}
+				if(SafeByteUtils.isEqual(part, SafeEncodeUtils.decodeBase64(alphabet, actual)) == false) {
+					throw new SafeCryptoException(20100739, "base64 decode not match source. alphabet: " + alphabet + ", index: " + i);
+				}
+				totalBytes += part.length;
+			}
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testBase64Codec, " +
+				"totalBytes: " + totalBytes +", " +
+				"costTime: " + costTime + " ms");
+	}
+
+	protected void testCodecStreams() throws SafeCryptoException, IOException {
+		long startTime = System.nanoTime();
+		int totalBytes = 0;
+		Random random = new Random(20201020);
+		byte[] http32EncodeMap = "0123456789abcdefghjkmnpqrstuvxyz".getBytes(SafeEncodeUtils.Charsets.US_ASCII);
+		byte[] http32DecodeMap = new byte[127];
+		Arrays.fill(http32DecodeMap, (byte) -1);
+		for(int i=0; i<http32EncodeMap.length; i++) {
+			http32DecodeMap[http32EncodeMap[i]] = (byte) i;
+		}
+		for(int i=0; i<sourceData.length; i+=3) {
+			byte[] row = sourceData[i];
+			byte[] http32 = SafeEncodeUtils.encodeHttp32(row);
+			if(SafeByteUtils.isEqual(encodeHttp32Bitwise(http32EncodeMap, row), http32) == false
+					|| SafeByteUtils.isEqual(decodeHttp32Bitwise(http32DecodeMap, http32), SafeEncodeUtils.decodeHttp32(http32)) == false
+					|| SafeByteUtils.isEqual(row, SafeEncodeUtils.decodeHttp32(http32)) == false) {
+				throw new SafeCryptoException(20100740, "http32 codec not equal. index: " + i);
+			}
+			for(int type=0; type<3; type++) {
+				SafeEncodeUtils.Base64Alphabet alphabet = type < 2 ? SafeEncodeUtils.Base64Alphabet.values()[type] : null;
+				byte[] expected = alphabet == null ? http32 : SafeEncodeUtils.encodeBase64(alphabet, row);
+				//按随机长度分多次写入（含单字节写入）
+				ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+				StringWriter writer = new StringWriter();
+				OutputStream[] outs = alphabet == null
+						? new OutputStream[] {new SafeHttp32OutputStream(bytesOut), new SafeHttp32OutputStream(writer)}
+						: new OutputStream[] {new SafeBase64OutputStream(bytesOut, alphabet), new SafeBase64OutputStream(writer, alphabet)};
+				for(OutputStream out : outs) {
+					int offset = 0;
+					while(offset < row.length) {
+						int size = Math.min(row.length - offset, random.nextInt(9000));
+						if(size == 1) {
+							out.write(row[offset]);
+						} else {
+							out.write(row, offset, size);
+						}
+						offset += size;
+					}
+					out.close();
+				}
+				String text = new String(expected, SafeEncodeUtils.Charsets.US_ASCII);
+				if(SafeByteUtils.isEqual(expected, bytesOut.toByteArray()) == false || text.equals(writer.toString()) == false) {
+					throw new SafeCryptoException(20100741, "encode stream not equal. type: " + type + ", index: " + i);
+				}
+				//按随机长度分多次读取
+				InputStream[] ins = alphabet == null
+						? new InputStream[] {new SafeHttp32InputStream(new ByteArrayInputStream(expected)), new SafeHttp32InputStream(new StringReader(text))}
+						: new InputStream[] {new SafeBase64InputStream(new ByteArrayInputStream(expected), alphabet), new SafeBase64InputStream(new StringReader(text), alphabet)};
+				for(InputStream in : ins) {
+					ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+					byte[] buff = new byte[1 + random.nextInt(7000)];
+					int size;
+					while((size = in.read(buff, 0, 1 + random.nextInt(buff.length))) >= 0) {
+						decoded.write(buff, 0, size);
+					}
+					in.close();
+					if(SafeByteUtils.isEqual(row, decoded.toByteArray()) == false) {
+						throw new SafeCryptoException(20100742, "decode stream not equal. type: " + type + ", index: " + i);
+					}
+				}
+			}
+			totalBytes += row.length;
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testCodecStreams, " +
+				"totalBytes: " + totalBytes +", " +
+				"costTime: " + costTime + " ms");
+	}
+
+	protected void testBase62Codec() throws SafeCryptoException {
+		long startTime = System.nanoTime();
+		int totalBytes = 0;
+		Random random = new Random(20201021);
+		//边界数值：全0、全1、以及分组内的单字节
+		byte[][] edges = new byte[][] {new byte[5], {-1, -1, -1, -1, -1}, {-1}, {-1, -1}, {-1, -1, -1}, {-1, -1, -1, -1},
+				{0, 0, 0, 0, -1}, {-1, 0, 0, 0, 0}, {0, 0, -31, 0, 0}};
+		for(int i=0; i<sourceData.length+edges.length; i++) {
+			byte[] row = i < sourceData.length ? sourceData[i] : edges[i - sourceData.length];
+			int offset = row.length == 0 ? 0 : random.nextInt(row.length);
+			byte[] part = Arrays.copyOfRange(row, offset, row.length);
+			String expected = myBase62EncodeDivision(part);
+			byte[] encoded = new byte[SafeEncodeUtils.encodedBase62Length(part.length) + 3];
+			int size = SafeEncodeUtils.encodeBase62(row, offset, part.length, encoded, 3);
+			if(expected.equals(SafeEncodeUtils.myBase62Encode(part)) == false || size != expected.length()
+					|| expected.equals(new String(encoded, 3, size, SafeEncodeUtils.Charsets.US_ASCII)) == false) {
+				throw new SafeCryptoException(20100743, "base62 encode not equal. index: " + i);
+			}
+			byte[] decoded = new byte[SafeEncodeUtils.decodedBase62Length(size) + 1];
+			int decodedSize = SafeEncodeUtils.decodeBase62(encoded, 3, size, decoded, 1);
+			if(SafeByteUtils.isEqual(part, SafeEncodeUtils.myBase62Decode(expected)) == false
+					|| SafeByteUtils.isEqual(part, myBase62DecodeDivision(expected)) == false
+					|| decodedSize != part.length || SafeByteUtils.isEqual(part, Arrays.copyOfRange(decoded, 1, 1 + decodedSize)) == false) {
+				throw new SafeCryptoException(20100744, "base62 decode not equal. index: " + i);
+			}
+			totalBytes += part.length;
+		}
+		//严格校验：无效字符、无效长度、分组数值超出范围
+		String[] invalids = new String[] {"0", "0000", "00000000", "abc-efg", "abcdefg hi", "zzzzzzz", "zz", "zzz", "zzzzz", "zzzzzz",
+				"\u00e9A", "abcdef" + "\u4e2d"};
+		for(String invalid : invalids) {
+			try {
+				SafeEncodeUtils.myBase62Decode(invalid);
+				throw new SafeCryptoException(20100745, "base62 invalid text not rejected: " + invalid);
+			} catch (IllegalArgumentException e) {
+				//预期的异常
+			}
+		}
+		double costTime = (System.nanoTime() - startTime) / SafeEncodeUtils.ONE_MILLION_DOUBLE;
+		SafeNetLog.logInfo("PASS - testBase62Codec, " +
+				"totalBytes: " + totalBytes +", " +
+				"costTime: " + costTime + " ms");
+	}
+
+	/** 原按62的幂逐位除法的62进制编码实现（与倒数乘法的结果对照） **/
+	private static String myBase62EncodeDivision(byte[] bts) {
+		byte[] encodeMap = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".getBytes(SafeEncodeUtils.Charsets.US_ASCII);
+		long[] modes = {1L, 62L, 62L*62L, 62L*62L*62L, 62L*62L*62L*62L, 62L*62L*62L*62L*62L, 62L*62L*62L*62L*62L*62L};
+		int mode = bts.length % 5;
+		if(mode >= 3) {
+			mode += 2;
+		} else if(mode >= 1) {
+			mode++;
+		}
+		byte[] buff = new byte[bts.length / 5 * 7 + mode];
+		int offset = 0;
+		for(int loop=0; loop<bts.length; loop+=5) {
+			int byteCount = bts.length - loop;
+			if(byteCount > 5) {
+				byteCount = 5;
+			}
+			int modeOffset = byteCount;
+			if(byteCount >= 3) {
+				modeOffset += 2;
+			} else {
+				modeOffset++;
+			}
+			int moveBit = (byteCount - 1) * 8;
+			long num = 0;
+			for(int i=loop; i<bts.length && moveBit >= 0; i++) {
+				num |= (bts[i] & 0xFFL) << moveBit;
+				moveBit -= 8;
+			}
+			for(int i=1; i<modeOffset; i++) {
+				buff[offset++] = encodeMap[(int) (num / modes[modeOffset - i])];
+				num %= modes[modeOffset - i];
+			}
+			buff[offset++] = encodeMap[(int) (num % 62L)];
+		}
+		return new String(buff, SafeEncodeUtils.Charsets.US_ASCII);
+	}
+
+	/** 原按62的幂逐位累加的62进制解码实现（只用于有效的编码） **/
+	private static byte[] myBase62DecodeDivision(String str) {
+		String encodeMap = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+		byte[] bts = str.getBytes(SafeEncodeUtils.Charsets.US_ASCII);
+		int mode = bts.length % 7;
+		if(mode >= 5) {
+			mode -= 2;
+		} else if(mode >= 1) {
+			mode--;
+		}
+		byte[] buff = new byte[bts.length / 7 * 5 + mode];
+		int offset = 0;
+		for(int loop=0; loop<bts.length; loop+=7) {
+			int byteCount = Math.min(bts.length - loop, 7);
+			long num = 0;
+			for(int i=0; i<byteCount; i++) {
+				num = num * 62 + encodeMap.indexOf(bts[loop + i]);
+			}
+			int modeOffset = byteCount >= 5 ? byteCount - 2 : byteCount - 1;
+			for(int moveBit=(modeOffset-1)*8; moveBit>=0; moveBit-=8) {
+				buff[offset++] = (byte) (num >>> moveBit);
+			}
+		}
+		return buff;
+	}
+
+	/** 原逐字节的32进制编码实现（与按5字节分组的结果对照） **/
+	private static byte[] encodeHttp32Bitwise(byte[] encodeHttp32Map, byte[] bts) {
+		if(bts == null) {
+			return null;
+		}
+		int buffSize = bts.length * 8 / 5;
+		if(bts.length * 8 % 5 > 0) {
+			buffSize++;
+		}
+		int offset = 0;
+		byte[] buff = new byte[buffSize];
+		int prevBitCount = 0;
+		int prevBitNum = 0;
+		for(int i=0; i<bts.length; i++) {
+			int nextBitCount = 3 + prevBitCount;
+			int nextBitNum = bts[i] & BIT_MASK[nextBitCount];
+			int numIndex = (bts[i] >>> nextBitCount) & BIT_MASK[8-nextBitCount];
+			if(prevBitCount > 0) {
+				numIndex |= (byte)(prevBitNum << (5 - prevBitCount));
+			}
+			buff[offset++] = encodeHttp32Map[numIndex];
+			if(nextBitCount > 5) {
+				numIndex = (nextBitNum >>> (nextBitCount-5)) & BIT_MASK[7];
+				buff[offset++] = encodeHttp32Map[numIndex];
+				prevBitCount = nextBitCount - 5;
+				prevBitNum = nextBitNum & BIT_MASK[prevBitCount];
+			} else if(nextBitCount == 5) {
+				buff[offset++] = encodeHttp32Map[nextBitNum];
+				prevBitCount = 0;
+				prevBitNum = 0;
+			} else {
+				prevBitCount = nextBitCount;
+				prevBitNum = nextBitNum;				
+			}
+		}
+		if(prevBitCount > 0) {
+			buff[offset++] = encodeHttp32Map[prevBitNum << (5 - prevBitCount)];
+		}
+		return buff;
+	}
+
+	/** 原逐字节的32进制解码实现（有效长度：编码长度除以8的余数为0、2、4、5、7） **/
+	private static byte[] decodeHttp32Bitwise(byte[] decodeHttp32Map, byte[] bts) {
+		if(bts == null) {
+			return null;
+		}
+		int buffSize = bts.length * 5 / 8;
+		int lastPosition = bts.length - 1;
+		byte[] buff = new byte[buffSize]; //创建buff
+		int offset = 0;
+		int prevBitCount = 0;
+		for(int i=0; i<bts.length; i++) {
+			int ch = bts[i] & 0xFF;
+			int num = 0; //默认为0
+			if(ch < decodeHttp32Map.length && decodeHttp32Map[ch] > 0) {
+				num = decodeHttp32Map[ch];
+			}
+			if(prevBitCount == 0) {
+				buff[offset] = (byte) (num << 3);
+				prevBitCount = 3;
+			} else if(prevBitCount > 5) {
+				buff[offset] |= (byte) (num << (prevBitCount - 5));
+				prevBitCount = prevBitCount - 5;				
+			} else if(prevBitCount == 5) {
+				buff[offset++] |= (byte)num;
+				prevBitCount = 0;
+			} else { // 1~4
+				buff[offset++] |= (byte) (num >>> (5-prevBitCount));
+				if(i < lastPosition) {
+					buff[offset] = (byte) ((num & BIT_MASK[5-prevBitCount]) << 3+prevBitCount);
+				}
+				prevBitCount = 3 + prevBitCount;
+			}
+		}
+		return buff;
+	}
+
+	/** 原逐字节的base64编码实现（与查表实现的结果对照） **/
+	private static byte[] encodeBase64Bitwise(byte[] encodeMap, byte[] bts, boolean backfill) {
+		if(bts == null) {
+			return null;
+		}
+		int buffSize = bts.length * 4 / 3;
+		int mode = bts.length % 3;
+		if(mode > 0) {
+			buffSize++;
+			if(backfill) {
+				if (mode == 1) {
+					buffSize += 2;
+				} else {
+					buffSize++;
+				}
+			}
+		}
+		int offset = 0;
+		byte[] buff = new byte[buffSize];
+		//最后1位或2位，补填充字符“=”
+		if(backfill && mode > 0) {
+			buff[buffSize-1] = '=';
+			if (mode == 1) {
+				buff[buffSize - 2] = '=';
+			}
+		}
+		int prevBitCount = 0;
+		int prevBitNum = 0;
+		for(int i=0; i<bts.length; i++) {
+			int nextBitCount = 2 + prevBitCount;
+			int nextBitNum = bts[i] & BIT_MASK[nextBitCount];
+			int index = (bts[i] >>> (2 + prevBitCount)) & BIT_MASK[6-prevBitCount];
+			index |= prevBitNum << (6 - prevBitCount);
+			buff[offset++] = encodeMap[index];
+			if(nextBitCount >= 6) {
+				buff[offset++] = encodeMap[nextBitNum];
+				prevBitCount = 0;
+				prevBitNum = 0;
+			} else {
+				prevBitCount = nextBitCount;
+				prevBitNum = nextBitNum;
+			}
+		}
+		if(prevBitCount > 0) {
+			if(backfill) { //标准BASE64编码，移至高位
+				if (prevBitCount < 6) {
+					prevBitNum <<= 6 - prevBitCount;
+				}
+			}
+			buff[offset++] = encodeMap[prevBitNum];
+		}
+		return buff;
+	}
+
+	/** 原逐字节的base64解码实现（与查表实现的结果对照） **/
+	private static byte[] decodeBase64Bitwise(byte[] decodeMap, byte[] bts, boolean backfill) {
+		if(bts == null) {
+			return null;
+		}
+		int srcSize = bts.length;
+		if(backfill) {
+			for(int i=1; i<8 && srcSize > 0; i++) {
+				if(bts[srcSize - 1] != '=') {
+					break;
+				}
+				srcSize--;
+			}
+		}
+		int buffSize = srcSize * 3 / 4;
+		int mode = srcSize % 4;
+		int lastBitCount = 0;
+		int lastPosition = srcSize - 1;
+		if(mode > 0) {
+			if(mode == 3) {
+				lastBitCount = 4;
+			} else {
+				lastBitCount = 2;
+			}
+		}
+		byte[] buff = new byte[buffSize]; //创建buff
+		int offset = 0;
+		int prevBitCount = 0;
+		for(int i=0; i<srcSize; i++) {
+			int ch = bts[i] & 0xFF;
+			int num = 0; //默认为0
+			if(ch < decodeMap.length && decodeMap[ch] > 0) {
+				num = decodeMap[ch];
+			}
+			if(prevBitCount == 0) {
+				buff[offset] = (byte) (num << 2);
+				prevBitCount = 2;
+			} else if(prevBitCount == 6) {
+				buff[offset++] |= (byte)num;
+				prevBitCount = 0;
+			} else if(i == lastPosition && lastBitCount > 0) {
+				if(backfill) { //标准BASE64编码
+					buff[offset++] |= num >>> (6-lastBitCount) & BIT_MASK[lastBitCount];
+				} else {
+					buff[offset++] |= num & BIT_MASK[lastBitCount];
+				}
+			} else {
+				buff[offset++] |= (byte) (num >>> (6-prevBitCount));
+				buff[offset] = (byte) ((num & BIT_MASK[6-prevBitCount]) << 2+prevBitCount);
+				prevBitCount = 2 + prevBitCount;
+			}
+		}
+		return buff;
+	}
+
 }